@@ -0,0 +1,46 @@
+package lazyElement;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares how a page element is found.
+ * Set exactly one locator. Elements without a parent are found from the driver, the others inside the element
+ * returned by the method named in {@link #parent()}.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface Locate {
+
+    /**
+     * UIA Name of the element
+     */
+    String name() default "";
+
+    /**
+     * UIA AutomationId of the element
+     */
+    String accessibilityId() default "";
+
+    /**
+     * UIA ClassName of the element
+     */
+    String className() default "";
+
+    /**
+     * XPath of the element
+     */
+    String xpath() default "";
+
+    /**
+     * Name of the method returning the parent element, empty to find the element from the driver
+     */
+    String parent() default "";
+
+    /**
+     * A user friendly name, for logging purposes. Defaults to the method name
+     */
+    String friendlyName() default "";
+}
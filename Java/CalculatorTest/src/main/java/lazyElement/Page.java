@@ -0,0 +1,16 @@
+package lazyElement;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interface whose {@link Locate} methods describe a page.
+ * {@link PageObjectProcessor} generates an implementation named after the interface with an "Impl" suffix,
+ * constructed from a logger and the driver the root elements are found with.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Page {
+}
@@ -0,0 +1,273 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates page objects from {@link Page} interfaces.
+ * Each {@link Locate} method gets a fixed slot in an array. The locators, parent slots and friendly names are
+ * precomputed static arrays, so getting an element is an array read: no hashing, no lock and no reflection.
+ * Elements are created on first use and published with a compare-and-set.
+ */
+@SupportedAnnotationTypes("lazyElement.Page")
+public class PageObjectProcessor extends AbstractProcessor {
+
+    /**
+     * One {@link Locate} method of a page
+     */
+    private static final class Slot {
+        private final String method;
+        private final String locator;
+        private final String parent;
+        private final String friendlyName;
+        private int parentIndex = -1;
+
+        private Slot(String method, String locator, String parent, String friendlyName) {
+            this.method = method;
+            this.locator = locator;
+            this.parent = parent;
+            this.friendlyName = friendlyName;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Page.class)) {
+            if (element.getKind() != ElementKind.INTERFACE) {
+                error(element, "@Page can only be used on interfaces");
+                continue;
+            }
+            if (element.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+                // The implementation is generated as a top level class of the package
+                error(element, "@Page interfaces must be top level, not nested in another type");
+                continue;
+            }
+            TypeElement page = (TypeElement) element;
+            List<Slot> slots = readSlots(page);
+            if (slots != null && linkParents(page, slots)) {
+                write(page, slots);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the slots of a page, or returns null after reporting an error.
+     */
+    private List<Slot> readSlots(TypeElement page) {
+        List<Slot> slots = new ArrayList<>();
+        boolean valid = true;
+        for (ExecutableElement method : ElementFilter.methodsIn(page.getEnclosedElements())) {
+            Locate locate = method.getAnnotation(Locate.class);
+            if (locate == null) {
+                if (!method.getModifiers().contains(Modifier.DEFAULT) && !method.getModifiers().contains(Modifier.STATIC)) {
+                    error(method, "Page methods must be annotated with @Locate");
+                    valid = false;
+                }
+                continue;
+            }
+            if (!method.getParameters().isEmpty()) {
+                error(method, "@Locate methods cannot take parameters");
+                valid = false;
+                continue;
+            }
+            if (!"lazyElement.LazyElement".equals(method.getReturnType().toString())) {
+                error(method, "@Locate methods must return LazyElement");
+                valid = false;
+                continue;
+            }
+
+            List<String> locators = new ArrayList<>();
+            if (!locate.name().isEmpty()) {
+                locators.add("By.name(" + literal(locate.name()) + ")");
+            }
+            if (!locate.accessibilityId().isEmpty()) {
+                locators.add("MobileBy.AccessibilityId(" + literal(locate.accessibilityId()) + ")");
+            }
+            if (!locate.className().isEmpty()) {
+                locators.add("By.className(" + literal(locate.className()) + ")");
+            }
+            if (!locate.xpath().isEmpty()) {
+                locators.add("By.xpath(" + literal(locate.xpath()) + ")");
+            }
+            if (locators.size() != 1) {
+                error(method, "@Locate needs exactly one of name, accessibilityId, className or xpath");
+                valid = false;
+                continue;
+            }
+
+            String name = method.getSimpleName().toString();
+            slots.add(new Slot(name, locators.get(0), locate.parent(),
+                    locate.friendlyName().isEmpty() ? name : locate.friendlyName()));
+        }
+        return valid ? slots : null;
+    }
+
+    /**
+     * Resolves parent names to slot indexes and rejects unknown parents and cycles.
+     */
+    private boolean linkParents(TypeElement page, List<Slot> slots) {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < slots.size(); i++) {
+            indexes.put(slots.get(i).method, i);
+        }
+
+        for (Slot slot : slots) {
+            if (slot.parent.isEmpty()) {
+                continue;
+            }
+            Integer parent = indexes.get(slot.parent);
+            if (parent == null) {
+                error(page, slot.method + " has unknown parent " + slot.parent);
+                return false;
+            }
+            slot.parentIndex = parent;
+        }
+
+        for (Slot slot : slots) {
+            int depth = 0;
+            for (Slot ancestor = slot; ancestor.parentIndex >= 0; ancestor = slots.get(ancestor.parentIndex)) {
+                if (++depth > slots.size()) {
+                    error(page, slot.method + " is its own ancestor");
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void write(TypeElement page, List<Slot> slots) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(page).getQualifiedName().toString();
+        String pageName = page.getSimpleName().toString();
+        String className = pageName + "Impl";
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import java.util.concurrent.atomic.AtomicReferenceArray;\n\n");
+        source.append("import io.appium.java_client.MobileBy;\n");
+        source.append("import lazyElement.LazyElement;\n");
+        source.append("import org.apache.log4j.Logger;\n");
+        source.append("import org.openqa.selenium.By;\n");
+        source.append("import org.openqa.selenium.WebDriver;\n\n");
+        source.append("/**\n * Generated from {@link ").append(pageName).append("} by ")
+                .append(PageObjectProcessor.class.getSimpleName()).append(", do not edit.\n */\n");
+        source.append("public final class ").append(className).append(" implements ").append(pageName).append(" {\n\n");
+
+        source.append("    private static final By[] Locators = {\n");
+        for (Slot slot : slots) {
+            source.append("            ").append(slot.locator).append(",\n");
+        }
+        source.append("    };\n\n");
+
+        source.append("    private static final int[] Parents = {");
+        List<String> parents = new ArrayList<>();
+        for (Slot slot : slots) {
+            parents.add(String.valueOf(slot.parentIndex));
+        }
+        source.append(String.join(", ", parents)).append("};\n\n");
+
+        source.append("    private static final String[] FriendlyNames = {\n");
+        for (Slot slot : slots) {
+            source.append("            ").append(literal(slot.friendlyName)).append(",\n");
+        }
+        source.append("    };\n\n");
+
+        source.append("    private final Logger logger;\n\n");
+        source.append("    private final WebDriver driver;\n\n");
+        source.append("    private final AtomicReferenceArray<LazyElement> slots = new AtomicReferenceArray<>(")
+                .append(slots.size()).append(");\n\n");
+
+        source.append("    public ").append(className).append("(Logger logger, WebDriver driver) {\n");
+        source.append("        this.logger = logger;\n");
+        source.append("        this.driver = driver;\n");
+        source.append("    }\n");
+
+        for (int i = 0; i < slots.size(); i++) {
+            source.append("\n    @Override\n");
+            source.append("    public LazyElement ").append(slots.get(i).method).append("() {\n");
+            source.append("        return slot(").append(i).append(");\n");
+            source.append("    }\n");
+        }
+
+        source.append("\n    private LazyElement slot(int index) {\n");
+        source.append("        LazyElement element = slots.get(index);\n");
+        source.append("        if (element == null) {\n");
+        source.append("            int parent = Parents[index];\n");
+        source.append("            LazyElement created = parent < 0\n");
+        source.append("                    ? new LazyElement(logger, driver, Locators[index], FriendlyNames[index])\n");
+        source.append("                    : new LazyElement(logger, slot(parent), Locators[index], FriendlyNames[index]);\n");
+        source.append("            element = slots.compareAndSet(index, null, created) ? created : slots.get(index);\n");
+        source.append("        }\n");
+        source.append("        return element;\n");
+        source.append("    }\n");
+        source.append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, page).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            error(page, "Failed to write " + qualifiedName + ": " + e.getMessage());
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * Quotes a string as a Java literal.
+     */
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
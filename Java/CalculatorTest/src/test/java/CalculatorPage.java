@@ -0,0 +1,41 @@
+//******************************************************************************
+//
+// Copyright (c) 2016 Microsoft Corporation. All rights reserved.
+//
+// This code is licensed under the MIT License (MIT).
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+//
+//******************************************************************************
+
+import lazyElement.LazyElement;
+import lazyElement.Locate;
+import lazyElement.Page;
+
+/** Lazy elements of the calculator, CalculatorPageImpl is generated from these declarations
+ * applicationBaseContainer refers to the whole frame, in our example it was locating the whole frame of the calculator
+ * All other elements below applicationBaseContainer will uses only this as a frame and it will search for the respective element only inside that and not outside of this. **/
+@Page
+public interface CalculatorPage {
+
+    @Locate(name = "Calculator", friendlyName = "Drive Train Base Container")
+    LazyElement applicationBaseContainer();
+
+    @Locate(name = "One", parent = "applicationBaseContainer", friendlyName = "Button One")
+    LazyElement one_Btn();
+
+    @Locate(name = "Seven", parent = "applicationBaseContainer", friendlyName = "Button Seven")
+    LazyElement seven_Btn();
+
+    @Locate(name = "Plus", parent = "applicationBaseContainer", friendlyName = "Button Plus")
+    LazyElement plus_Btn();
+
+    @Locate(name = "Equals", parent = "applicationBaseContainer", friendlyName = "Button Equals")
+    LazyElement equals_Btn();
+}
@@ -0,0 +1,51 @@
+import lazyElement.LazyElement;
+import lazyElement.StandInDriver;
+import lazyElement.StandInElement;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CalculatorPageTest {
+
+    private final Logger logger = Logger.getLogger(CalculatorPageTest.class);
+
+    private StandInDriver driver;
+
+    private CalculatorPage page;
+
+    @Before
+    public void setup() {
+        driver = new StandInDriver();
+        StandInElement window = driver.window("Calculator");
+        for (String name : new String[] {"One", "Seven", "Plus", "Equals"}) {
+            window.add(name);
+        }
+        page = new CalculatorPageImpl(logger, driver);
+    }
+
+    @Test
+    public void SlotsAreCreatedOnceAndShareTheirParent() {
+        LazyElement one = page.one_Btn();
+
+        Assert.assertSame(one, page.one_Btn());
+        Assert.assertSame(page.applicationBaseContainer(), one.getParent());
+        Assert.assertSame(page.applicationBaseContainer(), page.equals_Btn().getParent());
+        Assert.assertEquals("Button One", one.getUserFriendlyName());
+        Assert.assertEquals(0, driver.getFindCount());
+    }
+
+    @Test
+    public void GeneratedLocatorsResolveTheElements() {
+        Assert.assertEquals("Seven", page.seven_Btn().getText());
+        Assert.assertEquals("Plus", page.plus_Btn().getText());
+        Assert.assertEquals("Calculator", page.applicationBaseContainer().getText());
+    }
+
+    @Test
+    public void PagesDoNotShareElements() {
+        CalculatorPage other = new CalculatorPageImpl(logger, driver);
+
+        Assert.assertNotSame(page.one_Btn(), other.one_Btn());
+    }
+}
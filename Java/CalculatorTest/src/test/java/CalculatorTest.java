@@ -15,15 +15,15 @@
 //******************************************************************************
 
 import io.appium.java_client.MobileBy;
-import lazyElement.Lazy;
-import lazyElement.LazyElement;
+import lazyElement.EndpointRouter;
+import lazyElement.JournalDumpRule;
+import lazyElement.LazyActions;
 import org.apache.log4j.Logger;
 import org.junit.*;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import java.util.concurrent.TimeUnit;
-import java.net.URL;
 import io.appium.java_client.windows.WindowsDriver;
 
 public class CalculatorTest {
@@ -33,27 +33,14 @@ public class CalculatorTest {
     public final Logger logger = Logger.getLogger(this.getClass());
 
     /** Declaring Lazy Elements
-     * applicationBasecontainer refers to the whole frame, in our example it was locating the whole frame of the calculator
-     * All other elements below applicationbasecontainer will uses only this as a frame and it will search for the respective element only inside that and not outside of this. **/
-    protected Lazy<LazyElement> applicationBaseContainer = () -> {
-        return new LazyElement(this.logger, CalculatorSession, By.name("Calculator"), "Drive Train Base Container");
-    };
+     * The elements are declared in CalculatorPage, CalculatorPageImpl is generated from it at compile time and
+     * holds each element in a fixed slot instead of the Lazy cache. **/
+    protected CalculatorPage page = new CalculatorPageImpl(this.logger, CalculatorSession);
 
-    protected Lazy<LazyElement> one_Btn = () -> {
-        return new LazyElement(this.logger, applicationBaseContainer.get(), By.name("One"), "Button One");
-    };
-
-    protected Lazy<LazyElement> seven_Btn = () -> {
-        return new LazyElement(this.logger, applicationBaseContainer.get(), By.name("Seven"), "Button Seven");
-    };
-
-    protected Lazy<LazyElement> plus_Btn = () -> {
-        return new LazyElement(this.logger, applicationBaseContainer.get(), By.name("Plus"), "Button Plus");
-    };
-
-    protected Lazy<LazyElement> equals_Btn = () -> {
-        return new LazyElement(this.logger, applicationBaseContainer.get(), By.name("Equals"), "Button Equals");
-    };
+    /** Writes the lazy element interactions of a failed test to target/journal and its screenshot to
+     * target/screenshots **/
+    @Rule
+    public JournalDumpRule journal = new JournalDumpRule().withScreenshots(() -> CalculatorSession);
 
 
     @BeforeClass
@@ -61,7 +48,8 @@ public class CalculatorTest {
         try {
             DesiredCapabilities capabilities = new DesiredCapabilities();
             capabilities.setCapability("app", "Microsoft.WindowsCalculator_8wekyb3d8bbwe!App");
-            CalculatorSession = new WindowsDriver(new URL("http://127.0.0.1:4723"), capabilities);
+            // Placed on the least loaded, fastest host listed in lazyElement.endpoints, http://127.0.0.1:4723 by default
+            CalculatorSession = EndpointRouter.getShared().open(url -> new WindowsDriver(url, capabilities));
             CalculatorSession.manage().timeouts().implicitlyWait(2, TimeUnit.SECONDS);
 
             CalculatorResult = CalculatorSession.findElementByAccessibilityId("CalculatorResults");
@@ -99,11 +87,9 @@ public class CalculatorTest {
         CalculatorSession.findElementByName("Seven").click();
         CalculatorSession.findElementByName("Equals").click();*/
 
-        /** Usage of Lazy elements declared above*/
-        one_Btn.get().click();
-        plus_Btn.get().click();
-        seven_Btn.get().click();
-        equals_Btn.get().click();
+        /** Usage of Lazy elements declared above, clicked as one batch*/
+        LazyActions.Report report = LazyActions.sequence(page.one_Btn(), page.plus_Btn(), page.seven_Btn(), page.equals_Btn()).click();
+        logger.debug(report);
         Assert.assertEquals("8", _GetCalculatorResultText());
     }
 
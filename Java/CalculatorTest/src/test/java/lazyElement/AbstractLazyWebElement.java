@@ -1,15 +1,23 @@
 package lazyElement;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
 
-import org.apache.commons.lang3.NotImplementedException;
 import org.apache.log4j.Logger;
-import org.joda.time.DateTime;
 import org.openqa.selenium.By;
 import org.openqa.selenium.Dimension;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.Point;
 import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
@@ -24,6 +32,27 @@ public abstract class AbstractLazyWebElement implements Element {
     public static final int Retrytime = 1000;
     public static final int Timeout = 30000;
 
+    /// <summary>
+    /// Matching screenshots a click waits for first, from the lazyElement.stableFrames system property. 0, the
+    /// default, clicks as soon as the element is displayed and enabled
+    /// </summary>
+    private static final int StableFrames = Integer.getInteger("lazyElement.stableFrames", 0);
+
+    /// <summary>
+    /// Largest block luminance difference, out of 255, still counted as the same frame
+    /// </summary>
+    private static final int StableTolerance = Integer.getInteger("lazyElement.stableTolerance", 2);
+
+    /// <summary>
+    /// Time between the screenshots of a visual stability wait, in milliseconds
+    /// </summary>
+    private static final long StableInterval = Long.getLong("lazyElement.stableInterval", 50);
+
+    /// <summary>
+    /// Time between the reads of an observed property, in milliseconds
+    /// </summary>
+    private static final long ObserveInterval = Long.getLong("lazyElement.observeInterval", 100);
+
     /// <summary>
     /// The index in cases where the selector finds multiple elements
     /// </summary>
@@ -77,15 +106,26 @@ public abstract class AbstractLazyWebElement implements Element {
     }
 
     /// <summary>
-    /// Gets the web driver
+    /// The locator path from the root element, the key its timings are learned under
+    /// </summary>
+    private final String locatorKey;
+
+    public String getLocatorKey() {
+        return locatorKey;
+    }
+
+    /// <summary>
+    /// Gets the web driver, copied from the parent on first use. Volatile so the copy is visible to every thread
     /// </summary>
-    private WebDriver webDriver;
+    private volatile WebDriver webDriver;
 
     public WebDriver getDriver() {
-        if (webDriver == null) {
-            webDriver = getParent().getDriver();
+        WebDriver driver = webDriver;
+        if (driver == null) {
+            driver = getParent().getDriver();
+            webDriver = driver;
         }
-        return webDriver;
+        return driver;
     }
 
     private void setDriver(WebDriver webDriver) {
@@ -105,11 +145,106 @@ public abstract class AbstractLazyWebElement implements Element {
         this.log = log;
     }
 
+    /// <summary>
+    /// A cached copy of the element or null if we haven't already found the
+    /// element
+    /// </summary>
+    private final AtomicReference<WebElement> cachedElement = new AtomicReference<>();
+
+    /// <summary>
+    /// The remote find currently refreshing the cached element, shared by every thread that asks for a refresh
+    /// while it runs
+    /// </summary>
+    private final AtomicReference<Find> pendingFind = new AtomicReference<>();
+
+    /// <summary>
+    /// A resolve in flight. One that may reuse the cached element cannot stand in for a forced refresh
+    /// </summary>
+    private static final class Find extends CompletableFuture<WebElement> {
+        private final boolean reusesCached;
+
+        private Find(boolean reusesCached) {
+            this.reusesCached = reusesCached;
+        }
+    }
+
+    /// <summary>
+    /// Where an element was and what it looked like at one point of a visual stability wait
+    /// </summary>
+    private static final class Frame {
+        private final Rectangle rect;
+        private final VisualSignature signature;
+
+        private Frame(Rectangle rect, VisualSignature signature) {
+            this.rect = rect;
+            this.signature = signature;
+        }
+    }
+
+    /// <summary>
+    /// Observed properties, one shared poll each
+    /// </summary>
+    private final ConcurrentMap<String, PropertyStream> observed = new ConcurrentHashMap<>();
+
+    /// <summary>
+    /// Wait conditions, built once per element so polling does not allocate a new lambda on every call
+    /// </summary>
+    private final BooleanSupplier elementFound = () -> {
+        this.getElement();
+        return true;
+    };
+
+    private final BooleanSupplier elementNonNull = () -> {
+        try {
+            return this.getElement() != null;
+        } catch (Exception e) {
+            return false;
+        }
+    };
+
+    private final BooleanSupplier elementClickable = () -> {
+        WebElement element = getElement();
+        if (element.isDisplayed() && element.isEnabled()) {
+            return true;
+        } else {
+            getNewElement();
+            return false;
+        }
+    };
+
+    private final BooleanSupplier clickElement = () -> {
+        this.getElement().click();
+        return true;
+    };
+
+    private final BooleanSupplier doubleClickElement = () -> {
+        Actions actions = new Actions(this.getDriver());
+        actions.moveToElement(this.getElement()).doubleClick(this.getElement()).build().perform();
+        return true;
+    };
+
+    private final BooleanSupplier clearElement = () -> {
+        this.getElement().clear();
+        return true;
+    };
+
+    private final BooleanSupplier submitElement = () -> {
+        this.getElement().submit();
+        return true;
+    };
+
+    private final Predicate<CharSequence[]> sendKeysToElement = keys -> {
+        this.getElement().sendKeys(keys);
+        return true;
+    };
+
     /// <summary>
     /// Gets a cached copy of the element or null if we haven't already found the
     /// element
     /// </summary>
-    public WebElement cachedElement;
+    public WebElement getCachedElement() {
+        return cachedElement.get();
+    }
 
     /// <summary>
     /// Initializes a new instance of the <see cref="AbstractLazyWebElement" />
@@ -125,6 +260,7 @@ public abstract class AbstractLazyWebElement implements Element {
         this.log = logger;
         this.by = locator;
         this.userFriendlyName = userFriendlyName;
+        this.locatorKey = String.valueOf(locator);
     }
 
     /// <summary>
@@ -142,6 +278,7 @@ public abstract class AbstractLazyWebElement implements Element {
         this.log = logger;
         this.by = locator;
         this.userFriendlyName = userFriendlyName;
+        this.locatorKey = parentElement == null ? String.valueOf(locator) : parentElement.getLocatorKey() + " > " + locator;
     }
 
     public AbstractLazyWebElement(Logger logger, AbstractLazyWebElement parentElement, By locator, WebElement element,
@@ -150,8 +287,9 @@ public abstract class AbstractLazyWebElement implements Element {
         this.log = logger;
         this.by = locator;
         this.userFriendlyName = userFriendlyName;
+        this.locatorKey = parentElement == null ? String.valueOf(locator) : parentElement.getLocatorKey() + " > " + locator;
         this.intelementIndex = index;
-        this.cachedElement = element;
+        this.cachedElement.set(element);
     }
 
     /// <summary>
@@ -159,19 +297,39 @@ public abstract class AbstractLazyWebElement implements Element {
     /// </summary>
     @Override
     public void click() throws NoSuchElementException {
-        this.log.debug("Click " + this.userFriendlyName);
-        this.waitForElementNonNull();
-        this.waitForClickAbleElement();
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean succeeded = false;
         try {
-            GenericWait.wait(() -> {
-                this.getElement().click();
-                return true;
-            }, Retrytime, Timeout, true);
-        } catch (Exception e) {
-            throw new NoSuchElementException(e.getLocalizedMessage());
+            this.waitForElementNonNull();
+            this.waitForClickAbleElement();
+            try {
+                this.waitFor(clickElement, true, false);
+            } catch (Exception e) {
+                throw new NoSuchElementException(e.getLocalizedMessage());
+            }
+            succeeded = true;
+        } finally {
+            journal(InteractionJournal.Operation.CLICK, null, start, succeeded);
+            record(event, InteractionJournal.Operation.CLICK, succeeded);
         }
     }
 
+    /// <summary>
+    /// Clicks the element once a batch has resolved it and found it actionable, journaled and recorded like click().
+    /// A failed click is left to the click() the batch falls back to, which records how it ends
+    /// </summary>
+    /// <param name="element">The resolved element</param>
+    void clickResolved(WebElement element) {
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        element.click();
+        journal(InteractionJournal.Operation.CLICK, null, start, true);
+        record(event, InteractionJournal.Operation.CLICK, true);
+    }
+
     /// <summary>
     /// Double clicks the lazy element
     /// </summary>
@@ -182,80 +340,141 @@ public abstract class AbstractLazyWebElement implements Element {
 
     private boolean waitForClickAbleElement() {
         try {
-            GenericWait.wait(() -> {
-                WebElement element = getElement();
-                if (element.isDisplayed() && element.isEnabled()) {
-                    return true;
-                } else {
-                    getNewElement();
-                    return false;
-                }
-            }, Retrytime, Timeout, true);
+            this.waitFor(elementClickable, true, true);
         } catch (Exception e) {
             throw new NoSuchElementException("Failed to find clickable element " + this.userFriendlyName + "\r\n" + e.getMessage());
         }
+        if (StableFrames > 1 && !this.waitUntilVisuallyStable(StableFrames, StableInterval, GenericWait.getTimeout())) {
+            log.warn(this.userFriendlyName + " was still moving after " + GenericWait.getTimeout() + " milliseconds");
+        }
         return this.isEnabled();
     }
 
+    /// <summary>
+    /// Waits until successive frames of the element have the same rect and look the same, so an animation moving or
+    /// redrawing it has ended. The rect is needed too, since an element sliding as a whole looks the same in its own
+    /// screenshots
+    /// </summary>
+    /// <param name="frames">Successive matching frames needed, at least 2</param>
+    /// <param name="retryTime">Time between frames in milliseconds</param>
+    /// <param name="timeout">Max timeout in milliseconds</param>
+    /// <returns>True if the element held still before the timeout</returns>
+    public boolean waitUntilVisuallyStable(int frames, long retryTime, long timeout) throws NoSuchElementException {
+        waitForElementNonNull();
+        try {
+            return GenericWait.waitUntilStable(() -> {
+                WebElement element = this.getElement();
+                return new Frame(element.getRect(), VisualSignature.of(element.getScreenshotAs(OutputType.BYTES)));
+            }, (first, next) -> first.rect.equals(next.rect) && first.signature.matches(next.signature, StableTolerance),
+                    frames, retryTime, timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NoSuchElementException("Interrupted while waiting for " + this.userFriendlyName + " to hold still");
+        }
+    }
+
+    /// <summary>
+    /// Waits until three successive frames of the element, lazyElement.stableInterval milliseconds apart, have the
+    /// same rect and look the same
+    /// </summary>
+    /// <returns>True if the element held still before the timeout</returns>
+    public boolean waitUntilVisuallyStable() throws NoSuchElementException {
+        return this.waitUntilVisuallyStable(3, StableInterval, GenericWait.getTimeout());
+    }
+
     /// <summary>
     /// Double clicks the lazy element
     /// </summary>
     public void doubleClick() throws Throwable {
-        this.log.debug("Double clicking " + this.userFriendlyName);
-        if (!this.waitForClickAbleElement()){
-            throw new NoSuchElementException("Failed to find clickable element " + this.userFriendlyName);
-        }
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean succeeded = false;
         try {
-            GenericWait.wait(() -> {
-                Actions actions = new Actions(this.getDriver());
-                actions.moveToElement(this.getElement()).doubleClick(this.getElement()).build().perform();
-                return true;
-            }, Retrytime, Timeout, true);
-        } catch (Exception e) {
-            throw new NoSuchElementException(e.getLocalizedMessage());
+            if (!this.waitForClickAbleElement()){
+                throw new NoSuchElementException("Failed to find clickable element " + this.userFriendlyName);
+            }
+            try {
+                this.waitFor(doubleClickElement, true, false);
+            } catch (Exception e) {
+                throw new NoSuchElementException(e.getLocalizedMessage());
+            }
+            succeeded = true;
+        } finally {
+            journal(InteractionJournal.Operation.DOUBLE_CLICK, null, start, succeeded);
+            record(event, InteractionJournal.Operation.DOUBLE_CLICK, succeeded);
         }
     }
 
     /// <summary>
-    /// Send keys to the lazy element
+    /// Send keys to the lazy element. Plain text is entered in chunks, a short text being a single one, resuming from
+    /// what the element's Value shows after a failure instead of typing it all again. Keys with special keys such as
+    /// Keys.ENTER are sent as they are
     /// </summary>
     /// <param name="text">The text to send to the lazy element</param>
     @Override
     public void sendKeys(CharSequence... keysToSend) throws NoSuchElementException {
-        this.log.debug("Send text to " + keysToSend + " to " + this.userFriendlyName);
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean succeeded = false;
         try {
-            GenericWait.wait(() -> {
-                WebElement element = this.getElement();
-                element.sendKeys(keysToSend);
-                return true;
-            }, Retrytime, Timeout, true);
+            LocatorTimings timings = LocatorTimings.getShared();
+            TextEntry entry = TextEntry.getShared();
+            String text = entry.plainText(keysToSend);
+            if (text != null) {
+                entry.enter(this, text, false, timings.getPollInterval(this.locatorKey), timings.getTimeout(this.locatorKey));
+            } else {
+                GenericWait.wait(sendKeysToElement, timings.getPollInterval(this.locatorKey),
+                        timings.getTimeout(this.locatorKey), true, keysToSend);
+            }
+            succeeded = true;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            // The keys are not journaled, they may be secret
+            journal(InteractionJournal.Operation.SEND_KEYS, null, start, succeeded);
+            record(event, InteractionJournal.Operation.SEND_KEYS, succeeded);
         }
     }
 
     /// <summary>
-    /// Send Secret keys with no logging
-    /// TODO: Implement
+    /// Send Secret keys with no logging. They are entered the way long text is, so a retry never types them twice,
+    /// and a failure keeps neither the keys nor the cause, whose message might hold them
     /// </summary>
     /// <param name="keys">The keys to send</param>
-    public void sendSecretKeys(String keys) {
-        throw new NotImplementedException("Send secret keys not implemented");
+    public void sendSecretKeys(String keys) throws NoSuchElementException {
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            LocatorTimings timings = LocatorTimings.getShared();
+            TextEntry.getShared().enter(this, keys, true, timings.getPollInterval(this.locatorKey),
+                    timings.getTimeout(this.locatorKey));
+            succeeded = true;
+        } finally {
+            journal(InteractionJournal.Operation.SEND_KEYS, null, start, succeeded);
+            record(event, InteractionJournal.Operation.SEND_KEYS, succeeded);
+        }
     }
 
     /// <summary>
     /// Clear the lazy element
     /// </summary>
     public void clear() throws NoSuchElementException {
-        this.log.debug("Send clear to " + this.userFriendlyName);
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean succeeded = false;
         try {
-            GenericWait.wait(() -> {
-                WebElement element = this.getElement();
-                element.clear();
-                return true;
-            }, Retrytime, Timeout, false);
+            this.waitFor(clearElement, false, false);
+            succeeded = true;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.CLEAR, null, start, succeeded);
+            record(event, InteractionJournal.Operation.CLEAR, succeeded);
         }
     }
 
@@ -264,15 +483,18 @@ public abstract class AbstractLazyWebElement implements Element {
     /// </summary>
     @Override
     public void submit() throws NoSuchElementException {
-        this.log.debug("Send submit to " + this.userFriendlyName);
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean succeeded = false;
         try {
-            GenericWait.wait(() -> {
-                WebElement element = this.getElement();
-                element.submit();
-                return true;
-            }, Retrytime, Timeout, true);
+            this.waitFor(submitElement, true, false);
+            succeeded = true;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.SUBMIT, null, start, succeeded);
+            record(event, InteractionJournal.Operation.SUBMIT, succeeded);
         }
     }
 
@@ -282,20 +504,17 @@ public abstract class AbstractLazyWebElement implements Element {
     /// <param name="attributeName">The given attribute name</param>
     /// <returns>The attribute value</returns>
     public String getAttribute(String attributeName) {
-        this.log.debug("Getting attribute " + attributeName + " from element " + this.userFriendlyName);
+        long start = System.nanoTime();
+        boolean succeeded = false;
         try {
-            GenericWait.wait(() -> {
-                this.getElement();
-                return true;
-            }, Retrytime, Timeout, true);
-        } catch (Exception e) {
-            throw new NoSuchElementException(e.getLocalizedMessage());
-        }
-
-        try {
-            return this.getElement().getAttribute(attributeName);
+            this.waitFor(elementFound, true, true);
+            String value = this.getElement().getAttribute(attributeName);
+            succeeded = true;
+            return value;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.GET_ATTRIBUTE, attributeName, start, succeeded);
         }
     }
 
@@ -305,20 +524,46 @@ public abstract class AbstractLazyWebElement implements Element {
     /// <param name="attributeName">The given attribute name</param>
     /// <returns>The attribute value</returns>
     public String getText() {
-        this.log.debug("Getting text from element " + this.userFriendlyName);
+        long start = System.nanoTime();
+        boolean succeeded = false;
         try {
-            GenericWait.wait(() -> {
-                this.getElement();
-                return true;
-            }, Retrytime, Timeout, true);
-        } catch (Exception e) {
-            throw new NoSuchElementException(e.getLocalizedMessage());
+            try {
+                this.waitFor(elementFound, true, true);
+            } catch (Exception e) {
+                throw new NoSuchElementException(e.getLocalizedMessage());
+            }
+
+            try {
+                String text = this.getElement().getText();
+                succeeded = true;
+                return text;
+            } catch (Exception e) {
+                return null;
+            }
+        } finally {
+            journal(InteractionJournal.Operation.GET_TEXT, null, start, succeeded);
         }
+    }
+
+    /// <summary>
+    /// Observes an attribute of the element, e.g. observe("Value").when("8"::equals). Every observer of the
+    /// attribute shares one poll, which runs only while someone is subscribed
+    /// </summary>
+    /// <param name="attributeName">The attribute to observe</param>
+    /// <returns>The distinct values of the attribute</returns>
+    public PropertyStream observe(String attributeName) {
+        return this.observed.computeIfAbsent(attributeName, name -> PropertyStream.of(
+                this.userFriendlyName + " " + name, () -> this.readAttribute(name), ObserveInterval));
+    }
 
+    /// <summary>
+    /// Reads an attribute once, without waiting or journaling, for the observer polls
+    /// </summary>
+    private String readAttribute(String attributeName) {
         try {
-            return this.getElement().getText();
-        } catch (Exception e) {
-            return null;
+            return this.getElement().getAttribute(attributeName);
+        } catch (StaleElementReferenceException e) {
+            return this.getNewElement().getAttribute(attributeName);
         }
     }
 
@@ -336,12 +581,17 @@ public abstract class AbstractLazyWebElement implements Element {
     /// <param name="propertyName">The given attribute/property name</param>
     /// <returns>The CSS value</returns>
     public String getCssValue(String propertyName) {
-        this.log.debug("Getting css value " + propertyName + " from element " + this.userFriendlyName);
+        long start = System.nanoTime();
+        boolean succeeded = false;
         waitForElementNonNull();
         try {
-            return this.getElement().getCssValue(propertyName);
+            String value = this.getElement().getCssValue(propertyName);
+            succeeded = true;
+            return value;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.GET_CSS_VALUE, propertyName, start, succeeded);
         }
     }
 
@@ -350,12 +600,17 @@ public abstract class AbstractLazyWebElement implements Element {
     /// </summary>
     /// <returns>The rectangle value</returns>
     public Rectangle getRect() {
-        this.log.debug("Getting rectangle from element " + this.userFriendlyName);
+        long start = System.nanoTime();
+        boolean succeeded = false;
         waitForElementNonNull();
         try {
-            return this.getElement().getRect();
+            Rectangle value = this.getElement().getRect();
+            succeeded = true;
+            return value;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.GET_RECT, null, start, succeeded);
         }
     }
 
@@ -365,12 +620,17 @@ public abstract class AbstractLazyWebElement implements Element {
     /// <returns>True if the element is displayed</returns>
     @Override
     public boolean isDisplayed() {
-        this.log.debug("Check to see if element is displayed: " + this.userFriendlyName);
+        long start = System.nanoTime();
+        boolean succeeded = false;
         waitForElementNonNull();
         try {
-            return getElement().isDisplayed();
+            boolean value = this.getElement().isDisplayed();
+            succeeded = true;
+            return value;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.IS_DISPLAYED, null, start, succeeded);
         }
     }
 
@@ -379,12 +639,37 @@ public abstract class AbstractLazyWebElement implements Element {
     /// </summary>
     /// <returns>True if the element is displayed</returns>
     public <X> X getScreenshotAs(OutputType<X> target) {
-        this.log.debug("Check to see if element is displayed: " + this.userFriendlyName);
+        long start = System.nanoTime();
+        boolean succeeded = false;
         waitForElementNonNull();
         try {
-            return getElement().getScreenshotAs(target);
+            X value = this.getElement().getScreenshotAs(target);
+            succeeded = true;
+            return value;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.GET_SCREENSHOT, null, start, succeeded);
+        }
+    }
+
+    /// <summary>
+    /// Captures the element and leaves decoding and writing it to the screenshot pipeline
+    /// </summary>
+    /// <param name="name">The name the screenshot file starts with</param>
+    /// <returns>True if the screenshot was queued, false if the pipeline was full and dropped it</returns>
+    public boolean checkpoint(String name) {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        waitForElementNonNull();
+        try {
+            boolean queued = ScreenshotPipeline.getShared().capture(this.getElement(), name);
+            succeeded = true;
+            return queued;
+        } catch (Exception e) {
+            throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.GET_SCREENSHOT, name, start, succeeded);
         }
     }
 
@@ -393,13 +678,17 @@ public abstract class AbstractLazyWebElement implements Element {
     /// </summary>
     /// <returns>True if the element is displayed</returns>
     public boolean isEnabled() throws NoSuchElementException {
-        this.log.debug("Check to see if element is enabled: " + this.userFriendlyName);
+        long start = System.nanoTime();
+        boolean succeeded = false;
         waitForElementNonNull();
-
         try {
-            return this.getElement().isEnabled();
+            boolean value = this.getElement().isEnabled();
+            succeeded = true;
+            return value;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.IS_ENABLED, null, start, succeeded);
         }
     }
 
@@ -408,13 +697,17 @@ public abstract class AbstractLazyWebElement implements Element {
     /// </summary>
     /// <returns>True if the element is selected</returns>
     public boolean isSelected() {
-        this.log.debug("Check to see if element is enabled: " + this.userFriendlyName);
+        long start = System.nanoTime();
+        boolean succeeded = false;
         waitForElementNonNull();
-
         try {
-            return this.getElement().isSelected();
+            boolean value = this.getElement().isSelected();
+            succeeded = true;
+            return value;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.IS_SELECTED, null, start, succeeded);
         }
     }
 
@@ -423,13 +716,17 @@ public abstract class AbstractLazyWebElement implements Element {
     /// </summary>
     /// <returns>Element size</returns>
     public Dimension getSize() {
-        this.log.debug("Check to see if element is enabled: " + this.userFriendlyName);
+        long start = System.nanoTime();
+        boolean succeeded = false;
         waitForElementNonNull();
-
         try {
-            return this.getElement().getSize();
+            Dimension value = this.getElement().getSize();
+            succeeded = true;
+            return value;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.GET_SIZE, null, start, succeeded);
         }
     }
 
@@ -438,13 +735,17 @@ public abstract class AbstractLazyWebElement implements Element {
     /// </summary>
     /// <returns>Element size</returns>
     public String getTagName() {
-        this.log.debug("Check to see if element is enabled: " + this.userFriendlyName);
+        long start = System.nanoTime();
+        boolean succeeded = false;
         waitForElementNonNull();
-
         try {
-            return this.getElement().getTagName();
+            String value = this.getElement().getTagName();
+            succeeded = true;
+            return value;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.GET_TAG_NAME, null, start, succeeded);
         }
     }
 
@@ -453,13 +754,17 @@ public abstract class AbstractLazyWebElement implements Element {
     /// </summary>
     /// <returns>Element size</returns>
     public Point getLocation() {
-        this.log.debug("Check to see if element is enabled: " + this.userFriendlyName);
+        long start = System.nanoTime();
+        boolean succeeded = false;
         waitForElementNonNull();
-
         try {
-            return this.getElement().getLocation();
+            Point value = this.getElement().getLocation();
+            succeeded = true;
+            return value;
         } catch (Exception e) {
             throw new NoSuchElementException(e.getLocalizedMessage());
+        } finally {
+            journal(InteractionJournal.Operation.GET_LOCATION, null, start, succeeded);
         }
     }
 
@@ -477,21 +782,20 @@ public abstract class AbstractLazyWebElement implements Element {
     /// <param name="getElement">The get web element function</param>
     /// <returns>The web element</returns>
     protected WebElement getElement() throws NoSuchElementException {
+        ResolutionEvent event = new ResolutionEvent();
+        event.begin();
         // Try to use cached element
-        if (this.cachedElement != null) {
-            try {
-                // Do this to make sure we waited for the element to exist
-                return this.cachedElement;
-            } catch (Exception e) {
-                log.debug("Re-finding element because: " + e.getMessage());
-                getNewElement();
-                return this.cachedElement;
-            }
+        WebElement cached = this.cachedElement.get();
+        if (cached != null) {
+            event.cacheHit = true;
+            record(event, true);
+            return cached;
         }
         try {
-            log.debug("Performing lazy driver find on: " + this.by);
-            getNewElement();
-            return this.cachedElement;
+            if (log.isDebugEnabled()) {
+                log.debug("Performing lazy driver find on: " + this.by);
+            }
+            return resolveElement(true, event);
         } catch (Exception e) {
             StringBuilder messageBuilder = new StringBuilder();
             messageBuilder.append("Failed to find: " + this.userFriendlyName);
@@ -502,20 +806,217 @@ public abstract class AbstractLazyWebElement implements Element {
         }
     }
 
+    /// <summary>
+    /// Find the element again and cache it. Concurrent calls share a single remote find
+    /// </summary>
+    /// <returns>The web element</returns>
     protected WebElement getNewElement() throws NoSuchElementException {
-        DateTime start = DateTime.now();
-        if (this.parent != null) {
-            WebElement element = parent.getElement().findElement(by);
-            this.cachedElement = element;
-            DateTime end = DateTime.now();
-            log.debug("Took " + (end.getMillisOfDay() - start.getMillisOfDay()) + " milliseconds to find " + getUserFriendlyName());
+        ResolutionEvent event = new ResolutionEvent();
+        event.begin();
+        return resolveElement(false, event);
+    }
+
+    /// <summary>
+    /// Resolve the element, joining the find already in flight if there is one
+    /// </summary>
+    /// <param name="reuseCached">Return the cached element if another thread cached one in the meantime</param>
+    /// <param name="event">The flight recorder event of the resolution, already begun</param>
+    /// <returns>The web element</returns>
+    private WebElement resolveElement(boolean reuseCached, ResolutionEvent event) throws NoSuchElementException {
+        Find find = new Find(reuseCached);
+        while (!this.pendingFind.compareAndSet(null, find)) {
+            Find inFlight = this.pendingFind.get();
+            if (inFlight == null) {
+                continue;
+            }
+            if (!reuseCached && inFlight.reusesCached) {
+                // It may hand back the cached element this refresh is replacing, wait for it and find anew
+                inFlight.handle((element, failure) -> null).join();
+                continue;
+            }
+            event.joined = true;
+            return awaitFind(inFlight, event);
+        }
+
+        boolean succeeded = false;
+        try {
+            WebElement element = reuseCached ? this.cachedElement.get() : null;
+            if (element == null) {
+                element = findNewElement(event);
+                this.cachedElement.set(element);
+            } else {
+                event.cacheHit = true;
+            }
+            find.complete(element);
+            succeeded = true;
             return element;
-        } else {
-            WebElement element = this.webDriver.findElement(by);
-            this.cachedElement = element;
-            DateTime end = DateTime.now();
-            log.debug("Took " + (end.getMillisOfDay() - start.getMillisOfDay()) + " milliseconds to find " + getUserFriendlyName());
+        } catch (RuntimeException | Error e) {
+            find.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.pendingFind.compareAndSet(find, null);
+            record(event, succeeded);
+        }
+    }
+
+    private WebElement awaitFind(CompletableFuture<WebElement> inFlight, ResolutionEvent event)
+            throws NoSuchElementException {
+        boolean succeeded = false;
+        try {
+            WebElement element = inFlight.join();
+            succeeded = true;
             return element;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new NoSuchElementException(e.getLocalizedMessage(), e.getCause());
+        } finally {
+            record(event, succeeded);
+        }
+    }
+
+    private WebElement findNewElement(ResolutionEvent event) throws NoSuchElementException {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            WebElement element = findNewElement(start, event);
+            succeeded = true;
+            return element;
+        } finally {
+            journal(InteractionJournal.Operation.FIND, null, start, succeeded);
+        }
+    }
+
+    private WebElement findNewElement(long start, ResolutionEvent event) throws NoSuchElementException {
+        SearchContext context = this.parent != null ? parent.getElement() : this.webDriver;
+        ChildPrefetcher prefetcher = ChildPrefetcher.getShared();
+        if (this.parent != null) {
+            WebElement prefetched = prefetcher.take(this.parent.getLocatorKey(), (WebElement) context, this.locatorKey, this.by);
+            if (prefetched != null) {
+                prefetched = ElementInterner.getShared().handle(prefetched);
+                if (log.isDebugEnabled()) {
+                    log.debug("Using prefetched " + getUserFriendlyName());
+                }
+                prefetcher.resolved(this.locatorKey, prefetched);
+                event.prefetched = true;
+                return prefetched;
+            }
+        }
+        LocatorOptimizer optimizer = LocatorOptimizer.getShared();
+        By locator = optimizer.choose(this.locatorKey, this.by);
+        long findStart = System.nanoTime();
+        WebElement element;
+        try {
+            element = FindCoalescer.getShared().findElement(context, locator);
+        } catch (NoSuchElementException e) {
+            event.remoteTime += System.nanoTime() - findStart;
+            if (locator == this.by) {
+                throw e;
+            }
+            // The faster equivalent no longer matches, go back to the original locator
+            if (log.isDebugEnabled()) {
+                log.debug(locator + " no longer finds " + getUserFriendlyName() + ", using " + this.by);
+            }
+            optimizer.rejected(this.locatorKey);
+            locator = this.by;
+            findStart = System.nanoTime();
+            element = FindCoalescer.getShared().findElement(context, locator);
+        }
+        long remoteTime = System.nanoTime() - findStart;
+        event.remoteTime += remoteTime;
+        // Share the handle other lazy elements already hold for the same remote element
+        element = ElementInterner.getShared().handle(element);
+        optimizer.resolved(this.locatorKey, this.by, locator, context, element, remoteTime);
+        prefetcher.resolved(this.locatorKey, element);
+        if (log.isDebugEnabled()) {
+            log.debug("Took " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " milliseconds to find "
+                    + getUserFriendlyName());
+        }
+        return element;
+    }
+
+    /// <summary>
+    /// Wait for a condition, polling and timing out as learned for this locator
+    /// </summary>
+    /// <param name="condition">The condition to wait for</param>
+    /// <param name="throwException">Throw the last exception if the wait times out</param>
+    /// <param name="untilReady">The condition checks the element is ready. Its duration, or the timeout if it was not
+    /// met, is learned if the element was not found yet when the wait started</param>
+    /// <returns>True if the condition was met before the timeout</returns>
+    private boolean waitFor(BooleanSupplier condition, boolean throwException, boolean untilReady) throws Exception {
+        LocatorTimings timings = LocatorTimings.getShared();
+        long timeout = timings.getTimeout(this.locatorKey);
+        if (!untilReady || this.cachedElement.get() != null) {
+            return GenericWait.wait(condition, timings.getPollInterval(this.locatorKey), timeout, throwException);
+        }
+
+        TimeSource clock = GenericWait.getTimeSource();
+        long start = clock.nanoTime();
+        boolean ready = false;
+        try {
+            ready = GenericWait.wait(condition, timings.getPollInterval(this.locatorKey), timeout, throwException);
+        } finally {
+            long millis = TimeUnit.NANOSECONDS.toMillis(clock.nanoTime() - start);
+            if (ready) {
+                timings.record(this.locatorKey, millis);
+                if (millis > timeout / 2) {
+                    log.warn(this.userFriendlyName + " took " + millis + " of its " + timeout + " milliseconds to be ready");
+                }
+            } else if (millis >= timeout) {
+                // Not a sample, but a timeout that shrank too far grows back
+                timings.recordTimeout(this.locatorKey);
+            }
+        }
+        return ready;
+    }
+
+    /// <summary>
+    /// Records a finished interaction in the journal
+    /// </summary>
+    /// <param name="operation">What the interaction did</param>
+    /// <param name="detail">The attribute or property asked for, or null</param>
+    /// <param name="start">System.nanoTime() when the interaction started</param>
+    /// <param name="succeeded">Whether the interaction succeeded</param>
+    private void journal(InteractionJournal.Operation operation, String detail, long start, boolean succeeded) {
+        InteractionJournal.getShared().record(operation, this.userFriendlyName, this.locatorKey, detail, start, succeeded);
+    }
+
+    /// <summary>
+    /// Ends an action's flight recorder event and commits it, if it is recorded
+    /// </summary>
+    /// <param name="event">The event begun when the action started</param>
+    /// <param name="operation">What the action did</param>
+    /// <param name="succeeded">Whether the action succeeded</param>
+    private void record(ActionEvent event, InteractionJournal.Operation operation, boolean succeeded) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.action = operation.name();
+            event.element = this.userFriendlyName;
+            event.locator = this.locatorKey;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    /// <summary>
+    /// Ends a resolution's flight recorder event and commits it, if it is recorded. Describing the element is left
+    /// until then, so an unrecorded resolution costs no more than its clock reads
+    /// </summary>
+    /// <param name="event">The event begun when the resolution started</param>
+    /// <param name="succeeded">Whether the element was resolved</param>
+    private void record(ResolutionEvent event, boolean succeeded) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.element = this.userFriendlyName;
+            event.locator = this.locatorKey;
+            int depth = 0;
+            for (AbstractLazyWebElement ancestor = this.parent; ancestor != null; ancestor = ancestor.parent) {
+                depth++;
+            }
+            event.parentDepth = depth;
+            event.succeeded = succeeded;
+            event.commit();
         }
     }
 
@@ -525,15 +1026,11 @@ public abstract class AbstractLazyWebElement implements Element {
     /// <returns>True if the element is locatable in the dom</returns>
     private boolean waitForElementNonNull() {
         try {
-            return GenericWait.wait(() -> {
-                try {
-                    return this.getElement() != null;
-                } catch (Exception e) {
-                    return false;
-                }
-            }, Retrytime, Timeout, false);
+            return this.waitFor(elementNonNull, false, true);
         } catch (Exception e) {
-            log.debug("Failed to find element " + this.userFriendlyName);
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to find element " + this.userFriendlyName);
+            }
             return false;
         }
     }
@@ -0,0 +1,35 @@
+package lazyElement;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of an action on a lazy element, e.g. a click or keys sent, waits and retries included.
+ * The keys sent are never recorded.
+ */
+@Name(ActionEvent.NAME)
+@Label("Element Action")
+@Category("Lazy Element")
+@Description("An action on a lazy element")
+@StackTrace(false)
+public final class ActionEvent extends Event {
+
+    public static final String NAME = "lazyElement.Action";
+
+    @Label("Action")
+    String action;
+
+    @Label("Element")
+    String element;
+
+    @Label("Locator")
+    @Description("The locator path from the root element")
+    String locator;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
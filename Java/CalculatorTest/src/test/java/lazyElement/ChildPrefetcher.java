@@ -0,0 +1,312 @@
+package lazyElement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Resolves the children of a container as soon as the container is found.
+ * Every time a child resolves, the prefetcher notes it under its container. When the container is found again, the
+ * children that were accessed in at least half of its earlier resolutions are found in the background, at most a
+ * configurable number at a time. A child that resolves later takes the prefetched element instead of making its own
+ * remote call, if the prefetch is done by then.
+ */
+public final class ChildPrefetcher {
+
+    private static final Logger log = Logger.getLogger(ChildPrefetcher.class);
+
+    /**
+     * Prefetcher used by every lazy element. It only learns unless the lazyElement.prefetch system property is true,
+     * since every prefetch is a remote call added to a container's resolution
+     */
+    private static volatile ChildPrefetcher shared = createShared();
+
+    /**
+     * How often a child was accessed under its container
+     */
+    private static final class Child {
+        private final By by;
+        private int accessed;
+        private int lastResolution = -1;
+
+        private Child(By by) {
+            this.by = by;
+        }
+    }
+
+    /**
+     * What was learned about one container
+     */
+    private static final class Container {
+        private final Map<String, Child> children = new ConcurrentHashMap<>();
+
+        /**
+         * Starts at one, the resolution the container was first seen accessing a child in
+         */
+        private int resolutions = 1;
+    }
+
+    /**
+     * Children prefetched for one resolution of a container
+     */
+    private static final class Batch {
+        private final WebElement container;
+        private final Map<String, CompletableFuture<WebElement>> children = new ConcurrentHashMap<>();
+
+        private Batch(WebElement container) {
+            this.container = container;
+        }
+    }
+
+    private final ConcurrentMap<String, Container> containers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor pool;
+
+    private volatile double threshold = 0.5;
+
+    private volatile boolean enabled = true;
+
+    private final LongAdder prefetched = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder wasted = new LongAdder();
+
+    /**
+     * Initializes a new instance of the {@link ChildPrefetcher} class
+     *
+     * @param concurrency The most children found in the background at the same time
+     */
+    public ChildPrefetcher(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1: " + concurrency);
+        }
+        this.pool = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "child-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    private static ChildPrefetcher createShared() {
+        ChildPrefetcher prefetcher = new ChildPrefetcher(4);
+        prefetcher.setEnabled(Boolean.getBoolean("lazyElement.prefetch"));
+        return prefetcher;
+    }
+
+    /**
+     * Gets the prefetcher used by every lazy element
+     */
+    public static ChildPrefetcher getShared() {
+        return shared;
+    }
+
+    /**
+     * Sets the prefetcher used by every lazy element.
+     *
+     * @param prefetcher The new prefetcher
+     * @return The previous prefetcher
+     */
+    public static ChildPrefetcher setShared(ChildPrefetcher prefetcher) {
+        ChildPrefetcher previous = shared;
+        shared = prefetcher;
+        return previous;
+    }
+
+    /**
+     * Sets the most children found in the background at the same time.
+     *
+     * @param concurrency The limit
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1: " + concurrency);
+        }
+        synchronized (this.pool) {
+            if (concurrency > this.pool.getMaximumPoolSize()) {
+                this.pool.setMaximumPoolSize(concurrency);
+                this.pool.setCorePoolSize(concurrency);
+            } else {
+                this.pool.setCorePoolSize(concurrency);
+                this.pool.setMaximumPoolSize(concurrency);
+            }
+        }
+    }
+
+    public int getConcurrency() {
+        return this.pool.getMaximumPoolSize();
+    }
+
+    /**
+     * Sets the share of a container's resolutions a child must have been accessed in to be prefetched.
+     *
+     * @param threshold Between 0 and 1
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Turns prefetching on or off. Children are still learned while it is off.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Called when an element was found. Starts prefetching the children it usually has accessed.
+     *
+     * @param locator The element's locator key
+     * @param element The element found
+     */
+    public void resolved(String locator, WebElement element) {
+        Container container = this.containers.get(locator);
+        if (container == null) {
+            return;
+        }
+
+        List<Map.Entry<String, Child>> predicted = new ArrayList<>();
+        synchronized (container) {
+            for (Map.Entry<String, Child> entry : container.children.entrySet()) {
+                if (entry.getValue().accessed >= this.threshold * container.resolutions) {
+                    predicted.add(entry);
+                }
+            }
+            container.resolutions++;
+        }
+
+        Batch batch = new Batch(element);
+        if (this.enabled) {
+            for (Map.Entry<String, Child> entry : predicted) {
+                batch.children.put(entry.getKey(), CompletableFuture.supplyAsync(
+                        () -> prefetch(entry.getKey(), entry.getValue().by, element), this.pool));
+                this.prefetched.increment();
+            }
+        }
+
+        Batch previous = this.batches.put(locator, batch);
+        if (previous != null) {
+            // Whatever was not taken from the previous resolution is no longer needed
+            this.wasted.add(previous.children.size());
+        }
+    }
+
+    /**
+     * Finds a child the way the lazy element would, with the fastest known equivalent of its locator.
+     */
+    private static WebElement prefetch(String locator, By original, WebElement container) {
+        LocatorOptimizer optimizer = LocatorOptimizer.getShared();
+        By by = optimizer.choose(locator, original);
+        long start = System.nanoTime();
+        WebElement element = FindCoalescer.getShared().findElement(container, by);
+        optimizer.resolved(locator, original, by, container, element, System.nanoTime() - start);
+        return element;
+    }
+
+    /**
+     * Called before a child is found. Notes the access and hands out its prefetched element if there is one.
+     *
+     * @param containerLocator The container's locator key
+     * @param container        The container element the child is searched under
+     * @param locator          The child's locator key
+     * @param by               The child's locator
+     * @return The prefetched child, or null if it must be found because it was not prefetched or is not yet
+     */
+    public WebElement take(String containerLocator, WebElement container, String locator, By by) {
+        Container learned = this.containers.computeIfAbsent(containerLocator, key -> new Container());
+        synchronized (learned) {
+            Child child = learned.children.computeIfAbsent(locator, key -> new Child(by));
+            if (child.lastResolution != learned.resolutions) {
+                child.lastResolution = learned.resolutions;
+                child.accessed++;
+            }
+        }
+
+        Batch batch = this.batches.get(containerLocator);
+        CompletableFuture<WebElement> prefetch = batch == null || !batch.container.equals(container)
+                ? null : batch.children.remove(locator);
+        if (prefetch == null) {
+            this.misses.increment();
+            return null;
+        }
+
+        if (!prefetch.isDone()) {
+            // It may be queued behind other prefetches, so it is not waited for. If it is still queued it never
+            // runs, and if it is running the find the child makes now shares its remote call
+            prefetch.cancel(false);
+            this.misses.increment();
+            return null;
+        }
+        try {
+            WebElement element = prefetch.join();
+            this.hits.increment();
+            return element;
+        } catch (CompletionException e) {
+            log.debug("Prefetch of " + locator + " failed: " + e.getCause());
+            this.wasted.increment();
+            this.misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Stops prefetching and the threads prefetches run on. Prefetches in flight are abandoned, children keep being
+     * found by the lazy elements themselves.
+     */
+    public void close() {
+        this.enabled = false;
+        this.pool.shutdownNow();
+    }
+
+    public long getPrefetched() {
+        return prefetched.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of prefetched children that failed or were never taken before their container was found again
+     */
+    public long getWasted() {
+        return wasted.sum();
+    }
+
+    /**
+     * Gets the share of child resolutions that were served by a prefetch
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Child prefetch: %d prefetched, %d hits, %d misses (%.0f%% hit rate), %d wasted",
+                getPrefetched(), getHits(), getMisses(), getHitRate() * 100, getWasted());
+    }
+}
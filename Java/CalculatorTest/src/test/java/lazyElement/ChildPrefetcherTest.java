@@ -0,0 +1,149 @@
+package lazyElement;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+
+public class ChildPrefetcherTest {
+
+    private final Logger logger = Logger.getLogger(ChildPrefetcherTest.class);
+
+    private StandInDriver driver;
+
+    private ChildPrefetcher prefetcher;
+
+    private ChildPrefetcher previous;
+
+    @Before
+    public void setup() {
+        driver = new StandInDriver();
+        StandInElement window = driver.window("Calculator");
+        for (String name : new String[] {"One", "Seven", "Plus", "Equals"}) {
+            window.add(name);
+        }
+        prefetcher = new ChildPrefetcher(4);
+        previous = ChildPrefetcher.setShared(prefetcher);
+    }
+
+    @After
+    public void tearDown() {
+        ChildPrefetcher.setShared(previous);
+        prefetcher.close();
+    }
+
+    /**
+     * Resolves a new window element, as a new test would, and then the children one by one, after giving the
+     * prefetches a moment to finish.
+     */
+    private LazyElement run(String... children) {
+        return run(driver.getFindLatency() + 50, children);
+    }
+
+    /**
+     * Resolves a new window element, as a new test would, and then the children one by one.
+     *
+     * @param pause Milliseconds between the window and the first child
+     */
+    private LazyElement run(long pause, String... children) {
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        window.getElement();
+        try {
+            Thread.sleep(pause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (String child : children) {
+            Assert.assertEquals(child, new LazyElement(logger, window, By.name(child), child).getText());
+        }
+        return window;
+    }
+
+    @Test
+    public void LearnedChildrenArePrefetchedInParallel() {
+        run("One", "Plus", "Seven", "Equals");
+        driver.setFindLatency(100);
+        int finds = driver.getFindCount();
+
+        long start = System.nanoTime();
+        run("One", "Plus", "Seven", "Equals");
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        // The window, then the four children at the same time while the test pauses
+        Assert.assertTrue(prefetcher + " took " + millis + " ms", millis < 400);
+        Assert.assertEquals(finds + 5, driver.getFindCount());
+        Assert.assertEquals(4, prefetcher.getHits());
+        Assert.assertEquals(0.5, prefetcher.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void ConcurrencyIsLimited() {
+        run("One", "Plus", "Seven", "Equals");
+        prefetcher.setConcurrency(1);
+        driver.setFindLatency(100);
+
+        // One after the other, two of the four prefetches are done after 250 ms
+        run(250, "One", "Plus", "Seven", "Equals");
+
+        Assert.assertEquals(1, prefetcher.getConcurrency());
+        Assert.assertTrue(prefetcher.toString(), prefetcher.getHits() >= 2);
+        Assert.assertTrue(prefetcher.toString(), prefetcher.getHits() < 4);
+    }
+
+    @Test
+    public void QueuedPrefetchIsNotWaitedFor() {
+        run("One", "Plus", "Seven", "Equals");
+        prefetcher.setConcurrency(1);
+        driver.setFindLatency(200);
+        LazyElement window = run(0);
+
+        // Whichever place its prefetch has in the queue, the child is found in one remote call
+        long start = System.nanoTime();
+        new LazyElement(logger, window, By.name("Equals"), "Equals").getText();
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        Assert.assertTrue(prefetcher + " took " + millis + " ms", millis < 400);
+        Assert.assertEquals(0, prefetcher.getHits());
+    }
+
+    @Test
+    public void UntakenPrefetchesAreWasted() {
+        run("One", "Plus");
+        run("One");
+        run();
+
+        Assert.assertEquals(4, prefetcher.getPrefetched());
+        Assert.assertEquals(1, prefetcher.getHits());
+        Assert.assertEquals(2, prefetcher.getMisses());
+        Assert.assertEquals(1, prefetcher.getWasted());
+        Assert.assertTrue(prefetcher.toString(), prefetcher.toString().contains("33% hit rate"));
+    }
+
+    @Test
+    public void RarelyUsedChildrenAreNotPrefetched() {
+        run("One", "Seven");
+        run("One");
+        run("One");
+        long prefetched = prefetcher.getPrefetched();
+
+        run("One");
+
+        // Seven was only used in one of three runs
+        Assert.assertEquals(prefetched + 1, prefetcher.getPrefetched());
+    }
+
+    @Test
+    public void DisabledPrefetcherStillLearns() {
+        prefetcher.setEnabled(false);
+        run("One");
+        run("One");
+        Assert.assertEquals(0, prefetcher.getPrefetched());
+
+        prefetcher.setEnabled(true);
+        run("One");
+
+        Assert.assertEquals(1, prefetcher.getHits());
+    }
+}
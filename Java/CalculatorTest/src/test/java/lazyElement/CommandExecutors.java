@@ -0,0 +1,38 @@
+package lazyElement;
+
+import java.lang.reflect.Method;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+/**
+ * Helpers for decorating the command executor of a driver that is already running.
+ */
+final class CommandExecutors {
+
+    /**
+     * Hide the default constructor.
+     */
+    private CommandExecutors() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Replaces the executor a driver sends its commands through.
+     * RemoteWebDriver only exposes the setter to subclasses, and WindowsDriver sessions are created by the Appium
+     * client, so the setter is called reflectively.
+     *
+     * @param driver   The running driver
+     * @param executor The executor to use from now on, usually a decorator of {@link RemoteWebDriver#getCommandExecutor()}
+     */
+    static void replace(RemoteWebDriver driver, CommandExecutor executor) {
+        try {
+            Method setter = RemoteWebDriver.class.getDeclaredMethod("setCommandExecutor", CommandExecutor.class);
+            setter.setAccessible(true);
+            setter.invoke(driver, executor);
+        } catch (ReflectiveOperationException e) {
+            throw new WebDriverException("Unable to replace the command executor of " + driver, e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package lazyElement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.remote.BeanToJsonConverter;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+
+/**
+ * Records every command a driver sends into a compact, append-only binary trace.
+ * <p>
+ * The trace starts with a header holding the session id and capabilities, followed by one record per command:
+ * <pre>
+ * int    record length, excluding this field
+ * long   start time relative to the first command, in nanoseconds
+ * long   latency in nanoseconds
+ * int    response status, {@link #Failed} if the executor threw
+ * int    command name length, UTF-8 bytes
+ * int    parameters length, JSON bytes
+ * int    response length, JSON bytes of {"value": ...} or the failure message
+ * </pre>
+ * Replay the trace with {@link CommandTraceReplayer}. A command that cannot be recorded is logged and left out, the
+ * caller still gets its response or failure.
+ */
+public class CommandTraceRecorder implements CommandExecutor, Closeable {
+
+    private static final Logger log = Logger.getLogger(CommandTraceRecorder.class);
+
+    /**
+     * "LZTR", the first four bytes of every trace
+     */
+    static final int Magic = 0x4C5A5452;
+
+    static final short Version = 1;
+
+    /**
+     * Status recorded when the executor threw instead of answering
+     */
+    static final int Failed = -1;
+
+    private final CommandExecutor delegate;
+
+    private final FileChannel channel;
+
+    private final BeanToJsonConverter toJson = new BeanToJsonConverter();
+
+    private final long origin = System.nanoTime();
+
+    /**
+     * Reused for every record, grown when a record does not fit
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    private int records;
+
+    /**
+     * Initializes a new instance of the {@link CommandTraceRecorder} class
+     *
+     * @param delegate     The executor that really runs the commands
+     * @param trace        The trace file, appended to if it already exists
+     * @param sessionId    The session the commands belong to
+     * @param capabilities The capabilities of the session
+     */
+    public CommandTraceRecorder(CommandExecutor delegate, Path trace, SessionId sessionId, Map<String, ?> capabilities)
+            throws IOException {
+        this.delegate = delegate;
+        this.channel = FileChannel.open(trace, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (this.channel.size() == 0) {
+            writeHeader(sessionId == null ? "" : sessionId.toString(), capabilities);
+        }
+    }
+
+    /**
+     * Starts recording the commands of a running driver.
+     *
+     * @param driver The driver to record, e.g. the WindowsDriver behind the lazy elements
+     * @param trace  The trace file
+     * @return The recorder, close it to release the trace file
+     */
+    public static CommandTraceRecorder record(RemoteWebDriver driver, Path trace) throws IOException {
+        CommandTraceRecorder recorder = new CommandTraceRecorder(driver.getCommandExecutor(), trace,
+                driver.getSessionId(), driver.getCapabilities().asMap());
+        CommandExecutors.replace(driver, recorder);
+        return recorder;
+    }
+
+    @Override
+    public Response execute(Command command) throws IOException {
+        long start = System.nanoTime();
+        Response response = null;
+        Exception failure = null;
+        try {
+            response = this.delegate.execute(command);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            try {
+                append(command, response, failure, start, System.nanoTime() - start);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not record " + command.getName() + " in the trace", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of commands recorded by this recorder
+     */
+    public synchronized int getRecords() {
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.channel.close();
+    }
+
+    private synchronized void writeHeader(String sessionId, Map<String, ?> capabilities) throws IOException {
+        byte[] session = sessionId.getBytes(StandardCharsets.UTF_8);
+        byte[] caps = this.toJson.convert(capabilities).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = reserve(14 + session.length + caps.length);
+        header.putInt(Magic).putShort(Version);
+        header.putInt(session.length).put(session);
+        header.putInt(caps.length).put(caps);
+        flush(header);
+    }
+
+    private synchronized void append(Command command, Response response, Exception failure, long start, long latency)
+            throws IOException {
+        byte[] name = command.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] parameters = this.toJson.convert(command.getParameters()).getBytes(StandardCharsets.UTF_8);
+        byte[] value;
+        int status;
+        if (response == null) {
+            status = Failed;
+            value = String.valueOf(failure).getBytes(StandardCharsets.UTF_8);
+        } else {
+            // Left null on a plain success
+            status = response.getStatus() == null ? ErrorCodes.SUCCESS : response.getStatus();
+            value = this.toJson.convert(Collections.singletonMap("value", response.getValue()))
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+
+        int length = 32 + name.length + parameters.length + value.length;
+        ByteBuffer record = reserve(4 + length);
+        record.putInt(length).putLong(start - this.origin).putLong(latency).putInt(status);
+        record.putInt(name.length).put(name);
+        record.putInt(parameters.length).put(parameters);
+        record.putInt(value.length).put(value);
+        flush(record);
+        this.records++;
+    }
+
+    private ByteBuffer reserve(int size) {
+        if (this.buffer.capacity() < size) {
+            this.buffer = ByteBuffer.allocate(Math.max(size, this.buffer.capacity() * 2));
+        }
+        this.buffer.clear();
+        return this.buffer;
+    }
+
+    private void flush(ByteBuffer record) throws IOException {
+        record.flip();
+        while (record.hasRemaining()) {
+            this.channel.write(record);
+        }
+    }
+}
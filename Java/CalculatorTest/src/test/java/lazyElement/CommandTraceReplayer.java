@@ -0,0 +1,253 @@
+package lazyElement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.BeanToJsonConverter;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.JsonToBeanConverter;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * Serves the responses of a trace written by {@link CommandTraceRecorder}.
+ * The trace is memory mapped and indexed by command name and parameters, so commands issued from several threads
+ * can be answered in any order. Responses are only decoded when they are served. Replay either keeps the recorded
+ * timing, or answers as fast as possible to measure the client side overhead alone. Keeping the timing, a command is
+ * answered no sooner than its recorded latency and no sooner than it was answered in the recording, counted from the
+ * first command replayed, so a client faster than the recorded one is held to the recorded pace.
+ * <p>
+ * A run that crashed while recording leaves a partial last record, which is left out of the replay.
+ */
+public class CommandTraceReplayer implements CommandExecutor, Closeable {
+
+    private static final Logger log = Logger.getLogger(CommandTraceReplayer.class);
+
+    /**
+     * Fixed size fields of a record after its length: start, latency, status and the three string lengths
+     */
+    private static final int FixedLength = 32;
+
+    /**
+     * Replay origin before the first command is replayed
+     */
+    private static final long NotStarted = Long.MIN_VALUE;
+
+    /**
+     * Records are written as commands complete, so completion times only go back by as long as a record waits for
+     * the one before it to be written. Going back further than this, the offsets start over for an appended recording
+     */
+    private static final long WriteSkew = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Position of a record's response in the mapped trace
+     */
+    private static final class Entry {
+        private final long start;
+        private final long latency;
+        private final int status;
+        private final int valueOffset;
+        private final int valueLength;
+
+        private Entry(long start, long latency, int status, int valueOffset, int valueLength) {
+            this.start = start;
+            this.latency = latency;
+            this.status = status;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+        }
+    }
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer trace;
+
+    private final String sessionId;
+
+    private final Map<String, Object> capabilities;
+
+    private final Map<String, Queue<Entry>> entries = new ConcurrentHashMap<>();
+
+    private final boolean recordedSpeed;
+
+    private final BeanToJsonConverter toJson = new BeanToJsonConverter();
+
+    private final JsonToBeanConverter fromJson = new JsonToBeanConverter();
+
+    private final AtomicInteger served = new AtomicInteger();
+
+    /**
+     * Time of the recording's origin on the replay clock, set when the first command is replayed
+     */
+    private final AtomicLong origin = new AtomicLong(NotStarted);
+
+    private int records;
+
+    private int truncatedBytes;
+
+    /**
+     * Initializes a new instance of the {@link CommandTraceReplayer} class
+     *
+     * @param trace         The trace file
+     * @param recordedSpeed True to keep the recorded timing, false to answer at once
+     */
+    @SuppressWarnings("unchecked")
+    public CommandTraceReplayer(Path trace, boolean recordedSpeed) throws IOException {
+        this.recordedSpeed = recordedSpeed;
+        this.channel = FileChannel.open(trace, StandardOpenOption.READ);
+        this.trace = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+
+        ByteBuffer reader = this.trace.duplicate();
+        if (reader.remaining() < 6 || reader.getInt() != CommandTraceRecorder.Magic) {
+            throw new IOException(trace + " is not a command trace");
+        }
+        short version = reader.getShort();
+        if (version != CommandTraceRecorder.Version) {
+            throw new IOException("Unsupported command trace version " + version);
+        }
+        this.sessionId = readString(reader);
+        this.capabilities = this.fromJson.convert(Map.class, readString(reader));
+
+        // Recordings appended to the trace each start their offsets at zero, they are replayed one after the other
+        long base = 0;
+        long completed = 0;
+        long end = 0;
+        while (reader.hasRemaining()) {
+            int length = reader.remaining() >= 4 ? reader.getInt() : -1;
+            if (length < FixedLength || length > reader.remaining()) {
+                this.truncatedBytes = this.trace.limit() - (length < 0 ? reader.position() : reader.position() - 4);
+                log.warn(String.format("%s ends in a partial record, replaying the %d complete ones", trace,
+                        this.records));
+                break;
+            }
+            int next = length + reader.position();
+            long start = reader.getLong();
+            long latency = reader.getLong();
+            if (base + start + latency < completed - WriteSkew) {
+                base = end;
+            }
+            start += base;
+            completed = start + latency;
+            end = Math.max(end, completed);
+            int status = reader.getInt();
+            String key = readString(reader) + '\n' + readString(reader);
+            int valueLength = reader.getInt();
+            this.entries.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>())
+                    .add(new Entry(start, latency, status, reader.position(), valueLength));
+            reader.position(next);
+            this.records++;
+        }
+    }
+
+    /**
+     * Creates a driver whose commands are all answered from the trace.
+     *
+     * @return The replaying driver
+     */
+    public RemoteWebDriver newDriver() {
+        return new RemoteWebDriver(this, new DesiredCapabilities(this.capabilities));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Response execute(Command command) throws IOException {
+        Response response = new Response();
+        response.setSessionId(this.sessionId);
+
+        String key = command.getName() + '\n' + this.toJson.convert(command.getParameters());
+        Queue<Entry> recorded = this.entries.get(key);
+        Entry entry = recorded == null ? null : recorded.poll();
+        if (entry == null) {
+            // The session was already running when recording started
+            if (DriverCommand.NEW_SESSION.equals(command.getName())) {
+                response.setValue(this.capabilities);
+                return response;
+            }
+            if (DriverCommand.QUIT.equals(command.getName())) {
+                return response;
+            }
+            throw new WebDriverException("Command is not in the trace: " + command.getName() + " "
+                    + command.getParameters());
+        }
+
+        if (this.recordedSpeed) {
+            long now = System.nanoTime();
+            // The first command replayed sets the clock, at the offset it was recorded at
+            this.origin.compareAndSet(NotStarted, now - entry.start);
+            long answered = this.origin.get() + entry.start + entry.latency;
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.max(entry.latency, answered - now));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while replaying " + command.getName(), e);
+            }
+        }
+        this.served.incrementAndGet();
+
+        String value = readString(entry.valueOffset, entry.valueLength);
+        if (entry.status == CommandTraceRecorder.Failed) {
+            throw new WebDriverException("Recorded failure: " + value);
+        }
+        response.setStatus(entry.status);
+        response.setValue(this.fromJson.convert(Map.class, value).get("value"));
+        return response;
+    }
+
+    /**
+     * Gets the number of commands in the trace
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    /**
+     * Gets the number of bytes at the end of the trace that are not a complete record, left by a crashed recording
+     */
+    public int getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    /**
+     * Gets the number of recorded responses served so far
+     */
+    public int getServed() {
+        return served.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private static String readString(ByteBuffer reader) {
+        byte[] bytes = new byte[reader.getInt()];
+        reader.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String readString(int offset, int length) {
+        ByteBuffer reader = this.trace.duplicate();
+        reader.position(offset);
+        byte[] bytes = new byte[length];
+        reader.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,226 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+
+public class CommandTraceTest {
+
+    private static final SessionId Session = new SessionId("4F2A");
+
+    private Path trace;
+
+    /**
+     * Answers like a WinAppDriver session with a Calculator window open
+     */
+    private final CommandExecutor server = command -> {
+        Response response = new Response(Session);
+        switch (command.getName()) {
+            case DriverCommand.FIND_ELEMENT:
+                response.setValue(Collections.singletonMap("ELEMENT", "42.1"));
+                break;
+            case DriverCommand.GET_ELEMENT_TEXT:
+                response.setValue("Display is 8");
+                break;
+            case DriverCommand.IS_ELEMENT_ENABLED:
+                response.setValue(true);
+                break;
+            case DriverCommand.CLICK_ELEMENT:
+                break;
+            default:
+                throw new IOException("Connection reset");
+        }
+        return response;
+    };
+
+    @Before
+    public void setup() throws IOException {
+        trace = Files.createTempFile("lazyElement", ".trace");
+        Files.delete(trace);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(trace);
+    }
+
+    private static Command command(String name, String... parameters) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            map.put(parameters[i], parameters[i + 1]);
+        }
+        return new Command(Session, name, map);
+    }
+
+    private void recordCalculatorSession() throws IOException {
+        try (CommandTraceRecorder recorder = new CommandTraceRecorder(server, trace, Session,
+                Collections.singletonMap("app", "Microsoft.WindowsCalculator_8wekyb3d8bbwe!App"))) {
+            recorder.execute(command(DriverCommand.FIND_ELEMENT, "using", "name", "value", "Calculator"));
+            recorder.execute(command(DriverCommand.CLICK_ELEMENT, "id", "42.1"));
+            recorder.execute(command(DriverCommand.IS_ELEMENT_ENABLED, "id", "42.1"));
+            recorder.execute(command(DriverCommand.GET_ELEMENT_TEXT, "id", "42.1"));
+            Assert.assertEquals(4, recorder.getRecords());
+        }
+    }
+
+    @Test
+    public void ReplayServesRecordedResponses() throws IOException {
+        recordCalculatorSession();
+
+        try (CommandTraceReplayer replayer = new CommandTraceReplayer(trace, false)) {
+            Assert.assertEquals(4, replayer.getRecords());
+
+            Response found = replayer.execute(command(DriverCommand.FIND_ELEMENT, "using", "name", "value", "Calculator"));
+            Assert.assertEquals("4F2A", found.getSessionId());
+            Assert.assertEquals("42.1", ((Map<?, ?>) found.getValue()).get("ELEMENT"));
+
+            // Independent commands may be replayed in a different order than they were recorded
+            Assert.assertEquals("Display is 8", replayer.execute(command(DriverCommand.GET_ELEMENT_TEXT, "id", "42.1")).getValue());
+            Assert.assertEquals(true, replayer.execute(command(DriverCommand.IS_ELEMENT_ENABLED, "id", "42.1")).getValue());
+            Assert.assertNull(replayer.execute(command(DriverCommand.CLICK_ELEMENT, "id", "42.1")).getValue());
+            Assert.assertEquals(4, replayer.getServed());
+        }
+    }
+
+    @Test
+    public void ReplayAnswersNewSessionFromHeader() throws IOException {
+        recordCalculatorSession();
+
+        try (CommandTraceReplayer replayer = new CommandTraceReplayer(trace, false)) {
+            Response session = replayer.execute(new Command(null, DriverCommand.NEW_SESSION));
+
+            Assert.assertEquals("4F2A", session.getSessionId());
+            Assert.assertEquals("Microsoft.WindowsCalculator_8wekyb3d8bbwe!App", ((Map<?, ?>) session.getValue()).get("app"));
+        }
+    }
+
+    @Test(expected = WebDriverException.class)
+    public void ReplayRejectsCommandsNotInTrace() throws IOException {
+        recordCalculatorSession();
+
+        try (CommandTraceReplayer replayer = new CommandTraceReplayer(trace, false)) {
+            replayer.execute(command(DriverCommand.FIND_ELEMENT, "using", "name", "value", "Nine"));
+        }
+    }
+
+    @Test
+    public void FailuresAreRecordedAndReplayed() throws IOException {
+        try (CommandTraceRecorder recorder = new CommandTraceRecorder(server, trace, Session, Collections.emptyMap())) {
+            try {
+                recorder.execute(command(DriverCommand.SCREENSHOT));
+                Assert.fail("Expected the server to fail");
+            } catch (IOException expected) {
+                Assert.assertEquals(1, recorder.getRecords());
+            }
+        }
+
+        try (CommandTraceReplayer replayer = new CommandTraceReplayer(trace, false)) {
+            replayer.execute(command(DriverCommand.SCREENSHOT));
+            Assert.fail("Expected the replayed failure");
+        } catch (WebDriverException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Connection reset"));
+        }
+    }
+
+    @Test
+    public void FailingTraceDoesNotChangeTheAnswer() throws IOException {
+        CommandTraceRecorder recorder = new CommandTraceRecorder(server, trace, Session, Collections.emptyMap());
+        recorder.close();
+
+        Response text = recorder.execute(command(DriverCommand.GET_ELEMENT_TEXT, "id", "42.1"));
+        try {
+            recorder.execute(command(DriverCommand.GET_PAGE_SOURCE));
+            Assert.fail("The server's failure was swallowed");
+        } catch (IOException e) {
+            Assert.assertEquals("Connection reset", e.getMessage());
+        }
+
+        Assert.assertEquals("Display is 8", text.getValue());
+        Assert.assertEquals(0, recorder.getRecords());
+    }
+
+    @Test
+    public void RecordingAppendsToExistingTrace() throws IOException {
+        recordCalculatorSession();
+        recordCalculatorSession();
+
+        try (CommandTraceReplayer replayer = new CommandTraceReplayer(trace, false)) {
+            Assert.assertEquals(8, replayer.getRecords());
+        }
+    }
+
+    @Test
+    public void RecordedSpeedReplayWaitsRecordedLatency() throws IOException {
+        CommandExecutor slowServer = command -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return server.execute(command);
+        };
+        try (CommandTraceRecorder recorder = new CommandTraceRecorder(slowServer, trace, Session, Collections.emptyMap())) {
+            recorder.execute(command(DriverCommand.GET_ELEMENT_TEXT, "id", "42.1"));
+        }
+
+        try (CommandTraceReplayer replayer = new CommandTraceReplayer(trace, true)) {
+            long start = System.nanoTime();
+            replayer.execute(command(DriverCommand.GET_ELEMENT_TEXT, "id", "42.1"));
+            Assert.assertTrue((System.nanoTime() - start) / 1000000 >= 50);
+        }
+    }
+
+    @Test
+    public void RecordedSpeedReplayKeepsTheGapsBetweenCommands() throws Exception {
+        try (CommandTraceRecorder recorder = new CommandTraceRecorder(server, trace, Session, Collections.emptyMap())) {
+            recorder.execute(command(DriverCommand.GET_ELEMENT_TEXT, "id", "42.1"));
+            Thread.sleep(200);
+            recorder.execute(command(DriverCommand.IS_ELEMENT_ENABLED, "id", "42.1"));
+        }
+
+        try (CommandTraceReplayer replayer = new CommandTraceReplayer(trace, true)) {
+            long start = System.nanoTime();
+            replayer.execute(command(DriverCommand.GET_ELEMENT_TEXT, "id", "42.1"));
+            replayer.execute(command(DriverCommand.IS_ELEMENT_ENABLED, "id", "42.1"));
+            // The second command is not answered before it was in the recording
+            Assert.assertTrue((System.nanoTime() - start) / 1000000 >= 200);
+        }
+    }
+
+    @Test
+    public void PartialLastRecordIsLeftOut() throws IOException {
+        recordCalculatorSession();
+        // A crash while the last record was written
+        try (FileChannel channel = FileChannel.open(trace, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (CommandTraceReplayer replayer = new CommandTraceReplayer(trace, false)) {
+            Assert.assertEquals(3, replayer.getRecords());
+            Assert.assertTrue(replayer.getTruncatedBytes() > 0);
+            Assert.assertEquals(true, replayer.execute(command(DriverCommand.IS_ELEMENT_ENABLED, "id", "42.1")).getValue());
+            try {
+                replayer.execute(command(DriverCommand.GET_ELEMENT_TEXT, "id", "42.1"));
+                Assert.fail("Replayed the partial record");
+            } catch (WebDriverException expected) {
+                Assert.assertEquals(1, replayer.getServed());
+            }
+        }
+    }
+}
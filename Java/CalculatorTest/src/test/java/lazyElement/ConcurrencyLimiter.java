@@ -0,0 +1,379 @@
+package lazyElement;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the commands in flight to one WinAppDriver host, adapting the limit to the latency the host answers with.
+ * The limit grows by one every window of commands while the latency stays close to its usual value, and is cut by a
+ * fixed factor, at most once per round trip, when the latency rises above it or a command fails.
+ * Latency is tracked per kind of command, since a find that walks the UI Automation tree takes far longer than a
+ * click even on an idle host, so a mix of both would look like a rising latency. Within a kind the median of the
+ * latest commands is compared with the median of those before them; medians, unlike the fastest sample, are not
+ * moved by the ordinary spread of an idle host.
+ * Commands over the limit wait in arrival order. The limit only grows while at least half of it is in use, so a
+ * single session sending one command at a time neither waits nor inflates it.
+ */
+public final class ConcurrencyLimiter {
+
+    /**
+     * Weight of a new sample in the round trip average
+     */
+    private static final double Smoothing = 0.2;
+
+    /**
+     * Latest samples of a kind, whose median is its current latency
+     */
+    private static final int RecentWindow = 32;
+
+    /**
+     * Samples before the latest of a kind, whose median is its baseline
+     */
+    private static final int BaselineWindow = 250;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    private final Condition available = lock.newCondition();
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private double limit;
+
+    private int peakLimit;
+
+    private int inFlight;
+
+    private int queued;
+
+    /**
+     * Latency of one kind of command. Samples move from the recent ring to the baseline ring as they age, so the
+     * baseline lags a rise by at least a recent window
+     */
+    private static final class Kind {
+        private final long[] recent = new long[RecentWindow];
+        private final long[] history = new long[BaselineWindow];
+        private int recentCount;
+        private int recentNext;
+        private int historyCount;
+        private int historyNext;
+        private int sinceBaseline;
+        private long baseline = -1;
+
+        private void sample(long nanos, long[] scratch) {
+            if (recentCount == RecentWindow) {
+                history[historyNext] = recent[recentNext];
+                historyNext = (historyNext + 1) % BaselineWindow;
+                historyCount = Math.min(BaselineWindow, historyCount + 1);
+                // The baseline moves slowly, so it is only sorted again every recent window
+                if (historyCount >= RecentWindow && (baseline < 0 || ++sinceBaseline >= RecentWindow)) {
+                    baseline = median(history, historyCount, scratch);
+                    sinceBaseline = 0;
+                }
+            } else {
+                recentCount++;
+            }
+            recent[recentNext] = nanos;
+            recentNext = (recentNext + 1) % RecentWindow;
+        }
+
+        /**
+         * Whether the latest commands of this kind took longer than usual by more than the tolerance. Never before
+         * there is a baseline
+         */
+        private boolean rose(double tolerance, long[] scratch) {
+            return baseline >= 0 && median(recent, recentCount, scratch) > baseline * tolerance;
+        }
+    }
+
+    private final Map<String, Kind> kinds = new HashMap<>();
+
+    /**
+     * Room to sort samples in, used under the lock
+     */
+    private final long[] scratch = new long[BaselineWindow];
+
+    /**
+     * Round trip of every kind of command, only used to cut the limit at most once per round trip
+     */
+    private double latency = -1;
+
+    private long lastDecrease;
+
+    private long increases;
+
+    private long decreases;
+
+    private long waited;
+
+    private volatile double tolerance = 1.5;
+
+    private volatile double backoff = 0.8;
+
+    /**
+     * Initializes a new instance of the {@link ConcurrencyLimiter} class
+     *
+     * @param initialLimit Commands allowed in flight at first
+     * @param minLimit     The limit never goes below this
+     * @param maxLimit     The limit never goes above this
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid limits: initial %d, min %d, max %d", initialLimit, minLimit, maxLimit));
+        }
+        this.limit = initialLimit;
+        this.peakLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Sets how far the latency may rise above the baseline before the limit is cut.
+     *
+     * @param tolerance Ratio of latency to baseline, above 1
+     */
+    public void setTolerance(double tolerance) {
+        if (tolerance <= 1) {
+            throw new IllegalArgumentException("Tolerance must be above 1: " + tolerance);
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Sets the factor the limit is multiplied by when it is cut.
+     *
+     * @param backoff Between 0 and 1
+     */
+    public void setBackoff(double backoff) {
+        if (backoff <= 0 || backoff >= 1) {
+            throw new IllegalArgumentException("Backoff must be between 0 and 1: " + backoff);
+        }
+        this.backoff = backoff;
+    }
+
+    /**
+     * Waits until a command may be sent.
+     *
+     * @throws InterruptedException If interrupted while queued
+     */
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (inFlight >= (int) limit) {
+                queued++;
+                waited++;
+                try {
+                    while (inFlight >= (int) limit) {
+                        available.await();
+                    }
+                } finally {
+                    queued--;
+                }
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a command may be sent, giving up after a timeout.
+     *
+     * @param timeout The longest time to wait
+     * @param unit    Unit of the timeout
+     * @return Whether the command may be sent
+     * @throws InterruptedException If interrupted while queued
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            if (inFlight >= (int) limit) {
+                queued++;
+                waited++;
+                try {
+                    while (inFlight >= (int) limit) {
+                        if (remaining <= 0) {
+                            return false;
+                        }
+                        remaining = available.awaitNanos(remaining);
+                    }
+                } finally {
+                    queued--;
+                }
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back the permit of a command that was answered, adapting the limit to its latency. Every command is
+     * taken to be of the same kind.
+     *
+     * @param nanos Time the command took
+     */
+    public void release(long nanos) {
+        release("", nanos);
+    }
+
+    /**
+     * Gives back the permit of a command that was answered, adapting the limit to its latency compared to that of
+     * the same kind of command.
+     *
+     * @param kind  The kind of command, e.g. its name and, for a find, its locator strategy
+     * @param nanos Time the command took
+     */
+    public void release(String kind, long nanos) {
+        lock.lock();
+        try {
+            // Only a limit that is at least half used has shown the host copes with it
+            boolean limited = inFlight * 2 >= (int) limit || queued > 0;
+            inFlight--;
+            latency = latency < 0 ? nanos : latency + Smoothing * (nanos - latency);
+            Kind sampled = kinds.computeIfAbsent(kind, key -> new Kind());
+            sampled.sample(nanos, scratch);
+            long now = System.nanoTime();
+            if (sampled.rose(tolerance, scratch)) {
+                decrease(now);
+            } else if (limited && limit < maxLimit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+                peakLimit = Math.max(peakLimit, (int) limit);
+                increases++;
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back the permit of a command that failed to reach the host, cutting the limit.
+     */
+    public void dropped() {
+        lock.lock();
+        try {
+            inFlight--;
+            decrease(System.nanoTime());
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cuts the limit unless it was already cut within the last round trip, whose commands were sent under the old
+     * limit.
+     */
+    private void decrease(long now) {
+        if (lastDecrease != 0 && now - lastDecrease < Math.max(0, latency)) {
+            return;
+        }
+        double cut = Math.max(minLimit, limit * backoff);
+        if (cut < limit) {
+            limit = cut;
+            decreases++;
+        }
+        lastDecrease = now;
+    }
+
+    /**
+     * Gets the number of commands allowed in flight
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the highest limit reached
+     */
+    public int getPeakLimit() {
+        lock.lock();
+        try {
+            return peakLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of commands waiting for a permit
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of commands that had to wait for a permit
+     */
+    public long getWaited() {
+        lock.lock();
+        try {
+            return waited;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getIncreases() {
+        lock.lock();
+        try {
+            return increases;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDecreases() {
+        lock.lock();
+        try {
+            return decreases;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long median(long[] samples, int count, long[] scratch) {
+        System.arraycopy(samples, 0, scratch, 0, count);
+        Arrays.sort(scratch, 0, count);
+        return scratch[count / 2];
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("limit %d (peak %d), %d in flight, %d queued, %.1f ms latency over %d kinds of command",
+                    (int) limit, peakLimit, inFlight, queued, latency / 1000000, kinds.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the commands per second and their latency when many sessions share one saturating host.
+ * The stand-in server handles {@link #Capacity} commands at full speed and thrashes beyond that, so without a
+ * limit the 32 client threads overload it and both throughput and latency get worse. With the adaptive limit the
+ * extra commands wait on the client and the host stays near its capacity. Run {@link #main(String[])} to compare.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(32)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class ConcurrencyLimiterBenchmark {
+
+    /**
+     * Commands the stand-in server handles at full speed
+     */
+    public static final int Capacity = 4;
+
+    @Param({"false", "true"})
+    public boolean limited;
+
+    private StandInServer server;
+
+    private URL url;
+
+    private ConcurrencyLimiter limiter;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        server = new StandInServer();
+        server.setCommandTime(5);
+        server.setSaturation(Capacity, 1);
+        url = server.getUrl();
+        limiter = new ConcurrencyLimiter(1, 1, 64);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        System.out.println();
+        System.out.println("Peak in flight on the server: " + server.getPeakInFlight() + ", limiter: " + limiter);
+        server.close();
+    }
+
+    @Benchmark
+    public void command() throws InterruptedException {
+        if (!limited) {
+            StandInServer.post(url, "/session/1/element", "{\"using\":\"name\",\"value\":\"One\"}");
+            return;
+        }
+        limiter.acquire();
+        long start = System.nanoTime();
+        boolean answered = false;
+        try {
+            StandInServer.post(url, "/session/1/element", "{\"using\":\"name\",\"value\":\"One\"}");
+            answered = true;
+            limiter.release(System.nanoTime() - start);
+        } finally {
+            if (!answered) {
+                limiter.dropped();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ConcurrencyLimiterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,219 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.SessionId;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long Millisecond = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Sends one round of commands at the limit, all answering with the latency.
+     */
+    private static void round(ConcurrencyLimiter limiter, long latencyMillis) throws InterruptedException {
+        int limit = limiter.getLimit();
+        for (int i = 0; i < limit; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < limit; i++) {
+            limiter.release(latencyMillis * Millisecond);
+        }
+    }
+
+    @Test
+    public void GrowsWhileLatencyStaysFlat() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10);
+
+        for (int i = 0; i < 40; i++) {
+            round(limiter, 10);
+        }
+
+        Assert.assertEquals(10, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getDecreases());
+    }
+
+    @Test
+    public void SlowerKindsOfCommandDoNotCutTheLimit() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10);
+
+        // Finds take twenty times as long as clicks, on an idle host too
+        for (int i = 0; i < 40; i++) {
+            int limit = limiter.getLimit();
+            for (int j = 0; j < limit; j++) {
+                limiter.acquire();
+            }
+            for (int j = 0; j < limit; j++) {
+                limiter.release(j % 2 == 0 ? "click" : "findElement", (j % 2 == 0 ? 1 : 20) * Millisecond);
+            }
+        }
+
+        Assert.assertEquals(10, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getDecreases());
+    }
+
+    @Test
+    public void SpreadOfAnIdleHostDoesNotCutTheLimit() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10);
+        Random random = new Random(42);
+
+        // Finds by name walk trees of different depths, from 2 to 30 ms, however many are in flight
+        for (int i = 0; i < 80; i++) {
+            int limit = limiter.getLimit();
+            for (int j = 0; j < limit; j++) {
+                limiter.acquire();
+            }
+            for (int j = 0; j < limit; j++) {
+                limiter.release(DriverCommand.FIND_CHILD_ELEMENT, (2 + random.nextInt(29)) * Millisecond);
+            }
+        }
+
+        Assert.assertEquals(10, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getDecreases());
+    }
+
+    @Test
+    public void FindsByDifferentStrategiesAreComparedApart() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10);
+        Command byName = find("name");
+        Command byAutomationId = find("accessibility id");
+
+        Assert.assertNotEquals(EndpointRouter.kindOf(byName), EndpointRouter.kindOf(byAutomationId));
+        for (int i = 0; i < 80; i++) {
+            int limit = limiter.getLimit();
+            for (int j = 0; j < limit; j++) {
+                limiter.acquire();
+            }
+            for (int j = 0; j < limit; j++) {
+                Command find = (i + j) % 2 == 0 ? byName : byAutomationId;
+                limiter.release(EndpointRouter.kindOf(find), (find == byName ? 20 : 1) * Millisecond);
+            }
+        }
+
+        Assert.assertEquals(10, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getDecreases());
+    }
+
+    private static Command find(String using) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("using", using);
+        parameters.put("value", "Seven");
+        return new Command(new SessionId("1"), DriverCommand.FIND_CHILD_ELEMENT, parameters);
+    }
+
+    @Test
+    public void DoesNotGrowWhileTheLimitIsNotReached() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 10);
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(tryAcquire(limiter));
+            limiter.release(10 * Millisecond);
+        }
+
+        Assert.assertEquals(4, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getWaited());
+    }
+
+    @Test
+    public void BacksOffWhenLatencyRises() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 2, 10);
+        // Enough commands for a usual latency
+        for (int i = 0; i < 8; i++) {
+            round(limiter, 1);
+        }
+
+        // The limit is cut at most once per round trip
+        for (int i = 0; i < 12; i++) {
+            round(limiter, 5);
+            Thread.sleep(6);
+        }
+
+        Assert.assertEquals(2, limiter.getLimit());
+        Assert.assertTrue(limiter.toString(), limiter.getDecreases() >= 3);
+    }
+
+    @Test
+    public void FailuresCutTheLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 10);
+
+        Assert.assertTrue(tryAcquire(limiter));
+        limiter.dropped();
+
+        Assert.assertEquals(8, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void CommandsOverTheLimitWait() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1);
+        limiter.acquire();
+
+        Assert.assertFalse(limiter.tryAcquire(50, TimeUnit.MILLISECONDS));
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            limiter.release(Millisecond);
+        });
+        releaser.start();
+        Assert.assertTrue(limiter.tryAcquire(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, limiter.getWaited());
+        releaser.join();
+    }
+
+    @Test
+    public void KeepsASaturatingServerNearItsCapacity() throws IOException, InterruptedException {
+        try (StandInServer server = new StandInServer()) {
+            server.setCommandTime(10);
+            server.setSaturation(4, 1);
+            ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 64);
+
+            List<Thread> clients = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                Thread client = new Thread(() -> {
+                    for (int command = 0; command < 20; command++) {
+                        try {
+                            limiter.acquire();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        long start = System.nanoTime();
+                        StandInServer.post(server.getUrl(), "/session/1/element", "{}");
+                        limiter.release(System.nanoTime() - start);
+                    }
+                });
+                clients.add(client);
+                client.start();
+            }
+            for (Thread client : clients) {
+                client.join();
+            }
+
+            Assert.assertEquals(320, server.getCommands());
+            Assert.assertTrue(limiter.toString(), server.getPeakInFlight() <= limiter.getPeakLimit());
+            Assert.assertTrue(limiter.toString(), limiter.getPeakLimit() < 16);
+            Assert.assertTrue(limiter.toString(), limiter.getWaited() > 0);
+        }
+    }
+
+    private static boolean tryAcquire(ConcurrencyLimiter limiter) {
+        try {
+            return limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package lazyElement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Condition on the properties of lazy elements, combined with {@link #allOf}, {@link #anyOf}, {@link #not} and
+ * {@link #sequence}.
+ * On every tick of a wait the properties the condition needs are collected first, each distinct one is read once,
+ * and every sub-condition is evaluated on that snapshot. "Result is 8 and Equals is enabled and no error dialog"
+ * therefore costs one read per property per tick however it is nested, and when the wait times out the exception
+ * names the sub-conditions that were still false and the values they last saw.
+ * <p>
+ * A sequence remembers how far it got, so a condition holding one is good for one wait at a time.
+ */
+public abstract class Condition {
+
+    /**
+     * An element property read once per tick
+     */
+    private enum Kind {
+        TEXT, ATTRIBUTE, DISPLAYED, ENABLED
+    }
+
+    /**
+     * One property of one element, equal for every sub-condition that needs it
+     */
+    private static final class Probe {
+        private final AbstractLazyWebElement element;
+        private final Kind kind;
+        private final String name;
+
+        private Probe(AbstractLazyWebElement element, Kind kind, String name) {
+            this.element = element;
+            this.kind = kind;
+            this.name = name;
+        }
+
+        private Object read() {
+            try {
+                return read(element.getElement());
+            } catch (StaleElementReferenceException e) {
+                return read(element.getNewElement());
+            }
+        }
+
+        private Object read(WebElement found) {
+            switch (kind) {
+                case TEXT:
+                    return found.getText();
+                case ATTRIBUTE:
+                    return found.getAttribute(name);
+                case DISPLAYED:
+                    return found.isDisplayed();
+                default:
+                    return found.isEnabled();
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Probe)) {
+                return false;
+            }
+            Probe probe = (Probe) other;
+            return element == probe.element && kind == probe.kind && Objects.equals(name, probe.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(element) * 31 + kind.hashCode() * 7 + Objects.hashCode(name);
+        }
+
+        @Override
+        public String toString() {
+            String property = kind == Kind.ATTRIBUTE ? name : kind.name().toLowerCase();
+            return element.getUserFriendlyName() + " " + property;
+        }
+    }
+
+    /**
+     * A read that failed, e.g. because the element is not there
+     */
+    private static final class Failure {
+        private final RuntimeException exception;
+
+        private Failure(RuntimeException exception) {
+            this.exception = exception;
+        }
+
+        @Override
+        public String toString() {
+            String message = exception.getMessage();
+            return exception.getClass().getSimpleName()
+                    + (message == null ? "" : ": " + message.split("\r?\n", 2)[0]);
+        }
+    }
+
+    /**
+     * Property values of one tick
+     */
+    static final class Snapshot {
+        private final Map<Probe, Object> values = new LinkedHashMap<>();
+
+        private void need(Probe probe) {
+            values.putIfAbsent(probe, null);
+        }
+
+        private int fetch() {
+            for (Map.Entry<Probe, Object> entry : values.entrySet()) {
+                try {
+                    entry.setValue(entry.getKey().read());
+                } catch (RuntimeException e) {
+                    entry.setValue(new Failure(e));
+                }
+            }
+            return values.size();
+        }
+
+        private Object get(Probe probe) {
+            return values.get(probe);
+        }
+    }
+
+    private int ticks;
+
+    private int fetches;
+
+    /**
+     * Whether the condition held on the last tick it was evaluated on
+     */
+    private boolean held;
+
+    /**
+     * Registers the properties the next evaluation needs.
+     */
+    abstract void need(Snapshot snapshot);
+
+    /**
+     * Evaluates the condition on a tick's snapshot, once per tick.
+     */
+    abstract boolean evaluate(Snapshot snapshot);
+
+    /**
+     * Describes the sub-conditions that were false in the snapshot and the values they saw.
+     */
+    abstract void explain(Snapshot snapshot, List<String> blocking);
+
+    /**
+     * Evaluates the condition and remembers the result for the timeout report.
+     */
+    final boolean test(Snapshot snapshot) {
+        held = evaluate(snapshot);
+        return held;
+    }
+
+    /**
+     * Forgets the progress of sequences before a new wait.
+     */
+    void reset() {
+    }
+
+    /**
+     * Checks the condition once.
+     *
+     * @return True if the condition holds
+     */
+    public boolean check() {
+        return tick() == null;
+    }
+
+    /**
+     * Reads the properties once and evaluates the condition.
+     *
+     * @return Null if the condition holds, otherwise the snapshot it was false on
+     */
+    private Snapshot tick() {
+        Snapshot snapshot = new Snapshot();
+        need(snapshot);
+        fetches += snapshot.fetch();
+        ticks++;
+        return test(snapshot) ? null : snapshot;
+    }
+
+    /**
+     * Waits until the condition holds.
+     *
+     * @param retryTime Time between ticks in milliseconds
+     * @param timeout   Max timeout in milliseconds
+     * @return True if the condition held before the timeout
+     */
+    public boolean waitUntil(long retryTime, long timeout) {
+        try {
+            waitFor(retryTime, timeout);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits until the condition holds, with the default retry time and timeout.
+     *
+     * @throws TimeoutException Naming the sub-conditions that were still false
+     */
+    public void waitFor() throws TimeoutException {
+        waitFor(GenericWait.getRetryTime(), GenericWait.getTimeout());
+    }
+
+    /**
+     * Waits until the condition holds.
+     *
+     * @param retryTime Time between ticks in milliseconds
+     * @param timeout   Max timeout in milliseconds
+     * @throws TimeoutException Naming the sub-conditions that were still false
+     */
+    public void waitFor(long retryTime, long timeout) throws TimeoutException {
+        reset();
+        ticks = 0;
+        fetches = 0;
+        TimeSource clock = GenericWait.getTimeSource();
+        long deadline = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        Snapshot last;
+        do {
+            last = tick();
+            if (last == null) {
+                return;
+            }
+            try {
+                clock.sleep(retryTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TimeoutException("Interrupted while waiting for " + this, e);
+            }
+        } while (clock.nanoTime() - deadline < 0);
+
+        List<String> blocking = new ArrayList<>();
+        explain(last, blocking);
+        throw new TimeoutException("Timed out after " + timeout + " ms and " + ticks + " checks waiting for " + this
+                + "\r\nStill false: " + String.join("; ", blocking));
+    }
+
+    /**
+     * Gets the number of times the last wait read the properties
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Gets the number of property reads of the last wait, one per distinct property per tick
+     */
+    public int getFetches() {
+        return fetches;
+    }
+
+    /**
+     * Condition on one property
+     */
+    private static final class Leaf extends Condition {
+        private final Probe probe;
+        private final Predicate<Object> test;
+        private final String expected;
+
+        private Leaf(Probe probe, Predicate<Object> test, String expected) {
+            this.probe = probe;
+            this.test = test;
+            this.expected = expected;
+        }
+
+        @Override
+        void need(Snapshot snapshot) {
+            snapshot.need(probe);
+        }
+
+        @Override
+        boolean evaluate(Snapshot snapshot) {
+            Object value = snapshot.get(probe);
+            return !(value instanceof Failure) && test.test(value);
+        }
+
+        @Override
+        void explain(Snapshot snapshot, List<String> blocking) {
+            if (!snapshot.values.containsKey(probe)) {
+                blocking.add(this + " (not read yet)");
+                return;
+            }
+            Object value = snapshot.get(probe);
+            blocking.add(this + " (was " + (value instanceof String ? "\"" + value + "\"" : value) + ")");
+        }
+
+        @Override
+        public String toString() {
+            return probe + " " + expected;
+        }
+    }
+
+    /**
+     * Gets a condition on the text of an element.
+     *
+     * @param element  The element
+     * @param expected The text it must have
+     * @return The condition
+     */
+    public static Condition text(AbstractLazyWebElement element, String expected) {
+        return text(element, "is \"" + expected + "\"", expected::equals);
+    }
+
+    /**
+     * Gets a condition on the text of an element.
+     *
+     * @param element     The element
+     * @param description What the condition expects, for the timeout report
+     * @param test        The condition
+     * @return The condition
+     */
+    public static Condition text(AbstractLazyWebElement element, String description, Predicate<? super String> test) {
+        return new Leaf(new Probe(element, Kind.TEXT, null), value -> value != null && test.test((String) value),
+                description);
+    }
+
+    /**
+     * Gets a condition on an attribute of an element.
+     *
+     * @param element  The element
+     * @param name     The attribute
+     * @param expected The value it must have
+     * @return The condition
+     */
+    public static Condition attribute(AbstractLazyWebElement element, String name, String expected) {
+        return attribute(element, name, "is \"" + expected + "\"", expected::equals);
+    }
+
+    /**
+     * Gets a condition on an attribute of an element.
+     *
+     * @param element     The element
+     * @param name        The attribute
+     * @param description What the condition expects, for the timeout report
+     * @param test        The condition
+     * @return The condition
+     */
+    public static Condition attribute(AbstractLazyWebElement element, String name, String description,
+                                      Predicate<? super String> test) {
+        return new Leaf(new Probe(element, Kind.ATTRIBUTE, name), value -> value != null && test.test((String) value),
+                description);
+    }
+
+    /**
+     * Gets a condition that an element is found and displayed.
+     */
+    public static Condition displayed(AbstractLazyWebElement element) {
+        return new Leaf(new Probe(element, Kind.DISPLAYED, null), Boolean.TRUE::equals, "is true");
+    }
+
+    /**
+     * Gets a condition that an element is found and enabled.
+     */
+    public static Condition enabled(AbstractLazyWebElement element) {
+        return new Leaf(new Probe(element, Kind.ENABLED, null), Boolean.TRUE::equals, "is true");
+    }
+
+    /**
+     * Combines conditions that must all hold on the same tick.
+     */
+    public static Condition allOf(Condition... conditions) {
+        return new Group(conditions, true);
+    }
+
+    /**
+     * Combines conditions of which one must hold.
+     */
+    public static Condition anyOf(Condition... conditions) {
+        return new Group(conditions, false);
+    }
+
+    private static final class Group extends Condition {
+        private final Condition[] conditions;
+        private final boolean all;
+
+        private Group(Condition[] conditions, boolean all) {
+            if (conditions.length == 0) {
+                throw new IllegalArgumentException("At least one condition is needed");
+            }
+            this.conditions = conditions.clone();
+            this.all = all;
+        }
+
+        @Override
+        void need(Snapshot snapshot) {
+            for (Condition condition : conditions) {
+                condition.need(snapshot);
+            }
+        }
+
+        @Override
+        boolean evaluate(Snapshot snapshot) {
+            // Every sub-condition is evaluated, so a sequence inside moves on even when a sibling is false
+            boolean result = all;
+            for (Condition condition : conditions) {
+                boolean passed = condition.test(snapshot);
+                result = all ? result && passed : result || passed;
+            }
+            return result;
+        }
+
+        @Override
+        void explain(Snapshot snapshot, List<String> blocking) {
+            for (Condition condition : conditions) {
+                if (!condition.held) {
+                    condition.explain(snapshot, blocking);
+                }
+            }
+        }
+
+        @Override
+        void reset() {
+            for (Condition condition : conditions) {
+                condition.reset();
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder description = new StringBuilder(all ? "allOf(" : "anyOf(");
+            for (int i = 0; i < conditions.length; i++) {
+                description.append(i == 0 ? "" : ", ").append(conditions[i]);
+            }
+            return description.append(')').toString();
+        }
+    }
+
+    /**
+     * Negates a condition.
+     */
+    public static Condition not(Condition condition) {
+        return new Not(condition);
+    }
+
+    private static final class Not extends Condition {
+        private final Condition condition;
+
+        private Not(Condition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        void need(Snapshot snapshot) {
+            condition.need(snapshot);
+        }
+
+        @Override
+        boolean evaluate(Snapshot snapshot) {
+            return !condition.test(snapshot);
+        }
+
+        @Override
+        void explain(Snapshot snapshot, List<String> blocking) {
+            List<String> held = new ArrayList<>();
+            condition.explain(snapshot, held);
+            blocking.add(held.isEmpty() ? this.toString() : "not " + String.join(", ", held));
+        }
+
+        @Override
+        void reset() {
+            condition.reset();
+        }
+
+        @Override
+        public String toString() {
+            return "not(" + condition + ")";
+        }
+    }
+
+    /**
+     * Combines conditions that must hold one after the other, each on a later tick than the one before, e.g. a
+     * progress dialog that appears and then goes away. Only the properties of the current step are read.
+     */
+    public static Condition sequence(Condition... steps) {
+        return new Sequence(steps);
+    }
+
+    private static final class Sequence extends Condition {
+        private final Condition[] steps;
+        private int step;
+
+        private Sequence(Condition[] steps) {
+            if (steps.length == 0) {
+                throw new IllegalArgumentException("At least one step is needed");
+            }
+            this.steps = steps.clone();
+        }
+
+        @Override
+        void need(Snapshot snapshot) {
+            if (step < steps.length) {
+                steps[step].need(snapshot);
+            }
+        }
+
+        @Override
+        boolean evaluate(Snapshot snapshot) {
+            if (step < steps.length && steps[step].test(snapshot)) {
+                step++;
+            }
+            return step == steps.length;
+        }
+
+        @Override
+        void explain(Snapshot snapshot, List<String> blocking) {
+            if (step < steps.length) {
+                List<String> current = new ArrayList<>();
+                steps[step].explain(snapshot, current);
+                blocking.add("step " + (step + 1) + " of " + steps.length + ": " + String.join(", ", current));
+            }
+        }
+
+        @Override
+        void reset() {
+            step = 0;
+            for (Condition condition : steps) {
+                condition.reset();
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder description = new StringBuilder("sequence(");
+            for (int i = 0; i < steps.length; i++) {
+                description.append(i == 0 ? "" : ", ").append(steps[i]);
+            }
+            return description.append(')').toString();
+        }
+    }
+}
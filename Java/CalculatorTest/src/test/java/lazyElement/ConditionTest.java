@@ -0,0 +1,166 @@
+package lazyElement;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.TimeoutException;
+
+import static lazyElement.Condition.allOf;
+import static lazyElement.Condition.anyOf;
+import static lazyElement.Condition.attribute;
+import static lazyElement.Condition.displayed;
+import static lazyElement.Condition.enabled;
+import static lazyElement.Condition.not;
+import static lazyElement.Condition.sequence;
+
+public class ConditionTest {
+
+    private final Logger logger = Logger.getLogger(ConditionTest.class);
+
+    private final StandInDriver driver = new StandInDriver();
+
+    private StandInElement display;
+
+    private StandInElement equalsButton;
+
+    private StandInElement errorDialog;
+
+    private LazyElement result;
+
+    private LazyElement equals;
+
+    private LazyElement error;
+
+    /**
+     * Virtual clock that changes the stand-ins after a given number of sleeps, i.e. between two ticks
+     */
+    private static final class ScriptedClock extends VirtualTimeSource {
+        private final Map<Integer, Runnable> actions = new ConcurrentHashMap<>();
+
+        private void onSleep(int sleep, Runnable action) {
+            actions.put(sleep, action);
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            super.sleep(millis);
+            Runnable action = actions.remove(getSleeps());
+            if (action != null) {
+                action.run();
+            }
+        }
+    }
+
+    private ScriptedClock clock;
+
+    private TimeSource previousClock;
+
+    private LocatorTimings previousTimings;
+
+    @Before
+    public void setup() {
+        clock = new ScriptedClock();
+        previousClock = GenericWait.setTimeSource(clock);
+        previousTimings = LocatorTimings.setShared(new LocatorTimings(null));
+
+        StandInElement calculator = driver.window("Calculator");
+        display = calculator.add("Display").attribute("Value", "7");
+        equalsButton = calculator.add("Equals");
+        errorDialog = calculator.add("Error").setDisplayed(false);
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        result = new LazyElement(logger, window, By.name("Display"), "Result display");
+        equals = new LazyElement(logger, window, By.name("Equals"), "Equals button");
+        error = new LazyElement(logger, window, By.name("Error"), "Error dialog");
+    }
+
+    @After
+    public void tearDown() {
+        GenericWait.setTimeSource(previousClock);
+        LocatorTimings.setShared(previousTimings);
+    }
+
+    @Test
+    public void EachPropertyIsReadOncePerTick() {
+        Condition ready = allOf(
+                attribute(result, "Value", "8"),
+                attribute(result, "Value", "non-empty", value -> !value.isEmpty()),
+                anyOf(enabled(equals), not(enabled(equals))),
+                not(displayed(error)));
+        // Finds the elements, so only property reads are counted below
+        Assert.assertFalse(ready.check());
+        // Turns 8 on the third tick
+        clock.onSleep(2, () -> display.attribute("Value", "8"));
+        int commands = driver.getCommandCount();
+
+        ready.waitFor(100, 10000);
+
+        Assert.assertEquals(3, ready.getTicks());
+        Assert.assertEquals(3 * 3, ready.getFetches());
+        Assert.assertEquals(3 * 3, driver.getCommandCount() - commands);
+    }
+
+    @Test
+    public void TimeoutNamesTheBlockingCondition() {
+        errorDialog.setDisplayed(true);
+        Condition ready = allOf(attribute(result, "Value", "8"), enabled(equals), not(displayed(error)));
+
+        try {
+            ready.waitFor(100, 1000);
+            Assert.fail("The condition held");
+        } catch (TimeoutException e) {
+            String message = e.getMessage();
+            Assert.assertTrue(message, message.contains("Result display Value is \"8\" (was \"7\")"));
+            Assert.assertTrue(message, message.contains("not Error dialog displayed is true (was true)"));
+            Assert.assertFalse(message, message.substring(message.indexOf("Still false")).contains("enabled"));
+        }
+        Assert.assertFalse(ready.waitUntil(100, 1000));
+    }
+
+    @Test
+    public void MissingElementIsReportedNotThrown() {
+        LazyElement missing = new LazyElement(logger, driver, By.name("Memory"), "Memory panel");
+
+        try {
+            displayed(missing).waitFor(100, 300);
+            Assert.fail("The missing element was displayed");
+        } catch (TimeoutException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Memory panel displayed is true (was NoSuchElementException"));
+        }
+        Assert.assertTrue(not(displayed(missing)).check());
+    }
+
+    @Test
+    public void SequenceStepsHoldInOrder() {
+        Condition progress = sequence(displayed(error), not(displayed(error)), attribute(result, "Value", "8"));
+        clock.onSleep(2, () -> errorDialog.setDisplayed(true));
+        clock.onSleep(4, () -> {
+            errorDialog.setDisplayed(false);
+            display.attribute("Value", "8");
+        });
+
+        progress.waitFor(100, 10000);
+
+        // Appeared on the third tick, went away on the fifth and the value was read on the sixth
+        Assert.assertEquals(6, progress.getTicks());
+        // Only the current step's property is read
+        Assert.assertEquals(6, progress.getFetches());
+    }
+
+    @Test
+    public void SequenceReportsTheStepItWaitsFor() {
+        Condition progress = sequence(attribute(result, "Value", "7"), displayed(error));
+
+        try {
+            progress.waitFor(100, 500);
+            Assert.fail("The sequence completed");
+        } catch (TimeoutException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("step 2 of 2: Error dialog displayed is true (was false)"));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package lazyElement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.junit.runner.Computer;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.Statement;
+
+/**
+ * Suite that runs its test classes on several workers, longest first, using the durations of earlier runs.
+ * Every test's duration is recorded to {@link TestDurations}. A class is predicted to take the sum of its tests'
+ * durations and the classes are spread over the workers by a {@link WorkStealingScheduler}, so each class keeps its
+ * own session from its {@code @BeforeClass}. The number of workers comes from the lazyElement.workers system
+ * property and defaults to the number of lazyElement.endpoints, one session per WinAppDriver host. The achieved
+ * makespan is logged against the ideal one when the suite finishes.
+ * <p>
+ * Use it with {@code @RunWith(DurationBalancedSuite.class)} and {@code @SuiteClasses}, or pass
+ * {@link #computer(int)} to {@code JUnitCore.runClasses}.
+ */
+public class DurationBalancedSuite extends Suite {
+
+    private static final Logger log = Logger.getLogger(DurationBalancedSuite.class);
+
+    private final int workers;
+
+    private volatile WorkStealingScheduler.Report report;
+
+    /**
+     * Called reflectively for classes annotated with {@code @RunWith(DurationBalancedSuite.class)}
+     *
+     * @param klass   The suite class
+     * @param builder Builds the runners of the suite classes
+     */
+    public DurationBalancedSuite(Class<?> klass, RunnerBuilder builder) throws InitializationError {
+        this(builder, klass, suiteClasses(klass), defaultWorkers());
+    }
+
+    /**
+     * Initializes a new instance of the {@link DurationBalancedSuite} class
+     *
+     * @param builder Builds the runners of the test classes
+     * @param classes The test classes
+     * @param workers The number of test classes run at the same time
+     */
+    public DurationBalancedSuite(RunnerBuilder builder, Class<?>[] classes, int workers) throws InitializationError {
+        this(builder, null, classes, workers);
+    }
+
+    private DurationBalancedSuite(RunnerBuilder builder, Class<?> klass, Class<?>[] classes, int workers)
+            throws InitializationError {
+        super(builder, klass, classes);
+        if (workers < 1) {
+            throw new InitializationError("Workers must be at least 1: " + workers);
+        }
+        this.workers = workers;
+    }
+
+    /**
+     * Gets a computer that runs the given classes as a {@link DurationBalancedSuite}.
+     *
+     * @param workers The number of test classes run at the same time
+     */
+    public static Computer computer(int workers) {
+        return new Computer() {
+            @Override
+            public Runner getSuite(RunnerBuilder builder, Class<?>[] classes) throws InitializationError {
+                return new DurationBalancedSuite(builder, classes, workers);
+            }
+        };
+    }
+
+    private static Class<?>[] suiteClasses(Class<?> klass) throws InitializationError {
+        SuiteClasses annotation = klass.getAnnotation(SuiteClasses.class);
+        if (annotation == null) {
+            throw new InitializationError(String.format("class '%s' must have a SuiteClasses annotation", klass.getName()));
+        }
+        return annotation.value();
+    }
+
+    private static int defaultWorkers() {
+        int endpoints = 0;
+        for (String endpoint : System.getProperty("lazyElement.endpoints", "http://127.0.0.1:4723").split(",")) {
+            if (!endpoint.trim().isEmpty()) {
+                endpoints++;
+            }
+        }
+        return Integer.getInteger("lazyElement.workers", Math.max(1, endpoints));
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Gets how the last run went, or null before the suite ran
+     */
+    public WorkStealingScheduler.Report getReport() {
+        return report;
+    }
+
+    @Override
+    protected Statement childrenInvoker(RunNotifier notifier) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                TestDurations durations = TestDurations.getShared();
+                Recorder recorder = new Recorder(durations);
+                notifier.addListener(recorder);
+                try {
+                    report = new WorkStealingScheduler(workers).run(filteredChildren(),
+                            child -> predict(durations, child.getDescription()),
+                            child -> child.getDescription().getDisplayName(),
+                            child -> runChild(child, notifier));
+                } finally {
+                    notifier.removeListener(recorder);
+                }
+                log.info(report);
+            }
+        };
+    }
+
+    /**
+     * Gets the children left after filtering, which are the ones still described by the suite
+     */
+    private List<Runner> filteredChildren() {
+        List<Description> described = getDescription().getChildren();
+        List<Runner> children = new ArrayList<>();
+        for (Runner child : getChildren()) {
+            if (described.contains(describeChild(child))) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    private static long predict(TestDurations durations, Description description) {
+        if (description.isTest()) {
+            return durations.predict(description.getDisplayName());
+        }
+        long total = 0;
+        for (Description child : description.getChildren()) {
+            total += predict(durations, child);
+        }
+        return total;
+    }
+
+    /**
+     * Records the duration of every test that ran
+     */
+    private static final class Recorder extends RunListener {
+
+        private final TestDurations durations;
+
+        private final Map<Description, Long> started = new ConcurrentHashMap<>();
+
+        private Recorder(TestDurations durations) {
+            this.durations = durations;
+        }
+
+        @Override
+        public void testStarted(Description description) {
+            started.put(description, System.nanoTime());
+        }
+
+        @Override
+        public void testFinished(Description description) {
+            Long start = started.remove(description);
+            if (start != null) {
+                durations.record(description.getDisplayName(), (System.nanoTime() - start) / 1000000);
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package lazyElement;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebElement;
+
+/**
+ * Shares one handle and one lazy element wrapper per remote element of a session.
+ * The server answers every find with the element's id, and the client builds a new RemoteWebElement for each
+ * answer, so a screen walked through many parent chains or listed again and again ends up held many times over.
+ * Interning maps an id to the first handle and the first wrapper built for it for as long as anything else still
+ * holds them: both are weakly referenced, so the interner never keeps an element alive. Ids are per session, so
+ * each driver has its own table, dropped along with the driver.
+ * <p>
+ * Wrappers keep the name and index they were built with, so an element listed again at another index keeps the
+ * name of its first listing.
+ */
+public final class ElementInterner {
+
+    /**
+     * The interner used by every lazy element
+     */
+    private static volatile ElementInterner shared = new ElementInterner(
+            Boolean.parseBoolean(System.getProperty("lazyElement.intern", "true")),
+            Integer.getInteger("lazyElement.internReportSize", 1000));
+
+    /**
+     * Table of elements whose handle does not say which driver it belongs to
+     */
+    private static final Object Detached = new Object();
+
+    /**
+     * Estimated shallow sizes, per class
+     */
+    private static final ConcurrentMap<Class<?>, Long> shallowSizes = new ConcurrentHashMap<>();
+
+    /**
+     * Interned object, removed from its table once collected
+     */
+    private static final class Entry<T> extends WeakReference<T> {
+        private final ConcurrentMap<String, Entry<?>> table;
+        private final String id;
+
+        private Entry(T referent, ReferenceQueue<Object> queue, ConcurrentMap<String, Entry<?>> table, String id) {
+            super(referent, queue);
+            this.table = table;
+            this.id = id;
+        }
+    }
+
+    /**
+     * The tables of one session
+     */
+    private static final class Session {
+        private final ConcurrentMap<String, Entry<?>> handles = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Entry<?>> wrappers = new ConcurrentHashMap<>();
+    }
+
+    private final boolean enabled;
+
+    private final int reportSize;
+
+    private final Map<Object, Session> sessions = new WeakHashMap<>();
+
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    /**
+     * Estimated retained size of one wrapper, per wrapper class, from the first one built
+     */
+    private final ConcurrentMap<Class<?>, Long> wrapperSizes = new ConcurrentHashMap<>();
+
+    private final LongAdder handleHits = new LongAdder();
+
+    private final LongAdder wrapperHits = new LongAdder();
+
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * Initializes a new instance of the {@link ElementInterner} class
+     *
+     * @param enabled    Whether to intern, if not every handle and wrapper is returned as built
+     * @param reportSize Smallest findElements result whose savings are logged
+     */
+    public ElementInterner(boolean enabled, int reportSize) {
+        this.enabled = enabled;
+        this.reportSize = reportSize;
+    }
+
+    public static ElementInterner getShared() {
+        return shared;
+    }
+
+    /**
+     * Replaces the interner used by every lazy element.
+     *
+     * @param interner The new interner
+     * @return The previous interner
+     */
+    public static ElementInterner setShared(ElementInterner interner) {
+        ElementInterner previous = shared;
+        shared = interner;
+        return previous;
+    }
+
+    /**
+     * Gets the handle already in use for the same remote element.
+     *
+     * @param element A handle the server just returned
+     * @return The handle interned for its id, or the element itself if it is the first or has no id
+     */
+    public WebElement handle(WebElement element) {
+        String id = idOf(element);
+        if (!enabled || id == null) {
+            return element;
+        }
+        WebElement interned = intern(session(element).handles, id, element);
+        if (interned != element) {
+            handleHits.increment();
+            savedBytes.add(handleSize(id));
+        }
+        return interned;
+    }
+
+    /**
+     * Gets the wrapper already in use for the same remote element, building one if there is none.
+     *
+     * @param element The interned handle of the element
+     * @param create  Builds the wrapper
+     * @return The interned wrapper
+     */
+    public <T extends AbstractLazyWebElement> T wrapper(WebElement element, Supplier<T> create) {
+        String id = idOf(element);
+        if (!enabled || id == null) {
+            return create.get();
+        }
+        ConcurrentMap<String, Entry<?>> table = session(element).wrappers;
+        @SuppressWarnings("unchecked")
+        T interned = (T) live(table, id);
+        if (interned != null) {
+            wrapperHits.increment();
+            savedBytes.add(wrapperSize(interned));
+            return interned;
+        }
+        T created = create.get();
+        wrapperSize(created);
+        return intern(table, id, created);
+    }
+
+    /**
+     * Logs what interning saved on a findElements result, if it is large enough to matter.
+     *
+     * @param log    The logger of the element the result was found under
+     * @param by     The locator of the result
+     * @param size   The number of elements found
+     * @param reused How many of them reused a wrapper
+     * @param bytes  Estimated bytes the reused wrappers and handles saved
+     */
+    void report(Logger log, By by, int size, int reused, long bytes) {
+        if (size >= reportSize && reused > 0) {
+            log.info(String.format("findElements %s: %d of %d elements already wrapped, about %d KB not allocated",
+                    by, reused, size, bytes / 1024));
+        }
+    }
+
+    /**
+     * Gets the number of handles returned instead of the one the server answered with
+     */
+    public long getHandleHits() {
+        return handleHits.sum();
+    }
+
+    /**
+     * Gets the number of wrappers returned instead of building a new one
+     */
+    public long getWrapperHits() {
+        return wrapperHits.sum();
+    }
+
+    /**
+     * Gets the estimated bytes of the handles and wrappers that were not kept or not built
+     */
+    public long getSavedBytes() {
+        return savedBytes.sum();
+    }
+
+    /**
+     * Gets the number of live interned handles and wrappers across every session
+     */
+    public int getInterned() {
+        purge();
+        synchronized (sessions) {
+            int count = 0;
+            for (Session session : sessions.values()) {
+                count += session.handles.size() + session.wrappers.size();
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Element interning: %d handles and %d wrappers reused, about %d KB saved, %d interned",
+                getHandleHits(), getWrapperHits(), getSavedBytes() / 1024, getInterned());
+    }
+
+    private static String idOf(WebElement element) {
+        return element instanceof RemoteWebElement ? ((RemoteWebElement) element).getId() : null;
+    }
+
+    private Session session(WebElement element) {
+        Object driver = ((RemoteWebElement) element).getWrappedDriver();
+        Object key = driver == null ? Detached : driver;
+        synchronized (sessions) {
+            return sessions.computeIfAbsent(key, any -> new Session());
+        }
+    }
+
+    private static Object live(ConcurrentMap<String, Entry<?>> table, String id) {
+        Entry<?> entry = table.get(id);
+        return entry == null ? null : entry.get();
+    }
+
+    /**
+     * Returns the live object of the id, or interns the candidate if there is none
+     */
+    private <T> T intern(ConcurrentMap<String, Entry<?>> table, String id, T candidate) {
+        purge();
+        Entry<T> entry = new Entry<>(candidate, collected, table, id);
+        while (true) {
+            Entry<?> current = table.putIfAbsent(id, entry);
+            if (current == null) {
+                return candidate;
+            }
+            @SuppressWarnings("unchecked")
+            T interned = (T) current.get();
+            if (interned != null) {
+                return interned;
+            }
+            if (table.replace(id, current, entry)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * Removes the entries of collected objects
+     */
+    private void purge() {
+        for (Object reference = collected.poll(); reference != null; reference = collected.poll()) {
+            Entry<?> entry = (Entry<?>) reference;
+            entry.table.remove(entry.id, entry);
+        }
+    }
+
+    private static long handleSize(String id) {
+        return shallowSize(RemoteWebElement.class) + stringSize(id);
+    }
+
+    /**
+     * Estimates what a wrapper holds on its own: itself and the objects built for it, such as its conditions and
+     * name, but not its parent, driver, logger, locator or handle, which it shares
+     */
+    private long wrapperSize(AbstractLazyWebElement wrapper) {
+        return wrapperSizes.computeIfAbsent(wrapper.getClass(), type -> {
+            long size = shallowSize(type);
+            for (Class<?> declaring = type; declaring != null; declaring = declaring.getSuperclass()) {
+                for (Field field : declaring.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                        Object value = field.get(wrapper);
+                        if (value instanceof String) {
+                            size += stringSize((String) value);
+                        } else if (value != null && !(value instanceof SearchContext || value instanceof Logger
+                                || value instanceof By || value instanceof AbstractLazyWebElement)) {
+                            size += shallowSize(value.getClass());
+                        }
+                    } catch (ReflectiveOperationException | RuntimeException e) {
+                        // Not readable, counted as a reference only
+                    }
+                }
+            }
+            return size;
+        });
+    }
+
+    /**
+     * Estimates the size of a String and its characters on a 64-bit JVM with compressed oops
+     */
+    private static long stringSize(String value) {
+        return 24 + align(16 + 2L * value.length());
+    }
+
+    /**
+     * Estimates the size of an instance of a class, without what it references, on a 64-bit JVM with compressed
+     * oops: a 12 byte header and its fields, aligned to 8 bytes
+     */
+    static long shallowSize(Class<?> type) {
+        return shallowSizes.computeIfAbsent(type, any -> {
+            long size = 12;
+            for (Class<?> declaring = type; declaring != null; declaring = declaring.getSuperclass()) {
+                for (Field field : declaring.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        size += fieldSize(field.getType());
+                    }
+                }
+            }
+            return align(size);
+        });
+    }
+
+    private static int fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return 4;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -0,0 +1,138 @@
+package lazyElement;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebElement;
+
+public class ElementInternerTest {
+
+    private final Logger logger = Logger.getLogger(ElementInternerTest.class);
+
+    private final ElementInterner interner = new ElementInterner(true, 100);
+
+    private ElementInterner previous;
+
+    @Before
+    public void setup() {
+        previous = ElementInterner.setShared(interner);
+    }
+
+    @After
+    public void tearDown() {
+        ElementInterner.setShared(previous);
+    }
+
+    /**
+     * A handle as the client builds it for each answer of the server
+     */
+    private static RemoteWebElement handle(WebDriver driver, String id) {
+        RemoteWebElement element = new RemoteWebElement() {
+            @Override
+            public WebDriver getWrappedDriver() {
+                return driver;
+            }
+        };
+        element.setId(id);
+        return element;
+    }
+
+    @Test
+    public void HandlesOfOneElementAreShared() {
+        StandInDriver driver = new StandInDriver();
+        RemoteWebElement first = handle(driver, "42.7");
+
+        Assert.assertSame(first, interner.handle(first));
+        Assert.assertSame(first, interner.handle(handle(driver, "42.7")));
+        Assert.assertNotSame(first, interner.handle(handle(driver, "42.8")));
+
+        Assert.assertEquals(1, interner.getHandleHits());
+        Assert.assertTrue(interner.toString(), interner.getSavedBytes() > 0);
+    }
+
+    @Test
+    public void SessionsDoNotShareIds() {
+        RemoteWebElement first = handle(new StandInDriver(), "42.7");
+        RemoteWebElement other = handle(new StandInDriver(), "42.7");
+
+        Assert.assertSame(first, interner.handle(first));
+        Assert.assertSame(other, interner.handle(other));
+        Assert.assertEquals(0, interner.getHandleHits());
+    }
+
+    @Test
+    public void CollectedHandlesAreForgotten() throws InterruptedException {
+        StandInDriver driver = new StandInDriver();
+        for (int i = 0; i < 100; i++) {
+            interner.handle(handle(driver, "42." + i));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (interner.getInterned() > 0) {
+            Assert.assertTrue(interner.toString(), System.nanoTime() < deadline);
+            System.gc();
+            Thread.sleep(10);
+        }
+        // A handle of a collected element becomes the interned one
+        RemoteWebElement again = handle(driver, "42.1");
+        Assert.assertSame(again, interner.handle(again));
+    }
+
+    @Test
+    public void ListingAgainReturnsTheSameWrappers() throws Exception {
+        StandInDriver driver = new StandInDriver();
+        StandInElement list = driver.window("Calculator").add("History");
+        for (int i = 0; i < 500; i++) {
+            list.add("Row");
+        }
+        LazyElement history = new LazyElement(logger, driver, By.name("History"), "History");
+
+        List<WebElement> first = history.findElements(By.name("Row"), "Row");
+        List<WebElement> again = history.findElements(By.name("Row"), "Row");
+        LazyElement elsewhere = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        List<WebElement> throughAnotherChain = elsewhere.findElements(By.name("Row"), "Entry");
+
+        Assert.assertEquals(500, again.size());
+        for (int i = 0; i < first.size(); i++) {
+            Assert.assertSame(first.get(i), again.get(i));
+            Assert.assertSame(first.get(i), throughAnotherChain.get(i));
+        }
+        Assert.assertEquals("Row - 3", ((LazyElement) throughAnotherChain.get(3)).getUserFriendlyName());
+        Assert.assertEquals(1000, interner.getWrapperHits());
+        // Each wrapper holds several objects of its own, so every reused one saves well over a hundred bytes
+        Assert.assertTrue(interner.toString(), interner.getSavedBytes() > 1000 * 100);
+    }
+
+    @Test
+    public void DisabledInternerBuildsNewWrappers() throws Exception {
+        ElementInterner.setShared(new ElementInterner(false, 100));
+        StandInDriver driver = new StandInDriver();
+        driver.window("Calculator").add("Row");
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+
+        WebElement first = window.findElements(By.name("Row"), "Row").get(0);
+
+        Assert.assertNotSame(first, window.findElements(By.name("Row"), "Row").get(0));
+    }
+
+    @SuppressWarnings("unused")
+    private static class Sample {
+        private long count;
+        private int index;
+        private Object value;
+    }
+
+    @Test
+    public void ShallowSizesCountHeaderAndFields() {
+        // 12 byte header, a long, an int and a reference, aligned to 8
+        Assert.assertEquals(32, ElementInterner.shallowSize(Sample.class));
+    }
+}
@@ -0,0 +1,241 @@
+package lazyElement;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A WinAppDriver host known to an {@link EndpointRouter}, with its live load and health.
+ */
+public final class Endpoint {
+
+    /**
+     * Weight of a new latency sample in the moving averages
+     */
+    private static final double Smoothing = 0.2;
+
+    /**
+     * Whether new sessions may be placed on an endpoint
+     */
+    public enum State {
+        /**
+         * Accepts new sessions
+         */
+        HEALTHY,
+        /**
+         * Failed its last health checks or commands, takes no new sessions until a health check passes
+         */
+        UNHEALTHY,
+        /**
+         * Taken out of rotation by hand, takes no new sessions until it is restored
+         */
+        DRAINED
+    }
+
+    private final URL url;
+
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    private final LongAdder placed = new LongAdder();
+
+    private final LongAdder commands = new LongAdder();
+
+    /**
+     * Commands of hedged sessions on this host, the duplicates sent for them and the time the duplicates saved
+     */
+    private final LongAdder hedgingCommands = new LongAdder();
+
+    private final LongAdder hedges = new LongAdder();
+
+    private final LongAdder hedgeSavedNanos = new LongAdder();
+
+    /**
+     * Moving average latencies, -1 before the first sample. They are kept apart since opening a session, a command
+     * and a health check take very different times
+     */
+    private volatile double sessionNanos = -1;
+
+    private volatile double commandNanos = -1;
+
+    private volatile double healthNanos = -1;
+
+    private volatile int consecutiveFailures;
+
+    private volatile State state = State.HEALTHY;
+
+    /**
+     * Commands in flight to this host, starting at 4 and adapting between 1 and the lazyElement.maxInFlight system
+     * property, 64 by default
+     */
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1,
+            Math.max(4, Integer.getInteger("lazyElement.maxInFlight", 64)));
+
+    Endpoint(URL url) {
+        this.url = url;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    /**
+     * Gets the number of sessions open on this endpoint
+     */
+    public int getSessions() {
+        return sessions.get();
+    }
+
+    /**
+     * Gets the number of sessions ever placed on this endpoint
+     */
+    public long getPlaced() {
+        return placed.sum();
+    }
+
+    /**
+     * Gets the number of commands timed on this endpoint
+     */
+    public long getCommands() {
+        return commands.sum();
+    }
+
+    /**
+     * Gets the share of the commands of hedged sessions on this host that were duplicated
+     */
+    public double getHedgeRate() {
+        long total = hedgingCommands.sum();
+        return total == 0 ? 0 : (double) hedges.sum() / total;
+    }
+
+    /**
+     * Gets the time hedging saved the sessions on this host, measured for the originals that answered after the
+     * duplicate
+     */
+    public long getHedgeSavedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(hedgeSavedNanos.sum());
+    }
+
+    /**
+     * Gets the moving average time to open a session, or -1 before the first sample
+     */
+    public double getSessionLatencyMillis() {
+        return toMillis(sessionNanos);
+    }
+
+    /**
+     * Gets the moving average command latency, or -1 before the first sample
+     */
+    public double getCommandLatencyMillis() {
+        return toMillis(commandNanos);
+    }
+
+    /**
+     * Gets the moving average health check latency, or -1 before the first sample
+     */
+    public double getHealthLatencyMillis() {
+        return toMillis(healthNanos);
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos < 0 ? -1 : nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Gets the limiter every command sent to this endpoint through the router passes
+     */
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    void reserve() {
+        sessions.incrementAndGet();
+        placed.increment();
+    }
+
+    void release() {
+        sessions.decrementAndGet();
+    }
+
+    /**
+     * Records a session opened on the host.
+     */
+    synchronized void opened(long nanos) {
+        sessionNanos = average(sessionNanos, nanos);
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * Records a command that answered.
+     */
+    synchronized void answered(long nanos) {
+        commandNanos = average(commandNanos, nanos);
+        consecutiveFailures = 0;
+        commands.increment();
+    }
+
+    /**
+     * Records a health check that passed.
+     */
+    synchronized void checked(long nanos) {
+        healthNanos = average(healthNanos, nanos);
+        consecutiveFailures = 0;
+    }
+
+    void hedgingSaw() {
+        hedgingCommands.increment();
+    }
+
+    void hedged() {
+        hedges.increment();
+    }
+
+    void hedgeSaved(long nanos) {
+        hedgeSavedNanos.add(nanos);
+    }
+
+    private static double average(double average, long sample) {
+        return average < 0 ? sample : average + Smoothing * (sample - average);
+    }
+
+    /**
+     * Records a session, command or health check that could not reach the host.
+     *
+     * @return The number of failures in a row
+     */
+    synchronized int failed() {
+        return ++consecutiveFailures;
+    }
+
+    /**
+     * Scores the endpoint for a new session, lower is better. The health check is the same request on every host but
+     * is answered without the UI thread, and commands are slowed by a busy UI thread but differ from host to host, so
+     * the worse of the two latencies is compared. Hosts that were never timed score zero so they are tried first.
+     */
+    double score() {
+        double latency = Math.max(healthNanos, commandNanos);
+        return latency < 0 ? 0 : latency * (sessions.get() + 1);
+    }
+
+    @Override
+    public String toString() {
+        String report = String.format("%s %s: %d sessions open, %d placed, %.1f ms to open, %.1f ms per command, "
+                        + "%.1f ms per health check, %d failures in a row, %s", url, state, getSessions(), getPlaced(),
+                getSessionLatencyMillis(), getCommandLatencyMillis(), getHealthLatencyMillis(), consecutiveFailures,
+                limiter);
+        return hedgingCommands.sum() == 0 ? report : report + String.format(", %.1f%% of commands hedged, %d ms saved",
+                getHedgeRate() * 100, getHedgeSavedMillis());
+    }
+}
@@ -0,0 +1,387 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * Places new sessions across several WinAppDriver hosts.
+ * Each session goes to the healthy endpoint with the lowest latency weighted by its open sessions, so hosts that
+ * were never timed are tried first and a slow or busy host gets fewer sessions. The latency is that of periodic
+ * GET /status health checks, or of the commands of the sessions placed by the router before any health check. A host whose health
+ * checks or commands fail several times in a row is drained: its running sessions carry on, but it gets no new ones
+ * until a health check passes again. The commands of all sessions on one host share its {@link ConcurrencyLimiter},
+ * so adding sessions does not push the host past the point where it saturates.
+ */
+public final class EndpointRouter {
+
+    private static final Logger log = Logger.getLogger(EndpointRouter.class);
+
+    /**
+     * Router built from the comma separated URLs in the lazyElement.endpoints system property
+     */
+    private static volatile EndpointRouter shared;
+
+    private final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+
+    /**
+     * Endpoint of every open session placed by this router
+     */
+    private final Map<WebDriver, Endpoint> placements = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "endpoint-health");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ScheduledFuture<?> healthChecks;
+
+    private volatile int unhealthyAfter = 2;
+
+    private volatile int probeTimeout = 2000;
+
+    private volatile boolean hedging = Boolean.getBoolean("lazyElement.hedge");
+
+    /**
+     * Gets the router used by the tests.
+     * It is built from the lazyElement.endpoints system property, http://127.0.0.1:4723 by default, and checks the
+     * health of every endpoint every ten seconds.
+     */
+    public static EndpointRouter getShared() {
+        EndpointRouter router = shared;
+        if (router == null) {
+            synchronized (EndpointRouter.class) {
+                router = shared;
+                if (router == null) {
+                    router = new EndpointRouter();
+                    for (String endpoint : System.getProperty("lazyElement.endpoints", "http://127.0.0.1:4723").split(",")) {
+                        if (!endpoint.trim().isEmpty()) {
+                            router.register(endpoint.trim());
+                        }
+                    }
+                    router.startHealthChecks(10, TimeUnit.SECONDS);
+                    shared = router;
+                }
+            }
+        }
+        return router;
+    }
+
+    /**
+     * Adds an endpoint.
+     *
+     * @param url The WinAppDriver URL, e.g. http://127.0.0.1:4723
+     * @return The endpoint
+     */
+    public Endpoint register(URL url) {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.getUrl().toString().equals(url.toString())) {
+                return endpoint;
+            }
+        }
+        Endpoint endpoint = new Endpoint(url);
+        endpoints.add(endpoint);
+        return endpoint;
+    }
+
+    /**
+     * Adds an endpoint.
+     *
+     * @param url The WinAppDriver URL, e.g. http://127.0.0.1:4723
+     * @return The endpoint
+     */
+    public Endpoint register(String url) {
+        try {
+            return register(new URL(url));
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid endpoint " + url, e);
+        }
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return Collections.unmodifiableList(endpoints);
+    }
+
+    /**
+     * Sets how many failed health checks or commands in a row make an endpoint unhealthy.
+     */
+    public void setUnhealthyAfter(int failures) {
+        this.unhealthyAfter = failures;
+    }
+
+    /**
+     * Sets the connect and read timeout of the health checks in milliseconds.
+     */
+    public void setProbeTimeout(int probeTimeout) {
+        this.probeTimeout = probeTimeout;
+    }
+
+    /**
+     * Turns hedging of slow find and read commands on or off for the sessions opened from now on. It is off unless
+     * the lazyElement.hedge system property is true. Duplicates go to the same session, so they only help with
+     * commands stalled on the way to or from the host; how often they are sent and the time they saved are part of
+     * the host's report.
+     *
+     * @see HedgedExecutor
+     */
+    public void setHedging(boolean hedging) {
+        this.hedging = hedging;
+    }
+
+    /**
+     * Takes an endpoint out of rotation by hand. Its open sessions are not affected.
+     */
+    public void drain(Endpoint endpoint) {
+        endpoint.setState(Endpoint.State.DRAINED);
+        log.info("Drained " + endpoint.getUrl());
+    }
+
+    /**
+     * Puts an endpoint drained by hand back into rotation.
+     */
+    public void restore(Endpoint endpoint) {
+        endpoint.setState(Endpoint.State.HEALTHY);
+    }
+
+    /**
+     * Opens a session on the best endpoint, moving on to the next best if the session cannot be created there.
+     * Sessions of a {@link RemoteWebDriver} are timed command by command and released when they quit, other
+     * drivers must be given back with {@link #release(WebDriver)}.
+     *
+     * @param factory Creates the session for an endpoint URL, e.g. {@code url -> new WindowsDriver<>(url, capabilities)}
+     * @return The new session
+     */
+    public <D extends WebDriver> D open(Function<URL, D> factory) {
+        List<Endpoint> tried = new ArrayList<>();
+        WebDriverException failure = null;
+        Endpoint endpoint;
+        while ((endpoint = place(tried)) != null) {
+            tried.add(endpoint);
+            long start = System.nanoTime();
+            D driver = null;
+            try {
+                driver = factory.apply(endpoint.getUrl());
+                endpoint.opened(System.nanoTime() - start);
+                placements.put(driver, endpoint);
+                if (driver instanceof RemoteWebDriver) {
+                    RemoteWebDriver remote = (RemoteWebDriver) driver;
+                    CommandExecutors.replace(remote, new TrackingExecutor(remote, remote.getCommandExecutor(), endpoint));
+                    if (hedging) {
+                        // On top of the tracking, so a duplicate takes its own permit from the host's limiter
+                        HedgedExecutor.install(remote).reportTo(endpoint);
+                    }
+                }
+                log.debug("Placed session on " + endpoint);
+                return driver;
+            } catch (RuntimeException e) {
+                if (driver != null) {
+                    // Taken out first, so quitting through the tracking does not release the endpoint twice
+                    placements.remove(driver);
+                    try {
+                        driver.quit();
+                    } catch (RuntimeException quitFailure) {
+                        log.warn("Failed to quit a session that could not be set up on " + endpoint.getUrl() + ": "
+                                + quitFailure.getMessage());
+                    }
+                }
+                endpoint.release();
+                failed(endpoint, e);
+                failure = e instanceof WebDriverException ? (WebDriverException) e : new WebDriverException(e);
+            }
+        }
+        throw new WebDriverException("No endpoint could open a session: " + endpoints, failure);
+    }
+
+    /**
+     * Gives back a session opened with {@link #open(Function)}.
+     *
+     * @param driver The session, after it quit
+     */
+    public void release(WebDriver driver) {
+        Endpoint endpoint = placements.remove(driver);
+        if (endpoint != null) {
+            endpoint.release();
+        }
+    }
+
+    /**
+     * Picks the healthy endpoint with the lowest score and reserves a session on it.
+     */
+    private synchronized Endpoint place(List<Endpoint> excluded) {
+        Endpoint best = null;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.getState() != Endpoint.State.HEALTHY || excluded.contains(endpoint)) {
+                continue;
+            }
+            if (best == null || endpoint.score() < best.score()
+                    || endpoint.score() == best.score() && endpoint.getSessions() < best.getSessions()) {
+                best = endpoint;
+            }
+        }
+        if (best != null) {
+            best.reserve();
+        }
+        return best;
+    }
+
+    private void failed(Endpoint endpoint, Exception e) {
+        int failures = endpoint.failed();
+        if (failures >= unhealthyAfter && endpoint.getState() == Endpoint.State.HEALTHY) {
+            endpoint.setState(Endpoint.State.UNHEALTHY);
+            log.warn("Draining " + endpoint.getUrl() + " after " + failures + " failures: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends GET /status to every endpoint that was not drained by hand, updating its latency and health.
+     */
+    public void checkHealth() {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.getState() == Endpoint.State.DRAINED) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                HttpURLConnection connection = (HttpURLConnection) statusUrl(endpoint.getUrl()).openConnection();
+                connection.setConnectTimeout(probeTimeout);
+                connection.setReadTimeout(probeTimeout);
+                try {
+                    int code = connection.getResponseCode();
+                    if (code / 100 != 2) {
+                        throw new IOException("GET /status answered " + code);
+                    }
+                } finally {
+                    connection.disconnect();
+                }
+                endpoint.checked(System.nanoTime() - start);
+                if (endpoint.getState() == Endpoint.State.UNHEALTHY) {
+                    endpoint.setState(Endpoint.State.HEALTHY);
+                    log.info(endpoint.getUrl() + " is healthy again");
+                }
+            } catch (IOException e) {
+                failed(endpoint, e);
+            }
+        }
+    }
+
+    /**
+     * Gets the kind of command a limiter compares the latency of a command with: its name and, for a find, its
+     * locator strategy, since a find by name walks the UI Automation tree while one by AutomationId does not
+     */
+    static String kindOf(Command command) {
+        Map<String, ?> parameters = command.getParameters();
+        Object using = parameters == null ? null : parameters.get("using");
+        return using == null ? command.getName() : command.getName() + " " + using;
+    }
+
+    private static URL statusUrl(URL endpoint) throws MalformedURLException {
+        String url = endpoint.toString();
+        return new URL(url.endsWith("/") ? url + "status" : url + "/status");
+    }
+
+    /**
+     * Checks the health of every endpoint in the background.
+     *
+     * @param period Time between checks
+     * @param unit   Unit of the period
+     */
+    public synchronized void startHealthChecks(long period, TimeUnit unit) {
+        stopHealthChecks();
+        healthChecks = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkHealth();
+            } catch (RuntimeException e) {
+                log.warn("Health check failed: " + e.getMessage());
+            }
+        }, 0, period, unit);
+    }
+
+    public synchronized void stopHealthChecks() {
+        if (healthChecks != null) {
+            healthChecks.cancel(false);
+            healthChecks = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("Endpoints:");
+        for (Endpoint endpoint : endpoints) {
+            report.append("\r\n  ").append(endpoint);
+        }
+        return report.toString();
+    }
+
+    /**
+     * Times the commands of a session placed by the router, holds them back while its endpoint has too many in
+     * flight, and gives the session back when it quits
+     */
+    private final class TrackingExecutor implements CommandExecutor {
+
+        private final WebDriver driver;
+
+        private final CommandExecutor delegate;
+
+        private final Endpoint endpoint;
+
+        private TrackingExecutor(WebDriver driver, CommandExecutor delegate, Endpoint endpoint) {
+            this.driver = driver;
+            this.delegate = delegate;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public Response execute(Command command) throws IOException {
+            ConcurrencyLimiter limiter = endpoint.getLimiter();
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while waiting to send " + command.getName(), e);
+            }
+            long start = System.nanoTime();
+            boolean answered = false;
+            try {
+                Response response = delegate.execute(command);
+                long nanos = System.nanoTime() - start;
+                answered = true;
+                limiter.release(kindOf(command), nanos);
+                endpoint.answered(nanos);
+                return response;
+            } catch (IOException | RuntimeException e) {
+                // The transport reports some failures to reach the host unchecked, e.g. as UnreachableBrowserException
+                failed(endpoint, e);
+                throw e;
+            } finally {
+                if (!answered) {
+                    limiter.dropped();
+                }
+                if (DriverCommand.QUIT.equals(command.getName())) {
+                    release(driver);
+                }
+            }
+        }
+    }
+}
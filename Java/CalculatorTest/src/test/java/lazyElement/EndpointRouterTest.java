@@ -0,0 +1,214 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+
+public class EndpointRouterTest {
+
+    private final List<StandInServer> servers = new ArrayList<>();
+
+    private EndpointRouter router;
+
+    @Before
+    public void setup() throws IOException {
+        router = new EndpointRouter();
+        for (int i = 0; i < 3; i++) {
+            StandInServer server = new StandInServer();
+            servers.add(server);
+            router.register(server.getUrl());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        router.stopHealthChecks();
+        for (StandInServer server : servers) {
+            server.close();
+        }
+    }
+
+    private Endpoint endpoint(int index) {
+        return router.getEndpoints().get(index);
+    }
+
+    @Test
+    public void SessionsAreSpreadAcrossEqualHosts() {
+        for (int i = 0; i < 6; i++) {
+            router.open(StandInServer::newSession);
+        }
+
+        // Untimed hosts are tried first, then their measured latencies are close enough to share the rest
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(router.toString(), servers.get(i).getSessions() >= 1 && servers.get(i).getSessions() <= 4);
+            Assert.assertEquals(servers.get(i).getSessions(), endpoint(i).getSessions());
+        }
+    }
+
+    @Test
+    public void FasterHostGetsMoreSessions() {
+        servers.get(0).setDelay(60);
+        servers.get(1).setDelay(60);
+        router.checkHealth();
+
+        for (int i = 0; i < 4; i++) {
+            router.open(StandInServer::newSession);
+        }
+
+        Assert.assertTrue(router.toString(), servers.get(2).getSessions() >= 3);
+    }
+
+    @Test
+    public void SlowCommandsOutweighAFastHealthCheck() {
+        // The host answers GET /status without its UI thread, which is busy with every command
+        for (int i = 0; i < 10; i++) {
+            endpoint(0).checked(TimeUnit.MILLISECONDS.toNanos(1));
+            endpoint(1).checked(TimeUnit.MILLISECONDS.toNanos(2));
+            endpoint(0).answered(TimeUnit.MILLISECONDS.toNanos(500));
+            endpoint(1).answered(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+
+        Assert.assertTrue(router.toString(), endpoint(0).score() > endpoint(1).score());
+        router.drain(endpoint(2));
+        router.open(StandInServer::newSession);
+        Assert.assertEquals(1, endpoint(1).getSessions());
+    }
+
+    @Test
+    public void SessionThatCannotBeSetUpIsQuit() {
+        router.drain(endpoint(1));
+        router.drain(endpoint(2));
+        AtomicInteger quits = new AtomicInteger();
+        CommandExecutor executor = command -> {
+            if (DriverCommand.QUIT.equals(command.getName())) {
+                quits.incrementAndGet();
+            }
+            Response response = new Response(new SessionId("1"));
+            response.setValue(Collections.emptyMap());
+            return response;
+        };
+
+        try {
+            router.open(url -> new RemoteWebDriver(executor, new DesiredCapabilities()) {
+                @Override
+                public CommandExecutor getCommandExecutor() {
+                    throw new WebDriverException("Cannot wrap the executor");
+                }
+            });
+            Assert.fail("The session could not be set up");
+        } catch (WebDriverException e) {
+            Assert.assertEquals(1, quits.get());
+            Assert.assertEquals(0, endpoint(0).getSessions());
+        }
+    }
+
+    @Test
+    public void ReleasedSessionsFreeTheirHost() {
+        router.drain(endpoint(1));
+        router.drain(endpoint(2));
+        WebDriver first = router.open(StandInServer::newSession);
+        router.open(StandInServer::newSession);
+        Assert.assertEquals(2, endpoint(0).getSessions());
+
+        router.release(first);
+
+        Assert.assertEquals(1, endpoint(0).getSessions());
+        Assert.assertEquals(2, endpoint(0).getPlaced());
+    }
+
+    @Test
+    public void UnhealthyHostIsDrainedAndRecovers() {
+        servers.get(0).setHealthy(false);
+        router.checkHealth();
+        router.checkHealth();
+        Assert.assertEquals(Endpoint.State.UNHEALTHY, endpoint(0).getState());
+
+        for (int i = 0; i < 4; i++) {
+            router.open(StandInServer::newSession);
+        }
+        Assert.assertEquals(0, servers.get(0).getSessions());
+
+        servers.get(0).setHealthy(true);
+        router.checkHealth();
+
+        Assert.assertEquals(Endpoint.State.HEALTHY, endpoint(0).getState());
+        router.open(StandInServer::newSession);
+        Assert.assertEquals(1, servers.get(0).getSessions());
+    }
+
+    @Test
+    public void FailedSessionMovesToNextHost() {
+        servers.get(0).setHealthy(false);
+        servers.get(1).setHealthy(false);
+        router.setUnhealthyAfter(1);
+
+        router.open(StandInServer::newSession);
+
+        Assert.assertEquals(1, servers.get(2).getSessions());
+        Assert.assertEquals(Endpoint.State.UNHEALTHY, endpoint(0).getState());
+        Assert.assertEquals(Endpoint.State.UNHEALTHY, endpoint(1).getState());
+        Assert.assertEquals(0, endpoint(0).getSessions());
+    }
+
+    @Test(expected = WebDriverException.class)
+    public void NoHealthyHostFails() {
+        for (int i = 0; i < 3; i++) {
+            router.drain(endpoint(i));
+        }
+
+        router.open(StandInServer::newSession);
+    }
+
+    @Test
+    public void BackgroundHealthChecksReachEveryHost() throws InterruptedException {
+        router.startHealthChecks(20, TimeUnit.MILLISECONDS);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (StandInServer server : servers) {
+            while (server.getStatusChecks() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(router.toString(), server.getStatusChecks() >= 2);
+            Assert.assertTrue(router.toString(), endpoint(servers.indexOf(server)).getHealthLatencyMillis() >= 0);
+        }
+    }
+
+    @Test
+    public void UncheckedTransportFailuresCountAgainstTheHost() {
+        router.drain(endpoint(1));
+        router.drain(endpoint(2));
+        router.setUnhealthyAfter(1);
+        // Opens the session, then fails every command the way a garbled answer does
+        RemoteWebDriver driver = router.open(url -> new RemoteWebDriver(command -> {
+            if (!DriverCommand.NEW_SESSION.equals(command.getName())) {
+                throw new WebDriverException("Unable to parse the answer to " + command.getName());
+            }
+            Response response = new Response(new SessionId("1"));
+            response.setValue(Collections.emptyMap());
+            return response;
+        }, new DesiredCapabilities()));
+
+        try {
+            driver.getTitle();
+            Assert.fail("The command cannot be answered");
+        } catch (WebDriverException e) {
+            Assert.assertEquals(Endpoint.State.UNHEALTHY, endpoint(0).getState());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package lazyElement;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Coalesces concurrent identical find requests.
+ * When several threads look up the same locator under the same parent at the same time, only the first one goes to
+ * the server and the others share its result or its error. Finds that do not overlap in time are never shared, so
+ * a find always returns what the server saw while it was in flight.
+ */
+public final class FindCoalescer {
+
+    /**
+     * The coalescer used by every lazy element
+     */
+    private static final FindCoalescer shared = new FindCoalescer();
+
+    /**
+     * Identifies a find: the search context, the locator and whether all matches were asked for
+     */
+    private static final class Key {
+        private final SearchContext context;
+        private final By by;
+        private final boolean all;
+
+        private Key(SearchContext context, By by, boolean all) {
+            this.context = context;
+            this.by = by;
+            this.all = all;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return all == key.all && context.equals(key.context) && by.equals(key.by);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * context.hashCode() + by.hashCode()) + (all ? 1 : 0);
+        }
+    }
+
+    private final ConcurrentMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder remoteCalls = new LongAdder();
+
+    private final LongAdder collapsed = new LongAdder();
+
+    /**
+     * Gets the coalescer shared by every lazy element
+     */
+    public static FindCoalescer getShared() {
+        return shared;
+    }
+
+    /**
+     * Finds the first element matching the locator, sharing the remote call with identical concurrent finds.
+     *
+     * @param context The driver or parent element to search
+     * @param by      The locating mechanism to use
+     * @return The first matching element
+     */
+    public WebElement findElement(SearchContext context, By by) throws NoSuchElementException {
+        return (WebElement) coalesce(new Key(context, by, false), () -> context.findElement(by));
+    }
+
+    /**
+     * Finds all elements matching the locator, sharing the remote call with identical concurrent finds.
+     *
+     * @param context The driver or parent element to search
+     * @param by      The locating mechanism to use
+     * @return All matching elements, callers must not modify the list
+     */
+    @SuppressWarnings("unchecked")
+    public List<WebElement> findElements(SearchContext context, By by) {
+        return (List<WebElement>) coalesce(new Key(context, by, true), () -> context.findElements(by));
+    }
+
+    private Object coalesce(Key key, Supplier<Object> remoteFind) {
+        this.requests.increment();
+        CompletableFuture<Object> find = new CompletableFuture<>();
+        CompletableFuture<Object> existing = this.inFlight.putIfAbsent(key, find);
+        if (existing != null) {
+            this.collapsed.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new NoSuchElementException(e.getLocalizedMessage(), e.getCause());
+            }
+        }
+
+        this.remoteCalls.increment();
+        try {
+            Object result = remoteFind.get();
+            find.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            find.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(key, find);
+        }
+    }
+
+    /**
+     * Gets the number of finds requested
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Gets the number of finds sent to the server
+     */
+    public long getRemoteCalls() {
+        return remoteCalls.sum();
+    }
+
+    /**
+     * Gets the number of finds that were served by a find already in flight
+     */
+    public long getCollapsed() {
+        return collapsed.sum();
+    }
+
+    /**
+     * Resets the counters
+     */
+    public void resetMetrics() {
+        requests.reset();
+        remoteCalls.reset();
+        collapsed.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "Finds requested: " + getRequests() + ", sent: " + getRemoteCalls() + ", collapsed: " + getCollapsed();
+    }
+}
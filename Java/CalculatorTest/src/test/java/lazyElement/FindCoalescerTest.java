@@ -0,0 +1,146 @@
+package lazyElement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebElement;
+
+public class FindCoalescerTest {
+
+    private static final int Threads = 16;
+
+    private final Logger logger = Logger.getLogger(FindCoalescerTest.class);
+
+    private StandInDriver driver;
+
+    private StandInElement window;
+
+    private ExecutorService pool;
+
+    @Before
+    public void setup() {
+        driver = new StandInDriver();
+        window = driver.window("Calculator");
+        window.add("One");
+        window.add("Seven");
+        pool = Executors.newFixedThreadPool(Threads);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private <T> List<Future<T>> startTogether(List<Callable<T>> tasks) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (Callable<T> task : tasks) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        return futures;
+    }
+
+    @Test
+    public void IdenticalConcurrentFindsShareOneRemoteCall() throws Exception {
+        FindCoalescer coalescer = new FindCoalescer();
+        driver.setFindLatency(300);
+
+        List<Callable<WebElement>> tasks = new ArrayList<>();
+        for (int i = 0; i < Threads; i++) {
+            tasks.add(() -> coalescer.findElement(window, By.name("One")));
+        }
+        for (Future<WebElement> result : startTogether(tasks)) {
+            Assert.assertEquals("One", result.get(30, TimeUnit.SECONDS).getAttribute("Name"));
+        }
+
+        Assert.assertEquals(Threads, coalescer.getRequests());
+        Assert.assertEquals(coalescer.getRequests(), coalescer.getRemoteCalls() + coalescer.getCollapsed());
+        Assert.assertTrue(coalescer.toString(), coalescer.getRemoteCalls() <= 3);
+    }
+
+    @Test
+    public void DifferentLocatorsAreNotShared() throws Exception {
+        FindCoalescer coalescer = new FindCoalescer();
+        driver.setFindLatency(200);
+
+        List<Callable<WebElement>> tasks = new ArrayList<>();
+        tasks.add(() -> coalescer.findElement(window, By.name("One")));
+        tasks.add(() -> coalescer.findElement(window, By.name("Seven")));
+        List<Future<WebElement>> results = startTogether(tasks);
+
+        Assert.assertEquals("One", results.get(0).get().getAttribute("Name"));
+        Assert.assertEquals("Seven", results.get(1).get().getAttribute("Name"));
+        Assert.assertEquals(2, coalescer.getRemoteCalls());
+        Assert.assertEquals(0, coalescer.getCollapsed());
+    }
+
+    @Test
+    public void FailureIsSharedWithCollapsedFinds() throws Exception {
+        FindCoalescer coalescer = new FindCoalescer();
+        driver.setFindLatency(200);
+
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < Threads; i++) {
+            tasks.add(() -> {
+                try {
+                    coalescer.findElement(window, By.name("Missing"));
+                    return false;
+                } catch (NoSuchElementException e) {
+                    return true;
+                }
+            });
+        }
+        for (Future<Boolean> failed : startTogether(tasks)) {
+            Assert.assertTrue(failed.get(30, TimeUnit.SECONDS));
+        }
+        Assert.assertTrue(coalescer.toString(), coalescer.getCollapsed() > 0);
+    }
+
+    @Test
+    public void SequentialFindsAreNotCached() {
+        FindCoalescer coalescer = new FindCoalescer();
+
+        coalescer.findElement(window, By.name("One"));
+        coalescer.findElement(window, By.name("One"));
+
+        Assert.assertEquals(2, coalescer.getRemoteCalls());
+        Assert.assertEquals(0, coalescer.getCollapsed());
+    }
+
+    @Test
+    public void SeparatePageObjectsShareFindsOfTheSameElement() throws Exception {
+        LazyElement container = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        container.getElement();
+        int findsBefore = driver.getFindCount();
+        driver.setFindLatency(300);
+
+        // Each thread builds its own page object, as parallel test instances do
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < Threads; i++) {
+            tasks.add(() -> new LazyElement(logger, container, By.name("One"), "Button One").getText());
+        }
+        for (Future<String> text : startTogether(tasks)) {
+            Assert.assertEquals("One", text.get(30, TimeUnit.SECONDS));
+        }
+
+        int finds = driver.getFindCount() - findsBefore;
+        Assert.assertTrue("Expected shared finds but saw " + finds, finds <= 3);
+    }
+}
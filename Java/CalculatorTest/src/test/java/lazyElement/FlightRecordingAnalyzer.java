@@ -0,0 +1,297 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Summarizes the lazy element events of a flight recording: the locators that took longest to resolve, the
+ * callers that waited longest and the slowest actions. Record with the lazy-element.jfc settings shipped next to
+ * the tests, then run {@link #main(String[])} on the recording.
+ * <p>
+ * Waits are grouped by the first frame of their stack trace outside GenericWait and the lazy elements, i.e. the
+ * test or page object line that waited, or by the kind of wait if the recording has no stack traces.
+ */
+public final class FlightRecordingAnalyzer {
+
+    /**
+     * Classes whose frames are skipped to find who waited
+     */
+    private static final String[] WaitInternals = {
+            WaitEvent.class.getName(), GenericWait.class.getName(), AbstractLazyWebElement.class.getName(),
+            LazyElement.class.getName()
+    };
+
+    /**
+     * The events recorded under one key
+     */
+    public static final class Hotspot {
+        private final String key;
+        private long count;
+        private long failures;
+        private long totalNanos;
+        private long maxNanos;
+        private long remoteNanos;
+        private long misses;
+        private long polls;
+        private long sleptMillis;
+
+        private Hotspot(String key) {
+            this.key = key;
+        }
+
+        private void add(Duration duration, boolean failed) {
+            long nanos = duration.toNanos();
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            if (failed) {
+                failures++;
+            }
+        }
+
+        /**
+         * Gets the locator, caller or action the events were grouped by
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the number of failed resolutions or actions, or of waits that did not meet their condition
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+        }
+
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos);
+        }
+
+        /**
+         * Gets the time resolutions spent in their own finds
+         */
+        public long getRemoteMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(remoteNanos);
+        }
+
+        /**
+         * Gets the number of resolutions that did not come from the cache
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Gets the number of times the waits checked their condition
+         */
+        public long getPolls() {
+            return polls;
+        }
+
+        /**
+         * Gets the time the waits slept between polls
+         */
+        public long getSleptMillis() {
+            return sleptMillis;
+        }
+    }
+
+    private final Map<String, Hotspot> locators = new HashMap<>();
+
+    private final Map<String, Hotspot> waits = new HashMap<>();
+
+    private final Map<String, Hotspot> actions = new HashMap<>();
+
+    private long resolutions;
+
+    private long waited;
+
+    private long acted;
+
+    /**
+     * Reads the lazy element events of a recording.
+     *
+     * @param recording The .jfr file
+     * @return The summary of its events
+     */
+    public static FlightRecordingAnalyzer analyze(Path recording) throws IOException {
+        FlightRecordingAnalyzer analyzer = new FlightRecordingAnalyzer();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                analyzer.accept(file.readEvent());
+            }
+        }
+        return analyzer;
+    }
+
+    /**
+     * Adds an event to the summary, ignoring anything but the lazy element events.
+     *
+     * @param event An event of a recording
+     */
+    public void accept(RecordedEvent event) {
+        switch (event.getEventType().getName()) {
+            case ResolutionEvent.NAME:
+                resolutions++;
+                Hotspot locator = hotspot(locators, event.getString("locator"));
+                locator.add(event.getDuration(), !event.getBoolean("succeeded"));
+                locator.remoteNanos += event.getDuration("remoteTime").toNanos();
+                if (!event.getBoolean("cacheHit")) {
+                    locator.misses++;
+                }
+                break;
+            case ActionEvent.NAME:
+                acted++;
+                hotspot(actions, event.getString("action") + " " + event.getString("locator"))
+                        .add(event.getDuration(), !event.getBoolean("succeeded"));
+                break;
+            case WaitEvent.NAME:
+                waited++;
+                Hotspot wait = hotspot(waits, caller(event));
+                wait.add(event.getDuration(), !WaitEvent.MET.equals(event.getString("outcome")));
+                wait.polls += event.getInt("polls");
+                wait.sleptMillis += event.getDuration("slept").toMillis();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Gets the locators that took longest to resolve in total, slowest first
+     *
+     * @param limit The most locators to return
+     */
+    public List<Hotspot> getSlowLocators(int limit) {
+        return top(locators, limit);
+    }
+
+    /**
+     * Gets the callers that waited longest in total, slowest first
+     *
+     * @param limit The most callers to return
+     */
+    public List<Hotspot> getWaitHotspots(int limit) {
+        return top(waits, limit);
+    }
+
+    /**
+     * Gets the actions, per locator, that took longest in total, slowest first
+     *
+     * @param limit The most actions to return
+     */
+    public List<Hotspot> getSlowActions(int limit) {
+        return top(actions, limit);
+    }
+
+    /**
+     * Formats the summary as tables of the top entries.
+     *
+     * @param limit The most rows of each table
+     * @return The report
+     */
+    public String report(int limit) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Slowest locators, of %d resolutions%n", resolutions));
+        report.append(String.format("%10s %8s %10s %7s %7s %7s  %s%n",
+                "total ms", "max ms", "remote ms", "count", "misses", "failed", "locator"));
+        for (Hotspot hotspot : getSlowLocators(limit)) {
+            report.append(String.format("%10d %8d %10d %7d %7d %7d  %s%n", hotspot.getTotalMillis(),
+                    hotspot.getMaxMillis(), hotspot.getRemoteMillis(), hotspot.count, hotspot.misses,
+                    hotspot.failures, hotspot.key));
+        }
+        report.append(String.format("%nWait hotspots, of %d waits%n", waited));
+        report.append(String.format("%10s %8s %10s %7s %7s %7s  %s%n",
+                "total ms", "max ms", "slept ms", "count", "polls", "unmet", "caller"));
+        for (Hotspot hotspot : getWaitHotspots(limit)) {
+            report.append(String.format("%10d %8d %10d %7d %7d %7d  %s%n", hotspot.getTotalMillis(),
+                    hotspot.getMaxMillis(), hotspot.sleptMillis, hotspot.count, hotspot.polls, hotspot.failures,
+                    hotspot.key));
+        }
+        report.append(String.format("%nSlowest actions, of %d actions%n", acted));
+        report.append(String.format("%10s %8s %7s %7s  %s%n", "total ms", "max ms", "count", "failed", "action"));
+        for (Hotspot hotspot : getSlowActions(limit)) {
+            report.append(String.format("%10d %8d %7d %7d  %s%n", hotspot.getTotalMillis(), hotspot.getMaxMillis(),
+                    hotspot.count, hotspot.failures, hotspot.key));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return report(10);
+    }
+
+    private static Hotspot hotspot(Map<String, Hotspot> hotspots, String key) {
+        return hotspots.computeIfAbsent(key == null ? "unknown" : key, Hotspot::new);
+    }
+
+    private static List<Hotspot> top(Map<String, Hotspot> hotspots, int limit) {
+        List<Hotspot> sorted = new ArrayList<>(hotspots.values());
+        sorted.sort(Comparator.comparingLong((Hotspot hotspot) -> hotspot.totalNanos).reversed()
+                .thenComparing(Hotspot::getKey));
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    /**
+     * Gets the first frame outside the waits and the lazy elements, e.g. "CalculatorTest.add line 42"
+     */
+    private static String caller(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace != null) {
+            for (RecordedFrame frame : stackTrace.getFrames()) {
+                if (!frame.isJavaFrame() || isWaitInternal(frame.getMethod().getType().getName())) {
+                    continue;
+                }
+                String type = frame.getMethod().getType().getName();
+                return type.substring(type.lastIndexOf('.') + 1) + "." + frame.getMethod().getName()
+                        + " line " + frame.getLineNumber();
+            }
+        }
+        return event.getString("kind");
+    }
+
+    private static boolean isWaitInternal(String type) {
+        for (String internal : WaitInternals) {
+            // Lambdas and nested classes of the internals too
+            if (type.equals(internal) || type.startsWith(internal + "$")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Prints the summary of a recording.
+     *
+     * @param args The .jfr file, and optionally the most rows of each table, 10 by default
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: FlightRecordingAnalyzer <recording.jfr> [rows]");
+            return;
+        }
+        System.out.print(analyze(Paths.get(args[0])).report(args.length > 1 ? Integer.parseInt(args[1]) : 10));
+    }
+}
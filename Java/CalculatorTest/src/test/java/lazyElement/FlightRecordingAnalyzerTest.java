@@ -0,0 +1,124 @@
+package lazyElement;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+
+public class FlightRecordingAnalyzerTest {
+
+    private final Logger logger = Logger.getLogger(FlightRecordingAnalyzerTest.class);
+
+    private TimeSource previousClock;
+
+    private Recording recording;
+
+    private Path file;
+
+    @Before
+    public void setup() throws Exception {
+        previousClock = GenericWait.setTimeSource(new VirtualTimeSource());
+        // Everything, however fast, so the stand-in's sub-millisecond interactions are recorded
+        recording = new Recording();
+        recording.enable(ResolutionEvent.class).withThreshold(Duration.ZERO);
+        recording.enable(ActionEvent.class).withThreshold(Duration.ZERO);
+        recording.enable(WaitEvent.class).withThreshold(Duration.ZERO).withStackTrace();
+        file = Files.createTempFile("lazy-element", ".jfr");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        GenericWait.setTimeSource(previousClock);
+        recording.close();
+        Files.deleteIfExists(file);
+    }
+
+    private FlightRecordingAnalyzer stopAndAnalyze() throws Exception {
+        recording.stop();
+        recording.dump(file);
+        return FlightRecordingAnalyzer.analyze(file);
+    }
+
+    @Test
+    public void ShippedSettingsRecordEveryEvent() throws Exception {
+        try (Reader settings = new InputStreamReader(
+                getClass().getResourceAsStream("lazy-element.jfc"), StandardCharsets.UTF_8)) {
+            Map<String, String> values = Configuration.create(settings).getSettings();
+
+            Assert.assertEquals("true", values.get(ResolutionEvent.NAME + "#enabled"));
+            Assert.assertEquals("true", values.get(ActionEvent.NAME + "#enabled"));
+            Assert.assertEquals("true", values.get(WaitEvent.NAME + "#enabled"));
+            Assert.assertEquals("true", values.get(WaitEvent.NAME + "#stackTrace"));
+            Assert.assertEquals("1 ms", values.get(ResolutionEvent.NAME + "#threshold"));
+        }
+    }
+
+    @Test
+    public void SummarizesResolutionsAndActions() throws Exception {
+        StandInDriver driver = new StandInDriver();
+        driver.window("Calculator").add("Seven");
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        LazyElement seven = new LazyElement(logger, window, By.name("Seven"), "Button Seven");
+        recording.start();
+
+        seven.click();
+        seven.click();
+        FlightRecordingAnalyzer analyzer = stopAndAnalyze();
+
+        List<FlightRecordingAnalyzer.Hotspot> locators = analyzer.getSlowLocators(10);
+        Assert.assertEquals(analyzer.toString(), 2, locators.size());
+        for (FlightRecordingAnalyzer.Hotspot locator : locators) {
+            // Each is found once, the window only for the button to be found under it
+            Assert.assertEquals(analyzer.toString(), 1, locator.getMisses());
+            Assert.assertEquals(0, locator.getFailures());
+            if (locator.getKey().equals(seven.getLocatorKey())) {
+                Assert.assertTrue(analyzer.toString(), locator.getCount() > 1);
+            } else {
+                Assert.assertEquals(window.getLocatorKey(), locator.getKey());
+                Assert.assertEquals(1, locator.getCount());
+            }
+        }
+        List<FlightRecordingAnalyzer.Hotspot> actions = analyzer.getSlowActions(10);
+        Assert.assertEquals(1, actions.size());
+        Assert.assertEquals("CLICK " + seven.getLocatorKey(), actions.get(0).getKey());
+        Assert.assertEquals(2, actions.get(0).getCount());
+    }
+
+    @Test
+    public void WaitsAreGroupedByCaller() throws Exception {
+        recording.start();
+
+        GenericWait.wait(() -> false, 100, 1000, false);
+        GenericWait.wait(() -> true, 100, 1000, false);
+        FlightRecordingAnalyzer analyzer = stopAndAnalyze();
+
+        List<FlightRecordingAnalyzer.Hotspot> waits = analyzer.getWaitHotspots(10);
+        Assert.assertEquals(analyzer.toString(), 2, waits.size());
+        long polls = 0;
+        long slept = 0;
+        long unmet = 0;
+        for (FlightRecordingAnalyzer.Hotspot wait : waits) {
+            Assert.assertTrue(wait.getKey(), wait.getKey().startsWith("FlightRecordingAnalyzerTest.WaitsAreGroupedByCaller line "));
+            polls += wait.getPolls();
+            slept += wait.getSleptMillis();
+            unmet += wait.getFailures();
+        }
+        // Ten polls and sleeps to time out under the virtual clock, and one poll to meet the condition
+        Assert.assertEquals(11, polls);
+        Assert.assertEquals(1000, slept);
+        Assert.assertEquals(1, unmet);
+    }
+}
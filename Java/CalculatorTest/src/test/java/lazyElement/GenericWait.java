@@ -4,15 +4,15 @@
 
 package lazyElement;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
 import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 /**
- * Generic Wait class.
+ * Generic Wait class. Every wait is a {@link WaitEvent} in a flight recording that enables it.
  */
 public final class GenericWait {
 
@@ -24,14 +24,82 @@ public final class GenericWait {
     }
 
     /**
-     * Default retry time for the configuration file.
+     * Default retry time for the configuration file, overridden by the lazyElement.retryTime system property.
      */
-    private static long retryTimeFromConfig = 1000;
+    private static volatile long retryTimeFromConfig = Long.getLong("lazyElement.retryTime", 1000);
 
     /**
-     * Default timeout time from the configuration file.
+     * Default timeout time from the configuration file, overridden by the lazyElement.timeout system property.
      */
-    private static long timeoutFromConfig = 10000;
+    private static volatile long timeoutFromConfig = Long.getLong("lazyElement.timeout", 10000);
+
+    /**
+     * Clock and sleeper used by every wait, the system clock unless a test swaps in a virtual one.
+     */
+    private static volatile TimeSource timeSource = TimeSource.SYSTEM;
+
+    /**
+     * Gets the time source used by the waits.
+     *
+     * @return The current time source
+     */
+    public static TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    /**
+     * Sets the time source used by the waits.
+     *
+     * @param source The new time source, {@link TimeSource#SYSTEM} to restore the system clock
+     * @return The previous time source
+     */
+    public static TimeSource setTimeSource(TimeSource source) {
+        TimeSource previous = timeSource;
+        timeSource = source == null ? TimeSource.SYSTEM : source;
+        return previous;
+    }
+
+    /**
+     * Gets the retry time used by the waits that do not take one.
+     *
+     * @return The default retry time in milliseconds
+     */
+    public static long getRetryTime() {
+        return retryTimeFromConfig;
+    }
+
+    /**
+     * Sets the retry time used by the waits that do not take one.
+     *
+     * @param retryTime The default retry time in milliseconds
+     */
+    public static void setRetryTime(long retryTime) {
+        if (retryTime < 0) {
+            throw new IllegalArgumentException("Retry time cannot be negative: " + retryTime);
+        }
+        retryTimeFromConfig = retryTime;
+    }
+
+    /**
+     * Gets the timeout used by the waits that do not take one.
+     *
+     * @return The default timeout in milliseconds
+     */
+    public static long getTimeout() {
+        return timeoutFromConfig;
+    }
+
+    /**
+     * Sets the timeout used by the waits that do not take one.
+     *
+     * @param timeout The default timeout in milliseconds
+     */
+    public static void setTimeout(long timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative: " + timeout);
+        }
+        timeoutFromConfig = timeout;
+    }
 
     /**
      * Wait until the wait for true function returns true or times out.
@@ -89,30 +157,36 @@ public final class GenericWait {
      * @return if it returned before the timeout occurred
      */
     public static <T> T waitUntilMatch(Supplier<T> waitForTrue, T comparativeValue) throws InterruptedException {
-        // Set start time and exception holder
-        LocalDateTime start = LocalDateTime.now();
+        // Set the deadline and exception holder
+        long deadline = deadlineAfter(timeoutFromConfig);
+        WaitEvent event = WaitEvent.start("waitUntilMatch", retryTimeFromConfig, timeoutFromConfig);
 
         T value = waitForTrue.get();
+        event.polls++;
 
         // Checks if the two values are equal
         boolean paramsAreEqual = paramsEqual(value, comparativeValue);
 
         // While the params are not equal & the timeout hasn't met, keep checking
-        while (!paramsAreEqual && (ChronoUnit.MILLIS.between(start, LocalDateTime.now())) < timeoutFromConfig) {
+        while (!paramsAreEqual && beforeDeadline(deadline)) {
             // If they aren't, wait
-            Thread.sleep(retryTimeFromConfig);
+            timeSource.sleep(retryTimeFromConfig);
+            event.slept += retryTimeFromConfig;
 
             value = waitForTrue.get();
+            event.polls++;
 
             // Check if they are equal
             // (running them through another function because we can't use an operator with
             // T)
             if (paramsEqual(value, comparativeValue)) {
+                event.finish(WaitEvent.MET);
                 return value;
             }
         }
 
         // return the value regardless
+        event.finish(paramsAreEqual ? WaitEvent.MET : WaitEvent.TIMED_OUT);
         return value;
     }
 
@@ -126,13 +200,16 @@ public final class GenericWait {
      * @return True if the wait for true function returned true before timing out
      */
     public static boolean waitForAny(long retryTime, long timeout, BooleanSupplier... waitForTrues) {
-        // Set end time
-        LocalDateTime endTime = LocalDateTime.now().plus(timeout, ChronoUnit.MILLIS);
+        // Set the deadline
+        long deadline = deadlineAfter(timeout);
+        WaitEvent event = WaitEvent.start("waitForAny", retryTime, timeout);
         do {
+            event.polls++;
             for (BooleanSupplier waitForTrue : waitForTrues) {
                 try {
                     // Check if the function returns true
                     if (waitForTrue.getAsBoolean()) {
+                        event.finish(WaitEvent.MET);
                         return true;
                     }
                 } catch (Exception e) {
@@ -142,11 +219,12 @@ public final class GenericWait {
             // Give the system a second before checking if the page is updating
             try {
 
-                Thread.sleep(retryTime);
-
+                timeSource.sleep(retryTime);
+                event.slept += retryTime;
             } catch (Exception e) {
             }
-        } while (LocalDateTime.now().isBefore(endTime));
+        } while (beforeDeadline(deadline));
+        event.finish(WaitEvent.TIMED_OUT);
         System.out.println("Timed out");
         System.out.println("!!!!!!");
         System.out.println("!!!!!!");
@@ -171,20 +249,24 @@ public final class GenericWait {
      */
     public static <T> T waitUntilMatch(Supplier<T> waitForTrue, long retryTime, long timeout, T comparativeValue)
             throws InterruptedException {
-        // Set start time and exception holder
-        LocalDateTime start = LocalDateTime.now();
+        // Set the deadline and exception holder
+        long deadline = deadlineAfter(timeout);
+        WaitEvent event = WaitEvent.start("waitUntilMatch", retryTime, timeout);
 
         T value = waitForTrue.get();
+        event.polls++;
 
         // Checks if the two values are equal
         boolean paramsAreEqual = paramsEqual(value, comparativeValue);
 
         // While the params are not equal & the timeout hasn't met, keep checking
-        while (!paramsAreEqual && (ChronoUnit.MILLIS.between(start, LocalDateTime.now())) < timeout) {
+        while (!paramsAreEqual && beforeDeadline(deadline)) {
             // If they aren't, wait
-            Thread.sleep(retryTime);
+            timeSource.sleep(retryTime);
+            event.slept += retryTime;
 
             value = waitForTrue.get();
+            event.polls++;
 
             // Check if they are equal
             // (running them through another function because we can't use an operator with
@@ -193,6 +275,7 @@ public final class GenericWait {
         }
 
         // return the value regardless
+        event.finish(paramsAreEqual ? WaitEvent.MET : WaitEvent.TIMED_OUT);
         return value;
     }
 
@@ -204,23 +287,28 @@ public final class GenericWait {
      * @param comparativeValue value of the same type as T
      */
     public static <T> void waitForMatch(Supplier<T> waitForTrue, T comparativeValue) throws Exception {
-        // Set start time and exception holder
-        LocalDateTime start = LocalDateTime.now();
+        // Set the deadline and exception holder
+        long deadline = deadlineAfter(timeoutFromConfig);
+        WaitEvent event = WaitEvent.start("waitForMatch", retryTimeFromConfig, timeoutFromConfig);
 
         // Checks if the two values are equal
         boolean paramsAreEqual = paramsEqual(waitForTrue.get(), comparativeValue);
+        event.polls++;
 
         // While the params are not equal & the timeout hasn't met, keep checking
-        while (!paramsAreEqual && (ChronoUnit.MILLIS.between(start, LocalDateTime.now())) < timeoutFromConfig) {
+        while (!paramsAreEqual && beforeDeadline(deadline)) {
             // If they aren't, wait
-            Thread.sleep(retryTimeFromConfig);
+            timeSource.sleep(retryTimeFromConfig);
+            event.slept += retryTimeFromConfig;
 
             // Check if they are equal
             // (running them through another function because we can't use an operator with
             // T
             paramsAreEqual = paramsEqual(waitForTrue.get(), comparativeValue);
+            event.polls++;
         }
 
+        event.finish(paramsAreEqual ? WaitEvent.MET : WaitEvent.TIMED_OUT);
         if (!paramsAreEqual) {
             throw new Exception("Timed out waiting for the supplier to return expected value of " + comparativeValue);
         }
@@ -237,22 +325,27 @@ public final class GenericWait {
      */
     public static <T> void waitForMatch(Supplier<T> waitForTrue, long retryTime, long timeout, T comparativeValue)
             throws InterruptedException, Exception {
-        // Set start time and exception holder
-        LocalDateTime start = LocalDateTime.now();
+        // Set the deadline and exception holder
+        long deadline = deadlineAfter(timeout);
+        WaitEvent event = WaitEvent.start("waitForMatch", retryTime, timeout);
 
         // Checks if the two values are equal
         boolean paramsAreEqual = paramsEqual(waitForTrue.get(), comparativeValue);
+        event.polls++;
 
         // While the params are not equal & the timeout hasn't met, keep checking
-        while (!paramsAreEqual && (ChronoUnit.MILLIS.between(start, LocalDateTime.now())) < timeout) {
+        while (!paramsAreEqual && beforeDeadline(deadline)) {
             // Check if they are equal (running them through another function because we
             // can't use an operator with T
             paramsAreEqual = paramsEqual(waitForTrue.get(), comparativeValue);
+            event.polls++;
 
             // If they aren't, wait
-            Thread.sleep(retryTime);
+            timeSource.sleep(retryTime);
+            event.slept += retryTime;
         }
 
+        event.finish(paramsAreEqual ? WaitEvent.MET : WaitEvent.TIMED_OUT);
         if (!paramsAreEqual) {
             throw new Exception("Timed out waiting for the supplier to return the expected value of " + comparativeValue);
         }
@@ -295,9 +388,10 @@ public final class GenericWait {
      */
     public static <T> boolean wait(Predicate<T> waitForTrue, long retryTime, long timeout, boolean throwException, T arg)
             throws Exception {
-        // Set start time and exception holder
-        LocalDateTime start = LocalDateTime.now();
+        // Set the deadline and exception holder
+        long deadline = deadlineAfter(timeout);
         Exception exception = null;
+        WaitEvent event = WaitEvent.start("wait", retryTime, timeout);
 
         do {
             try {
@@ -305,23 +399,27 @@ public final class GenericWait {
                 exception = null;
 
                 // Check if the function returns true
+                event.polls++;
                 if (waitForTrue.test(arg)) {
+                    event.finish(WaitEvent.MET);
                     return true;
                 }
             } catch (Exception e) {
-                // Save of the exception if we want to throw exceptions
+                // Save of the exception if we want to throw exceptions, it is only wrapped once we give up
                 if (throwException) {
-                    exception = new Exception("Predicate exception caught.", e);
+                    exception = e;
                 }
             }
 
             // Give the system a second before checking if the page is updating
-            Thread.sleep(retryTime);
-        } while ((ChronoUnit.MILLIS.between(start, LocalDateTime.now())) < timeout);
+            timeSource.sleep(retryTime);
+            event.slept += retryTime;
+        } while (beforeDeadline(deadline));
 
         // Check if we had an exceptions
+        event.finish(throwException && exception != null ? WaitEvent.FAILED : WaitEvent.TIMED_OUT);
         if (throwException && exception != null) {
-            throw exception;
+            throw new Exception("Predicate exception caught.", exception);
         }
 
         // We timed out waiting for the function to return true
@@ -356,9 +454,10 @@ public final class GenericWait {
      */
     public static boolean wait(BooleanSupplier waitForTrue, long retryTime, long timeout, boolean throwException)
             throws Exception {
-        // Set start time and exception holder
-        LocalDateTime start = LocalDateTime.now();
+        // Set the deadline and exception holder
+        long deadline = deadlineAfter(timeout);
         Exception exception = null;
+        WaitEvent event = WaitEvent.start("wait", retryTime, timeout);
 
         do {
             try {
@@ -366,23 +465,27 @@ public final class GenericWait {
                 exception = null;
 
                 // Check if the function returns true
+                event.polls++;
                 if (waitForTrue.getAsBoolean()) {
+                    event.finish(WaitEvent.MET);
                     return true;
                 }
             } catch (Exception e) {
-                // Save of the exception if we want to throw exceptions
+                // Save of the exception if we want to throw exceptions, it is only wrapped once we give up
                 if (throwException) {
-                    exception = new Exception("BooleanSupplier exception caught.", e);
+                    exception = e;
                 }
             }
 
             // Give the system a second before checking if the page is updating
-            Thread.sleep(retryTime);
-        } while (ChronoUnit.MILLIS.between(start, LocalDateTime.now()) < timeout);
+            timeSource.sleep(retryTime);
+            event.slept += retryTime;
+        } while (beforeDeadline(deadline));
 
         // Check if we had an exceptions
+        event.finish(throwException && exception != null ? WaitEvent.FAILED : WaitEvent.TIMED_OUT);
         if (throwException && exception != null) {
-            throw exception;
+            throw new Exception("BooleanSupplier exception caught.", exception);
         }
 
         // We timed out waiting for the function to return true
@@ -400,20 +503,27 @@ public final class GenericWait {
      * @return Return value of the wait for function
      */
     public static <T> T wait(Supplier<T> waitFor, long retryTime, long timeout) throws Exception {
-        // Set start time and exception holder
-        LocalDateTime start = LocalDateTime.now();
+        // Set the deadline and exception holder
+        long deadline = deadlineAfter(timeout);
         Exception exception;
+        WaitEvent event = WaitEvent.start("wait", retryTime, timeout);
 
         do {
             try {
-                return waitFor.get();
+                event.polls++;
+                T value = waitFor.get();
+                event.finish(WaitEvent.MET);
+                return value;
             } catch (Exception e) {
                 exception = e;
             }
 
             // Give the system a second before checking if the page is updating
-            Thread.sleep(retryTime);
-        } while ((ChronoUnit.MILLIS.between(start, LocalDateTime.now())) < timeout);
+            timeSource.sleep(retryTime);
+            event.slept += retryTime;
+        } while (beforeDeadline(deadline));
+
+        event.finish(WaitEvent.FAILED);
 
         throw new Exception("Timed out waiting for the supplier to return", exception);
     }
@@ -430,24 +540,97 @@ public final class GenericWait {
      * @return Return value of the wait for function
      */
     public static <T, U> T wait(Function<U, T> waitFor, long retryTime, long timeout, U arg) throws Exception {
-        // Set start time and exception holder
-        LocalDateTime start = LocalDateTime.now();
+        // Set the deadline and exception holder
+        long deadline = deadlineAfter(timeout);
         Exception exception;
+        WaitEvent event = WaitEvent.start("wait", retryTime, timeout);
 
         do {
             try {
-                return waitFor.apply(arg);
+                event.polls++;
+                T value = waitFor.apply(arg);
+                event.finish(WaitEvent.MET);
+                return value;
             } catch (Exception e) {
                 exception = e;
             }
 
             // Give the system a second before checking if the page is updating
-            Thread.sleep(retryTime);
-        } while ((ChronoUnit.MILLIS.between(start, LocalDateTime.now())) < timeout);
+            timeSource.sleep(retryTime);
+            event.slept += retryTime;
+        } while (beforeDeadline(deadline));
+
+        event.finish(WaitEvent.FAILED);
 
         throw new Exception("Timed out waiting for the function to return", exception);
     }
 
+    /**
+     * Waits until a sampled value stops changing, e.g. the screenshot of an element that is still animating.
+     * Each sample is compared with the first one of the current run of matching samples, so a slow drift does not
+     * pass as stable.
+     *
+     * @param sample    Takes the next sample
+     * @param same      Tells if a sample matches the first one of the run
+     * @param frames    Successive matching samples needed, at least 2
+     * @param retryTime How long to wait between samples
+     * @param timeout   Max timeout for the check
+     * @return True if the samples settled before timing out
+     */
+    public static <T> boolean waitUntilStable(Supplier<T> sample, BiPredicate<? super T, ? super T> same, int frames,
+                                              long retryTime, long timeout) throws InterruptedException {
+        if (frames < 2) {
+            throw new IllegalArgumentException("At least 2 frames are needed to tell if they match: " + frames);
+        }
+        long deadline = deadlineAfter(timeout);
+        WaitEvent event = WaitEvent.start("waitUntilStable", retryTime, timeout);
+        T first = sample.get();
+        int matching = 1;
+        event.polls++;
+
+        while (beforeDeadline(deadline)) {
+            timeSource.sleep(retryTime);
+            event.slept += retryTime;
+
+            T next = sample.get();
+            event.polls++;
+            if (same.test(first, next)) {
+                if (++matching >= frames) {
+                    event.finish(WaitEvent.MET);
+                    return true;
+                }
+            } else {
+                // Still changing, start a new run from this sample
+                first = next;
+                matching = 1;
+            }
+        }
+
+        // It never held still for long enough
+        event.finish(WaitEvent.TIMED_OUT);
+        return false;
+    }
+
+    /**
+     * Gets the time source deadline that is timeout milliseconds from now.
+     *
+     * @param timeout Timeout in milliseconds
+     * @return The deadline in nanoseconds
+     */
+    private static long deadlineAfter(long timeout) {
+        return timeSource.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * Checks if the deadline is still in the future, overflow safe.
+     *
+     * @param deadline Deadline from {@link #deadlineAfter(long)}
+     * @return True if the deadline has not been reached
+     */
+    private static boolean beforeDeadline(long deadline) {
+        return timeSource.nanoTime() - deadline < 0;
+    }
+
     /**
      * Checks that the objects all match.
      *
@@ -0,0 +1,71 @@
+package lazyElement;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cost of one GenericWait poll.
+ * Every invocation fails {@link #Polls} times before the condition passes and the retry time is zero, so the
+ * score is the loop overhead per poll. Run {@link #main(String[])} to get gc.alloc.rate.norm per poll, which
+ * should stay close to zero bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GenericWaitBenchmark {
+
+    /**
+     * Failed polls before each wait succeeds
+     */
+    public static final int Polls = 100;
+
+    /**
+     * Shared failure without a stack trace, so only the wait loop's own allocations are measured
+     */
+    private static final RuntimeException NotReady = new RuntimeException("Not ready", null, false, false) {
+    };
+
+    private int remaining;
+
+    private final BooleanSupplier falseUntilReady = () -> --remaining < 0;
+
+    private final BooleanSupplier throwUntilReady = () -> {
+        if (--remaining >= 0) {
+            throw NotReady;
+        }
+        return true;
+    };
+
+    @Benchmark
+    @OperationsPerInvocation(Polls)
+    public boolean pollReturningFalse() throws Exception {
+        remaining = Polls;
+        return GenericWait.wait(falseUntilReady, 0, 60000, true);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Polls)
+    public boolean pollThrowing() throws Exception {
+        remaining = Polls;
+        return GenericWait.wait(throwUntilReady, 0, 60000, true);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GenericWaitBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,130 @@
+package lazyElement;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+
+public class GenericWaitTest {
+
+    private final Logger logger = Logger.getLogger(GenericWaitTest.class);
+
+    private VirtualTimeSource clock;
+
+    private TimeSource previous;
+
+    private LocatorTimings previousTimings;
+
+    private long wallStart;
+
+    @Before
+    public void setup() {
+        clock = new VirtualTimeSource();
+        previous = GenericWait.setTimeSource(clock);
+        previousTimings = LocatorTimings.setShared(new LocatorTimings(null));
+        wallStart = System.nanoTime();
+    }
+
+    @After
+    public void tearDown() {
+        GenericWait.setTimeSource(previous);
+        LocatorTimings.setShared(previousTimings);
+        long wallMillis = (System.nanoTime() - wallStart) / 1000000;
+        Assert.assertTrue("Virtual waits took " + wallMillis + " ms of wall time", wallMillis < 5000);
+    }
+
+    @Test
+    public void WaitTimesOutAfterVirtualTimeout() throws Exception {
+        AtomicInteger polls = new AtomicInteger();
+
+        boolean result = GenericWait.wait(() -> {
+            polls.incrementAndGet();
+            return false;
+        }, AbstractLazyWebElement.Retrytime, AbstractLazyWebElement.Timeout, false);
+
+        Assert.assertFalse(result);
+        Assert.assertEquals(AbstractLazyWebElement.Timeout, clock.elapsedMillis());
+        Assert.assertEquals(30, polls.get());
+    }
+
+    @Test
+    public void WaitReturnsOnceConditionIsMet() throws Exception {
+        boolean result = GenericWait.wait(() -> clock.elapsedMillis() >= 5000, 1000, 30000, true);
+
+        Assert.assertTrue(result);
+        Assert.assertEquals(5000, clock.elapsedMillis());
+        Assert.assertEquals(5, clock.getSleeps());
+    }
+
+    @Test
+    public void WaitThrowsLastFailureOnTimeout() throws Exception {
+        AtomicInteger polls = new AtomicInteger();
+
+        try {
+            GenericWait.wait(() -> {
+                throw new IllegalStateException("Poll " + polls.incrementAndGet());
+            }, 500, 2000, true);
+            Assert.fail("Expected the wait to throw");
+        } catch (Exception e) {
+            Assert.assertEquals("BooleanSupplier exception caught.", e.getMessage());
+            Assert.assertEquals("Poll " + polls.get(), e.getCause().getMessage());
+            Assert.assertNull(e.getCause().getCause());
+        }
+    }
+
+    @Test
+    public void WaitForSupplierRetriesUntilValue() throws Exception {
+        String value = GenericWait.wait(() -> {
+            if (clock.elapsedMillis() < 3000) {
+                throw new NoSuchElementException("Not yet");
+            }
+            return "Ready";
+        }, 1000, 10000);
+
+        Assert.assertEquals("Ready", value);
+        Assert.assertEquals(3000, clock.elapsedMillis());
+    }
+
+    @Test
+    public void WaitUntilMatchReturnsLastValueOnTimeout() throws Exception {
+        String value = GenericWait.waitUntilMatch(() -> "7", 250, 1000, "8");
+
+        Assert.assertEquals("7", value);
+        Assert.assertEquals(1000, clock.elapsedMillis());
+    }
+
+    @Test(expected = Exception.class)
+    public void WaitForMatchThrowsOnTimeout() throws Exception {
+        GenericWait.waitForMatch(() -> "0", "8");
+    }
+
+    @Test
+    public void WaitForAnyChecksEveryCondition() {
+        AtomicInteger second = new AtomicInteger();
+
+        boolean result = GenericWait.waitForAny(100, 1000, () -> false, () -> second.incrementAndGet() == 3);
+
+        Assert.assertTrue(result);
+        Assert.assertEquals(200, clock.elapsedMillis());
+    }
+
+    @Test
+    public void MissingLazyElementFailsAfterFullTimeoutInstantly() {
+        StandInDriver driver = new StandInDriver();
+        driver.window("Calculator");
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        LazyElement missing = new LazyElement(logger, window, By.name("Missing"), "Missing button");
+
+        try {
+            missing.getText();
+            Assert.fail("Expected the missing element to time out");
+        } catch (NoSuchElementException e) {
+            Assert.assertEquals(AbstractLazyWebElement.Timeout, clock.elapsedMillis());
+        }
+    }
+}
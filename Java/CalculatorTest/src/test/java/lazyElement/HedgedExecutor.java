@@ -0,0 +1,412 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * Sends a duplicate of a slow find or read command and answers with whichever copy returns first.
+ * Only commands that can safely run twice are hedged. The duplicate is sent once the command has been in flight
+ * longer than a percentile of the recent latencies of its kind, so only the slow tail is duplicated, and never
+ * more often than a budget share of the commands. The duplicate goes through the hedge executor, by default the
+ * same executor, whose HTTP client takes another connection from its pool for it.
+ * <p>
+ * Element ids belong to the session that found them, so the duplicate goes to the same WinAppDriver session, which
+ * serves its commands one at a time. A duplicate therefore wins when the original's request or answer stalled on
+ * the way, e.g. a dropped connection or a stuck proxy, but not when WinAppDriver itself is slow to answer, e.g. on a
+ * UI Automation hiccup: there the duplicate queues behind the original and only adds load. The budget bounds that
+ * load.
+ * <p>
+ * A command that cannot be hedged, because its kind has too little history or the budget is used up, runs on the
+ * caller's thread. Only one that may be hedged runs on a pool thread, so the caller can take the duplicate's answer
+ * without waiting for the original, whose blocking HTTP call cannot be abandoned.
+ */
+public final class HedgedExecutor implements CommandExecutor {
+
+    private static final Logger log = Logger.getLogger(HedgedExecutor.class);
+
+    /**
+     * Commands that read state only, so running them twice does no harm
+     */
+    private static final Set<String> Idempotent = new HashSet<>(Arrays.asList(
+            DriverCommand.FIND_ELEMENT, DriverCommand.FIND_ELEMENTS,
+            DriverCommand.FIND_CHILD_ELEMENT, DriverCommand.FIND_CHILD_ELEMENTS,
+            DriverCommand.GET_ELEMENT_TEXT, DriverCommand.GET_ELEMENT_ATTRIBUTE, DriverCommand.GET_ELEMENT_TAG_NAME,
+            DriverCommand.IS_ELEMENT_ENABLED, DriverCommand.IS_ELEMENT_DISPLAYED, DriverCommand.IS_ELEMENT_SELECTED,
+            DriverCommand.GET_ELEMENT_LOCATION, DriverCommand.GET_ELEMENT_SIZE, DriverCommand.GET_ELEMENT_RECT));
+
+    /**
+     * Latencies kept per command
+     */
+    private static final int Window = 200;
+
+    /**
+     * Latencies needed before a command is hedged
+     */
+    private static final int MinSamples = 20;
+
+    /**
+     * Most unused hedges saved up for a burst of slow commands
+     */
+    private static final double MaxTokens = 10;
+
+    private static final ExecutorService pool = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "hedged-command");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Recent latencies of one command
+     */
+    private static final class Latencies {
+        private final long[] samples = new long[Window];
+        private int count;
+        private int next;
+
+        private synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % Window;
+            if (count < Window) {
+                count++;
+            }
+        }
+
+        private synchronized long percentile(double percent) {
+            if (count < MinSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percent / 100 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, rank))];
+        }
+    }
+
+    private final CommandExecutor primary;
+
+    private final CommandExecutor hedge;
+
+    private final ConcurrentMap<String, Latencies> latencies = new ConcurrentHashMap<>();
+
+    private volatile double percentile = 95;
+
+    private volatile long minDelay = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private volatile double budget = 0.05;
+
+    private double tokens;
+
+    private final LongAdder commands = new LongAdder();
+
+    private final LongAdder hedgeable = new LongAdder();
+
+    private final LongAdder hedged = new LongAdder();
+
+    private final LongAdder hedgeWins = new LongAdder();
+
+    private final LongAdder overBudget = new LongAdder();
+
+    private final LongAdder savedNanos = new LongAdder();
+
+    /**
+     * Host whose report the hedging is added to, null if none
+     */
+    private volatile Endpoint endpoint;
+
+    /**
+     * Initializes a new instance of the {@link HedgedExecutor} class that sends duplicates through the same executor
+     *
+     * @param primary The executor that runs the commands
+     */
+    public HedgedExecutor(CommandExecutor primary) {
+        this(primary, primary);
+    }
+
+    /**
+     * Initializes a new instance of the {@link HedgedExecutor} class
+     *
+     * @param primary The executor that runs the commands
+     * @param hedge   The executor duplicates are sent through, talking to the same session, as element ids of
+     *                another session would not be known
+     */
+    public HedgedExecutor(CommandExecutor primary, CommandExecutor hedge) {
+        this.primary = primary;
+        this.hedge = hedge;
+    }
+
+    /**
+     * Starts hedging the commands of a running driver.
+     *
+     * @param driver The driver, e.g. the WindowsDriver behind the lazy elements
+     * @return The hedging executor, for its settings and report
+     */
+    public static HedgedExecutor install(RemoteWebDriver driver) {
+        HedgedExecutor executor = new HedgedExecutor(driver.getCommandExecutor());
+        CommandExecutors.replace(driver, executor);
+        return executor;
+    }
+
+    /**
+     * Adds the commands, duplicates and time saved to the report of the host the session runs on.
+     *
+     * @param endpoint The host
+     */
+    void reportTo(Endpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Sets the percentile of a command's recent latencies after which a duplicate is sent.
+     *
+     * @param percentile Between 50 and 100
+     */
+    public void setPercentile(double percentile) {
+        if (percentile < 50 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 50 and 100: " + percentile);
+        }
+        this.percentile = percentile;
+    }
+
+    /**
+     * Sets the shortest time a command is in flight before a duplicate is sent.
+     *
+     * @param millis Time in milliseconds
+     */
+    public void setMinDelay(long millis) {
+        this.minDelay = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Sets the most duplicates sent, as a share of all commands.
+     *
+     * @param budget Between 0 and 1
+     */
+    public void setBudget(double budget) {
+        if (budget < 0 || budget > 1) {
+            throw new IllegalArgumentException("Budget must be between 0 and 1: " + budget);
+        }
+        this.budget = budget;
+    }
+
+    @Override
+    public Response execute(Command command) throws IOException {
+        commands.increment();
+        Endpoint host = endpoint;
+        if (host != null) {
+            host.hedgingSaw();
+        }
+        earn();
+        if (!Idempotent.contains(command.getName())) {
+            if (DriverCommand.QUIT.equals(command.getName())) {
+                log.info(this);
+            }
+            return primary.execute(command);
+        }
+        hedgeable.increment();
+        Latencies history = latencies.computeIfAbsent(command.getName(), key -> new Latencies());
+        long delay = history.percentile(percentile);
+
+        long start = System.nanoTime();
+        if (delay < 0 || !canSpend()) {
+            // Too little history to tell what is slow, or no duplicate could be sent anyway
+            Response response = primary.execute(command);
+            long nanos = System.nanoTime() - start;
+            history.add(nanos);
+            if (delay >= 0 && nanos > Math.max(delay, minDelay)) {
+                overBudget.increment();
+            }
+            return response;
+        }
+
+        CompletableFuture<Response> first = CompletableFuture.supplyAsync(() -> run(primary, command), pool);
+        first.thenRun(() -> history.add(System.nanoTime() - start));
+
+        try {
+            return first.get(Math.max(delay, minDelay), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (!spend()) {
+                overBudget.increment();
+                return await(first);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebDriverException("Interrupted while waiting for " + command.getName(), e);
+        } catch (ExecutionException e) {
+            return rethrow(e.getCause());
+        }
+
+        hedged.increment();
+        if (host != null) {
+            host.hedged();
+        }
+        log.debug("Hedging " + command.getName() + " after " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        CompletableFuture<Response> second = CompletableFuture.supplyAsync(() -> run(hedge, command), pool);
+        CompletableFuture<Response> answer = new CompletableFuture<>();
+        // The first copy to answer wins. Only once both failed does the command fail, with the original's failure
+        AtomicBoolean answered = new AtomicBoolean();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicReference<Throwable> originalFailure = new AtomicReference<>();
+        first.whenComplete((response, failure) -> {
+            if (failure == null) {
+                if (answered.compareAndSet(false, true)) {
+                    answer.complete(response);
+                }
+            } else {
+                originalFailure.set(failure);
+                if (failed.incrementAndGet() == 2) {
+                    answer.completeExceptionally(failure);
+                }
+            }
+        });
+        second.whenComplete((response, failure) -> {
+            if (failure == null) {
+                if (answered.compareAndSet(false, true)) {
+                    long elapsed = System.nanoTime() - start;
+                    hedgeWins.increment();
+                    first.thenRun(() -> {
+                        long saved = Math.max(0, System.nanoTime() - start - elapsed);
+                        savedNanos.add(saved);
+                        if (host != null) {
+                            host.hedgeSaved(saved);
+                        }
+                    });
+                    answer.complete(response);
+                }
+            } else if (failed.incrementAndGet() == 2) {
+                answer.completeExceptionally(originalFailure.get());
+            }
+        });
+        return await(answer);
+    }
+
+    private static Response run(CommandExecutor executor, Command command) {
+        try {
+            return executor.execute(command);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Response await(CompletableFuture<Response> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            return rethrow(e.getCause());
+        }
+    }
+
+    private static Response rethrow(Throwable cause) throws IOException {
+        if (cause instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) cause).getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new WebDriverException(cause);
+    }
+
+    /**
+     * Every command earns a budget share of a duplicate
+     */
+    private synchronized void earn() {
+        tokens = Math.min(MaxTokens, tokens + budget);
+    }
+
+    private synchronized boolean canSpend() {
+        return tokens >= 1;
+    }
+
+    private synchronized boolean spend() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    public long getCommands() {
+        return commands.sum();
+    }
+
+    /**
+     * Gets the number of duplicates sent
+     */
+    public long getHedged() {
+        return hedged.sum();
+    }
+
+    /**
+     * Gets the number of hedged commands answered by the duplicate or before the original
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Gets the number of slow commands that were not duplicated because the budget was used up
+     */
+    public long getOverBudget() {
+        return overBudget.sum();
+    }
+
+    /**
+     * Gets the share of all commands that were duplicated
+     */
+    public double getHedgeRate() {
+        long total = getCommands();
+        return total == 0 ? 0 : (double) getHedged() / total;
+    }
+
+    /**
+     * Gets the time saved by hedging, measured for the originals that answered after the duplicate
+     */
+    public long getSavedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(savedNanos.sum());
+    }
+
+    /**
+     * Gets the delay after which a command is currently hedged.
+     *
+     * @param command The command name, e.g. {@link DriverCommand#FIND_ELEMENT}
+     * @return Delay in milliseconds, or -1 if the command is not hedged yet
+     */
+    public long getDelayMillis(String command) {
+        Latencies history = latencies.get(command);
+        long delay = history == null || !Idempotent.contains(command) ? -1 : history.percentile(percentile);
+        return delay < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(Math.max(delay, minDelay));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Hedging: %d commands, %d hedgeable, %d hedged (%.1f%%), %d won, %d over budget, %d ms saved",
+                getCommands(), hedgeable.sum(), getHedged(), getHedgeRate() * 100, getHedgeWins(), getOverBudget(),
+                getSavedMillis());
+    }
+}
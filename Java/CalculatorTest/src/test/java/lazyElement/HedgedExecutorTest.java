@@ -0,0 +1,224 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+
+public class HedgedExecutorTest {
+
+    private final SessionId session = new SessionId("1");
+
+    private final AtomicInteger sent = new AtomicInteger();
+
+    /**
+     * Latency of the next commands sent, by their order from now on
+     */
+    private volatile long[] latencies = new long[0];
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Answers after the latency planned for it, 5 ms if none was
+     */
+    private final CommandExecutor server = command -> {
+        sent.incrementAndGet();
+        int index = next.getAndIncrement();
+        long[] planned = latencies;
+        sleep(index < planned.length ? planned[index] : 5);
+        Response response = new Response(session);
+        response.setValue(command.getName() + " " + index);
+        return response;
+    };
+
+    private HedgedExecutor executor;
+
+    @Before
+    public void setup() throws IOException {
+        executor = new HedgedExecutor(server);
+        for (int i = 0; i < 20; i++) {
+            executor.execute(find());
+        }
+        sent.set(0);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Command find() {
+        return new Command(session, DriverCommand.FIND_ELEMENT);
+    }
+
+    private void plan(long... millis) {
+        next.set(0);
+        latencies = millis;
+    }
+
+    @Test
+    public void SlowFindIsAnsweredByTheDuplicate() throws IOException {
+        plan(1000, 5);
+
+        long start = System.nanoTime();
+        Response response = executor.execute(find());
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        Assert.assertEquals("findElement 1", response.getValue());
+        Assert.assertTrue(millis + " ms", millis < 500);
+        Assert.assertEquals(2, sent.get());
+        Assert.assertEquals(1, executor.getHedged());
+        Assert.assertEquals(1, executor.getHedgeWins());
+        Assert.assertTrue(executor.toString(), executor.toString().contains("1 hedged"));
+    }
+
+    @Test
+    public void HedgingIsReportedOnTheHost() throws IOException {
+        Endpoint endpoint = new Endpoint(new URL("http://127.0.0.1:4723"));
+        executor.reportTo(endpoint);
+        plan(300, 5, 5);
+
+        executor.execute(find());
+        executor.execute(find());
+
+        Assert.assertEquals(0.5, endpoint.getHedgeRate(), 0.01);
+        // Saved once the original answers too
+        long deadline = System.nanoTime() + 2000000000L;
+        while (endpoint.getHedgeSavedMillis() == 0 && System.nanoTime() < deadline) {
+            sleep(10);
+        }
+        Assert.assertTrue(endpoint.toString(), endpoint.getHedgeSavedMillis() > 0);
+        Assert.assertTrue(endpoint.toString(), endpoint.toString().contains("50.0% of commands hedged"));
+    }
+
+    @Test
+    public void FastFindIsNotDuplicated() throws IOException {
+        plan(5);
+
+        executor.execute(find());
+
+        Assert.assertEquals(1, sent.get());
+        Assert.assertEquals(0, executor.getHedged());
+        Assert.assertTrue(executor.getDelayMillis(DriverCommand.FIND_ELEMENT) >= 5);
+    }
+
+    @Test
+    public void CommandsWithSideEffectsAreNeverDuplicated() throws IOException {
+        plan(300, 5);
+
+        executor.execute(new Command(session, DriverCommand.CLICK_ELEMENT));
+
+        Assert.assertEquals(1, sent.get());
+        Assert.assertEquals(-1, executor.getDelayMillis(DriverCommand.CLICK_ELEMENT));
+    }
+
+    @Test
+    public void DuplicatesStayWithinTheBudget() throws IOException {
+        HedgedExecutor budgeted = new HedgedExecutor(server);
+        budgeted.setBudget(0.25);
+        for (int i = 0; i < 20; i++) {
+            budgeted.execute(find());
+        }
+        // Every original is slow and every duplicate fast
+        plan(300, 5, 300, 5, 300, 5, 300, 5, 300, 5, 300, 5, 300);
+
+        for (int i = 0; i < 7; i++) {
+            budgeted.execute(find());
+        }
+
+        // Five duplicates earned by the first 20 commands, a quarter of one by each of the next
+        Assert.assertEquals(budgeted.toString(), 6, budgeted.getHedged());
+        Assert.assertEquals(budgeted.toString(), 1, budgeted.getOverBudget());
+        Assert.assertEquals(6.0 / 27, budgeted.getHedgeRate(), 0.001);
+    }
+
+    @Test
+    public void FailedOriginalFallsBackToTheDuplicate() throws IOException {
+        AtomicInteger failures = new AtomicInteger();
+        CommandExecutor flaky = command -> {
+            if (failures.getAndDecrement() > 0) {
+                sleep(200);
+                throw new IOException("Connection reset");
+            }
+            return server.execute(command);
+        };
+        HedgedExecutor hedged = new HedgedExecutor(flaky, server);
+        for (int i = 0; i < 20; i++) {
+            hedged.execute(find());
+        }
+        plan(5);
+        failures.set(1);
+
+        Assert.assertEquals("findElement 0", hedged.execute(find()).getValue());
+        Assert.assertEquals(1, hedged.getHedgeWins());
+    }
+
+    @Test
+    public void OriginalFailingFirstWaitsForTheDuplicate() throws IOException {
+        AtomicInteger failures = new AtomicInteger();
+        CommandExecutor flaky = command -> {
+            if (failures.getAndDecrement() > 0) {
+                sleep(30);
+                throw new IOException("Connection reset");
+            }
+            return server.execute(command);
+        };
+        HedgedExecutor hedged = new HedgedExecutor(flaky, server);
+        for (int i = 0; i < 20; i++) {
+            hedged.execute(find());
+        }
+        // The duplicate goes out after 10 ms and answers well after the original failed
+        plan(200);
+        failures.set(1);
+
+        Assert.assertEquals("findElement 0", hedged.execute(find()).getValue());
+        Assert.assertEquals(1, hedged.getHedgeWins());
+    }
+
+    @Test(expected = IOException.class)
+    public void FailsWhenBothCopiesFail() throws IOException {
+        AtomicBoolean down = new AtomicBoolean();
+        CommandExecutor failing = command -> {
+            if (down.get()) {
+                sleep(50);
+                throw new IOException("Connection reset");
+            }
+            return server.execute(command);
+        };
+        HedgedExecutor hedged = new HedgedExecutor(failing);
+        for (int i = 0; i < 20; i++) {
+            hedged.execute(find());
+        }
+        down.set(true);
+
+        hedged.execute(find());
+    }
+
+    @Test
+    public void FailedDuplicateLeavesTheOriginalToAnswer() throws IOException {
+        CommandExecutor failing = command -> {
+            sleep(50);
+            throw new IOException("Connection reset");
+        };
+        HedgedExecutor hedged = new HedgedExecutor(server, failing);
+        for (int i = 0; i < 20; i++) {
+            hedged.execute(find());
+        }
+        plan(100);
+
+        Assert.assertEquals("findElement 0", hedged.execute(find()).getValue());
+        Assert.assertEquals(0, hedged.getHedgeWins());
+    }
+}
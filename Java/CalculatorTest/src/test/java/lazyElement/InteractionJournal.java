@@ -0,0 +1,337 @@
+package lazyElement;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Records every lazy element interaction as a typed event in a preallocated ring buffer.
+ * Recording takes a sequence with a single atomic increment and claims its slot with a compare-and-set, then fills it
+ * in place, without locks, string building or allocation, so it is cheap enough to leave on under parallel load. A background thread drains the events to a
+ * compact tab separated file, and {@link #dump()} gives the most recent events, e.g. when a test fails. When the
+ * drain falls a whole buffer behind, the oldest events are overwritten and counted as lost.
+ */
+public final class InteractionJournal {
+
+    private static final Logger log = Logger.getLogger(InteractionJournal.class);
+
+    /**
+     * What an interaction did
+     */
+    public enum Operation {
+        FIND, CLICK, DOUBLE_CLICK, SEND_KEYS, CLEAR, SUBMIT, GET_ATTRIBUTE, GET_TEXT, GET_CSS_VALUE, GET_RECT,
+        IS_DISPLAYED, GET_SCREENSHOT, IS_ENABLED, IS_SELECTED, GET_SIZE, GET_TAG_NAME, GET_LOCATION
+    }
+
+    /**
+     * Journal every lazy element records to, drained to the file named by the lazyElement.journal system property
+     */
+    private static volatile InteractionJournal shared;
+
+    /**
+     * Sequence of a slot being written
+     */
+    private static final long Writing = -1;
+
+    /**
+     * Sequence of a slot never written
+     */
+    private static final long Empty = Long.MIN_VALUE;
+
+    /**
+     * One event. A writer claims the slot by setting its sequence to {@link #Writing}, so there is only ever one, and
+     * a reader can tell a torn event from a complete one. The fields are volatile so they cannot be reordered around
+     * the sequence checks.
+     */
+    private static final class Slot {
+        private static final AtomicLongFieldUpdater<Slot> Sequence =
+                AtomicLongFieldUpdater.newUpdater(Slot.class, "sequence");
+
+        private volatile long sequence = Empty;
+        private volatile long epochMillis;
+        private volatile long threadId;
+        private volatile long nanos;
+        private volatile Operation operation;
+        private volatile boolean succeeded;
+        private volatile String element;
+        private volatile String locator;
+        private volatile String detail;
+
+        private boolean claim(long current) {
+            return Sequence.compareAndSet(this, current, Writing);
+        }
+    }
+
+    private final Slot[] slots;
+
+    private final int mask;
+
+    private final AtomicLong next = new AtomicLong();
+
+    private final LongAdder lost = new LongAdder();
+
+    private final Path file;
+
+    private final Thread drainer;
+
+    /**
+     * Sequence of the next event to drain, guarded by {@link #drain()}
+     */
+    private long drained;
+
+    private volatile boolean closed;
+
+    /**
+     * Initializes a new instance of the {@link InteractionJournal} class
+     *
+     * @param capacity Events kept, rounded up to a power of two
+     * @param file     The file events are appended to, or null to keep them in the buffer only
+     */
+    public InteractionJournal(int capacity, Path file) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.file = file;
+        if (file == null) {
+            this.drainer = null;
+        } else {
+            this.drainer = new Thread(this::drainLoop, "interaction-journal");
+            this.drainer.setDaemon(true);
+            this.drainer.start();
+        }
+    }
+
+    /**
+     * Gets the journal every lazy element records to.
+     * It keeps the last lazyElement.journalSize events, 8192 by default, and drains them to the file named by the
+     * lazyElement.journal system property, target/interaction-journal.txt by default, until the JVM exits.
+     */
+    public static InteractionJournal getShared() {
+        InteractionJournal journal = shared;
+        if (journal == null) {
+            synchronized (InteractionJournal.class) {
+                journal = shared;
+                if (journal == null) {
+                    InteractionJournal created = new InteractionJournal(Integer.getInteger("lazyElement.journalSize", 8192),
+                            Paths.get(System.getProperty("lazyElement.journal", "target/interaction-journal.txt")));
+                    Runtime.getRuntime().addShutdownHook(new Thread(created::close, "interaction-journal-close"));
+                    shared = created;
+                    journal = created;
+                }
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Sets the journal every lazy element records to.
+     *
+     * @param journal The new journal, null to go back to the default one
+     * @return The previous journal, null if the default one was never created
+     */
+    public static InteractionJournal setShared(InteractionJournal journal) {
+        synchronized (InteractionJournal.class) {
+            InteractionJournal previous = shared;
+            shared = journal;
+            return previous;
+        }
+    }
+
+    /**
+     * Records an interaction that just finished.
+     *
+     * @param operation What the interaction did
+     * @param element   The element's user friendly name
+     * @param locator   The element's locator key
+     * @param detail    The attribute or property asked for, or null
+     * @param startNanos {@link System#nanoTime()} when the interaction started
+     * @param succeeded Whether the interaction succeeded
+     */
+    public void record(Operation operation, String element, String locator, String detail, long startNanos,
+                       boolean succeeded) {
+        long nanos = System.nanoTime() - startNanos;
+        long sequence = next.getAndIncrement();
+        Slot slot = slots[(int) sequence & mask];
+        while (true) {
+            long current = slot.sequence;
+            if (current > sequence) {
+                // A whole buffer later event got the slot first, this one is as good as overwritten
+                return;
+            }
+            if (current != Writing && slot.claim(current)) {
+                break;
+            }
+            // Another writer holds the slot for a moment
+            Thread.yield();
+        }
+        slot.epochMillis = System.currentTimeMillis();
+        slot.threadId = Thread.currentThread().getId();
+        slot.nanos = nanos;
+        slot.operation = operation;
+        slot.succeeded = succeeded;
+        slot.element = element;
+        slot.locator = locator;
+        slot.detail = detail;
+        slot.sequence = sequence;
+    }
+
+    /**
+     * Gets the number of events recorded
+     */
+    public long getRecorded() {
+        return next.get();
+    }
+
+    /**
+     * Gets the number of events overwritten before they were drained
+     */
+    public long getLost() {
+        return lost.sum();
+    }
+
+    /**
+     * Gets the events still in the buffer, oldest first, one line each.
+     *
+     * @return The events, in the same format as the journal file
+     */
+    public String dump() {
+        return dump(0);
+    }
+
+    /**
+     * Gets the events still in the buffer from a point on, oldest first, one line each.
+     *
+     * @param from The first event, as returned by {@link #getRecorded()} at that point
+     * @return The events, in the same format as the journal file
+     */
+    public String dump(long from) {
+        long end = next.get();
+        StringBuilder dump = new StringBuilder();
+        for (long sequence = Math.max(from, end - slots.length); sequence < end; sequence++) {
+            format(sequence, dump);
+        }
+        return dump.toString();
+    }
+
+    /**
+     * Appends one event if its slot still holds it, completely written.
+     *
+     * @return Whether the event was appended
+     */
+    private boolean format(long sequence, StringBuilder line) {
+        Slot slot = slots[(int) sequence & mask];
+        if (slot.sequence != sequence) {
+            return false;
+        }
+        long epochMillis = slot.epochMillis;
+        long threadId = slot.threadId;
+        long nanos = slot.nanos;
+        Operation operation = slot.operation;
+        boolean succeeded = slot.succeeded;
+        String element = slot.element;
+        String locator = slot.locator;
+        String detail = slot.detail;
+        if (slot.sequence != sequence) {
+            return false;
+        }
+        line.append(epochMillis).append('\t').append(threadId).append('\t').append(operation)
+                .append('\t').append(succeeded ? "ok" : "failed")
+                .append('\t').append(TimeUnit.NANOSECONDS.toMicros(nanos))
+                .append('\t').append(escape(element)).append('\t').append(escape(locator))
+                .append('\t').append(detail == null ? "" : escape(detail)).append('\n');
+        return true;
+    }
+
+    private void drainLoop() {
+        while (!closed) {
+            try {
+                drain();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to drain the interaction journal to " + file + ": " + e.getMessage());
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * Appends the events recorded since the last drain to the file.
+     */
+    synchronized void drain() throws IOException {
+        long end = next.get();
+        if (end == drained || file == null) {
+            return;
+        }
+        if (end - drained > slots.length) {
+            lost.add(end - slots.length - drained);
+            drained = end - slots.length;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (; drained < end; drained++) {
+            if (!format(drained, lines)) {
+                if (slots[(int) drained & mask].sequence == Writing) {
+                    // Still being written, pick it up on the next drain
+                    break;
+                }
+                // Overwritten by a later event, or never written because one got the slot first
+                lost.increment();
+            }
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.append(lines);
+        }
+    }
+
+    /**
+     * Stops the background drain after a last one.
+     */
+    public void close() {
+        closed = true;
+        if (drainer != null) {
+            LockSupport.unpark(drainer);
+            try {
+                drainer.join(1000);
+                drain();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                log.warn("Failed to drain the interaction journal to " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Interaction journal: %d events recorded, %d lost, %d kept", getRecorded(), getLost(),
+                slots.length);
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf('\t') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0 && value.indexOf('\\') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+}
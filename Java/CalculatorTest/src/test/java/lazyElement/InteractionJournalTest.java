@@ -0,0 +1,195 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+
+public class InteractionJournalTest {
+
+    private final Logger logger = Logger.getLogger(InteractionJournalTest.class);
+
+    private Path directory;
+
+    private InteractionJournal journal;
+
+    private InteractionJournal previousJournal;
+
+    private LocatorTimings previousTimings;
+
+    private TimeSource previousClock;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        journal = new InteractionJournal(1024, null);
+        previousJournal = InteractionJournal.setShared(journal);
+        previousTimings = LocatorTimings.setShared(new LocatorTimings(null));
+        previousClock = GenericWait.setTimeSource(new VirtualTimeSource());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        InteractionJournal.setShared(previousJournal);
+        LocatorTimings.setShared(previousTimings);
+        GenericWait.setTimeSource(previousClock);
+        try (Stream<Path> files = Files.walk(directory)) {
+            List<Path> paths = new ArrayList<>();
+            files.forEach(paths::add);
+            for (int i = paths.size() - 1; i >= 0; i--) {
+                Files.deleteIfExists(paths.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void LazyElementInteractionsAreJournaled() {
+        StandInDriver driver = new StandInDriver();
+        driver.window("Calculator").add("One").attribute("AutomationId", "num1Button");
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        LazyElement one = new LazyElement(logger, window, By.name("One"), "Button One");
+
+        one.click();
+        one.getAttribute("AutomationId");
+        try {
+            new LazyElement(logger, window, By.name("Missing"), "Missing button").click();
+            Assert.fail("Missing button was clicked");
+        } catch (NoSuchElementException e) {
+            // Journaled as failed
+        }
+
+        String dump = journal.dump();
+        Assert.assertTrue(dump, dump.contains("\tFIND\tok\t"));
+        Assert.assertTrue(dump, dump.contains("\tCLICK\tok\t"));
+        Assert.assertTrue(dump, dump.contains("\tButton One\tBy.name: Calculator > By.name: One\t\n"));
+        Assert.assertTrue(dump, dump.contains("\tGET_ATTRIBUTE\tok\t"));
+        Assert.assertTrue(dump, dump.contains("\tAutomationId\n"));
+        Assert.assertTrue(dump, dump.contains("\tCLICK\tfailed\t"));
+        Assert.assertTrue(dump, dump.contains("\tMissing button\t"));
+    }
+
+    @Test
+    public void BatchedClicksAreJournaled() {
+        StandInDriver driver = new StandInDriver();
+        StandInElement calculator = driver.window("Calculator");
+        calculator.add("One");
+        calculator.add("Plus");
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+
+        LazyActions.sequence(new LazyElement(logger, window, By.name("One"), "Button One"),
+                new LazyElement(logger, window, By.name("Plus"), "Button Plus")).click();
+
+        String dump = journal.dump();
+        Assert.assertTrue(dump, dump.contains("\tCLICK\tok\t"));
+        Assert.assertTrue(dump, dump.contains("\tButton One\tBy.name: Calculator > By.name: One\t\n"));
+        Assert.assertTrue(dump, dump.contains("\tButton Plus\tBy.name: Calculator > By.name: Plus\t\n"));
+    }
+
+    @Test
+    public void OldestEventsAreOverwritten() {
+        InteractionJournal small = new InteractionJournal(4, null);
+        for (int i = 0; i < 10; i++) {
+            small.record(InteractionJournal.Operation.GET_TEXT, "Result " + i, "By.name: Result", null, System.nanoTime(), true);
+        }
+
+        String dump = small.dump();
+
+        Assert.assertEquals(4, dump.split("\n").length);
+        Assert.assertTrue(dump, dump.contains("Result 6") && dump.contains("Result 9") && !dump.contains("Result 5"));
+    }
+
+    @Test
+    public void BackgroundDrainWritesEveryEventOrCountsItLost() throws Exception {
+        Path file = directory.resolve("journal.txt");
+        InteractionJournal drained = new InteractionJournal(1024, file);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    drained.record(InteractionJournal.Operation.CLICK, "Button", "By.name: One", null, System.nanoTime(), true);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        drained.close();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Assert.assertEquals(drained.toString(), 20000, lines.size() + drained.getLost());
+        for (String line : lines) {
+            Assert.assertTrue(line, line.endsWith("\tCLICK\tok\t" + line.split("\t")[4] + "\tButton\tBy.name: One\t"));
+        }
+    }
+
+    @Test
+    public void LappedWritersNeitherTearNorHideEvents() throws Exception {
+        // Writers a whole buffer apart keep landing on the same slot
+        Path file = directory.resolve("lapped.txt");
+        InteractionJournal lapped = new InteractionJournal(4, file);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            String element = "Button " + t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    lapped.record(InteractionJournal.Operation.CLICK, element, "By.name: " + element, element,
+                            System.nanoTime(), true);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        lapped.close();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Assert.assertEquals(lapped.toString(), 40000, lines.size() + lapped.getLost());
+        for (String line : lines) {
+            String[] fields = line.split("\t", -1);
+            Assert.assertEquals(line, "By.name: " + fields[5], fields[6]);
+            Assert.assertEquals(line, fields[5], fields[7]);
+        }
+    }
+
+    @Test
+    public void FailedTestIsDumped() throws Throwable {
+        JournalDumpRule rule = new JournalDumpRule(directory);
+        journal.record(InteractionJournal.Operation.CLICK, "Before the test", "By.name: One", null, System.nanoTime(), true);
+        Statement test = new Statement() {
+            @Override
+            public void evaluate() {
+                journal.record(InteractionJournal.Operation.CLICK, "Button\tOne", "By.name: One", null, System.nanoTime(), false);
+                throw new AssertionError("Expected 8");
+            }
+        };
+
+        try {
+            rule.apply(test, Description.createTestDescription(InteractionJournalTest.class, "Addition")).evaluate();
+            Assert.fail("The test passed");
+        } catch (AssertionError e) {
+            Assert.assertEquals("Expected 8", e.getMessage());
+        }
+
+        String dump = new String(Files.readAllBytes(rule.getLastDump()), StandardCharsets.UTF_8);
+        Assert.assertTrue(dump, dump.contains("\tCLICK\tfailed\t"));
+        Assert.assertTrue(dump, dump.contains("\tButton\\tOne\t"));
+        Assert.assertFalse(dump, dump.contains("Before the test"));
+    }
+}
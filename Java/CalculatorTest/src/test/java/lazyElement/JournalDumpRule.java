@@ -0,0 +1,101 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.openqa.selenium.TakesScreenshot;
+
+/**
+ * Dumps the interactions of a failed test from the {@link InteractionJournal}.
+ * The events recorded while the test ran are written to a file named after the test, in the directory named by the
+ * lazyElement.journalDumps system property, target/journal by default, and the file is logged. Given a driver, it
+ * also queues a screenshot of the failure to the {@link ScreenshotPipeline}.
+ * <p>
+ * Declare it in a test class with {@code @Rule public JournalDumpRule journal = new JournalDumpRule();}
+ */
+public class JournalDumpRule extends TestWatcher {
+
+    private static final Logger log = Logger.getLogger(JournalDumpRule.class);
+
+    private final Path directory;
+
+    private long start;
+
+    private Path lastDump;
+
+    private Supplier<? extends TakesScreenshot> screenshots;
+
+    public JournalDumpRule() {
+        this(Paths.get(System.getProperty("lazyElement.journalDumps", "target/journal")));
+    }
+
+    /**
+     * Initializes a new instance of the {@link JournalDumpRule} class
+     *
+     * @param directory The directory dumps are written to
+     */
+    public JournalDumpRule(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Also captures a screenshot of each failure.
+     *
+     * @param source Gets the driver to capture, null while there is none
+     * @return This rule
+     */
+    public JournalDumpRule withScreenshots(Supplier<? extends TakesScreenshot> source) {
+        this.screenshots = source;
+        return this;
+    }
+
+    @Override
+    protected void starting(Description description) {
+        start = InteractionJournal.getShared().getRecorded();
+    }
+
+    @Override
+    protected void failed(Throwable e, Description description) {
+        InteractionJournal journal = InteractionJournal.getShared();
+        String events = journal.dump(start);
+        String name = description.getDisplayName().replaceAll("[^\\w.()-]", "_");
+        captureScreenshot(name);
+        Path dump = directory.resolve(name + ".journal.txt");
+        try {
+            Files.createDirectories(directory);
+            Files.write(dump, events.getBytes(StandardCharsets.UTF_8));
+            lastDump = dump;
+            log.error(description.getDisplayName() + " failed, its interactions are in " + dump.toAbsolutePath());
+        } catch (IOException ioe) {
+            log.error(description.getDisplayName() + " failed, its interactions:\r\n" + events);
+        }
+    }
+
+    private void captureScreenshot(String name) {
+        TakesScreenshot source = screenshots == null ? null : screenshots.get();
+        if (source == null) {
+            return;
+        }
+        try {
+            if (!ScreenshotPipeline.getShared().capture(source, name)) {
+                log.warn("Dropped the screenshot of " + name + ", the screenshot queue is full");
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to capture a screenshot of " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the file the last failed test was dumped to, or null if no test failed
+     */
+    public Path getLastDump() {
+        return lastDump;
+    }
+}
@@ -22,6 +22,13 @@ public interface Lazy<T> extends Supplier<T> {
             }
             return instance;
         }
+
+        /**
+         * Gets the number of cached instances. Entries are never removed, so this grows with every new Lazy
+         */
+        public static synchronized int size() {
+            return instances.size();
+        }
     }
 
     @Override
@@ -0,0 +1,218 @@
+package lazyElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Runs a sequence of interactions on lazy elements as one batch.
+ * Every target is resolved and checked for actionability up front, in parallel, once per distinct element. The
+ * interactions are then sent back to back. Only a step that fails, or whose element was not actionable, falls
+ * back to the element's own waiting and retrying path.
+ */
+public final class LazyActions {
+
+    /**
+     * Pool resolving the targets of a sequence in parallel
+     */
+    private static final ExecutorService resolver = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "lazy-actions");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Hide the default constructor.
+     */
+    private LazyActions() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Starts a sequence of interactions.
+     *
+     * @param elements The targets, in the order they are interacted with
+     * @return The sequence
+     */
+    public static Sequence sequence(AbstractLazyWebElement... elements) {
+        return new Sequence(elements);
+    }
+
+    /**
+     * Result of resolving one distinct target up front
+     */
+    private static final class Resolution {
+        private WebElement element;
+        private boolean actionable;
+        private long nanos;
+    }
+
+    /**
+     * A batch of interactions on lazy elements
+     */
+    public static final class Sequence {
+
+        private final AbstractLazyWebElement[] elements;
+
+        private Sequence(AbstractLazyWebElement[] elements) {
+            this.elements = elements.clone();
+        }
+
+        /**
+         * Clicks every element in order.
+         *
+         * @return Per-step timings
+         */
+        public Report click() {
+            long start = System.nanoTime();
+            Map<AbstractLazyWebElement, Resolution> resolutions = resolveAll();
+
+            List<Step> steps = new ArrayList<>(this.elements.length);
+            for (AbstractLazyWebElement element : this.elements) {
+                Resolution resolution = resolutions.get(element);
+                long clickStart = System.nanoTime();
+                boolean retried = false;
+                if (resolution.actionable) {
+                    try {
+                        element.clickResolved(resolution.element);
+                    } catch (RuntimeException e) {
+                        element.getLogger().debug("Batched click failed on " + element.getUserFriendlyName()
+                                + ", retrying: " + e.getMessage());
+                        retried = true;
+                    }
+                } else {
+                    retried = true;
+                }
+
+                if (retried) {
+                    // Let the element's own waits find it again and retry
+                    try {
+                        element.getNewElement();
+                    } catch (RuntimeException e) {
+                        element.getLogger().debug("Refresh failed for " + element.getUserFriendlyName() + ": " + e.getMessage());
+                    }
+                    element.click();
+                }
+                steps.add(new Step(element.getUserFriendlyName(), resolution.nanos, System.nanoTime() - clickStart, retried));
+            }
+            return new Report(steps, System.nanoTime() - start);
+        }
+
+        /**
+         * Resolves and checks each distinct element once, in parallel.
+         */
+        private Map<AbstractLazyWebElement, Resolution> resolveAll() {
+            Map<AbstractLazyWebElement, CompletableFuture<Resolution>> pending = new IdentityHashMap<>();
+            for (AbstractLazyWebElement element : this.elements) {
+                if (!pending.containsKey(element)) {
+                    pending.put(element, CompletableFuture.supplyAsync(() -> resolve(element), resolver));
+                }
+            }
+
+            Map<AbstractLazyWebElement, Resolution> resolutions = new IdentityHashMap<>();
+            for (Map.Entry<AbstractLazyWebElement, CompletableFuture<Resolution>> entry : pending.entrySet()) {
+                resolutions.put(entry.getKey(), entry.getValue().join());
+            }
+            return resolutions;
+        }
+
+        private static Resolution resolve(AbstractLazyWebElement element) {
+            Resolution resolution = new Resolution();
+            long start = System.nanoTime();
+            try {
+                resolution.element = element.getElement();
+                resolution.actionable = resolution.element.isDisplayed() && resolution.element.isEnabled();
+            } catch (NoSuchElementException e) {
+                element.getLogger().debug("Could not resolve " + element.getUserFriendlyName() + " up front: " + e.getMessage());
+            } catch (RuntimeException e) {
+                element.getLogger().debug("Could not check " + element.getUserFriendlyName() + " up front: " + e.getMessage());
+            }
+            resolution.nanos = System.nanoTime() - start;
+            return resolution;
+        }
+    }
+
+    /**
+     * Timing of one step of a sequence
+     */
+    public static final class Step {
+        private final String name;
+        private final long resolveNanos;
+        private final long actionNanos;
+        private final boolean retried;
+
+        private Step(String name, long resolveNanos, long actionNanos, boolean retried) {
+            this.name = name;
+            this.resolveNanos = resolveNanos;
+            this.actionNanos = actionNanos;
+            this.retried = retried;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the time spent resolving and checking the element up front, shared by repeated elements
+         */
+        public long getResolveMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(resolveNanos);
+        }
+
+        /**
+         * Gets the time spent on the interaction itself, including any fallback retries
+         */
+        public long getActionMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(actionNanos);
+        }
+
+        /**
+         * Gets if the step fell back to the element's own waiting and retrying path
+         */
+        public boolean isRetried() {
+            return retried;
+        }
+    }
+
+    /**
+     * Timings of a whole sequence
+     */
+    public static final class Report {
+        private final List<Step> steps;
+        private final long totalNanos;
+
+        private Report(List<Step> steps, long totalNanos) {
+            this.steps = Collections.unmodifiableList(steps);
+            this.totalNanos = totalNanos;
+        }
+
+        public List<Step> getSteps() {
+            return steps;
+        }
+
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder("Sequence took ").append(getTotalMillis()).append(" ms");
+            for (Step step : steps) {
+                report.append("\r\n  ").append(step.getName())
+                        .append(": resolve ").append(step.getResolveMillis()).append(" ms")
+                        .append(", action ").append(step.getActionMillis()).append(" ms")
+                        .append(step.isRetried() ? " (retried)" : "");
+            }
+            return report.toString();
+        }
+    }
+}
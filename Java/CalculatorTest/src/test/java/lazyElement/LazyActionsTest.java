@@ -0,0 +1,101 @@
+package lazyElement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+
+public class LazyActionsTest {
+
+    private final Logger logger = Logger.getLogger(LazyActionsTest.class);
+
+    private StandInDriver driver;
+
+    private StandInElement window;
+
+    private final List<String> pressed = Collections.synchronizedList(new ArrayList<>());
+
+    protected Lazy<LazyElement> applicationBaseContainer = () -> new LazyElement(this.logger, driver, By.name("Calculator"), "Calculator window");
+
+    protected Lazy<LazyElement> one_Btn = () -> new LazyElement(this.logger, applicationBaseContainer.get(), By.name("One"), "Button One");
+
+    protected Lazy<LazyElement> seven_Btn = () -> new LazyElement(this.logger, applicationBaseContainer.get(), By.name("Seven"), "Button Seven");
+
+    protected Lazy<LazyElement> plus_Btn = () -> new LazyElement(this.logger, applicationBaseContainer.get(), By.name("Plus"), "Button Plus");
+
+    protected Lazy<LazyElement> equals_Btn = () -> new LazyElement(this.logger, applicationBaseContainer.get(), By.name("Equals"), "Button Equals");
+
+    @Before
+    public void setup() {
+        driver = new StandInDriver();
+        window = driver.window("Calculator");
+        for (String name : new String[] {"One", "Seven", "Plus", "Equals"}) {
+            window.add(name).onClick(() -> pressed.add(name));
+        }
+    }
+
+    private StandInElement button(String name) {
+        for (StandInElement child : window.getChildren()) {
+            if (name.equals(child.getAttribute("Name"))) {
+                return child;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Test
+    public void ClicksEveryStepInOrder() {
+        LazyActions.Report report = LazyActions.sequence(one_Btn.get(), plus_Btn.get(), seven_Btn.get(), equals_Btn.get()).click();
+
+        Assert.assertEquals(Arrays.asList("One", "Plus", "Seven", "Equals"), pressed);
+        Assert.assertEquals(4, report.getSteps().size());
+        for (LazyActions.Step step : report.getSteps()) {
+            Assert.assertFalse(step.getName(), step.isRetried());
+        }
+        // The window and each button are found exactly once
+        Assert.assertEquals(5, driver.getFindCount());
+    }
+
+    @Test
+    public void ResolvesTargetsInParallel() {
+        driver.setFindLatency(100);
+        applicationBaseContainer.get().getElement();
+
+        LazyActions.Report report = LazyActions.sequence(one_Btn.get(), plus_Btn.get(), seven_Btn.get(), equals_Btn.get()).click();
+
+        // Four sequential finds would take at least 400 ms
+        Assert.assertTrue(report.toString(), report.getTotalMillis() < 350);
+    }
+
+    @Test
+    public void RepeatedElementIsResolvedOnce() {
+        LazyElement one = one_Btn.get();
+
+        LazyActions.sequence(one, one, one).click();
+
+        Assert.assertEquals(3, button("One").getClickCount());
+        Assert.assertEquals(2, driver.getFindCount());
+    }
+
+    @Test
+    public void StepThatIsNotActionableFallsBackToRetries() {
+        StandInElement seven = button("Seven");
+        seven.setEnabled(false);
+        button("Plus").onClick(() -> {
+            pressed.add("Plus");
+            seven.setEnabled(true);
+        });
+
+        LazyActions.Report report = LazyActions.sequence(one_Btn.get(), plus_Btn.get(), seven_Btn.get(), equals_Btn.get()).click();
+
+        Assert.assertEquals(Arrays.asList("One", "Plus", "Seven", "Equals"), pressed);
+        Assert.assertFalse(report.getSteps().get(1).isRetried());
+        Assert.assertTrue(report.getSteps().get(2).isRetried());
+    }
+}
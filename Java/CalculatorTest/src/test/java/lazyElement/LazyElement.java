@@ -3,9 +3,9 @@ package lazyElement;
 import java.util.ArrayList;
 import java.util.List;
 
-import io.appium.java_client.windows.WindowsDriver;
 import org.apache.log4j.Logger;
 import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 
 /// <summary>
@@ -20,7 +20,7 @@ public class LazyElement extends AbstractLazyWebElement {
     /// <param name="locator">The 'by' selector for the element</param>
     /// <param name="userFriendlyName">A user friendly name, for logging
     /// purposes</param>
-    public LazyElement(Logger log, WindowsDriver<?> webDriver, By locator, String userFriendlyName) {
+    public LazyElement(Logger log, WebDriver webDriver, By locator, String userFriendlyName) {
         super(log, webDriver, locator, userFriendlyName);
     }
 
@@ -66,13 +66,22 @@ public class LazyElement extends AbstractLazyWebElement {
     /// </summary>
     /// <param name="by">The locating mechanism to use</param>
     /// <returns>All web elements matching the current criteria, or an empty list if
-    /// nothing matches</returns>
+    /// nothing matches. Elements that are already wrapped in this session are returned as that wrapper</returns>
     public List<WebElement> findElements(By by, String userFriendlyName) throws Exception {
         int index = 0;
         List<WebElement> elements = new ArrayList<WebElement>();
-        for (WebElement element : this.getNewElement().findElements(by)) {
-            elements.add(new LazyElement(this.getLogger(), this, by, element, index, userFriendlyName + " - " + index++));
+        ElementInterner interner = ElementInterner.getShared();
+        long saved = interner.getSavedBytes();
+        long reused = interner.getWrapperHits();
+        for (WebElement found : FindCoalescer.getShared().findElements(this.getNewElement(), by)) {
+            WebElement element = interner.handle(found);
+            int elementIndex = index++;
+            elements.add(interner.wrapper(element, () -> new LazyElement(this.getLogger(), this, by, element,
+                    elementIndex, userFriendlyName + " - " + elementIndex)));
         }
+        // Approximate when other threads intern at the same time, it is only logged
+        interner.report(this.getLogger(), by, elements.size(), (int) (interner.getWrapperHits() - reused),
+                interner.getSavedBytes() - saved);
 
         return elements;
     }
@@ -90,4 +99,16 @@ public class LazyElement extends AbstractLazyWebElement {
             return null;
         }
     }
+
+    /// <summary>
+    /// Scrolls this container and iterates over every child it realizes, each one exactly once.
+    /// Use this instead of findElements on virtualized lists and grids
+    /// </summary>
+    /// <param name="by">The locating mechanism for the rows</param>
+    /// <param name="userFriendlyName">A user friendly name for the rows, for logging
+    /// purposes</param>
+    /// <returns>An incremental iterator over the rows</returns>
+    public ScrollCollector scrollAndCollect(By by, String userFriendlyName) {
+        return new ScrollCollector(this, by, userFriendlyName);
+    }
 }
\ No newline at end of file
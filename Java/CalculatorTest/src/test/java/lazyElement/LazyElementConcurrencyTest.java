@@ -0,0 +1,160 @@
+package lazyElement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+public class LazyElementConcurrencyTest {
+
+    private static final int Threads = 32;
+
+    private final Logger logger = Logger.getLogger(LazyElementConcurrencyTest.class);
+
+    private StandInDriver driver;
+
+    private StandInElement button;
+
+    private ExecutorService pool;
+
+    protected Lazy<LazyElement> window = () -> new LazyElement(this.logger, driver, By.name("Calculator"), "Calculator window");
+
+    protected Lazy<LazyElement> one_Btn = () -> new LazyElement(this.logger, window.get(), By.name("One"), "Button One");
+
+    @Before
+    public void setup() {
+        driver = new StandInDriver();
+        button = driver.window("Calculator").add("One");
+        pool = Executors.newFixedThreadPool(Threads);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Runs the task on every worker thread at once and returns the results.
+     */
+    private <T> List<T> runConcurrently(Callable<T> task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < Threads; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(30, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    @Test
+    public void SharedElementIsResolvedOnce() throws Exception {
+        driver.setFindLatency(200);
+        LazyElement one = one_Btn.get();
+
+        List<String> texts = runConcurrently(one::getText);
+
+        for (String text : texts) {
+            Assert.assertEquals("One", text);
+        }
+        // One find for the window and one for the button, shared by every thread
+        Assert.assertEquals(2, driver.getFindCount());
+    }
+
+    @Test
+    public void ConcurrentRefreshesCoalesce() throws Exception {
+        LazyElement one = one_Btn.get();
+        one.getElement();
+        int findsBefore = driver.getFindCount();
+        driver.setFindLatency(300);
+
+        List<WebElement> elements = runConcurrently(one::getNewElement);
+
+        for (WebElement element : elements) {
+            Assert.assertSame(button, element);
+        }
+        int refreshes = driver.getFindCount() - findsBefore;
+        Assert.assertTrue("Expected the refreshes to share a find but saw " + refreshes, refreshes <= 3);
+        Assert.assertSame(button, one.getCachedElement());
+    }
+
+    @Test
+    public void ForcedRefreshDoesNotJoinACachedResolve() throws Exception {
+        LazyElement one = one_Btn.get();
+        window.get().getElement();
+        int findsBefore = driver.getFindCount();
+        driver.setFindLatency(300);
+
+        Future<WebElement> resolve = pool.submit(one::getElement);
+        Thread.sleep(100);
+        WebElement refreshed = one.getNewElement();
+
+        Assert.assertSame(button, resolve.get(30, TimeUnit.SECONDS));
+        Assert.assertSame(button, refreshed);
+        // The refresh waited for the resolve in flight and then found the button itself
+        Assert.assertEquals(2, driver.getFindCount() - findsBefore);
+    }
+
+    @Test
+    public void RefreshFailureIsSharedWithWaiters() throws Exception {
+        LazyElement missing = new LazyElement(logger, window.get(), By.name("Missing"), "Missing button");
+        driver.setFindLatency(100);
+
+        List<Boolean> failed = runConcurrently(() -> {
+            try {
+                missing.getNewElement();
+                return false;
+            } catch (org.openqa.selenium.NoSuchElementException e) {
+                return true;
+            }
+        });
+
+        for (Boolean failure : failed) {
+            Assert.assertTrue(failure);
+        }
+        Assert.assertNull(missing.getCachedElement());
+    }
+
+    @Test
+    public void StressMixedAccessSeesConsistentState() throws Exception {
+        LazyElement one = one_Btn.get();
+
+        List<Integer> observed = runConcurrently(() -> {
+            int checks = 0;
+            for (int i = 0; i < 500; i++) {
+                WebDriver elementDriver = one.getDriver();
+                Assert.assertSame(driver, elementDriver);
+
+                WebElement element = i % 10 == 0 ? one.getNewElement() : one.getElement();
+                Assert.assertSame(button, element);
+                checks++;
+            }
+            return checks;
+        });
+
+        for (Integer checks : observed) {
+            Assert.assertEquals(500, checks.intValue());
+        }
+        Assert.assertTrue(driver.getFindCount() <= 1 + Threads * 50);
+    }
+}
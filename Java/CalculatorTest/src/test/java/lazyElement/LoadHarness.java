@@ -0,0 +1,699 @@
+package lazyElement;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.SessionId;
+
+/**
+ * Runs a scenario on many concurrent sessions against a {@link StandInServer} and reports how the client stack
+ * holds up. The concurrency is swept through the given levels, each held for a while, optionally followed by a soak
+ * at the highest level. Every session runs the scenario in a loop on its own thread. The report has, per level, the
+ * throughput, latency percentiles and errors of the iterations, and over the whole run a sample every interval of
+ * the heap, the heap left after the last collection, the live threads, the garbage collections and their time and
+ * the size of {@link Lazy.Cache}. A heap after collection or a Lazy cache that keeps growing at a steady load is a
+ * leak; a level with less throughput than the one before it is a cliff.
+ * <p>
+ * Run {@link #main(String[])} for a sweep. lazyElement.loadLevels sets the levels (50,100,200,500),
+ * lazyElement.loadStepSeconds how long each is held (60), lazyElement.loadSoakMinutes the soak (0),
+ * lazyElement.loadScenario the scenario, calculator, wire or remote, and lazyElement.loadReport where the CSV files
+ * go (target/load).
+ */
+public final class LoadHarness {
+
+    private static final Logger log = Logger.getLogger(LoadHarness.class);
+
+    /**
+     * One iteration of a load test, run by a session over and over
+     */
+    @FunctionalInterface
+    public interface Scenario {
+        void run(Session session) throws Exception;
+    }
+
+    /**
+     * What a scenario runs against: a stand-in driver opened on the server, a transport to the server and, once
+     * asked for, a remote driver on the server
+     */
+    public static final class Session {
+        private final int number;
+        private final URL server;
+        private final StandInDriver driver;
+        private final CommandExecutor transport;
+        private final SessionId sessionId;
+        private RemoteWebDriver remoteDriver;
+
+        private Session(int number, URL server) {
+            this.number = number;
+            this.server = server;
+            this.driver = StandInServer.newSession(server);
+            this.sessionId = new SessionId("load-" + number);
+            this.transport = new StreamingCommandExecutor(command -> {
+                throw new WebDriverException("Not a streamed command: " + command.getName());
+            }, server);
+            StandInElement calculator = this.driver.window("Calculator");
+            for (String button : Arrays.asList("One", "Seven", "Plus", "Equals")) {
+                calculator.add(button);
+            }
+            calculator.add("Display").attribute("Value", "8");
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        /**
+         * Gets the in-process driver holding the calculator window, with One, Seven, Plus, Equals and Display
+         */
+        public StandInDriver getDriver() {
+            return driver;
+        }
+
+        /**
+         * Gets the HTTP transport to the server, which streams the hot element commands
+         */
+        public CommandExecutor getTransport() {
+            return transport;
+        }
+
+        public SessionId getSessionId() {
+            return sessionId;
+        }
+
+        /**
+         * Gets a remote driver with a session of its own on the server, opened on first use. It is only used from the
+         * session's thread, and quit when the level ends
+         */
+        public RemoteWebDriver getRemoteDriver() {
+            if (remoteDriver == null) {
+                remoteDriver = new RemoteWebDriver(server, new DesiredCapabilities());
+            }
+            return remoteDriver;
+        }
+
+        private void close() {
+            if (remoteDriver != null) {
+                try {
+                    remoteDriver.quit();
+                } catch (WebDriverException e) {
+                    log.debug("Session " + number + " did not quit: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Latencies in buckets of about 6% width, so percentiles of a run of hours take a fixed amount of memory
+     */
+    static final class Histogram {
+        private static final int SubBuckets = 16;
+        private final AtomicLongArray counts = new AtomicLongArray(64 * SubBuckets);
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long micros) {
+            long value = Math.max(1, micros);
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = exponent < 4 ? (int) value : (int) (value >>> (exponent - 4)) & (SubBuckets - 1);
+            counts.incrementAndGet(exponent * SubBuckets + sub);
+            total.increment();
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        /**
+         * Gets the upper bound of the bucket holding the percentile, in microseconds
+         */
+        long percentile(double percent) {
+            long count = total.sum();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percent / 100 * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(max.get(), upperBound(i));
+                }
+            }
+            return max.get();
+        }
+
+        private static long upperBound(int bucket) {
+            int exponent = bucket / SubBuckets;
+            int sub = bucket % SubBuckets;
+            if (exponent < 4) {
+                return sub;
+            }
+            return ((long) (SubBuckets + sub + 1) << (exponent - 4)) - 1;
+        }
+
+        long getCount() {
+            return total.sum();
+        }
+
+        long getMax() {
+            return max.get();
+        }
+    }
+
+    /**
+     * Result of one concurrency level
+     */
+    public static final class Level {
+        private final int sessions;
+        private final long millis;
+        private final long iterations;
+        private final long errors;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+        private final String firstError;
+
+        private Level(int sessions, long millis, Histogram latencies, long errors, String firstError) {
+            this.sessions = sessions;
+            this.millis = millis;
+            this.iterations = latencies.getCount();
+            this.errors = errors;
+            this.p50 = latencies.percentile(50);
+            this.p90 = latencies.percentile(90);
+            this.p99 = latencies.percentile(99);
+            this.max = latencies.getMax();
+            this.firstError = firstError;
+        }
+
+        public int getSessions() {
+            return sessions;
+        }
+
+        /**
+         * Gets the number of iterations that completed, successfully or not
+         */
+        public long getIterations() {
+            return iterations;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Gets the iterations per second
+         */
+        public double getThroughput() {
+            return millis == 0 ? 0 : iterations * 1000.0 / millis;
+        }
+
+        /**
+         * Gets a latency percentile in microseconds, 50, 90 or 99, or 100 for the maximum
+         */
+        public long getLatency(int percentile) {
+            switch (percentile) {
+                case 50:
+                    return p50;
+                case 90:
+                    return p90;
+                case 99:
+                    return p99;
+                case 100:
+                    return max;
+                default:
+                    throw new IllegalArgumentException("Only 50, 90, 99 and 100 are kept: " + percentile);
+            }
+        }
+    }
+
+    /**
+     * State of the JVM at one point of the run
+     */
+    public static final class Sample {
+        private final long elapsedMillis;
+        private final int sessions;
+        private final long heapUsed;
+        private final long heapAfterGc;
+        private final int threads;
+        private final long gcCount;
+        private final long gcMillis;
+        private final int lazyCacheSize;
+
+        private Sample(long elapsedMillis, int sessions, long heapUsed, long heapAfterGc, int threads, long gcCount,
+                       long gcMillis, int lazyCacheSize) {
+            this.elapsedMillis = elapsedMillis;
+            this.sessions = sessions;
+            this.heapUsed = heapUsed;
+            this.heapAfterGc = heapAfterGc;
+            this.threads = threads;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.lazyCacheSize = lazyCacheSize;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public long getHeapUsed() {
+            return heapUsed;
+        }
+
+        /**
+         * Gets the heap left by the last collection of each pool, which only grows across samples if something leaks
+         */
+        public long getHeapAfterGc() {
+            return heapAfterGc;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Gets the collections since the previous sample
+         */
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        /**
+         * Gets the time spent collecting since the previous sample; with a stop-the-world collector, the pauses
+         */
+        public long getGcMillis() {
+            return gcMillis;
+        }
+
+        public int getLazyCacheSize() {
+            return lazyCacheSize;
+        }
+    }
+
+    /**
+     * Everything a run measured
+     */
+    public static final class Report {
+        private final String scenario;
+        private final List<Level> levels;
+        private final List<Sample> samples;
+
+        private Report(String scenario, List<Level> levels, List<Sample> samples) {
+            this.scenario = scenario;
+            this.levels = Collections.unmodifiableList(levels);
+            this.samples = Collections.unmodifiableList(samples);
+        }
+
+        public List<Level> getLevels() {
+            return levels;
+        }
+
+        public List<Sample> getSamples() {
+            return samples;
+        }
+
+        /**
+         * Gets the levels whose throughput fell below the throughput of the level before them
+         */
+        public List<Level> getCliffs() {
+            List<Level> cliffs = new ArrayList<>();
+            for (int i = 1; i < levels.size(); i++) {
+                if (levels.get(i).getThroughput() < levels.get(i - 1).getThroughput()) {
+                    cliffs.add(levels.get(i));
+                }
+            }
+            return cliffs;
+        }
+
+        /**
+         * Gets how much the heap after collection grew from the first sample to the last, in bytes
+         */
+        public long getHeapGrowth() {
+            return samples.isEmpty() ? 0 : samples.get(samples.size() - 1).heapAfterGc - samples.get(0).heapAfterGc;
+        }
+
+        /**
+         * Gets how much the Lazy cache grew from the first sample to the last
+         */
+        public int getLazyCacheGrowth() {
+            return samples.isEmpty() ? 0
+                    : samples.get(samples.size() - 1).lazyCacheSize - samples.get(0).lazyCacheSize;
+        }
+
+        /**
+         * Writes the levels and the samples as two CSV files.
+         *
+         * @param directory The directory, created if needed
+         * @return The levels file; the samples file is next to it
+         */
+        public Path write(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            Path levelsFile = directory.resolve(scenario + "-levels.csv");
+            try (BufferedWriter writer = Files.newBufferedWriter(levelsFile, StandardCharsets.UTF_8)) {
+                writer.write("sessions,iterations,errors,throughput_per_s,p50_us,p90_us,p99_us,max_us");
+                writer.newLine();
+                for (Level level : levels) {
+                    writer.write(String.format("%d,%d,%d,%.1f,%d,%d,%d,%d", level.sessions, level.iterations,
+                            level.errors, level.getThroughput(), level.p50, level.p90, level.p99, level.max));
+                    writer.newLine();
+                }
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(scenario + "-samples.csv"),
+                    StandardCharsets.UTF_8)) {
+                writer.write("elapsed_ms,sessions,heap_used,heap_after_gc,threads,gc_count,gc_ms,lazy_cache");
+                writer.newLine();
+                for (Sample sample : samples) {
+                    writer.write(String.format("%d,%d,%d,%d,%d,%d,%d,%d", sample.elapsedMillis, sample.sessions,
+                            sample.heapUsed, sample.heapAfterGc, sample.threads, sample.gcCount, sample.gcMillis,
+                            sample.lazyCacheSize));
+                    writer.newLine();
+                }
+            }
+            return levelsFile;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder("Load test of ").append(scenario).append(System.lineSeparator());
+            report.append(String.format("%8s %10s %8s %10s %9s %9s %9s %9s%n", "sessions", "iterations", "errors",
+                    "per second", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+            List<Level> cliffs = getCliffs();
+            for (Level level : levels) {
+                report.append(String.format("%8d %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%s%n", level.sessions,
+                        level.iterations, level.errors, level.getThroughput(), level.p50 / 1000.0, level.p90 / 1000.0,
+                        level.p99 / 1000.0, level.max / 1000.0, cliffs.contains(level) ? "  throughput fell" : ""));
+                if (level.firstError != null) {
+                    report.append("         first error: ").append(level.firstError).append(System.lineSeparator());
+                }
+            }
+            long gcMillis = 0;
+            long maxGcMillis = 0;
+            int maxThreads = 0;
+            for (Sample sample : samples) {
+                gcMillis += sample.gcMillis;
+                maxGcMillis = Math.max(maxGcMillis, sample.gcMillis);
+                maxThreads = Math.max(maxThreads, sample.threads);
+            }
+            report.append(String.format("Heap after GC grew %d KB, Lazy cache grew by %d, peak %d threads, "
+                            + "%d ms collecting (at most %d ms in one sample) over %d samples%n",
+                    getHeapGrowth() / 1024, getLazyCacheGrowth(), maxThreads, gcMillis, maxGcMillis, samples.size()));
+            return report.toString();
+        }
+    }
+
+    private final URL server;
+
+    private volatile int[] levels = {50, 100, 200, 500};
+
+    private volatile long stepMillis = 60000;
+
+    private volatile long soakMillis;
+
+    private volatile long sampleMillis = 1000;
+
+    /**
+     * Initializes a new instance of the {@link LoadHarness} class
+     *
+     * @param server The URL of the stand-in server the sessions are opened on
+     */
+    public LoadHarness(URL server) {
+        this.server = server;
+    }
+
+    /**
+     * Sets the numbers of concurrent sessions to sweep through, in order
+     */
+    public void setLevels(int... levels) {
+        if (levels.length == 0 || Arrays.stream(levels).anyMatch(level -> level < 1)) {
+            throw new IllegalArgumentException("Invalid levels: " + Arrays.toString(levels));
+        }
+        this.levels = levels.clone();
+    }
+
+    /**
+     * Sets how long each level runs.
+     *
+     * @param millis Time in milliseconds
+     */
+    public void setStepMillis(long millis) {
+        this.stepMillis = millis;
+    }
+
+    /**
+     * Sets how long the highest level keeps running after the sweep.
+     *
+     * @param millis Time in milliseconds, 0 for no soak
+     */
+    public void setSoakMillis(long millis) {
+        this.soakMillis = millis;
+    }
+
+    /**
+     * Sets how often the JVM is sampled.
+     *
+     * @param millis Time in milliseconds
+     */
+    public void setSampleMillis(long millis) {
+        this.sampleMillis = millis;
+    }
+
+    /**
+     * Runs the sweep, and the soak if one is set.
+     *
+     * @param name     The name of the scenario, for the report
+     * @param scenario The scenario each session runs in a loop
+     * @return The report
+     */
+    public Report run(String name, Scenario scenario) throws InterruptedException {
+        List<Level> results = new ArrayList<>();
+        List<Sample> samples = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        long origin = System.nanoTime();
+        Map<String, long[]> gcBefore = new HashMap<>();
+        sample(origin, 0, gcBefore);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> samples.add(sample(origin, running.get(), gcBefore)), sampleMillis,
+                sampleMillis, TimeUnit.MILLISECONDS);
+        try {
+            for (int sessions : levels) {
+                running.set(sessions);
+                results.add(runLevel(sessions, stepMillis, scenario));
+                log.info(name + ": " + sessions + " sessions done");
+            }
+            if (soakMillis > 0) {
+                int sessions = Arrays.stream(levels).max().getAsInt();
+                running.set(sessions);
+                results.add(runLevel(sessions, soakMillis, scenario));
+            }
+        } finally {
+            sampler.shutdownNow();
+            sampler.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        samples.add(sample(origin, 0, gcBefore));
+        return new Report(name, results, new ArrayList<>(samples));
+    }
+
+    private Level runLevel(int sessions, long millis, Scenario scenario) throws InterruptedException {
+        Histogram latencies = new Histogram();
+        LongAdder errors = new LongAdder();
+        AtomicReference<String> firstError = new AtomicReference<>();
+        CountDownLatch ready = new CountDownLatch(sessions);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            int number = i;
+            Thread worker = new Thread(() -> {
+                Session session = null;
+                try {
+                    session = new Session(number, server);
+                } catch (RuntimeException e) {
+                    errors.increment();
+                    firstError.compareAndSet(null, "Session " + number + " not opened: " + e);
+                } finally {
+                    ready.countDown();
+                }
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (session == null) {
+                    return;
+                }
+                while (System.nanoTime() < deadline[0]) {
+                    long begin = System.nanoTime();
+                    try {
+                        scenario.run(session);
+                    } catch (Exception | AssertionError e) {
+                        errors.increment();
+                        firstError.compareAndSet(null, e.toString());
+                    }
+                    latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin));
+                }
+                session.close();
+            }, "load-session-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        deadline[0] = begin + TimeUnit.MILLISECONDS.toNanos(millis);
+        // The latch publishes the deadline to the workers
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        return new Level(sessions, elapsed, latencies, errors.sum(), firstError.get());
+    }
+
+    /**
+     * Samples the JVM. The collector counts and times are turned into the difference from the previous sample.
+     */
+    private static Sample sample(long origin, int sessions, Map<String, long[]> gcBefore) {
+        long heapAfterGc = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage afterGc = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (afterGc != null) {
+                heapAfterGc += afterGc.getUsed();
+            }
+        }
+        long gcCount = 0;
+        long gcMillis = 0;
+        synchronized (gcBefore) {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                long[] before = gcBefore.computeIfAbsent(collector.getName(), any -> new long[2]);
+                long count = Math.max(0, collector.getCollectionCount());
+                long time = Math.max(0, collector.getCollectionTime());
+                gcCount += count - before[0];
+                gcMillis += time - before[1];
+                before[0] = count;
+                before[1] = time;
+            }
+        }
+        return new Sample(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin), sessions,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), heapAfterGc,
+                ManagementFactory.getThreadMXBean().getThreadCount(), gcCount, gcMillis, Lazy.Cache.size());
+    }
+
+    /**
+     * The Addition test of CalculatorTest on the stand-in: clicks 1 + 7 = and reads the display. The lazy elements
+     * are declared anew each iteration, as every test gets a new instance of its test class.
+     */
+    public static Scenario calculatorFlow() {
+        Logger logger = Logger.getLogger(LoadHarness.class);
+        return session -> {
+            StandInDriver driver = session.getDriver();
+            Lazy<LazyElement> window = () -> new LazyElement(logger, driver, By.name("Calculator"),
+                    "Calculator window");
+            Lazy<LazyElement> one = () -> new LazyElement(logger, window.get(), By.name("One"), "Button One");
+            Lazy<LazyElement> plus = () -> new LazyElement(logger, window.get(), By.name("Plus"), "Button Plus");
+            Lazy<LazyElement> seven = () -> new LazyElement(logger, window.get(), By.name("Seven"), "Button Seven");
+            Lazy<LazyElement> equals = () -> new LazyElement(logger, window.get(), By.name("Equals"), "Button Equals");
+            Lazy<LazyElement> display = () -> new LazyElement(logger, window.get(), By.name("Display"), "Display");
+            one.get().click();
+            plus.get().click();
+            seven.get().click();
+            equals.get().click();
+            if (!"8".equals(display.get().getAttribute("Value"))) {
+                throw new AssertionError("Display shows " + display.get().getAttribute("Value"));
+            }
+        };
+    }
+
+    /**
+     * The Addition test of CalculatorTest through the whole client stack: lazy elements over a
+     * {@link RemoteWebDriver}, its command executor and HTTP client, to a stand-in server set up with
+     * {@link StandInServer#answerAsCalculator()}. The lazy elements are declared anew each iteration.
+     */
+    public static Scenario remoteFlow() {
+        Logger logger = Logger.getLogger(LoadHarness.class);
+        return session -> {
+            RemoteWebDriver driver = session.getRemoteDriver();
+            Lazy<LazyElement> window = () -> new LazyElement(logger, driver, By.name("Calculator"),
+                    "Calculator window");
+            Lazy<LazyElement> display = () -> new LazyElement(logger, window.get(), By.name("Display"), "Display");
+            for (String button : Arrays.asList("One", "Plus", "Seven", "Equals")) {
+                new LazyElement(logger, window.get(), By.name(button), "Button " + button).click();
+            }
+            if (!"8".equals(display.get().getAttribute("Value"))) {
+                throw new AssertionError("Display shows " + display.get().getAttribute("Value"));
+            }
+        };
+    }
+
+    /**
+     * The commands of the Addition test sent over HTTP to the stand-in server: a find and a click per button, then
+     * a find and a text read of the display.
+     */
+    public static Scenario wireFlow() {
+        return session -> {
+            CommandExecutor transport = session.getTransport();
+            for (String name : Arrays.asList("One", "Plus", "Seven", "Equals", "Display")) {
+                Map<String, Object> find = new HashMap<>();
+                find.put("using", "name");
+                find.put("value", name);
+                transport.execute(new Command(session.getSessionId(), DriverCommand.FIND_ELEMENT, find));
+                Map<String, Object> element = new HashMap<>();
+                element.put("id", "42." + name);
+                transport.execute(new Command(session.getSessionId(),
+                        "Display".equals(name) ? DriverCommand.GET_ELEMENT_TEXT : DriverCommand.CLICK_ELEMENT,
+                        element));
+            }
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        String scenario = System.getProperty("lazyElement.loadScenario", "calculator");
+        try (StandInServer server = new StandInServer()) {
+            server.setCommandTime(Long.getLong("lazyElement.loadCommandMillis", 0));
+            server.answerAsCalculator();
+            LoadHarness harness = new LoadHarness(server.getUrl());
+            harness.setLevels(Arrays.stream(System.getProperty("lazyElement.loadLevels", "50,100,200,500").split(","))
+                    .mapToInt(level -> Integer.parseInt(level.trim())).toArray());
+            harness.setStepMillis(TimeUnit.SECONDS.toMillis(Long.getLong("lazyElement.loadStepSeconds", 60)));
+            harness.setSoakMillis(TimeUnit.MINUTES.toMillis(Long.getLong("lazyElement.loadSoakMinutes", 0)));
+            Report report = harness.run(scenario, "wire".equals(scenario) ? wireFlow()
+                    : "remote".equals(scenario) ? remoteFlow() : calculatorFlow());
+            System.out.println(report);
+            System.out.println("Written to " + report.write(Paths.get(System.getProperty("lazyElement.loadReport",
+                    "target/load"))));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package lazyElement;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoadHarnessTest {
+
+    private StandInServer server;
+
+    private LoadHarness harness;
+
+    @Before
+    public void setup() throws Exception {
+        server = new StandInServer();
+        harness = new LoadHarness(server.getUrl());
+        harness.setLevels(1, 4);
+        harness.setStepMillis(300);
+        harness.setSampleMillis(50);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void CalculatorFlowShowsTheLazyCacheGrowing() throws Exception {
+        LoadHarness.Report report = harness.run("calculator", LoadHarness.calculatorFlow());
+
+        List<LoadHarness.Level> levels = report.getLevels();
+        Assert.assertEquals(2, levels.size());
+        long iterations = 0;
+        for (LoadHarness.Level level : levels) {
+            Assert.assertEquals(report.toString(), 0, level.getErrors());
+            Assert.assertTrue(report.toString(), level.getIterations() > 0);
+            Assert.assertTrue(level.getLatency(50) <= level.getLatency(99));
+            Assert.assertTrue(level.getLatency(99) <= level.getLatency(100));
+            iterations += level.getIterations();
+        }
+        Assert.assertEquals(5, server.getSessions());
+        // Six Lazy declarations per iteration, none of them ever released
+        Assert.assertTrue(report.toString(), report.getLazyCacheGrowth() >= iterations);
+        Assert.assertTrue(report.toString(), report.getSamples().size() >= 3);
+    }
+
+    @Test
+    public void RemoteFlowRunsTheWholeClientStack() throws Exception {
+        server.answerAsCalculator();
+
+        LoadHarness.Report report = harness.run("remote", LoadHarness.remoteFlow());
+
+        long iterations = 0;
+        for (LoadHarness.Level level : report.getLevels()) {
+            Assert.assertEquals(report.toString(), 0, level.getErrors());
+            iterations += level.getIterations();
+        }
+        Assert.assertTrue(report.toString(), iterations > 0);
+        // A stand-in and a RemoteWebDriver session for each of the 1 + 4 harness sessions
+        Assert.assertEquals(10, server.getSessions());
+        Assert.assertTrue(server.getLastCommand(), server.getLastCommand().startsWith("DELETE /session/"));
+        Assert.assertTrue(server.getLastCommand(), server.getCommands() >= iterations * 5);
+    }
+
+    @Test
+    public void SaturatedServerShowsACliff() throws Exception {
+        server.setCommandTime(2);
+        server.setSaturation(1, 1);
+        harness.setLevels(1, 8);
+
+        LoadHarness.Report report = harness.run("wire", LoadHarness.wireFlow());
+
+        Assert.assertEquals(report.toString(), 0, report.getLevels().get(0).getErrors());
+        Assert.assertEquals(report.toString(), 1, report.getCliffs().size());
+        Assert.assertEquals(8, report.getCliffs().get(0).getSessions());
+        Assert.assertTrue(report.toString(), report.toString().contains("throughput fell"));
+    }
+
+    @Test
+    public void FailuresAreCountedAndReported() throws Exception {
+        harness.setLevels(2);
+
+        LoadHarness.Report report = harness.run("failing", session -> {
+            throw new IllegalStateException("Display not found in session " + session.getNumber());
+        });
+
+        LoadHarness.Level level = report.getLevels().get(0);
+        Assert.assertEquals(level.getIterations(), level.getErrors());
+        Assert.assertTrue(report.toString(),
+                report.toString().contains("first error: java.lang.IllegalStateException"));
+    }
+
+    @Test
+    public void ReportIsWrittenAsCsv() throws Exception {
+        harness.setLevels(1);
+        harness.setStepMillis(100);
+        Path directory = Files.createTempDirectory("load");
+
+        Path levels = harness.run("wire", LoadHarness.wireFlow()).write(directory);
+
+        List<String> lines = Files.readAllLines(levels);
+        Assert.assertEquals(2, lines.size());
+        Assert.assertTrue(lines.get(1), lines.get(1).startsWith("1,"));
+        Assert.assertTrue(Files.readAllLines(directory.resolve("wire-samples.csv")).size() >= 3);
+    }
+
+    @Test
+    public void HistogramPercentilesAreWithinABucket() {
+        LoadHarness.Histogram histogram = new LoadHarness.Histogram();
+        for (long micros = 1; micros <= 10000; micros++) {
+            histogram.record(micros);
+        }
+
+        Assert.assertEquals(10000, histogram.getCount());
+        Assert.assertEquals(5000, histogram.percentile(50), 5000 / 16);
+        Assert.assertEquals(9900, histogram.percentile(99), 9900 / 16);
+        Assert.assertEquals(10000, histogram.percentile(100));
+        Assert.assertEquals(1, histogram.percentile(0.001));
+    }
+}
@@ -0,0 +1,462 @@
+package lazyElement;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.appium.java_client.MobileBy;
+import org.apache.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Rewrites slow locators into faster equivalents.
+ * WinAppDriver resolves Name and XPath locators by walking the UI Automation tree, while AutomationId lookups are
+ * much cheaper. The first time a locator is resolved, the element's AutomationId and Name are read and turned into
+ * candidate locators. Each candidate is timed in the same search context and kept only if it finds the very same
+ * element, and no other, faster. Later resolutions, in this run or in later runs through a local file, use the fastest equivalent,
+ * and fall back to the original locator if the equivalent stops matching.
+ * <p>
+ * Examining a locator takes several remote calls, so it is done on a background thread rather than by the resolution
+ * that other threads may be waiting on.
+ */
+public final class LocatorOptimizer {
+
+    private static final Logger log = Logger.getLogger(LocatorOptimizer.class);
+
+    /**
+     * Weight of a new latency sample in the moving averages
+     */
+    private static final double Smoothing = 0.2;
+
+    /**
+     * Optimizer used by every lazy element. It examines locators only if the lazyElement.optimizeLocators system
+     * property is true, and is persisted to the file named by the lazyElement.locators system property if it is set
+     */
+    private static volatile LocatorOptimizer shared;
+
+    /**
+     * A faster locator that finds the same element as the original
+     */
+    private static final class Equivalent {
+        private final String strategy;
+        private final String value;
+        private final By by;
+        private volatile double originalNanos;
+        private volatile double equivalentNanos;
+        private final LongAdder uses = new LongAdder();
+        private final LongAdder savedNanos = new LongAdder();
+
+        private Equivalent(String strategy, String value, double originalNanos, double equivalentNanos) {
+            this.strategy = strategy;
+            this.value = value;
+            this.by = toBy(strategy, value);
+            this.originalNanos = originalNanos;
+            this.equivalentNanos = equivalentNanos;
+        }
+
+        private double getSpeedup() {
+            return equivalentNanos > 0 ? originalNanos / equivalentNanos : 0;
+        }
+    }
+
+    private final ConcurrentMap<String, Equivalent> equivalents = new ConcurrentHashMap<>();
+
+    /**
+     * Locators already examined, with or without a faster equivalent
+     */
+    private final Set<String> examined = ConcurrentHashMap.newKeySet();
+
+    private final Path file;
+
+    private final ThreadPoolExecutor examiner;
+
+    /**
+     * Examinations queued or running
+     */
+    private int pending;
+
+    private volatile boolean enabled = true;
+
+    /**
+     * Initializes a new instance of the {@link LocatorOptimizer} class, loading the equivalents in the file if there
+     * is one
+     *
+     * @param file The file the equivalents are persisted to, or null to keep them in memory only
+     */
+    public LocatorOptimizer(Path file) {
+        this.file = file;
+        this.examiner = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "locator-examiner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.examiner.allowCoreThreadTimeOut(true);
+        if (file != null && Files.exists(file)) {
+            try {
+                load(file);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable locator equivalents in " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the optimizer used by every lazy element.
+     * It only examines locators if the lazyElement.optimizeLocators system property is true. If the
+     * lazyElement.locators system property names a file, the equivalents are loaded from it and saved back when the
+     * JVM exits; otherwise they are kept in memory for this run only.
+     */
+    public static LocatorOptimizer getShared() {
+        LocatorOptimizer optimizer = shared;
+        if (optimizer == null) {
+            synchronized (LocatorOptimizer.class) {
+                optimizer = shared;
+                if (optimizer == null) {
+                    String path = System.getProperty("lazyElement.locators");
+                    LocatorOptimizer created = new LocatorOptimizer(path == null ? null : Paths.get(path));
+                    created.setEnabled(Boolean.getBoolean("lazyElement.optimizeLocators"));
+                    if (path != null) {
+                        Runtime.getRuntime().addShutdownHook(new Thread(created::trySave, "locator-equivalents"));
+                    }
+                    shared = created;
+                    optimizer = created;
+                }
+            }
+        }
+        return optimizer;
+    }
+
+    /**
+     * Sets the optimizer used by every lazy element.
+     *
+     * @param optimizer The new optimizer, null to go back to the persisted one
+     * @return The previous optimizer, null if the persisted one was never loaded
+     */
+    public static LocatorOptimizer setShared(LocatorOptimizer optimizer) {
+        synchronized (LocatorOptimizer.class) {
+            LocatorOptimizer previous = shared;
+            shared = optimizer;
+            return previous;
+        }
+    }
+
+    /**
+     * Turns the examination of new locators on or off. Equivalents already known are still used while it is off.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the locator to resolve an element with.
+     *
+     * @param locator  The element's locator key
+     * @param original The element's own locator
+     * @return The fastest known equivalent, or the original locator
+     */
+    public By choose(String locator, By original) {
+        Equivalent equivalent = equivalents.get(locator);
+        return equivalent == null ? original : equivalent.by;
+    }
+
+    /**
+     * Records a resolution. The first time the original locator resolves, the element is queued to be examined for
+     * faster equivalents.
+     *
+     * @param locator  The element's locator key
+     * @param original The element's own locator
+     * @param used     The locator the element was resolved with
+     * @param context  The driver or parent element that was searched
+     * @param element  The element found
+     * @param nanos    How long the find took
+     */
+    public void resolved(String locator, By original, By used, SearchContext context, WebElement element, long nanos) {
+        Equivalent equivalent = equivalents.get(locator);
+        if (equivalent != null && used == equivalent.by) {
+            equivalent.equivalentNanos = average(equivalent.equivalentNanos, nanos);
+            equivalent.uses.increment();
+            equivalent.savedNanos.add((long) equivalent.originalNanos - nanos);
+            return;
+        }
+        if (enabled && examined.add(locator)) {
+            synchronized (this) {
+                pending++;
+            }
+            try {
+                examiner.execute(() -> {
+                    try {
+                        examine(locator, original, context, element, nanos);
+                    } finally {
+                        examinedOne();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Closed, examined again by a later optimizer
+                examined.remove(locator);
+                examinedOne();
+            }
+        }
+    }
+
+    private synchronized void examinedOne() {
+        pending--;
+        notifyAll();
+    }
+
+    /**
+     * Waits for the queued examinations to finish.
+     *
+     * @param timeout The longest time to wait
+     * @param unit    Unit of the timeout
+     * @return Whether every examination finished
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (pending > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops examining locators and the thread examinations run on. Queued examinations are dropped.
+     */
+    public void close() {
+        this.enabled = false;
+        int dropped = this.examiner.shutdownNow().size();
+        synchronized (this) {
+            pending -= dropped;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Drops the equivalent of a locator after it failed to find the element, so the locator is examined again the
+     * next time the original resolves.
+     *
+     * @param locator The element's locator key
+     */
+    public void rejected(String locator) {
+        Equivalent equivalent = equivalents.remove(locator);
+        if (equivalent != null) {
+            examined.remove(locator);
+            log.debug("Dropped " + equivalent.by + " as the equivalent of " + locator);
+        }
+    }
+
+    /**
+     * Times the candidates built from the element's attributes and keeps the fastest one that finds only the same
+     * element.
+     */
+    private void examine(String locator, By original, SearchContext context, WebElement element, long originalNanos) {
+        List<String[]> candidates = new ArrayList<>(2);
+        try {
+            String automationId = element.getAttribute("AutomationId");
+            if (automationId != null && !automationId.isEmpty()) {
+                candidates.add(new String[] {"AccessibilityId", automationId});
+            }
+            String name = element.getAttribute("Name");
+            if (name != null && !name.isEmpty() && original.toString().startsWith("By.xpath: ")) {
+                candidates.add(new String[] {"name", name});
+            }
+        } catch (RuntimeException e) {
+            log.debug("Could not read the attributes of " + locator + ": " + e.getMessage());
+            return;
+        }
+
+        Equivalent fastest = null;
+        for (String[] candidate : candidates) {
+            By by = toBy(candidate[0], candidate[1]);
+            if (by.toString().equals(original.toString())) {
+                continue;
+            }
+            try {
+                long start = System.nanoTime();
+                List<WebElement> found = context.findElements(by);
+                long nanos = System.nanoTime() - start;
+                // An AutomationId or Name shared with another element would find whichever comes first later on
+                if (found.size() != 1) {
+                    log.debug(by + " finds " + found.size() + " elements, not only " + locator);
+                    continue;
+                }
+                if (sameElement(element, found.get(0)) && nanos < originalNanos
+                        && (fastest == null || nanos < fastest.equivalentNanos)) {
+                    fastest = new Equivalent(candidate[0], candidate[1], originalNanos, nanos);
+                }
+            } catch (RuntimeException e) {
+                log.debug(by + " does not find " + locator + ": " + e.getMessage());
+            }
+        }
+
+        if (fastest != null) {
+            equivalents.put(locator, fastest);
+            log.debug("Using " + fastest.by + " for " + locator + String.format(", %.1fx faster", fastest.getSpeedup()));
+        }
+    }
+
+    private static boolean sameElement(WebElement expected, WebElement found) {
+        if (expected.equals(found)) {
+            return true;
+        }
+        String runtimeId = expected.getAttribute("RuntimeId");
+        return runtimeId != null && runtimeId.equals(found.getAttribute("RuntimeId"));
+    }
+
+    private static double average(double average, long sample) {
+        return average <= 0 ? sample : average + Smoothing * (sample - average);
+    }
+
+    private static By toBy(String strategy, String value) {
+        switch (strategy) {
+            case "AccessibilityId":
+                return MobileBy.AccessibilityId(value);
+            case "name":
+                return By.name(value);
+            default:
+                throw new IllegalArgumentException("Unsupported locator strategy " + strategy);
+        }
+    }
+
+    /**
+     * Gets the number of locators with a faster equivalent
+     */
+    public int getEquivalents() {
+        return equivalents.size();
+    }
+
+    /**
+     * Gets the time saved so far by using the equivalents
+     */
+    public long getSavedMillis() {
+        long saved = 0;
+        for (Equivalent equivalent : equivalents.values()) {
+            saved += equivalent.savedNanos.sum();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(saved);
+    }
+
+    /**
+     * Writes the equivalents and the examined locators to the file, replacing it atomically where the file system
+     * allows.
+     */
+    public void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "locator-equivalents", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (String locator : new TreeSet<>(examined)) {
+                    Equivalent equivalent = equivalents.get(locator);
+                    writer.write(escape(locator));
+                    if (equivalent != null) {
+                        writer.write('\t' + equivalent.strategy + '\t' + escape(equivalent.value)
+                                + '\t' + (long) equivalent.originalNanos + '\t' + (long) equivalent.equivalentNanos);
+                    }
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void trySave() {
+        try {
+            save();
+        } catch (IOException e) {
+            log.warn("Failed to save locator equivalents to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void load(Path path) throws IOException {
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\t", -1);
+            String locator = unescape(fields[0]);
+            if (fields.length == 5) {
+                equivalents.put(locator, new Equivalent(fields[1], unescape(fields[2]),
+                        Double.parseDouble(fields[3]), Double.parseDouble(fields[4])));
+            }
+            examined.add(locator);
+        }
+    }
+
+    /**
+     * Gets the equivalent chosen for every locator and the speedup it brought.
+     *
+     * @return One line per rewritten locator
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder("Locator equivalents: ").append(equivalents.size())
+                .append(" of ").append(examined.size()).append(" locators rewritten, ")
+                .append(getSavedMillis()).append(" ms saved");
+        for (Map.Entry<String, Equivalent> entry : new TreeMap<>(equivalents).entrySet()) {
+            Equivalent equivalent = entry.getValue();
+            report.append("\r\n  ").append(entry.getKey()).append(" -> ").append(equivalent.by)
+                    .append(String.format(": %.1f ms instead of %.1f ms (%.1fx), used %d times",
+                            equivalent.equivalentNanos / 1e6, equivalent.originalNanos / 1e6,
+                            equivalent.getSpeedup(), equivalent.uses.sum()));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getReport();
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String text) {
+        StringBuilder unescaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+
+public class LocatorOptimizerTest {
+
+    private static final String OneKey = "By.name: Calculator > By.name: One";
+
+    private final Logger logger = Logger.getLogger(LocatorOptimizerTest.class);
+
+    private StandInDriver driver;
+
+    private StandInElement calculator;
+
+    private StandInElement one;
+
+    private LazyElement window;
+
+    private LocatorOptimizer optimizer;
+
+    private LocatorOptimizer previous;
+
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        driver = new StandInDriver();
+        calculator = driver.window("Calculator").attribute("AutomationId", "CalculatorWindow");
+        calculator.add("Two").attribute("AutomationId", "num2Button");
+        one = calculator.add("One").attribute("AutomationId", "num1Button");
+        window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+
+        // Name lookups walk the tree, AutomationId lookups do not
+        driver.setFindLatency("name", 40);
+        driver.setFindLatency("AccessibilityId", 2);
+
+        optimizer = new LocatorOptimizer(null);
+        previous = LocatorOptimizer.setShared(optimizer);
+        file = Files.createTempFile("locator-equivalents", ".txt");
+        Files.delete(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        LocatorOptimizer.setShared(previous).close();
+        optimizer.close();
+        Files.deleteIfExists(file);
+    }
+
+    private LazyElement oneButton() {
+        return new LazyElement(logger, window, By.name("One"), "Button One");
+    }
+
+    /**
+     * Waits for the examinations the resolutions so far queued.
+     */
+    private static void examined() throws InterruptedException {
+        Assert.assertTrue(LocatorOptimizer.getShared().flush(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void RewritesNameIntoAccessibilityId() throws InterruptedException {
+        Assert.assertEquals("One", oneButton().getText());
+        examined();
+        Assert.assertEquals(2, optimizer.getEquivalents());
+
+        int finds = driver.getFindCount();
+        long start = System.nanoTime();
+        Assert.assertEquals("One", oneButton().getText());
+
+        Assert.assertTrue((System.nanoTime() - start) / 1000000 < 40);
+        Assert.assertEquals(finds + 1, driver.getFindCount());
+        String report = optimizer.getReport();
+        Assert.assertTrue(report, report.contains(OneKey + " -> By.AccessibilityId: num1Button"));
+        Assert.assertTrue(report, report.contains("used 1 times"));
+        Assert.assertTrue(report, optimizer.getSavedMillis() > 0);
+    }
+
+    @Test
+    public void KeepsOriginalWhenEquivalentIsNotFaster() throws InterruptedException {
+        driver.setFindLatency("name", 2);
+        driver.setFindLatency("AccessibilityId", 40);
+
+        oneButton().getText();
+        examined();
+
+        Assert.assertEquals(0, optimizer.getEquivalents());
+        Assert.assertTrue(optimizer.getReport(), optimizer.getReport().startsWith("Locator equivalents: 0 of 2 locators"));
+    }
+
+    @Test
+    public void RejectsEquivalentFindingAnotherElement() throws InterruptedException {
+        one.attribute("AutomationId", "num2Button");
+
+        oneButton().getText();
+        examined();
+
+        // Only the window keeps an equivalent
+        Assert.assertEquals(1, optimizer.getEquivalents());
+        Assert.assertFalse(optimizer.getReport(), optimizer.getReport().contains(OneKey + " ->"));
+    }
+
+    @Test
+    public void RejectsEquivalentThatIsNotUnique() throws InterruptedException {
+        // Found after One, so a single find would still return One
+        calculator.add("Numpad One").attribute("AutomationId", "num1Button");
+
+        oneButton().getText();
+        examined();
+
+        Assert.assertFalse(optimizer.getReport(), optimizer.getReport().contains(OneKey + " ->"));
+    }
+
+    @Test
+    public void FallsBackWhenEquivalentStopsMatching() throws InterruptedException {
+        oneButton().getText();
+        examined();
+        one.attribute("AutomationId", "oneButton");
+
+        Assert.assertEquals("One", oneButton().getText());
+        examined();
+        Assert.assertFalse(optimizer.getReport(), optimizer.getReport().contains("num1Button"));
+
+        // The fallback resolution examines the element again
+        Assert.assertTrue(optimizer.getReport(), optimizer.getReport().contains(OneKey + " -> By.AccessibilityId: oneButton"));
+    }
+
+    @Test
+    public void EquivalentsArePersistedBetweenRuns() throws IOException, InterruptedException {
+        LocatorOptimizer first = new LocatorOptimizer(file);
+        LocatorOptimizer.setShared(first);
+        oneButton().getText();
+        examined();
+        first.save();
+        first.close();
+
+        LocatorOptimizer.setShared(new LocatorOptimizer(file));
+        window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        int finds = driver.getFindCount();
+        oneButton().getText();
+
+        // Both the window and the button are found by AutomationId straight away, without being examined again
+        Assert.assertEquals(finds + 2, driver.getFindCount());
+        Assert.assertEquals(2, LocatorOptimizer.getShared().getEquivalents());
+    }
+
+    @Test
+    public void ExaminationDoesNotHoldUpTheResolution() throws InterruptedException {
+        driver.setFindLatency("AccessibilityId", 300);
+
+        long start = System.nanoTime();
+        oneButton().getText();
+
+        // The window and the button each have a candidate that takes 300 ms to time
+        Assert.assertTrue((System.nanoTime() - start) / 1000000 < 300);
+        examined();
+        Assert.assertEquals(0, optimizer.getEquivalents());
+    }
+}
@@ -0,0 +1,376 @@
+package lazyElement;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Learns how long each locator takes to become ready and derives its poll interval and timeout from that.
+ * The most recent samples of every locator are kept and persisted to a local file, so the learning carries over
+ * between runs when a file is given. A locator with too little history uses the defaults. Otherwise it polls at a
+ * fraction of its median and times out at a multiple of its p99, both clamped to safe bounds.
+ * <p>
+ * A wait that timed out says only that the locator took longer than its timeout, so it is not a sample. It doubles
+ * the locator's timeout instead, up to the default, so a timeout that shrank too far grows back while an element
+ * that is legitimately absent never waits longer than it would have without learning.
+ */
+public final class LocatorTimings {
+
+    private static final Logger log = Logger.getLogger(LocatorTimings.class);
+
+    /**
+     * Samples kept per locator
+     */
+    private static final int Window = 200;
+
+    /**
+     * Samples needed before a locator's own timings are used
+     */
+    private static final int MinSamples = 5;
+
+    /**
+     * Timings used by every lazy element, persisted to the file named by the lazyElement.timings system property if
+     * it is set
+     */
+    private static volatile LocatorTimings shared;
+
+    /**
+     * Observed times to ready of one locator, with the values derived from them
+     */
+    private final class History {
+        private final int[] samples = new int[Window];
+        private int count;
+        private int next;
+        private volatile int p50 = -1;
+        private volatile int p99 = -1;
+        private volatile long pollInterval = defaultPollInterval;
+        private volatile long timeout = defaultTimeout;
+
+        /**
+         * The least timeout since waits timed out, at most the default
+         */
+        private long floor;
+
+        private synchronized void add(int millis) {
+            samples[next] = millis;
+            next = (next + 1) % Window;
+            if (count < Window) {
+                count++;
+            }
+            if (count >= MinSamples) {
+                int[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                p50 = percentile(sorted, 50);
+                p99 = percentile(sorted, 99);
+                pollInterval = clamp(p50 / pollDivisor, minPollInterval, maxPollInterval);
+                timeout = Math.max(floor, clamp((long) p99 * timeoutMultiplier, minTimeout, maxTimeout));
+            }
+        }
+
+        private synchronized void timedOut() {
+            if (p99 >= 0 && timeout < defaultTimeout) {
+                floor = Math.min(defaultTimeout, Math.max(floor, timeout * 2));
+                timeout = Math.max(timeout, floor);
+            }
+        }
+
+        private synchronized int[] oldestFirst() {
+            int[] ordered = new int[count];
+            int first = count < Window ? 0 : next;
+            for (int i = 0; i < count; i++) {
+                ordered[i] = samples[(first + i) % Window];
+            }
+            return ordered;
+        }
+    }
+
+    private final ConcurrentMap<String, History> histories = new ConcurrentHashMap<>();
+
+    private final Path file;
+
+    private volatile long defaultPollInterval = AbstractLazyWebElement.Retrytime;
+
+    private volatile long defaultTimeout = AbstractLazyWebElement.Timeout;
+
+    private volatile long minPollInterval = 50;
+
+    private volatile long maxPollInterval = AbstractLazyWebElement.Retrytime;
+
+    private volatile long minTimeout = 5000;
+
+    private volatile long maxTimeout = 120000;
+
+    private volatile int pollDivisor = 4;
+
+    private volatile int timeoutMultiplier = 3;
+
+    /**
+     * Initializes a new instance of the {@link LocatorTimings} class, loading the history in the file if there is one
+     *
+     * @param file The file the history is persisted to, or null to keep it in memory only
+     */
+    public LocatorTimings(Path file) {
+        this.file = file;
+        if (file != null && Files.exists(file)) {
+            try {
+                load(file);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable locator timings in " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the timings used by every lazy element.
+     * If the lazyElement.timings system property names a file, they are loaded from it and saved back when the JVM
+     * exits; otherwise they are kept in memory for this run only.
+     */
+    public static LocatorTimings getShared() {
+        LocatorTimings timings = shared;
+        if (timings == null) {
+            synchronized (LocatorTimings.class) {
+                timings = shared;
+                if (timings == null) {
+                    String path = System.getProperty("lazyElement.timings");
+                    LocatorTimings created = new LocatorTimings(path == null ? null : Paths.get(path));
+                    if (path != null) {
+                        Runtime.getRuntime().addShutdownHook(new Thread(created::trySave, "locator-timings"));
+                    }
+                    shared = created;
+                    timings = created;
+                }
+            }
+        }
+        return timings;
+    }
+
+    /**
+     * Sets the timings used by every lazy element.
+     *
+     * @param timings The new timings, null to go back to the persisted ones
+     * @return The previous timings, null if the persisted ones were never loaded
+     */
+    public static LocatorTimings setShared(LocatorTimings timings) {
+        synchronized (LocatorTimings.class) {
+            LocatorTimings previous = shared;
+            shared = timings;
+            return previous;
+        }
+    }
+
+    /**
+     * Records how long a locator took to become ready.
+     *
+     * @param locator The locator
+     * @param millis  Time to ready in milliseconds
+     */
+    public void record(String locator, long millis) {
+        histories.computeIfAbsent(locator, key -> new History()).add((int) Math.min(Integer.MAX_VALUE, Math.max(0, millis)));
+    }
+
+    /**
+     * Records that a locator was not ready within its timeout.
+     * Its time to ready is not known, only that it is longer than the timeout, so it is not learned as a sample. A
+     * learned timeout below the default is doubled instead, up to the default, so one that shrank below the locator's
+     * real time to ready grows back.
+     *
+     * @param locator The locator
+     */
+    public void recordTimeout(String locator) {
+        History history = histories.get(locator);
+        if (history != null) {
+            history.timedOut();
+        }
+    }
+
+    /**
+     * Gets how long to wait between checks of a locator.
+     *
+     * @param locator The locator
+     * @return Poll interval in milliseconds
+     */
+    public long getPollInterval(String locator) {
+        History history = histories.get(locator);
+        return history == null || history.p50 < 0 ? defaultPollInterval : history.pollInterval;
+    }
+
+    /**
+     * Gets how long to wait for a locator before giving up.
+     *
+     * @param locator The locator
+     * @return Timeout in milliseconds
+     */
+    public long getTimeout(String locator) {
+        History history = histories.get(locator);
+        return history == null || history.p99 < 0 ? defaultTimeout : history.timeout;
+    }
+
+    /**
+     * Sets the values used for locators with too little history.
+     *
+     * @param pollInterval Poll interval in milliseconds
+     * @param timeout      Timeout in milliseconds
+     */
+    public void setDefaults(long pollInterval, long timeout) {
+        this.defaultPollInterval = pollInterval;
+        this.defaultTimeout = timeout;
+    }
+
+    /**
+     * Sets the bounds learned values are clamped to. Only affects values learned afterwards.
+     *
+     * @param minPollInterval Shortest poll interval in milliseconds
+     * @param maxPollInterval Longest poll interval in milliseconds
+     * @param minTimeout      Shortest timeout in milliseconds
+     * @param maxTimeout      Longest timeout in milliseconds
+     */
+    public void setBounds(long minPollInterval, long maxPollInterval, long minTimeout, long maxTimeout) {
+        if (minPollInterval > maxPollInterval || minTimeout > maxTimeout) {
+            throw new IllegalArgumentException("Lower bounds must not exceed upper bounds");
+        }
+        this.minPollInterval = minPollInterval;
+        this.maxPollInterval = maxPollInterval;
+        this.minTimeout = minTimeout;
+        this.maxTimeout = maxTimeout;
+    }
+
+    /**
+     * Sets how learned values follow the history. Only affects values learned afterwards.
+     *
+     * @param pollDivisor       The poll interval is the median time to ready divided by this
+     * @param timeoutMultiplier The timeout is the p99 time to ready multiplied by this
+     */
+    public void setFactors(int pollDivisor, int timeoutMultiplier) {
+        if (pollDivisor < 1 || timeoutMultiplier < 1) {
+            throw new IllegalArgumentException("Factors must be at least 1");
+        }
+        this.pollDivisor = pollDivisor;
+        this.timeoutMultiplier = timeoutMultiplier;
+    }
+
+    /**
+     * Writes the history to the file, replacing it atomically where the file system allows.
+     */
+    public void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "locator-timings", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, History> entry : new TreeMap<>(histories).entrySet()) {
+                    int[] samples = entry.getValue().oldestFirst();
+                    writer.write(escape(entry.getKey()));
+                    writer.write('\t');
+                    for (int i = 0; i < samples.length; i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        writer.write(Integer.toString(samples[i]));
+                    }
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void trySave() {
+        try {
+            save();
+        } catch (IOException e) {
+            log.warn("Failed to save locator timings to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void load(Path path) throws IOException {
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            int tab = line.lastIndexOf('\t');
+            if (tab <= 0 || tab == line.length() - 1) {
+                continue;
+            }
+            String locator = unescape(line.substring(0, tab));
+            for (String sample : line.substring(tab + 1).split(",")) {
+                record(locator, Long.parseLong(sample.trim()));
+            }
+        }
+    }
+
+    /**
+     * Gets the values chosen for every locator with history.
+     *
+     * @return One line per locator
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder("Locator timings (default poll ").append(defaultPollInterval)
+                .append(" ms, timeout ").append(defaultTimeout).append(" ms)");
+        for (Map.Entry<String, History> entry : new TreeMap<>(histories).entrySet()) {
+            History history = entry.getValue();
+            report.append("\r\n  ").append(entry.getKey()).append(": ");
+            synchronized (history) {
+                report.append(history.count).append(" samples");
+                if (history.p50 < 0) {
+                    report.append(", using defaults");
+                } else {
+                    report.append(", p50 ").append(history.p50).append(" ms")
+                            .append(", p99 ").append(history.p99).append(" ms")
+                            .append(" -> poll ").append(history.pollInterval).append(" ms")
+                            .append(", timeout ").append(history.timeout).append(" ms");
+                }
+            }
+        }
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getReport();
+    }
+
+    private static int percentile(int[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static String escape(String locator) {
+        return locator.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String locator) {
+        StringBuilder unescaped = new StringBuilder(locator.length());
+        for (int i = 0; i < locator.length(); i++) {
+            char c = locator.charAt(i);
+            if (c == '\\' && i + 1 < locator.length()) {
+                char next = locator.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
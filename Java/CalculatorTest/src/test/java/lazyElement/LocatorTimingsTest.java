@@ -0,0 +1,160 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+
+public class LocatorTimingsTest {
+
+    private final Logger logger = Logger.getLogger(LocatorTimingsTest.class);
+
+    private Path file;
+
+    private LocatorTimings previousTimings;
+
+    private TimeSource previousClock;
+
+    @Before
+    public void setup() throws IOException {
+        file = Files.createTempFile("locator-timings", ".txt");
+        Files.delete(file);
+        previousTimings = LocatorTimings.setShared(new LocatorTimings(null));
+        previousClock = GenericWait.setTimeSource(new VirtualTimeSource());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        LocatorTimings.setShared(previousTimings);
+        GenericWait.setTimeSource(previousClock);
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void UnknownLocatorUsesDefaults() {
+        LocatorTimings timings = new LocatorTimings(null);
+        for (int i = 0; i < 4; i++) {
+            timings.record("By.name: One", 10);
+        }
+
+        Assert.assertEquals(AbstractLazyWebElement.Retrytime, timings.getPollInterval("By.name: One"));
+        Assert.assertEquals(AbstractLazyWebElement.Timeout, timings.getTimeout("By.name: Seven"));
+        Assert.assertTrue(timings.getReport(), timings.getReport().contains("By.name: One: 4 samples, using defaults"));
+    }
+
+    @Test
+    public void LearnsFromMedianAndP99() {
+        LocatorTimings timings = new LocatorTimings(null);
+        for (int i = 1; i <= 100; i++) {
+            timings.record("By.name: Result", i * 40);
+        }
+
+        // p50 is 2000 and p99 is 3960
+        Assert.assertEquals(500, timings.getPollInterval("By.name: Result"));
+        Assert.assertEquals(11880, timings.getTimeout("By.name: Result"));
+        Assert.assertTrue(timings.getReport(), timings.getReport().contains("p99 3960 ms -> poll 500 ms, timeout 11880 ms"));
+    }
+
+    @Test
+    public void LearnedValuesAreClampedToBounds() {
+        LocatorTimings timings = new LocatorTimings(null);
+        for (int i = 0; i < 10; i++) {
+            timings.record("By.name: Fast", 20);
+            timings.record("By.name: Slow", 90000);
+        }
+
+        Assert.assertEquals(50, timings.getPollInterval("By.name: Fast"));
+        Assert.assertEquals(5000, timings.getTimeout("By.name: Fast"));
+        Assert.assertEquals(AbstractLazyWebElement.Retrytime, timings.getPollInterval("By.name: Slow"));
+        Assert.assertEquals(120000, timings.getTimeout("By.name: Slow"));
+    }
+
+    @Test
+    public void HistoryIsPersistedBetweenRuns() throws IOException {
+        LocatorTimings first = new LocatorTimings(file);
+        for (int i = 0; i < 10; i++) {
+            first.record("By.name: Calculator > By.xpath: //*[@Name=\"Tab\tName\"]", 400);
+        }
+        first.save();
+
+        LocatorTimings second = new LocatorTimings(file);
+
+        Assert.assertEquals(100, second.getPollInterval("By.name: Calculator > By.xpath: //*[@Name=\"Tab\tName\"]"));
+        Assert.assertEquals(first.getReport(), second.getReport());
+    }
+
+    @Test
+    public void UnreadableFileFallsBackToDefaults() throws IOException {
+        Files.write(file, "By.name: One\tnot,numbers\n".getBytes("UTF-8"));
+
+        LocatorTimings timings = new LocatorTimings(file);
+
+        Assert.assertEquals(AbstractLazyWebElement.Timeout, timings.getTimeout("By.name: One"));
+    }
+
+    @Test
+    public void LazyElementLearnsTimeToReady() {
+        StandInDriver driver = new StandInDriver();
+        driver.window("Calculator").add("One");
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+
+        for (int i = 0; i < 5; i++) {
+            new LazyElement(logger, window, By.name("One"), "Button One").getText();
+        }
+
+        LocatorTimings timings = LocatorTimings.getShared();
+        String key = "By.name: Calculator > By.name: One";
+        Assert.assertEquals(key, new LazyElement(logger, window, By.name("One"), "Button One").getLocatorKey());
+        Assert.assertTrue(timings.getReport(), timings.getReport().contains(key + ": 5 samples"));
+        Assert.assertEquals(50, timings.getPollInterval(key));
+        Assert.assertEquals(5000, timings.getTimeout(key));
+    }
+
+    @Test
+    public void TimeoutsLetAShrunkTimeoutGrowBack() {
+        StandInDriver driver = new StandInDriver();
+        driver.window("Calculator");
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        LazyElement slow = new LazyElement(logger, window, By.name("Slow"), "Slow result");
+        LocatorTimings timings = LocatorTimings.getShared();
+        for (int i = 0; i < 5; i++) {
+            timings.record(slow.getLocatorKey(), 20);
+        }
+        Assert.assertEquals(5000, timings.getTimeout(slow.getLocatorKey()));
+
+        try {
+            slow.getText();
+            Assert.fail("Slow result never appears");
+        } catch (NoSuchElementException e) {
+            // Timed out at 5000 ms
+        }
+
+        Assert.assertEquals(10000, timings.getTimeout(slow.getLocatorKey()));
+        Assert.assertTrue(timings.getReport(), timings.getReport().contains(slow.getLocatorKey() + ": 5 samples"));
+    }
+
+    @Test
+    public void TimeoutsNeverGrowPastTheDefault() {
+        LocatorTimings timings = new LocatorTimings(null);
+        for (int i = 0; i < 5; i++) {
+            timings.record("By.name: Slow", 20);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            timings.recordTimeout("By.name: Slow");
+            timings.recordTimeout("By.name: Missing");
+        }
+        timings.record("By.name: Slow", 20);
+
+        Assert.assertEquals(AbstractLazyWebElement.Timeout, timings.getTimeout("By.name: Slow"));
+        Assert.assertEquals(AbstractLazyWebElement.Timeout, timings.getTimeout("By.name: Missing"));
+        Assert.assertFalse(timings.getReport(), timings.getReport().contains("By.name: Missing"));
+    }
+}
@@ -0,0 +1,365 @@
+package lazyElement;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Publishes the changes of one property of a lazy element to any number of subscribers.
+ * Every subscriber of a property shares one poll, run on a scheduler shared by all elements and only while someone
+ * is subscribed, so many conditions on one element cost one server call per interval instead of one sleep loop and
+ * call each. Only distinct values are published and a new subscriber first gets the current one. A subscriber that
+ * has not requested more is not queued up for: once it does, it gets the latest value, as the current state is what
+ * a condition needs. Null values, such as a missing attribute, are not published.
+ * <p>
+ * The interfaces are the Reactive Streams ones, which java.util.concurrent.Flow copies; on Java 9 and later
+ * org.reactivestreams.FlowAdapters converts between them.
+ */
+public final class PropertyStream implements Publisher<String> {
+
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+            Integer.getInteger("lazyElement.observerThreads", 2), runnable -> {
+                Thread thread = new Thread(runnable, "element-observer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * The poll shared by every view of one property
+     */
+    private static final class Source {
+        private final String name;
+        private final Supplier<String> read;
+        private final long intervalNanos;
+        private final List<PropertyStream.Watch> watches = new CopyOnWriteArrayList<>();
+        private final LongAdder polls = new LongAdder();
+        private final LongAdder changes = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        /**
+         * Running poll, null while nobody is subscribed, guarded by this
+         */
+        private ScheduledFuture<?> polling;
+
+        /**
+         * Last value read, null until the first one, written under this
+         */
+        private volatile String value;
+
+        private Source(String name, Supplier<String> read, long intervalNanos) {
+            this.name = name;
+            this.read = read;
+            this.intervalNanos = intervalNanos;
+        }
+
+        private synchronized void add(PropertyStream.Watch watch) {
+            watches.add(watch);
+            if (polling == null) {
+                polling = scheduler.scheduleWithFixedDelay(this::poll, 0, intervalNanos, TimeUnit.NANOSECONDS);
+            } else if (value != null) {
+                watch.offer(value);
+            }
+        }
+
+        private synchronized void remove(PropertyStream.Watch watch) {
+            if (watches.remove(watch) && watches.isEmpty() && polling != null) {
+                polling.cancel(false);
+                polling = null;
+                // Stale by the time anyone subscribes again
+                value = null;
+            }
+        }
+
+        private void poll() {
+            polls.increment();
+            String next;
+            try {
+                next = read.get();
+            } catch (RuntimeException e) {
+                // Not there right now, the next poll tries again
+                errors.increment();
+                return;
+            }
+            if (next == null) {
+                return;
+            }
+            // Published under the lock add offers the current value under, so a new watch gets the values in order
+            synchronized (this) {
+                if (next.equals(value)) {
+                    return;
+                }
+                value = next;
+                changes.increment();
+                for (PropertyStream.Watch watch : watches) {
+                    watch.offer(next);
+                }
+            }
+        }
+    }
+
+    private final Source source;
+
+    private final long debounceNanos;
+
+    private final long timeoutNanos;
+
+    private PropertyStream(Source source, long debounceNanos, long timeoutNanos) {
+        this.source = source;
+        this.debounceNanos = debounceNanos;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    /**
+     * Creates the stream of a property.
+     *
+     * @param name           The element and property, for reports
+     * @param read           Reads the property once, throwing or returning null if it cannot be read right now
+     * @param intervalMillis Time between reads while anyone is subscribed
+     * @return The stream, without debounce or timeout
+     */
+    static PropertyStream of(String name, Supplier<String> read, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalMillis);
+        }
+        return new PropertyStream(new Source(name, read, TimeUnit.MILLISECONDS.toNanos(intervalMillis)), 0, 0);
+    }
+
+    /**
+     * Gets a view that only publishes a value once it held for a while, so a display still counting up or an
+     * animation passing through values is not seen. It shares this stream's poll.
+     *
+     * @param millis Time a value must hold in milliseconds
+     * @return The debounced view
+     */
+    public PropertyStream debounce(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Debounce cannot be negative: " + millis);
+        }
+        return new PropertyStream(source, TimeUnit.MILLISECONDS.toNanos(millis), timeoutNanos);
+    }
+
+    /**
+     * Gets a view whose subscriptions end with a {@link TimeoutException} once they have been open for a while.
+     * It shares this stream's poll.
+     *
+     * @param millis Time in milliseconds, 0 for no timeout
+     * @return The view with the timeout
+     */
+    public PropertyStream timeout(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative: " + millis);
+        }
+        return new PropertyStream(source, debounceNanos, TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super String> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        Watch watch = new Watch(subscriber);
+        subscriber.onSubscribe(watch);
+        if (timeoutNanos > 0) {
+            watch.timeoutTask = scheduler.schedule(() -> watch.fail(new TimeoutException(
+                    source.name + " timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms")),
+                    timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        if (!watch.cancelled) {
+            source.add(watch);
+        }
+    }
+
+    /**
+     * Waits, without blocking, for the first value that meets a condition.
+     *
+     * @param condition The condition, e.g. {@code "8"::equals}
+     * @return Completes with the matching value, or exceptionally if this view timed out first. Cancelling it
+     * unsubscribes
+     */
+    public CompletableFuture<String> when(Predicate<? super String> condition) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        subscribe(new Subscriber<String>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                result.whenComplete((value, failure) -> subscription.cancel());
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(String value) {
+                try {
+                    if (condition.test(value)) {
+                        result.complete(value);
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable failure) {
+                result.completeExceptionally(failure);
+            }
+
+            @Override
+            public void onComplete() {
+                result.completeExceptionally(new IllegalStateException(source.name + " is no longer observed"));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Gets the number of times the property was read
+     */
+    public long getPolls() {
+        return source.polls.sum();
+    }
+
+    /**
+     * Gets the number of distinct values read
+     */
+    public long getChanges() {
+        return source.changes.sum();
+    }
+
+    /**
+     * Gets the number of open subscriptions across every view of the property
+     */
+    public int getSubscribers() {
+        return source.watches.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d subscribers, %d polls every %d ms, %d changes, %d failed reads", source.name,
+                getSubscribers(), getPolls(), TimeUnit.NANOSECONDS.toMillis(source.intervalNanos), getChanges(),
+                source.errors.sum());
+    }
+
+    /**
+     * One subscription. Signals are serialized by the work counter, whichever thread offers, requests or fails
+     * delivers them.
+     */
+    private final class Watch implements Subscription {
+        private final Subscriber<? super String> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private final AtomicReference<String> latest = new AtomicReference<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private volatile boolean cancelled;
+        private volatile ScheduledFuture<?> timeoutTask;
+
+        /**
+         * Debounce of the value waiting to hold, guarded by this
+         */
+        private ScheduledFuture<?> debounceTask;
+
+        /**
+         * Last value delivered, only touched while delivering
+         */
+        private String delivered;
+
+        private Watch(Subscriber<? super String> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private void offer(String value) {
+            if (debounceNanos == 0) {
+                publish(value);
+                return;
+            }
+            synchronized (this) {
+                if (debounceTask != null) {
+                    debounceTask.cancel(false);
+                }
+                debounceTask = cancelled ? null
+                        : scheduler.schedule(() -> publish(value), debounceNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void publish(String value) {
+            latest.set(value);
+            deliver();
+        }
+
+        private void fail(Throwable error) {
+            failure.compareAndSet(null, error);
+            deliver();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Rule 3.9: requested " + n + " values, must be positive"));
+                return;
+            }
+            demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            deliver();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            source.remove(this);
+            ScheduledFuture<?> timeout = timeoutTask;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            synchronized (this) {
+                if (debounceTask != null) {
+                    debounceTask.cancel(false);
+                }
+            }
+        }
+
+        private void deliver() {
+            if (work.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!cancelled) {
+                    Throwable error = failure.get();
+                    if (error != null) {
+                        cancel();
+                        subscriber.onError(error);
+                    } else if (demand.get() > 0) {
+                        String value = latest.getAndSet(null);
+                        if (value != null && !value.equals(delivered)) {
+                            delivered = value;
+                            if (demand.get() != Long.MAX_VALUE) {
+                                demand.decrementAndGet();
+                            }
+                            subscriber.onNext(value);
+                        }
+                    }
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package lazyElement;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+public class PropertyStreamTest {
+
+    private final Logger logger = Logger.getLogger(PropertyStreamTest.class);
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    /**
+     * Value of each read in turn, the last one repeats
+     */
+    private volatile String[] script = {"0"};
+
+    private final PropertyStream stream = PropertyStream.of("Display Value", () -> {
+        String[] values = script;
+        return values[Math.min(reads.getAndIncrement(), values.length - 1)];
+    }, 5);
+
+    private void play(String... values) {
+        reads.set(0);
+        script = values;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Collects what it is sent, requesting the given number of values up front
+     */
+    private static final class Recorder implements Subscriber<String> {
+        private final List<String> values = new CopyOnWriteArrayList<>();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final long initialDemand;
+        private volatile Subscription subscription;
+
+        private Recorder(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(String value) {
+            values.add(value);
+        }
+
+        @Override
+        public void onError(Throwable failure) {
+            error.set(failure);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    @Test
+    public void ConditionsShareOnePoll() throws Exception {
+        play("0", "0", "8", "8", "81");
+
+        CompletableFuture<String> eight = stream.when("8"::equals);
+        CompletableFuture<String> eightyOne = stream.when("81"::equals);
+        CompletableFuture<String> nonZero = stream.when(value -> !"0".equals(value));
+
+        Assert.assertEquals("8", eight.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("8", nonZero.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("81", eightyOne.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(reads.get(), stream.getPolls());
+        Assert.assertEquals(3, stream.getChanges());
+
+        // Nobody is left subscribed, so the poll stopped
+        await(() -> stream.getSubscribers() == 0);
+        Thread.sleep(20);
+        long polls = stream.getPolls();
+        Thread.sleep(50);
+        Assert.assertEquals(stream.toString(), polls, stream.getPolls());
+    }
+
+    @Test
+    public void OnlyDistinctValuesArePublished() throws Exception {
+        play("1", "1", "2", "2", "2", "3");
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+        stream.subscribe(recorder);
+        await(() -> recorder.values.size() == 3);
+        Thread.sleep(30);
+        recorder.subscription.cancel();
+
+        Assert.assertEquals("[1, 2, 3]", recorder.values.toString());
+    }
+
+    @Test
+    public void LateSubscriberGetsTheCurrentValue() throws Exception {
+        play("7");
+        Recorder first = new Recorder(Long.MAX_VALUE);
+        stream.subscribe(first);
+        await(() -> first.values.size() == 1);
+
+        Recorder late = new Recorder(Long.MAX_VALUE);
+        stream.subscribe(late);
+
+        await(() -> late.values.size() == 1);
+        Assert.assertEquals("7", late.values.get(0));
+        Assert.assertEquals(2, stream.getSubscribers());
+        first.subscription.cancel();
+        late.subscription.cancel();
+        Assert.assertEquals(0, stream.getSubscribers());
+    }
+
+    @Test
+    public void SlowSubscriberGetsTheLatestValue() throws Exception {
+        play("1");
+        Recorder slow = new Recorder(1);
+        stream.subscribe(slow);
+        await(() -> slow.values.size() == 1);
+
+        play("2", "3", "4");
+        await(() -> stream.getChanges() == 4);
+        Assert.assertEquals(1, slow.values.size());
+
+        slow.subscription.request(1);
+        slow.subscription.cancel();
+
+        Assert.assertEquals("[1, 4]", slow.values.toString());
+    }
+
+    @Test
+    public void DebounceSkipsValuesThatDoNotHold() throws Exception {
+        play("1", "2", "3", "4", "5", "8");
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+        stream.debounce(50).subscribe(recorder);
+        await(() -> !recorder.values.isEmpty());
+        Thread.sleep(60);
+        recorder.subscription.cancel();
+
+        Assert.assertEquals("[8]", recorder.values.toString());
+    }
+
+    @Test
+    public void TimeoutEndsTheSubscription() throws Exception {
+        play("0");
+
+        CompletableFuture<String> never = stream.timeout(50).when("8"::equals);
+
+        try {
+            never.get(5, TimeUnit.SECONDS);
+            Assert.fail("Got " + never.get());
+        } catch (ExecutionException e) {
+            Assert.assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof TimeoutException);
+        }
+        await(() -> stream.getSubscribers() == 0);
+    }
+
+    @Test
+    public void NonPositiveRequestIsAnError() throws Exception {
+        Recorder recorder = new Recorder(0);
+
+        stream.subscribe(recorder);
+
+        Assert.assertTrue(String.valueOf(recorder.error.get()), recorder.error.get() instanceof IllegalArgumentException);
+        Assert.assertEquals(0, stream.getSubscribers());
+    }
+
+    @Test
+    public void LazyElementValueIsObserved() throws Exception {
+        StandInDriver driver = new StandInDriver();
+        StandInElement display = driver.window("Calculator").add("Display").attribute("Value", "0");
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        LazyElement result = new LazyElement(logger, window, By.name("Display"), "Result display");
+
+        CompletableFuture<String> eight = result.observe("Value").when("8"::equals);
+        display.attribute("Value", "8");
+
+        Assert.assertEquals("8", eight.get(5, TimeUnit.SECONDS));
+        Assert.assertSame(result.observe("Value"), result.observe("Value"));
+        Assert.assertNotSame(result.observe("Value"), result.observe("Name"));
+    }
+}
@@ -0,0 +1,52 @@
+package lazyElement;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a lazy element getting its web element, from its cache or from the server.
+ * The event lasts the whole resolution, parents included; the remote time is only the element's own finds. The
+ * fields are filled in only once the event is known to be recorded, so a disabled event costs two clock reads.
+ */
+@Name(ResolutionEvent.NAME)
+@Label("Element Resolution")
+@Category("Lazy Element")
+@Description("A lazy element getting its web element")
+@StackTrace(false)
+public final class ResolutionEvent extends Event {
+
+    public static final String NAME = "lazyElement.Resolution";
+
+    @Label("Element")
+    String element;
+
+    @Label("Locator")
+    @Description("The locator path from the root element")
+    String locator;
+
+    @Label("Parent Depth")
+    int parentDepth;
+
+    @Label("Cache Hit")
+    boolean cacheHit;
+
+    @Label("Joined")
+    @Description("Waited for the find another thread had in flight")
+    boolean joined;
+
+    @Label("Prefetched")
+    boolean prefetched;
+
+    @Label("Remote Time")
+    @Description("Time spent in the element's own finds")
+    @Timespan(Timespan.NANOSECONDS)
+    long remoteTime;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
@@ -0,0 +1,529 @@
+package lazyElement;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+
+/**
+ * Writes screenshots to disk off the test thread.
+ * The test thread only takes the screenshot in its base64 wire form and queues it. Writer threads decode it straight
+ * into a pooled direct buffer and write that to a file channel, or downscale and recompress it first when asked to.
+ * The queue is bounded and a frame that does not fit is dropped and counted instead of blocking the test.
+ */
+public final class ScreenshotPipeline {
+
+    private static final Logger log = Logger.getLogger(ScreenshotPipeline.class);
+
+    /**
+     * Size of a pooled buffer, enough for a full screen PNG; larger frames get a buffer of their own
+     */
+    private static final int BufferSize = 4 << 20;
+
+    private static final int[] Sextets = new int[128];
+
+    static {
+        Arrays.fill(Sextets, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            Sextets[alphabet.charAt(i)] = i;
+        }
+    }
+
+    /**
+     * Pipeline checkpoints and failures are written through, see {@link #getShared()}
+     */
+    private static volatile ScreenshotPipeline shared;
+
+    /**
+     * A screenshot waiting to be written
+     */
+    private static final class Frame {
+        private final String name;
+        private final String base64Png;
+        private final long queuedNanos;
+
+        private Frame(String name, String base64Png, long queuedNanos) {
+            this.name = name;
+            this.base64Png = base64Png;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    private final BlockingQueue<Frame> queue;
+
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    private final Path directory;
+
+    private final Thread[] writers;
+
+    private volatile double scale = 1;
+
+    private volatile float jpegQuality = -1;
+
+    private volatile boolean closed;
+
+    /**
+     * Frames queued or being written, guarded by this
+     */
+    private int pending;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicInteger peakQueued = new AtomicInteger();
+
+    private final LongAdder captured = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder bytes = new LongAdder();
+
+    private final LongAdder allocated = new LongAdder();
+
+    private final LongAdder captureNanos = new LongAdder();
+
+    private final LongAdder latencyNanos = new LongAdder();
+
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /**
+     * Initializes a new instance of the {@link ScreenshotPipeline} class
+     *
+     * @param capacity  The most frames waiting to be written
+     * @param writers   The number of writer threads
+     * @param directory The directory screenshots are written to
+     */
+    public ScreenshotPipeline(int capacity, int writers, Path directory) {
+        if (capacity < 1 || writers < 1) {
+            throw new IllegalArgumentException("Capacity and writers must be at least 1: " + capacity + ", " + writers);
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.buffers = new ArrayBlockingQueue<>(writers);
+        this.directory = directory;
+        this.writers = new Thread[writers];
+        for (int i = 0; i < writers; i++) {
+            this.writers[i] = new Thread(this::writeLoop, "screenshot-writer-" + i);
+            this.writers[i].setDaemon(true);
+            this.writers[i].start();
+        }
+    }
+
+    /**
+     * Gets the pipeline checkpoints and failures are written through.
+     * It queues up to lazyElement.screenshotQueue frames, 16 by default, and writes them to the directory named by the
+     * lazyElement.screenshots system property, target/screenshots by default. lazyElement.screenshotScale downscales
+     * them and lazyElement.screenshotQuality, between 0 and 1, writes them as JPEG of that quality.
+     */
+    public static ScreenshotPipeline getShared() {
+        ScreenshotPipeline pipeline = shared;
+        if (pipeline == null) {
+            synchronized (ScreenshotPipeline.class) {
+                pipeline = shared;
+                if (pipeline == null) {
+                    ScreenshotPipeline created = new ScreenshotPipeline(Integer.getInteger("lazyElement.screenshotQueue", 16),
+                            1, Paths.get(System.getProperty("lazyElement.screenshots", "target/screenshots")));
+                    created.setScale(Double.parseDouble(System.getProperty("lazyElement.screenshotScale", "1")));
+                    String quality = System.getProperty("lazyElement.screenshotQuality");
+                    if (quality != null) {
+                        created.setJpegQuality(Float.parseFloat(quality));
+                    }
+                    Runtime.getRuntime().addShutdownHook(new Thread(created::close, "screenshot-pipeline-close"));
+                    shared = created;
+                    pipeline = created;
+                }
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * Sets the pipeline checkpoints and failures are written through.
+     *
+     * @param pipeline The new pipeline, null to go back to the default one
+     * @return The previous pipeline, null if the default one was never created
+     */
+    public static ScreenshotPipeline setShared(ScreenshotPipeline pipeline) {
+        synchronized (ScreenshotPipeline.class) {
+            ScreenshotPipeline previous = shared;
+            shared = pipeline;
+            return previous;
+        }
+    }
+
+    /**
+     * Sets the factor screenshots are downscaled by before they are written.
+     *
+     * @param scale Between 0 and 1, 1 to write them as they are
+     */
+    public void setScale(double scale) {
+        if (scale <= 0 || scale > 1) {
+            throw new IllegalArgumentException("Scale must be more than 0 and at most 1: " + scale);
+        }
+        this.scale = scale;
+    }
+
+    /**
+     * Sets the JPEG quality screenshots are recompressed with.
+     *
+     * @param quality Between 0 and 1, or negative to write them as PNG
+     */
+    public void setJpegQuality(float quality) {
+        if (quality > 1) {
+            throw new IllegalArgumentException("Quality must be at most 1: " + quality);
+        }
+        this.jpegQuality = quality;
+    }
+
+    /**
+     * Takes a screenshot and queues it to be written.
+     *
+     * @param source The driver or element to capture
+     * @param name   The name the file starts with
+     * @return Whether the screenshot was queued, false if it was dropped because the queue was full
+     */
+    public boolean capture(TakesScreenshot source, String name) {
+        long start = System.nanoTime();
+        String base64Png = source.getScreenshotAs(OutputType.BASE64);
+        boolean queued = offer(name, base64Png, start);
+        captureNanos.add(System.nanoTime() - start);
+        return queued;
+    }
+
+    /**
+     * Queues a screenshot to be written, without blocking.
+     *
+     * @param name      The name the file starts with
+     * @param base64Png The screenshot as WebDriver returns it
+     * @return Whether the screenshot was queued, false if it was dropped because the queue was full
+     */
+    public boolean offer(String name, String base64Png) {
+        return offer(name, base64Png, System.nanoTime());
+    }
+
+    private boolean offer(String name, String base64Png, long start) {
+        captured.increment();
+        synchronized (this) {
+            if (closed || !queue.offer(new Frame(name, base64Png, start))) {
+                dropped.increment();
+                return false;
+            }
+            pending++;
+        }
+        int depth = queue.size();
+        peakQueued.accumulateAndGet(depth, Math::max);
+        return true;
+    }
+
+    private void writeLoop() {
+        while (!closed || !queue.isEmpty()) {
+            Frame frame;
+            try {
+                frame = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (frame == null) {
+                continue;
+            }
+            try {
+                write(frame);
+                written.increment();
+            } catch (IOException | RuntimeException e) {
+                failed.increment();
+                log.warn("Failed to write screenshot " + frame.name + ": " + e.getMessage());
+            } finally {
+                long latency = System.nanoTime() - frame.queuedNanos;
+                latencyNanos.add(latency);
+                maxLatencyNanos.accumulateAndGet(latency, Math::max);
+                synchronized (this) {
+                    pending--;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private void write(Frame frame) throws IOException {
+        int length = frame.base64Png.length() / 4 * 3 + 3;
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null || buffer.capacity() < length) {
+            buffer = ByteBuffer.allocateDirect(Math.max(BufferSize, length));
+            allocated.increment();
+        }
+        try {
+            buffer.clear();
+            decode(frame.base64Png, buffer);
+            buffer.flip();
+
+            boolean transcode = scale < 1 || jpegQuality >= 0;
+            String file = frame.name.replaceAll("[^\\w.()-]", "_") + "-" + sequence.incrementAndGet()
+                    + (jpegQuality >= 0 ? ".jpg" : ".png");
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(directory.resolve(file), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (transcode) {
+                    transcode(buffer, Channels.newOutputStream(channel));
+                } else {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                bytes.add(channel.size());
+            }
+        } finally {
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Decodes base64 straight into the buffer, skipping line breaks, so no intermediate array is allocated
+     */
+    private static void decode(String base64, ByteBuffer target) throws IOException {
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < base64.length(); i++) {
+            char c = base64.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            if (c == '\r' || c == '\n') {
+                continue;
+            }
+            int sextet = c < 128 ? Sextets[c] : -1;
+            if (sextet < 0) {
+                throw new IOException("Not a base64 screenshot, found '" + c + "' at " + i);
+            }
+            bits = bits << 6 | sextet;
+            if (++count == 4) {
+                target.put((byte) (bits >> 16)).put((byte) (bits >> 8)).put((byte) bits);
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 2) {
+            target.put((byte) (bits >> 4));
+        } else if (count == 3) {
+            target.put((byte) (bits >> 10)).put((byte) (bits >> 2));
+        } else if (count == 1) {
+            throw new IOException("Truncated base64 screenshot");
+        }
+    }
+
+    private void transcode(ByteBuffer png, OutputStream out) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteBufferInputStream(png));
+        if (image == null) {
+            throw new IOException("Not a PNG screenshot");
+        }
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        float quality = jpegQuality;
+        if (quality < 0) {
+            ImageIO.write(scaled, "png", out);
+            return;
+        }
+        Iterator<ImageWriter> jpegWriters = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!jpegWriters.hasNext()) {
+            throw new IOException("No JPEG writer available");
+        }
+        ImageWriter writer = jpegWriters.next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(scaled, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Reads a buffer without copying it to the heap first
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Waits until every queued frame was written.
+     *
+     * @param timeout How long to wait
+     * @param unit    The unit of the timeout
+     * @return Whether every frame was written in time
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (pending > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops taking frames and waits a while for the queued ones to be written.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        try {
+            if (!flush(5, TimeUnit.SECONDS)) {
+                log.warn("Gave up waiting for " + getQueued() + " screenshots to be written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info(this);
+    }
+
+    /**
+     * Gets the number of frames waiting to be written
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the most frames that were waiting to be written at once
+     */
+    public int getPeakQueued() {
+        return peakQueued.get();
+    }
+
+    /**
+     * Gets the number of screenshots taken or offered
+     */
+    public long getCaptured() {
+        return captured.sum();
+    }
+
+    /**
+     * Gets the number of screenshots dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Gets the number of screenshots written
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * Gets the number of screenshots that could not be decoded or written
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Gets the number of direct buffers allocated, which stays at the number of writers once they are pooled
+     */
+    public long getBuffersAllocated() {
+        return allocated.sum();
+    }
+
+    /**
+     * Gets the mean time the test thread spent taking and queueing a screenshot
+     */
+    public double getMeanCaptureMillis() {
+        long count = captured.sum();
+        return count == 0 ? 0 : captureNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * Gets the mean time from taking a screenshot to having it written
+     */
+    public double getMeanLatencyMillis() {
+        long count = written.sum() + failed.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * Gets the longest time from taking a screenshot to having it written
+     */
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Screenshots: %d captured, %d written, %d dropped, %d failed, %d queued (peak %d), "
+                        + "%.1f ms on the test thread, %.1f ms mean latency, %d ms max, %d KB in %s",
+                getCaptured(), getWritten(), getDropped(), getFailed(), getQueued(), getPeakQueued(),
+                getMeanCaptureMillis(), getMeanLatencyMillis(), getMaxLatencyMillis(), bytes.sum() / 1024, directory);
+    }
+}
@@ -0,0 +1,174 @@
+package lazyElement;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.openqa.selenium.By;
+
+public class ScreenshotPipelineTest {
+
+    private final Logger logger = Logger.getLogger(ScreenshotPipelineTest.class);
+
+    private Path directory;
+
+    private ScreenshotPipeline pipeline;
+
+    private ScreenshotPipeline previousPipeline;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("screenshots");
+        pipeline = new ScreenshotPipeline(4, 1, directory);
+        previousPipeline = ScreenshotPipeline.setShared(pipeline);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        pipeline.close();
+        ScreenshotPipeline.setShared(previousPipeline);
+        try (Stream<Path> files = Files.walk(directory)) {
+            List<Path> paths = new ArrayList<>();
+            files.forEach(paths::add);
+            for (int i = paths.size() - 1; i >= 0; i--) {
+                Files.deleteIfExists(paths.get(i));
+            }
+        }
+    }
+
+    private List<Path> written() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            image.setRGB(x, x * height / width, 0xff8000);
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return Base64.getEncoder().encodeToString(png.toByteArray());
+    }
+
+    @Test
+    public void CheckpointIsWrittenOffTheTestThread() throws Exception {
+        StandInDriver driver = new StandInDriver();
+        driver.window("Calculator").add("Result");
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        LazyElement result = new LazyElement(logger, window, By.name("Result"), "Result text");
+
+        Assert.assertTrue(result.checkpoint("After addition"));
+        Assert.assertTrue(pipeline.flush(5, TimeUnit.SECONDS));
+
+        List<Path> files = written();
+        Assert.assertEquals(1, files.size());
+        Assert.assertTrue(files.get(0).toString(), files.get(0).getFileName().toString().startsWith("After_addition-"));
+        BufferedImage image = ImageIO.read(files.get(0).toFile());
+        Assert.assertEquals(100, image.getWidth());
+        Assert.assertEquals(30, image.getHeight());
+        Assert.assertEquals(1, pipeline.getWritten());
+        Assert.assertTrue(pipeline.toString(), pipeline.toString().contains("1 written"));
+    }
+
+    @Test
+    public void DecodedFrameIsTheOriginalPng() throws Exception {
+        String png = png(37, 11);
+
+        pipeline.offer("Frame", png);
+        pipeline.offer("Wrapped", png.replaceAll("(.{76})", "$1\r\n"));
+        Assert.assertTrue(pipeline.flush(5, TimeUnit.SECONDS));
+
+        for (Path file : written()) {
+            Assert.assertArrayEquals(file.toString(), Base64.getDecoder().decode(png), Files.readAllBytes(file));
+        }
+        Assert.assertEquals(2, written().size());
+        Assert.assertEquals(1, pipeline.getBuffersAllocated());
+    }
+
+    @Test
+    public void FullQueueDropsInsteadOfBlocking() throws Exception {
+        String png = png(400, 300);
+
+        int queued = 0;
+        for (int i = 0; i < 200; i++) {
+            if (pipeline.offer("Burst", png)) {
+                queued++;
+            }
+        }
+        Assert.assertTrue(pipeline.flush(30, TimeUnit.SECONDS));
+
+        Assert.assertTrue(pipeline.toString(), pipeline.getDropped() > 0);
+        Assert.assertEquals(200, queued + pipeline.getDropped());
+        Assert.assertEquals(queued, pipeline.getWritten());
+        Assert.assertEquals(queued, written().size());
+        Assert.assertTrue(pipeline.getPeakQueued() <= 4);
+        Assert.assertEquals(0, pipeline.getQueued());
+    }
+
+    @Test
+    public void FramesAreDownscaledAndCompressed() throws Exception {
+        pipeline.setScale(0.5);
+        pipeline.setJpegQuality(0.7f);
+
+        pipeline.offer("Scaled", png(200, 100));
+        Assert.assertTrue(pipeline.flush(5, TimeUnit.SECONDS));
+
+        Path file = written().get(0);
+        Assert.assertTrue(file.toString(), file.toString().endsWith(".jpg"));
+        BufferedImage image = ImageIO.read(file.toFile());
+        Assert.assertEquals(100, image.getWidth());
+        Assert.assertEquals(50, image.getHeight());
+    }
+
+    @Test
+    public void BrokenFrameIsCountedNotThrown() throws Exception {
+        Assert.assertTrue(pipeline.offer("Broken", "not a screenshot!"));
+        Assert.assertTrue(pipeline.flush(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(1, pipeline.getFailed());
+        Assert.assertEquals(0, pipeline.getWritten());
+    }
+
+    @Test
+    public void FailedTestIsCaptured() throws Throwable {
+        StandInDriver driver = new StandInDriver();
+        JournalDumpRule rule = new JournalDumpRule(directory.resolve("journal")).withScreenshots(() -> driver);
+        Statement test = new Statement() {
+            @Override
+            public void evaluate() {
+                throw new AssertionError("Expected 8");
+            }
+        };
+
+        try {
+            rule.apply(test, Description.createTestDescription(ScreenshotPipelineTest.class, "Addition")).evaluate();
+            Assert.fail("The test passed");
+        } catch (AssertionError e) {
+            Assert.assertEquals("Expected 8", e.getMessage());
+        }
+        Assert.assertTrue(pipeline.flush(5, TimeUnit.SECONDS));
+
+        List<Path> files = written();
+        Assert.assertEquals(1, files.size());
+        Assert.assertTrue(files.get(0).toString(), files.get(0).getFileName().toString().startsWith("Addition(lazyElement.ScreenshotPipelineTest)-"));
+    }
+}
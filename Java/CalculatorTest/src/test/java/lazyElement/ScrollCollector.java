@@ -0,0 +1,290 @@
+package lazyElement;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Keys;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Incrementally collects the children of a virtualized list or grid.
+ * Virtualized containers only expose the rows inside their viewport, so the collector scrolls the container one
+ * page at a time and yields each newly realized child exactly once. While the caller processes the current page
+ * the next scroll and find already run in the background. Collection stops once a page brings no new rows.
+ */
+public class ScrollCollector implements Iterator<LazyElement>, AutoCloseable {
+
+    /**
+     * Shared pool for the background page fetches
+     */
+    private static final ExecutorService pageFetcher = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "lazy-scroll-collector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A realized child and its de-duplication key
+     */
+    private static final class Row {
+        private final String key;
+        private final WebElement element;
+
+        private Row(String key, WebElement element) {
+            this.key = key;
+            this.element = element;
+        }
+    }
+
+    /**
+     * Finds a collected row again by its key. A row that went stale is looked up among the rows realized now,
+     * rather than taken to be the first child the row locator finds
+     */
+    private static final class RowLocator extends By {
+        private final By childLocator;
+        private final Function<WebElement, String> keyFunction;
+        private final String key;
+
+        private RowLocator(By childLocator, Function<WebElement, String> keyFunction, String key) {
+            this.childLocator = childLocator;
+            this.keyFunction = keyFunction;
+            this.key = key;
+        }
+
+        @Override
+        public List<WebElement> findElements(SearchContext context) {
+            List<WebElement> rows = new ArrayList<>(1);
+            for (WebElement element : context.findElements(this.childLocator)) {
+                try {
+                    if (this.key.equals(this.keyFunction.apply(element))) {
+                        rows.add(element);
+                    }
+                } catch (StaleElementReferenceException e) {
+                    // Scrolled away while its key was read, so not the row sought
+                }
+            }
+            return rows;
+        }
+
+        @Override
+        public String toString() {
+            return "Row " + this.key + " of " + this.childLocator;
+        }
+    }
+
+    private final LazyElement container;
+
+    private final By childLocator;
+
+    private final String userFriendlyName;
+
+    private Function<WebElement, String> keyFunction = ScrollCollector::runtimeIdOrName;
+
+    private Consumer<WebElement> scroller = element -> element.sendKeys(Keys.PAGE_DOWN);
+
+    private int maxIdlePages = 1;
+
+    private boolean overlap = true;
+
+    private final Set<String> seen = new HashSet<>();
+
+    private final Deque<LazyElement> ready = new ArrayDeque<>();
+
+    private Future<List<Row>> nextPage;
+
+    private boolean started;
+
+    private boolean exhausted;
+
+    private int idlePages;
+
+    private int pages;
+
+    private int index;
+
+    /**
+     * Initializes a new instance of the {@link ScrollCollector} class
+     *
+     * @param container        The scrollable container
+     * @param childLocator     The 'by' selector for the rows, relative to the container
+     * @param userFriendlyName A user friendly name for the rows, for logging purposes
+     */
+    public ScrollCollector(LazyElement container, By childLocator, String userFriendlyName) {
+        this.container = container;
+        this.childLocator = childLocator;
+        this.userFriendlyName = userFriendlyName;
+    }
+
+    /**
+     * Gets the UIA RuntimeId of an element, falling back to its Name when the provider does not expose one.
+     *
+     * @param element The realized row
+     * @return The de-duplication key
+     */
+    public static String runtimeIdOrName(WebElement element) {
+        String runtimeId = element.getAttribute("RuntimeId");
+        if (runtimeId != null && !runtimeId.isEmpty()) {
+            return runtimeId;
+        }
+        return element.getAttribute("Name");
+    }
+
+    /**
+     * Sets how rows are de-duplicated, by default {@link #runtimeIdOrName(WebElement)}.
+     * Use the Name when the list recycles its row containers.
+     */
+    public ScrollCollector dedupeBy(Function<WebElement, String> keyFunction) {
+        this.keyFunction = keyFunction;
+        return this;
+    }
+
+    /**
+     * Sets how the container is scrolled by one page, by default a page down key press.
+     */
+    public ScrollCollector scrollWith(Consumer<WebElement> scroller) {
+        this.scroller = scroller;
+        return this;
+    }
+
+    /**
+     * Sets how many consecutive pages without new rows end the collection, by default one.
+     */
+    public ScrollCollector stopAfterIdlePages(int maxIdlePages) {
+        this.maxIdlePages = Math.max(1, maxIdlePages);
+        return this;
+    }
+
+    /**
+     * Sets if the next page is fetched while the current one is processed, on by default.
+     * Turn this off when the list de-realizes rows as soon as they leave the viewport.
+     */
+    public ScrollCollector overlapScrolling(boolean overlap) {
+        this.overlap = overlap;
+        return this;
+    }
+
+    /**
+     * Gets the number of pages fetched so far
+     */
+    public int getPages() {
+        return pages;
+    }
+
+    /**
+     * Gets the number of distinct rows collected so far
+     */
+    public int getCollected() {
+        return seen.size();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (this.ready.isEmpty() && !this.exhausted) {
+            consumePage(awaitPage());
+        }
+        return !this.ready.isEmpty();
+    }
+
+    @Override
+    public LazyElement next() {
+        if (!hasNext()) {
+            throw new java.util.NoSuchElementException("No more rows in " + this.container.getUserFriendlyName());
+        }
+        return this.ready.poll();
+    }
+
+    /**
+     * Collects all remaining rows.
+     *
+     * @return The rows in the order they were realized
+     */
+    public List<LazyElement> toList() {
+        List<LazyElement> rows = new ArrayList<>();
+        forEachRemaining(rows::add);
+        return rows;
+    }
+
+    @Override
+    public void close() {
+        this.exhausted = true;
+        if (this.nextPage != null) {
+            this.nextPage.cancel(true);
+            this.nextPage = null;
+        }
+    }
+
+    private void consumePage(List<Row> page) {
+        this.pages++;
+        int added = 0;
+        for (Row row : page) {
+            if (row.key != null && this.seen.add(row.key)) {
+                By rowLocator = new RowLocator(this.childLocator, this.keyFunction, row.key);
+                this.ready.add(new LazyElement(this.container.getLogger(), this.container, rowLocator, row.element,
+                        this.index, this.userFriendlyName + " - " + this.index++));
+                added++;
+            }
+        }
+
+        this.idlePages = added == 0 ? this.idlePages + 1 : 0;
+        if (this.idlePages >= this.maxIdlePages) {
+            this.exhausted = true;
+        } else if (this.overlap) {
+            this.nextPage = pageFetcher.submit(() -> fetchPage(true));
+        }
+    }
+
+    private List<Row> awaitPage() {
+        if (this.nextPage == null) {
+            boolean scroll = this.started;
+            this.started = true;
+            return fetchPage(scroll);
+        }
+
+        try {
+            return this.nextPage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NoSuchElementException("Interrupted while scrolling " + this.container.getUserFriendlyName(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new NoSuchElementException("Failed to scroll " + this.container.getUserFriendlyName(), e.getCause());
+        } finally {
+            this.nextPage = null;
+        }
+    }
+
+    /**
+     * Scrolls the container and reads the keys of the rows realized afterwards.
+     * Keys are read before the next scroll so rows that leave the viewport later are already identified.
+     */
+    private List<Row> fetchPage(boolean scroll) {
+        WebElement element = this.container.getElement();
+        if (scroll) {
+            this.scroller.accept(element);
+        }
+
+        List<WebElement> found = element.findElements(this.childLocator);
+        List<Row> rows = new ArrayList<>(found.size());
+        for (WebElement row : found) {
+            rows.add(new Row(this.keyFunction.apply(row), row));
+        }
+        return rows;
+    }
+}
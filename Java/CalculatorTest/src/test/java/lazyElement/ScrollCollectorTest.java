@@ -0,0 +1,124 @@
+package lazyElement;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+
+public class ScrollCollectorTest {
+
+    private final Logger logger = Logger.getLogger(ScrollCollectorTest.class);
+
+    private StandInDriver driver;
+
+    private StandInElement list;
+
+    @Before
+    public void setup() {
+        driver = new StandInDriver();
+        list = driver.window("Inventory").add("Items");
+        list.attribute("AutomationId", "ItemList");
+    }
+
+    private LazyElement lazyList() {
+        LazyElement window = new LazyElement(logger, driver, By.name("Inventory"), "Inventory window");
+        return new LazyElement(logger, window, By.id("ItemList"), "Item list");
+    }
+
+    private void addRows(int count) {
+        for (int i = 0; i < count; i++) {
+            list.add("Row " + i).attribute("ClassName", "ListViewItem");
+        }
+    }
+
+    @Test
+    public void CollectsEveryRowOfLargeVirtualizedListOnce() {
+        addRows(10000);
+        // Pages overlap by five rows, so de-duplication is exercised on every scroll
+        list.virtualize(25, 20);
+
+        ScrollCollector collector = lazyList().scrollAndCollect(By.className("ListViewItem"), "Row");
+        List<LazyElement> rows = collector.toList();
+
+        Assert.assertEquals(10000, rows.size());
+        Set<String> names = new HashSet<>();
+        for (LazyElement row : rows) {
+            names.add(row.getText());
+        }
+        Assert.assertEquals(10000, names.size());
+        Assert.assertEquals("Row 0", rows.get(0).getText());
+        Assert.assertEquals("Row 9999", rows.get(9999).getText());
+
+        // One row find per page plus the idle page at the end, never a re-find of the whole list
+        Assert.assertTrue("Too many pages: " + collector.getPages(), collector.getPages() <= 10000 / 20 + 2);
+    }
+
+    @Test
+    public void StopsWhenNoNewRowsAppear() {
+        addRows(10);
+        list.virtualize(25, 20);
+
+        ScrollCollector collector = lazyList().scrollAndCollect(By.className("ListViewItem"), "Row");
+
+        Assert.assertEquals(10, collector.toList().size());
+        Assert.assertEquals(2, collector.getPages());
+        Assert.assertFalse(collector.hasNext());
+    }
+
+    @Test
+    public void DeduplicatesByNameWithoutOverlap() {
+        addRows(100);
+        list.virtualize(10, 7);
+
+        List<LazyElement> rows = lazyList().scrollAndCollect(By.className("ListViewItem"), "Row")
+                .dedupeBy(element -> element.getAttribute("Name"))
+                .overlapScrolling(false)
+                .toList();
+
+        Assert.assertEquals(100, rows.size());
+        Assert.assertEquals("Row 99", rows.get(99).getText());
+    }
+
+    @Test
+    public void CollectsPlainListWithoutScrolling() {
+        addRows(5);
+
+        ScrollCollector collector = lazyList().scrollAndCollect(By.className("ListViewItem"), "Row");
+
+        Assert.assertEquals(5, collector.toList().size());
+        Assert.assertEquals(0, list.getScrollOffset());
+    }
+
+    @Test
+    public void RowFoundAgainIsTheSameRow() {
+        addRows(10);
+
+        List<LazyElement> rows = lazyList().scrollAndCollect(By.className("ListViewItem"), "Row").toList();
+
+        Assert.assertEquals("Row 5", rows.get(5).getNewElement().getText());
+    }
+
+    @Test
+    public void RowScrolledAwayIsNotTakenForAnother() {
+        addRows(100);
+        list.virtualize(25, 20);
+
+        ScrollCollector collector = lazyList().scrollAndCollect(By.className("ListViewItem"), "Row");
+        LazyElement first = collector.next();
+        // Collecting the rest scrolls the first row out of view
+        collector.toList();
+
+        try {
+            first.getNewElement();
+            Assert.fail("Found " + first.getElement().getText() + " in place of Row 0");
+        } catch (NoSuchElementException e) {
+            // Expected
+        }
+    }
+}
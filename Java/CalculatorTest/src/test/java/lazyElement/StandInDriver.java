@@ -0,0 +1,191 @@
+package lazyElement;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * In-process stand-in for a WinAppDriver session.
+ * Holds a tree of {@link StandInElement} windows, counts the remote calls that would have been made and can
+ * simulate per-find latency, so the lazyElement layer can be exercised without a Windows host.
+ */
+public class StandInDriver implements WebDriver, TakesScreenshot {
+
+    /**
+     * Invisible desktop root, the top level windows are its children
+     */
+    private final StandInElement desktop;
+
+    /**
+     * Number of find calls made against this driver or any of its elements
+     */
+    private final AtomicInteger findCount = new AtomicInteger();
+
+    /**
+     * Number of element commands (click, send keys, attribute reads...) made against this driver
+     */
+    private final AtomicInteger commandCount = new AtomicInteger();
+
+    /**
+     * Simulated latency of every find call in milliseconds
+     */
+    private volatile long findLatency;
+
+    /**
+     * Simulated latency of the finds using a strategy, e.g. "name", overriding the latency of every find
+     */
+    private final Map<String, Long> strategyLatency = new ConcurrentHashMap<>();
+
+    public StandInDriver() {
+        this.desktop = new StandInElement(this, "Desktop");
+    }
+
+    /**
+     * Adds a top level window to the stand-in desktop.
+     *
+     * @param name The Name of the window
+     * @return The new window element
+     */
+    public StandInElement window(String name) {
+        return this.desktop.add(name);
+    }
+
+    public int getFindCount() {
+        return findCount.get();
+    }
+
+    public int getCommandCount() {
+        return commandCount.get();
+    }
+
+    public long getFindLatency() {
+        return findLatency;
+    }
+
+    public void setFindLatency(long findLatency) {
+        this.findLatency = findLatency;
+    }
+
+    /**
+     * Sets the simulated latency of the finds using one strategy.
+     *
+     * @param strategy    The strategy as it appears in the locator's description, e.g. "name" or "AccessibilityId"
+     * @param findLatency Latency in milliseconds
+     */
+    public void setFindLatency(String strategy, long findLatency) {
+        this.strategyLatency.put(strategy, findLatency);
+    }
+
+    /**
+     * Records a find call and waits for the simulated latency.
+     */
+    void onFind(By by) {
+        findCount.incrementAndGet();
+        String description = by.toString();
+        int separator = description.indexOf(": ");
+        Long latency = separator > 3 ? strategyLatency.get(description.substring(3, separator)) : null;
+        long millis = latency == null ? findLatency : latency;
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Records an element command.
+     */
+    void onCommand() {
+        commandCount.incrementAndGet();
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        return this.desktop.findElement(by);
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        return this.desktop.findElements(by);
+    }
+
+    @Override
+    public <X> X getScreenshotAs(OutputType<X> target) {
+        return this.desktop.getScreenshotAs(target);
+    }
+
+    @Override
+    public void get(String url) {
+        throw new UnsupportedOperationException("Stand-in driver does not navigate");
+    }
+
+    @Override
+    public String getCurrentUrl() {
+        return null;
+    }
+
+    @Override
+    public String getTitle() {
+        List<StandInElement> windows = this.desktop.getChildren();
+        return windows.isEmpty() ? null : windows.get(0).getAttribute("Name");
+    }
+
+    @Override
+    public String getPageSource() {
+        return this.desktop.toString();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void quit() {
+    }
+
+    @Override
+    public Set<String> getWindowHandles() {
+        Set<String> handles = new HashSet<>();
+        for (StandInElement window : this.desktop.getChildren()) {
+            handles.add(window.getId());
+        }
+        return handles;
+    }
+
+    @Override
+    public String getWindowHandle() {
+        List<StandInElement> windows = new ArrayList<>(this.desktop.getChildren());
+        if (windows.isEmpty()) {
+            throw new NoSuchElementException("No window is open");
+        }
+        return windows.get(0).getId();
+    }
+
+    @Override
+    public TargetLocator switchTo() {
+        throw new UnsupportedOperationException("Stand-in driver does not switch windows");
+    }
+
+    @Override
+    public Navigation navigate() {
+        throw new UnsupportedOperationException("Stand-in driver does not navigate");
+    }
+
+    @Override
+    public Options manage() {
+        throw new UnsupportedOperationException("Stand-in driver has no options");
+    }
+}
@@ -0,0 +1,457 @@
+package lazyElement;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.InvalidSelectorException;
+import org.openqa.selenium.Keys;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebElement;
+
+/**
+ * UI Automation element served by a {@link StandInDriver}.
+ * Supports the Name, AutomationId, ClassName and ControlType locators WinAppDriver understands, and can emulate
+ * a virtualized list that only realizes the rows inside its viewport.
+ */
+public class StandInElement extends RemoteWebElement {
+
+    /**
+     * Source of unique element and runtime ids
+     */
+    private static final AtomicLong nextId = new AtomicLong();
+
+    private final StandInDriver driver;
+
+    private final Map<String, String> attributes = new ConcurrentHashMap<>();
+
+    private final List<StandInElement> children = new ArrayList<>();
+
+    private final AtomicInteger clickCount = new AtomicInteger();
+
+    /**
+     * Characters typed into the element
+     */
+    private final AtomicInteger typedCount = new AtomicInteger();
+
+    /**
+     * Characters each failing sendKeys types before it fails
+     */
+    private volatile int failTypingAfter;
+
+    /**
+     * Number of sendKeys calls left to fail
+     */
+    private final AtomicInteger failTypingCalls = new AtomicInteger();
+
+    private volatile boolean displayed = true;
+
+    private volatile boolean enabled = true;
+
+    private volatile Runnable onClick;
+
+    /**
+     * Screenshots left that show the element still sliding into place
+     */
+    private final AtomicInteger movingFrames = new AtomicInteger();
+
+    private final AtomicInteger slidingFrames = new AtomicInteger();
+
+    /**
+     * Number of realized rows, zero when the element is not virtualized
+     */
+    private int viewport;
+
+    /**
+     * Rows moved per page up/down
+     */
+    private int scrollStep;
+
+    /**
+     * Index of the first realized row
+     */
+    private int scrollOffset;
+
+    StandInElement(StandInDriver driver, String name) {
+        long id = nextId.incrementAndGet();
+        this.driver = driver;
+        this.setId("standin-" + id);
+        this.attributes.put("Name", name);
+        this.attributes.put("RuntimeId", "42." + id);
+        this.attributes.put("ControlType", "ControlType.Custom");
+    }
+
+    /**
+     * Adds a child element.
+     *
+     * @param name The Name of the child
+     * @return The new child element
+     */
+    public StandInElement add(String name) {
+        StandInElement child = new StandInElement(this.driver, name);
+        synchronized (this.children) {
+            this.children.add(child);
+        }
+        return child;
+    }
+
+    /**
+     * Sets an attribute, returning this element so calls can be chained.
+     */
+    public StandInElement attribute(String name, String value) {
+        if (value == null) {
+            this.attributes.remove(name);
+        } else {
+            this.attributes.put(name, value);
+        }
+        return this;
+    }
+
+    /**
+     * Only realizes the children inside a scrolling viewport, the way WPF and UWP virtualized lists do.
+     *
+     * @param viewport   Number of realized rows
+     * @param scrollStep Number of rows moved by each page down
+     * @return This element
+     */
+    public synchronized StandInElement virtualize(int viewport, int scrollStep) {
+        this.viewport = viewport;
+        this.scrollStep = scrollStep;
+        this.scrollOffset = 0;
+        return this;
+    }
+
+    /**
+     * Animates the element, its next screenshots show a bar moving a few pixels per frame.
+     *
+     * @param frames Screenshots taken before it holds still
+     * @return This element
+     */
+    public StandInElement animate(int frames) {
+        this.movingFrames.set(frames);
+        return this;
+    }
+
+    /**
+     * Slides the element across its window, its next rects are a few pixels apart while its screenshots stay the
+     * same.
+     *
+     * @param frames Rects read before it holds still
+     * @return This element
+     */
+    public StandInElement slide(int frames) {
+        this.slidingFrames.set(frames);
+        return this;
+    }
+
+    public StandInElement setDisplayed(boolean displayed) {
+        this.displayed = displayed;
+        return this;
+    }
+
+    public StandInElement setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public StandInElement onClick(Runnable onClick) {
+        this.onClick = onClick;
+        return this;
+    }
+
+    public int getClickCount() {
+        return clickCount.get();
+    }
+
+    /**
+     * Makes the next sendKeys fail part way, the way typing does when the window loses focus.
+     *
+     * @param characters Characters it types before failing
+     * @return This element
+     */
+    public StandInElement failTyping(int characters) {
+        return this.failTyping(characters, 1);
+    }
+
+    /**
+     * Makes the next sendKeys calls fail part way.
+     *
+     * @param characters Characters each of them types before failing
+     * @param calls      Number of calls that fail
+     * @return This element
+     */
+    public StandInElement failTyping(int characters, int calls) {
+        this.failTypingAfter = characters;
+        this.failTypingCalls.set(calls);
+        return this;
+    }
+
+    public int getTypedCount() {
+        return typedCount.get();
+    }
+
+    public synchronized int getScrollOffset() {
+        return scrollOffset;
+    }
+
+    public List<StandInElement> getChildren() {
+        synchronized (this.children) {
+            return new ArrayList<>(this.children);
+        }
+    }
+
+    /**
+     * Gets the children that are currently realized.
+     */
+    private List<StandInElement> getRealizedChildren() {
+        int from;
+        int to;
+        synchronized (this) {
+            from = this.scrollOffset;
+            to = this.viewport;
+        }
+        synchronized (this.children) {
+            if (to == 0) {
+                return new ArrayList<>(this.children);
+            }
+            return new ArrayList<>(this.children.subList(Math.min(from, this.children.size()),
+                    Math.min(from + to, this.children.size())));
+        }
+    }
+
+    private synchronized void scroll(int rows) {
+        if (this.viewport == 0) {
+            return;
+        }
+        int size;
+        synchronized (this.children) {
+            size = this.children.size();
+        }
+        this.scrollOffset = Math.max(0, Math.min(this.scrollOffset + rows, size - this.viewport));
+    }
+
+    /**
+     * Checks if this element matches the locator.
+     * The strategy is read from the locator's description, e.g. "By.name: One".
+     */
+    boolean matches(By by) {
+        String description = by.toString();
+        int separator = description.indexOf(": ");
+        if (!description.startsWith("By.") || separator < 0) {
+            throw new InvalidSelectorException("Unsupported locator " + description);
+        }
+        String strategy = description.substring(3, separator);
+        String value = description.substring(separator + 2);
+        switch (strategy) {
+            case "name":
+                return value.equals(this.attributes.get("Name"));
+            case "id":
+            case "AccessibilityId":
+                return value.equals(this.attributes.get("AutomationId"));
+            case "className":
+                return value.equals(this.attributes.get("ClassName"));
+            case "tagName":
+                return value.equals(this.attributes.get("ControlType"));
+            default:
+                throw new InvalidSelectorException("Unsupported locator " + description);
+        }
+    }
+
+    private void collect(By by, List<WebElement> found, boolean firstOnly) {
+        for (StandInElement child : getRealizedChildren()) {
+            if (firstOnly && !found.isEmpty()) {
+                return;
+            }
+            if (child.matches(by)) {
+                found.add(child);
+            }
+            child.collect(by, found, firstOnly);
+        }
+    }
+
+    @Override
+    public WebDriver getWrappedDriver() {
+        return this.driver;
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        if (!by.toString().startsWith("By.")) {
+            // Locators of our own, e.g. a row found by its key, search through the standard ones like RemoteWebElement does
+            return by.findElement(this);
+        }
+        this.driver.onFind(by);
+        List<WebElement> found = new ArrayList<>();
+        collect(by, found, true);
+        if (found.isEmpty()) {
+            throw new NoSuchElementException("An element could not be located on the page using the given search parameters: " + by);
+        }
+        return found.get(0);
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        if (!by.toString().startsWith("By.")) {
+            return by.findElements(this);
+        }
+        this.driver.onFind(by);
+        List<WebElement> found = new ArrayList<>();
+        collect(by, found, false);
+        return found;
+    }
+
+    @Override
+    public void click() {
+        this.driver.onCommand();
+        if (!this.displayed || !this.enabled) {
+            throw new WebDriverException("Element " + this + " is not interactable");
+        }
+        this.clickCount.incrementAndGet();
+        Runnable action = this.onClick;
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    @Override
+    public void submit() {
+        this.driver.onCommand();
+    }
+
+    @Override
+    public void sendKeys(CharSequence... keysToSend) {
+        this.driver.onCommand();
+        StringBuilder text = new StringBuilder();
+        for (CharSequence keys : keysToSend) {
+            for (int i = 0; i < keys.length(); i++) {
+                char key = keys.charAt(i);
+                if (key == Keys.PAGE_DOWN.charAt(0)) {
+                    scroll(this.scrollStep);
+                } else if (key == Keys.PAGE_UP.charAt(0)) {
+                    scroll(-this.scrollStep);
+                } else {
+                    text.append(key);
+                }
+            }
+        }
+        boolean fail = this.failTypingCalls.getAndUpdate(calls -> Math.max(0, calls - 1)) > 0
+                && this.failTypingAfter < text.length();
+        if (fail) {
+            text.setLength(this.failTypingAfter);
+        }
+        if (text.length() > 0) {
+            this.typedCount.addAndGet(text.length());
+            String value = this.attributes.get("Value");
+            this.attributes.put("Value", (value == null ? "" : value) + text);
+        }
+        if (fail) {
+            throw new WebDriverException("Typing into " + this + " was interrupted");
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.driver.onCommand();
+        this.attributes.put("Value", "");
+    }
+
+    @Override
+    public String getTagName() {
+        this.driver.onCommand();
+        return this.attributes.get("ControlType");
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        this.driver.onCommand();
+        return this.attributes.get(name);
+    }
+
+    @Override
+    public boolean isSelected() {
+        this.driver.onCommand();
+        return Boolean.parseBoolean(this.attributes.get("SelectionItem.IsSelected"));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        this.driver.onCommand();
+        return this.enabled;
+    }
+
+    @Override
+    public boolean isDisplayed() {
+        this.driver.onCommand();
+        return this.displayed;
+    }
+
+    @Override
+    public String getText() {
+        this.driver.onCommand();
+        String value = this.attributes.get("Value");
+        return value != null ? value : this.attributes.get("Name");
+    }
+
+    @Override
+    public Point getLocation() {
+        this.driver.onCommand();
+        return new Point(10 * Math.max(0, this.slidingFrames.get()), 0);
+    }
+
+    @Override
+    public Dimension getSize() {
+        this.driver.onCommand();
+        return new Dimension(100, 30);
+    }
+
+    @Override
+    public Rectangle getRect() {
+        this.driver.onCommand();
+        return new Rectangle(10 * Math.max(0, this.slidingFrames.getAndDecrement()), 0, 30, 100);
+    }
+
+    @Override
+    public String getCssValue(String propertyName) {
+        throw new UnsupportedOperationException("WinAppDriver elements have no CSS values");
+    }
+
+    @Override
+    public <X> X getScreenshotAs(OutputType<X> target) {
+        this.driver.onCommand();
+        BufferedImage image = new BufferedImage(100, 30, BufferedImage.TYPE_INT_RGB);
+        int left = 4 * Math.max(0, this.movingFrames.getAndDecrement()) % 80;
+        for (int x = left; x < Math.min(100, left + 20); x++) {
+            for (int y = 0; y < 30; y++) {
+                image.setRGB(x, y, 0xffffff);
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", png);
+        } catch (IOException e) {
+            throw new WebDriverException("Failed to render stand-in screenshot", e);
+        }
+        return target.convertFromPngBytes(png.toByteArray());
+    }
+
+    @Override
+    public String toString() {
+        return "StandInElement[" + this.attributes.get("Name") + "]";
+    }
+}
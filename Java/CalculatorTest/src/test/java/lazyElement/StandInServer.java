@@ -0,0 +1,306 @@
+package lazyElement;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openqa.selenium.WebDriverException;
+
+/**
+ * Local HTTP stand-in for a WinAppDriver host.
+ * Answers GET /status and POST /session on its own port, with a configurable delay and health, so several hosts can
+ * be simulated on one machine. Sessions opened through {@link #newSession(URL)} are {@link StandInDriver}s.
+ * Any other request under /session is answered as a command, all with the same answer unless one was set for the
+ * last segment of its path, e.g. element for a find or Value for reading that attribute. Commands follow a saturation
+ * model: up to a capacity they take the command time each, beyond it they slow down more than in proportion to the
+ * load, so the host's throughput falls once it is overloaded, as WinAppDriver's does once its UI thread is.
+ */
+public class StandInServer implements AutoCloseable {
+
+    static {
+        // Answers are written as headers then body, which Nagle's algorithm would hold back for the client's
+        // delayed ACK, adding 40 ms to every command. Read once, when the first server starts
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    private final AtomicInteger statusChecks = new AtomicInteger();
+
+    private volatile long delay;
+
+    private volatile boolean healthy = true;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    private final LongAdder commands = new LongAdder();
+
+    private volatile long commandTime;
+
+    private volatile int capacity = Integer.MAX_VALUE;
+
+    private volatile double thrashing;
+
+    private volatile String answer = "{\"status\":0,\"value\":null}";
+
+    private final Map<String, String> answers = new ConcurrentHashMap<>();
+
+    private volatile String lastCommand;
+
+    /**
+     * Starts a server on a free local port.
+     */
+    public StandInServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/status", exchange -> {
+            statusChecks.incrementAndGet();
+            answer(exchange, "{\"status\":0,\"value\":{\"build\":{\"version\":\"stand-in\"}}}");
+        });
+        this.server.createContext("/session", exchange -> {
+            if (!"/session".equals(exchange.getRequestURI().getPath())) {
+                command(exchange);
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            if (healthy) {
+                sessions.incrementAndGet();
+            }
+            answer(exchange, "{\"status\":0,\"sessionId\":\"" + UUID.randomUUID() + "\",\"value\":{}}");
+        });
+        this.server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stand-in-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        this.server.start();
+    }
+
+    /**
+     * Opens a session on the server at the URL.
+     *
+     * @param url A stand-in server URL
+     * @return A driver for the new session
+     */
+    public static StandInDriver newSession(URL url) {
+        post(url, "/session", "{\"desiredCapabilities\":{}}");
+        return new StandInDriver();
+    }
+
+    /**
+     * Sends a command to the server at the URL and waits for the answer.
+     *
+     * @param url  A stand-in server URL
+     * @param path The command path, e.g. /session/1/element
+     * @param json The command body
+     */
+    public static void post(URL url, String path, String json) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url + path).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            try (OutputStream body = connection.getOutputStream()) {
+                body.write(json.getBytes(StandardCharsets.UTF_8));
+            }
+            int code = connection.getResponseCode();
+            if (code == 200) {
+                // Drain the answer so the connection is kept alive
+                connection.getInputStream().close();
+            } else {
+                connection.disconnect();
+                throw new WebDriverException("POST " + path + " answered " + code);
+            }
+        } catch (IOException e) {
+            throw new WebDriverException("Unable to reach " + url, e);
+        }
+    }
+
+    public URL getUrl() {
+        try {
+            return new URL("http://127.0.0.1:" + server.getAddress().getPort());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Sets how long every request waits before it is answered.
+     *
+     * @param delay Delay in milliseconds
+     */
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    /**
+     * Makes every request fail with a 500 until the server is healthy again.
+     */
+    public void setHealthy(boolean healthy) {
+        this.healthy = healthy;
+    }
+
+    /**
+     * Sets how long a command takes while the server is within its capacity.
+     *
+     * @param commandTime Time in milliseconds
+     */
+    public void setCommandTime(long commandTime) {
+        this.commandTime = commandTime;
+    }
+
+    /**
+     * Sets how the server saturates. With n commands in flight beyond the capacity, each takes the command time
+     * multiplied by (n / capacity) to the power of (1 + thrashing), so with any thrashing above zero the throughput
+     * falls as the load grows.
+     *
+     * @param capacity  Commands the server handles at full speed
+     * @param thrashing How much worse than proportional an overloaded server gets
+     */
+    public void setSaturation(int capacity, double thrashing) {
+        if (capacity < 1 || thrashing < 0) {
+            throw new IllegalArgumentException("Invalid saturation: capacity " + capacity + ", thrashing " + thrashing);
+        }
+        this.capacity = capacity;
+        this.thrashing = thrashing;
+    }
+
+    /**
+     * Sets the body every command is answered with.
+     *
+     * @param json The answer, {"status":0,"value":null} until set
+     */
+    public void setAnswer(String json) {
+        this.answer = json;
+    }
+
+    /**
+     * Sets the body the commands whose path ends in a segment are answered with.
+     *
+     * @param segment The last segment of the path, e.g. element, click or an attribute name
+     * @param json    The answer
+     */
+    public void setAnswer(String segment, String json) {
+        this.answers.put(segment, json);
+    }
+
+    /**
+     * Answers like the calculator of CalculatorTest, for a {@link org.openqa.selenium.remote.RemoteWebDriver} opened
+     * on the server: every find finds the same displayed and enabled element, whose Value is 8.
+     *
+     * @return This server
+     */
+    public StandInServer answerAsCalculator() {
+        String element = "{\"ELEMENT\":\"42\",\"element-6066-11e4-a52e-4f735466cecf\":\"42\"}";
+        setAnswer("element", "{\"status\":0,\"value\":" + element + "}");
+        setAnswer("elements", "{\"status\":0,\"value\":[" + element + "]}");
+        setAnswer("displayed", "{\"status\":0,\"value\":true}");
+        setAnswer("enabled", "{\"status\":0,\"value\":true}");
+        setAnswer("Value", "{\"status\":0,\"value\":\"8\"}");
+        return this;
+    }
+
+    /**
+     * Gets the last command received, as its method, path and body, e.g. POST /session/1/element {"using":...}
+     */
+    public String getLastCommand() {
+        return lastCommand;
+    }
+
+    /**
+     * Gets the number of commands answered
+     */
+    public long getCommands() {
+        return commands.sum();
+    }
+
+    /**
+     * Gets the most commands that were in flight at the same time
+     */
+    public int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    /**
+     * Gets the number of sessions opened on this server
+     */
+    public int getSessions() {
+        return sessions.get();
+    }
+
+    public int getStatusChecks() {
+        return statusChecks.get();
+    }
+
+    private void command(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+        }
+        lastCommand = (exchange.getRequestMethod() + " " + exchange.getRequestURI().getRawPath() + " "
+                + new String(body.toByteArray(), StandardCharsets.UTF_8)).trim();
+        int load = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(load, Math::max);
+        try {
+            double slowdown = load <= capacity ? 1 : Math.pow((double) load / capacity, 1 + thrashing);
+            Thread.sleep((long) (commandTime * slowdown));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        commands.increment();
+        String path = exchange.getRequestURI().getPath();
+        answer(exchange, answers.getOrDefault(path.substring(path.lastIndexOf('/') + 1), answer));
+    }
+
+    private void answer(HttpExchange exchange, String json) throws IOException {
+        try {
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!healthy) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
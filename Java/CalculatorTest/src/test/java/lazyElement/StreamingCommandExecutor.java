@@ -0,0 +1,114 @@
+package lazyElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * Sends the hot commands through {@link StreamingJsonCodec} and everything else through the default executor.
+ * A command is streamed only when the codec can write all of its parameters, otherwise it takes the default path
+ * as if this executor was not installed. Streamed commands go over the JDK's HTTP client, which keeps the
+ * connection to the server alive between commands.
+ */
+public final class StreamingCommandExecutor implements CommandExecutor {
+
+    private final CommandExecutor fallback;
+
+    private final String server;
+
+    private final StreamingJsonCodec codec = new StreamingJsonCodec();
+
+    private final LongAdder streamed = new LongAdder();
+
+    private final LongAdder fallbacks = new LongAdder();
+
+    private final LongAdder bytesSent = new LongAdder();
+
+    /**
+     * Initializes a new instance of the {@link StreamingCommandExecutor} class
+     *
+     * @param fallback The executor for the commands the codec does not handle, usually the driver's own
+     * @param server   The URL of the server the session runs on, e.g. http://127.0.0.1:4723
+     */
+    public StreamingCommandExecutor(CommandExecutor fallback, URL server) {
+        this.fallback = fallback;
+        String url = server.toString();
+        this.server = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * Starts streaming the hot commands of a running driver.
+     *
+     * @param driver The driver, e.g. the WindowsDriver behind the lazy elements
+     * @param server The URL the driver was created with
+     * @return The executor, for its report
+     */
+    public static StreamingCommandExecutor install(RemoteWebDriver driver, URL server) {
+        StreamingCommandExecutor executor = new StreamingCommandExecutor(driver.getCommandExecutor(), server);
+        CommandExecutors.replace(driver, executor);
+        return executor;
+    }
+
+    @Override
+    public Response execute(Command command) throws IOException {
+        if (!codec.handles(command)) {
+            fallbacks.increment();
+            return fallback.execute(command);
+        }
+        boolean post = "POST".equals(codec.method(command));
+        StreamingJsonCodec.Payload payload = post ? codec.encode(command.getParameters()) : null;
+        if (post && payload == null) {
+            fallbacks.increment();
+            return fallback.execute(command);
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(server + codec.path(command)).openConnection();
+        connection.setRequestMethod(codec.method(command));
+        connection.setRequestProperty("Accept", "application/json, image/png");
+        if (post) {
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(payload.length());
+            try (OutputStream body = connection.getOutputStream()) {
+                body.write(payload.bytes(), 0, payload.length());
+            }
+            bytesSent.add(payload.length());
+        }
+        int code = connection.getResponseCode();
+        InputStream body = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        streamed.increment();
+        // Read to the end and closed, so the connection goes back to the keep-alive cache
+        try (InputStream in = body == null ? new ByteArrayInputStream(new byte[0]) : body) {
+            return codec.decode(in, code, command.getSessionId());
+        }
+    }
+
+    /**
+     * Gets the number of commands sent through the streaming codec
+     */
+    public long getStreamed() {
+        return streamed.sum();
+    }
+
+    /**
+     * Gets the number of commands left to the default executor
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Streaming codec: %d commands streamed (%d bytes sent), %d through the default codec",
+                getStreamed(), bytesSent.sum(), getFallbacks());
+    }
+}
@@ -0,0 +1,746 @@
+package lazyElement;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+
+/**
+ * JSON wire protocol codec for the commands lazy elements send most: finding, clicking and reading the state of
+ * elements.
+ * The parameters are written straight to UTF-8 bytes and the answers parsed straight from the response stream, both
+ * through buffers kept per thread, instead of building a String of the whole payload and walking it by reflection as
+ * BeanToJsonConverter and JsonToBeanConverter do. Answers decode to the same shape the default codec gives,
+ * integers as Long, objects as maps and arrays as lists, so RemoteWebDriver cannot tell the two apart.
+ * Commands it has no route for, and parameters of a type it cannot write, are left to the default codec.
+ * Routes are the JSON wire protocol ones WinAppDriver speaks, not the W3C ones.
+ */
+public final class StreamingJsonCodec {
+
+    /**
+     * Where a command is sent
+     */
+    private static final class Route {
+        private final String method;
+        private final String suffix;
+        private final boolean element;
+        private final String parameter;
+
+        /**
+         * @param method    GET or POST
+         * @param element   Whether the path goes through the element in the id parameter
+         * @param suffix    The rest of the path
+         * @param parameter Parameter appended to the path after the suffix, or null
+         */
+        private Route(String method, boolean element, String suffix, String parameter) {
+            this.method = method;
+            this.element = element;
+            this.suffix = suffix;
+            this.parameter = parameter;
+        }
+    }
+
+    private static final Map<String, Route> Routes = new HashMap<>();
+
+    static {
+        Routes.put(DriverCommand.FIND_ELEMENT, new Route("POST", false, "/element", null));
+        Routes.put(DriverCommand.FIND_ELEMENTS, new Route("POST", false, "/elements", null));
+        Routes.put(DriverCommand.FIND_CHILD_ELEMENT, new Route("POST", true, "/element", null));
+        Routes.put(DriverCommand.FIND_CHILD_ELEMENTS, new Route("POST", true, "/elements", null));
+        Routes.put(DriverCommand.CLICK_ELEMENT, new Route("POST", true, "/click", null));
+        Routes.put(DriverCommand.GET_ELEMENT_TEXT, new Route("GET", true, "/text", null));
+        Routes.put(DriverCommand.GET_ELEMENT_ATTRIBUTE, new Route("GET", true, "/attribute/", "name"));
+        Routes.put(DriverCommand.IS_ELEMENT_ENABLED, new Route("GET", true, "/enabled", null));
+        Routes.put(DriverCommand.IS_ELEMENT_DISPLAYED, new Route("GET", true, "/displayed", null));
+        Routes.put(DriverCommand.IS_ELEMENT_SELECTED, new Route("GET", true, "/selected", null));
+    }
+
+    /**
+     * Names seen in nearly every answer, returned as is instead of a new String for each occurrence
+     */
+    private static final String[] KnownNames = {"status", "sessionId", "value", "state", "ELEMENT", "message",
+            "class", "hCode", "screen", "stackTrace", "element-6066-11e4-a52e-4f735466cecf"};
+
+    private static final byte[] Hex = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Stands in for bytes that are not UTF-8
+     */
+    private static final char Replacement = '\uFFFD';
+
+    private static final ErrorCodes errorCodes = new ErrorCodes();
+
+    /**
+     * Bytes of an encoded command, reused by every command encoded on a thread
+     */
+    public static final class Payload {
+        private byte[] bytes = new byte[512];
+        private int length;
+
+        /**
+         * Gets the buffer; only the first {@link #length()} bytes belong to the payload
+         */
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+        private void put(byte value) {
+            ensure(1);
+            bytes[length++] = value;
+        }
+
+        private void putAscii(String text) {
+            ensure(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                bytes[length++] = (byte) text.charAt(i);
+            }
+        }
+    }
+
+    /**
+     * Per thread buffers, so neither direction allocates once warmed up beyond the decoded values themselves
+     */
+    private static final class Buffers {
+        private final Payload payload = new Payload();
+        private final Parser parser = new Parser();
+    }
+
+    private static final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    /**
+     * Checks if a command is encoded by this codec.
+     *
+     * @param command The command
+     * @return True for the hot commands of a session
+     */
+    public boolean handles(Command command) {
+        Route route = Routes.get(command.getName());
+        return route != null && command.getSessionId() != null
+                && (!route.element || command.getParameters().get("id") != null)
+                && (route.parameter == null || command.getParameters().get(route.parameter) != null);
+    }
+
+    /**
+     * Gets the HTTP method of a command this codec {@link #handles(Command)}.
+     */
+    public String method(Command command) {
+        return Routes.get(command.getName()).method;
+    }
+
+    /**
+     * Gets the path of a command this codec {@link #handles(Command)}.
+     *
+     * @param command The command
+     * @return The path relative to the server URL, e.g. /session/1/element/42/text
+     */
+    public String path(Command command) {
+        Route route = Routes.get(command.getName());
+        StringBuilder path = new StringBuilder(96).append("/session/").append(command.getSessionId());
+        if (route.element) {
+            path.append("/element/").append(escapePath(command.getParameters().get("id")));
+        }
+        path.append(route.suffix);
+        if (route.parameter != null) {
+            path.append(escapePath(command.getParameters().get(route.parameter)));
+        }
+        return path.toString();
+    }
+
+    private static String escapePath(Object segment) {
+        try {
+            return URLEncoder.encode(String.valueOf(segment), "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the parameters of a command as JSON.
+     *
+     * @param parameters The command parameters
+     * @return The JSON, in this thread's buffer and valid until the thread encodes again, or null if a parameter is
+     * of a type this codec does not write, in which case the command is left to the default codec
+     */
+    public Payload encode(Map<String, ?> parameters) {
+        Payload payload = buffers.get().payload;
+        payload.length = 0;
+        return write(payload, parameters) ? payload : null;
+    }
+
+    private static boolean write(Payload out, Object value) {
+        if (value == null) {
+            out.putAscii("null");
+        } else if (value instanceof CharSequence) {
+            writeString(out, (CharSequence) value);
+        } else if (value instanceof Boolean) {
+            out.putAscii((Boolean) value ? "true" : "false");
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            writeLong(out, ((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                return false;
+            }
+            out.putAscii(number == Math.rint(number) && Math.abs(number) < 1e15
+                    ? Long.toString((long) number) : Double.toString(number));
+        } else if (value instanceof Map) {
+            out.put((byte) '{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    out.put((byte) ',');
+                }
+                first = false;
+                writeString(out, String.valueOf(entry.getKey()));
+                out.put((byte) ':');
+                if (!write(out, entry.getValue())) {
+                    return false;
+                }
+            }
+            out.put((byte) '}');
+        } else if (value instanceof Collection) {
+            out.put((byte) '[');
+            boolean first = true;
+            for (Object item : (Collection<?>) value) {
+                if (!first) {
+                    out.put((byte) ',');
+                }
+                first = false;
+                if (!write(out, item)) {
+                    return false;
+                }
+            }
+            out.put((byte) ']');
+        } else if (value instanceof Enum) {
+            writeString(out, ((Enum<?>) value).name());
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeLong(Payload out, long value) {
+        if (value == Long.MIN_VALUE) {
+            out.putAscii(Long.toString(value));
+            return;
+        }
+        out.ensure(20);
+        if (value < 0) {
+            out.bytes[out.length++] = '-';
+            value = -value;
+        }
+        int end = out.length + digits(value);
+        out.length = end;
+        do {
+            out.bytes[--end] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static void writeString(Payload out, CharSequence text) {
+        int length = text.length();
+        // Worst case is six bytes per escaped control character
+        out.ensure(length * 6 + 2);
+        byte[] bytes = out.bytes;
+        int i = out.length;
+        bytes[i++] = '"';
+        for (int index = 0; index < length; index++) {
+            char c = text.charAt(index);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                bytes[i++] = (byte) c;
+            } else if (c < 0x80) {
+                bytes[i++] = '\\';
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        bytes[i++] = (byte) c;
+                        break;
+                    case '\n':
+                        bytes[i++] = 'n';
+                        break;
+                    case '\r':
+                        bytes[i++] = 'r';
+                        break;
+                    case '\t':
+                        bytes[i++] = 't';
+                        break;
+                    default:
+                        bytes[i++] = 'u';
+                        bytes[i++] = '0';
+                        bytes[i++] = '0';
+                        bytes[i++] = Hex[c >> 4];
+                        bytes[i++] = Hex[c & 0xf];
+                }
+            } else if (c < 0x800) {
+                bytes[i++] = (byte) (0xc0 | c >> 6);
+                bytes[i++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && index + 1 < length
+                    && Character.isLowSurrogate(text.charAt(index + 1))) {
+                int code = Character.toCodePoint(c, text.charAt(++index));
+                bytes[i++] = (byte) (0xf0 | code >> 18);
+                bytes[i++] = (byte) (0x80 | code >> 12 & 0x3f);
+                bytes[i++] = (byte) (0x80 | code >> 6 & 0x3f);
+                bytes[i++] = (byte) (0x80 | code & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired, replaced as String.getBytes does
+                bytes[i++] = '?';
+            } else {
+                bytes[i++] = (byte) (0xe0 | c >> 12);
+                bytes[i++] = (byte) (0x80 | c >> 6 & 0x3f);
+                bytes[i++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        bytes[i++] = '"';
+        out.length = i;
+    }
+
+    /**
+     * Reads an answer from the server.
+     *
+     * @param body       The response body, read to its end but not closed
+     * @param httpStatus The HTTP status of the response, used when the body has no status of its own
+     * @param session    The session of the command, used when the body has no session id of its own
+     * @return The response, as the default codec would decode it
+     */
+    public Response decode(InputStream body, int httpStatus, SessionId session) throws IOException {
+        Parser parser = buffers.get().parser;
+        parser.reset(body, parser.input, 0, 0);
+        try {
+            return parser.response(httpStatus, session);
+        } finally {
+            parser.release();
+        }
+    }
+
+    /**
+     * Reads an answer from the server.
+     *
+     * @param body    The response body
+     * @param session The session of the command, used when the body has no session id of its own
+     * @return The response, as the default codec would decode it
+     */
+    public Response decode(byte[] body, SessionId session) {
+        Parser parser = buffers.get().parser;
+        parser.reset(null, body, 0, body.length);
+        try {
+            return parser.response(200, session);
+        } catch (IOException e) {
+            throw new IllegalStateException("No stream to fail", e);
+        } finally {
+            parser.release();
+        }
+    }
+
+    /**
+     * Pull parser over a buffer refilled from the stream as it is consumed
+     */
+    private static final class Parser {
+        private final byte[] input = new byte[8 * 1024];
+        private char[] chars = new char[256];
+        private int count;
+        private InputStream in;
+        private byte[] buffer;
+        private int position;
+        private int limit;
+
+        private void reset(InputStream in, byte[] buffer, int position, int limit) {
+            this.in = in;
+            this.buffer = buffer;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        private void release() {
+            this.in = null;
+            this.buffer = null;
+            if (chars.length > 64 * 1024) {
+                // Do not hold on to one huge string, such as a page source, for the life of the thread
+                chars = new char[256];
+            }
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                if (in == null) {
+                    return -1;
+                }
+                int read = in.read(buffer, 0, buffer.length);
+                if (read <= 0) {
+                    return -1;
+                }
+                position = 0;
+                limit = read;
+            }
+            return buffer[position++] & 0xff;
+        }
+
+        /**
+         * Steps back over the byte just read, which is always still in the buffer
+         */
+        private void unread(int c) {
+            if (c >= 0) {
+                position--;
+            }
+        }
+
+        private int skipSpace() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+            return c;
+        }
+
+        private WebDriverException error(String expected, int c) {
+            return new WebDriverException("Malformed JSON answer: expected " + expected + " but found "
+                    + (c < 0 ? "the end" : "'" + (char) c + "'"));
+        }
+
+        private Response response(int httpStatus, SessionId session) throws IOException {
+            Response response = new Response();
+            int c = skipSpace();
+            Integer status = null;
+            if (c == '{') {
+                c = skipSpace();
+                while (c != '}') {
+                    if (c != '"') {
+                        throw error("a name", c);
+                    }
+                    String name = name();
+                    expect(':');
+                    Object value = value(skipSpace());
+                    switch (name) {
+                        case "status":
+                            status = value instanceof Number ? ((Number) value).intValue() : null;
+                            break;
+                        case "sessionId":
+                            response.setSessionId(value == null ? null : String.valueOf(value));
+                            break;
+                        case "value":
+                            response.setValue(value);
+                            break;
+                        case "state":
+                            response.setState(value == null ? null : String.valueOf(value));
+                            break;
+                        default:
+                            break;
+                    }
+                    c = skipSpace();
+                    if (c == ',') {
+                        c = skipSpace();
+                    } else if (c != '}') {
+                        throw error("',' or '}'", c);
+                    }
+                }
+            } else {
+                // Not JSON, e.g. the error page of a proxy, which the default codec reports as the value
+                response.setValue(text(c));
+            }
+            if (status == null) {
+                status = httpStatus < 400 ? ErrorCodes.SUCCESS : ErrorCodes.UNHANDLED_ERROR;
+            }
+            response.setStatus(status);
+            if (response.getState() == null) {
+                response.setState(errorCodes.toState(status));
+            }
+            if (response.getSessionId() == null && session != null) {
+                response.setSessionId(session.toString());
+            }
+            return response;
+        }
+
+        private String text(int first) throws IOException {
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            for (int c = first; c >= 0; c = read()) {
+                text.write(c);
+            }
+            return new String(text.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        private void expect(char expected) throws IOException {
+            int c = skipSpace();
+            if (c != expected) {
+                throw error("'" + expected + "'", c);
+            }
+        }
+
+        private Object value(int c) throws IOException {
+            switch (c) {
+                case '{':
+                    return object();
+                case '[':
+                    return array();
+                case '"':
+                    string();
+                    return new String(chars, 0, count);
+                case 't':
+                    literal("rue");
+                    return Boolean.TRUE;
+                case 'f':
+                    literal("alse");
+                    return Boolean.FALSE;
+                case 'n':
+                    literal("ull");
+                    return null;
+                default:
+                    if (c == '-' || c >= '0' && c <= '9') {
+                        return number(c);
+                    }
+                    throw error("a value", c);
+            }
+        }
+
+        private void literal(String rest) throws IOException {
+            for (int i = 0; i < rest.length(); i++) {
+                int c = read();
+                if (c != rest.charAt(i)) {
+                    throw error("'" + rest.charAt(i) + "'", c);
+                }
+            }
+        }
+
+        private Map<String, Object> object() throws IOException {
+            Map<String, Object> object = new HashMap<>();
+            int c = skipSpace();
+            if (c == '}') {
+                return object;
+            }
+            while (true) {
+                if (c != '"') {
+                    throw error("a name", c);
+                }
+                String name = name();
+                expect(':');
+                object.put(name, value(skipSpace()));
+                c = skipSpace();
+                if (c == '}') {
+                    return object;
+                }
+                if (c != ',') {
+                    throw error("',' or '}'", c);
+                }
+                c = skipSpace();
+            }
+        }
+
+        private List<Object> array() throws IOException {
+            List<Object> array = new ArrayList<>();
+            int c = skipSpace();
+            if (c == ']') {
+                return array;
+            }
+            while (true) {
+                array.add(value(c));
+                c = skipSpace();
+                if (c == ']') {
+                    return array;
+                }
+                if (c != ',') {
+                    throw error("',' or ']'", c);
+                }
+                c = skipSpace();
+            }
+        }
+
+        /**
+         * Reads a number as the default codec does: a Double if it has a fraction, otherwise a Long
+         */
+        private Object number(int c) throws IOException {
+            count = 0;
+            boolean negative = c == '-';
+            boolean fraction = false;
+            boolean exponent = false;
+            long value = 0;
+            int digits = 0;
+            while (c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    digits++;
+                } else if (c == '.') {
+                    fraction = true;
+                } else if (c != '-' || count != 0) {
+                    exponent = true;
+                }
+                append((char) c);
+                c = read();
+            }
+            unread(c);
+            if (!fraction && !exponent && digits > 0 && digits <= 18) {
+                return negative ? -value : value;
+            }
+            String text = new String(chars, 0, count);
+            try {
+                if (fraction) {
+                    return Double.parseDouble(text);
+                }
+                return exponent ? (long) Double.parseDouble(text) : Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                throw new WebDriverException("Malformed JSON answer: bad number " + text, e);
+            }
+        }
+
+        /**
+         * Reads a name, returning the shared instance of a well known one
+         */
+        private String name() throws IOException {
+            string();
+            for (String known : KnownNames) {
+                if (known.length() == count && matches(known)) {
+                    return known;
+                }
+            }
+            return new String(chars, 0, count);
+        }
+
+        private boolean matches(String known) {
+            for (int i = 0; i < count; i++) {
+                if (chars[i] != known.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void append(char c) {
+            if (count == chars.length) {
+                chars = Arrays.copyOf(chars, count * 2);
+            }
+            chars[count++] = c;
+        }
+
+        /**
+         * Reads the rest of a string, after its opening quote, into the char buffer
+         */
+        private void string() throws IOException {
+            count = 0;
+            while (true) {
+                int c = read();
+                if (c == '"') {
+                    return;
+                }
+                if (c < 0) {
+                    throw error("'\"'", c);
+                }
+                if (c == '\\') {
+                    escape();
+                } else if (c < 0x80) {
+                    append((char) c);
+                } else {
+                    utf8(c);
+                }
+            }
+        }
+
+        private void escape() throws IOException {
+            int c = read();
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    append((char) c);
+                    break;
+                case 'b':
+                    append('\b');
+                    break;
+                case 'f':
+                    append('\f');
+                    break;
+                case 'n':
+                    append('\n');
+                    break;
+                case 'r':
+                    append('\r');
+                    break;
+                case 't':
+                    append('\t');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw new WebDriverException("Malformed JSON answer: bad \\u escape");
+                        }
+                        code = code << 4 | digit;
+                    }
+                    append((char) code);
+                    break;
+                default:
+                    throw error("an escape", c);
+            }
+        }
+
+        private void utf8(int lead) throws IOException {
+            int extra;
+            int code;
+            if (lead < 0xc0 || lead >= 0xf8) {
+                append(Replacement);
+                return;
+            } else if (lead >= 0xf0) {
+                extra = 3;
+                code = lead & 0x07;
+            } else if (lead >= 0xe0) {
+                extra = 2;
+                code = lead & 0x0f;
+            } else {
+                extra = 1;
+                code = lead & 0x1f;
+            }
+            for (int i = 0; i < extra; i++) {
+                int c = read();
+                if ((c & 0xc0) != 0x80) {
+                    unread(c);
+                    append(Replacement);
+                    return;
+                }
+                code = code << 6 | c & 0x3f;
+            }
+            if (code >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                append(Character.highSurrogate(code));
+                append(Character.lowSurrogate(code));
+            } else {
+                append((char) code);
+            }
+        }
+    }
+}
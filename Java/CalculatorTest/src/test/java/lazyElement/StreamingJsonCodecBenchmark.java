@@ -0,0 +1,111 @@
+package lazyElement;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openqa.selenium.remote.BeanToJsonConverter;
+import org.openqa.selenium.remote.JsonToBeanConverter;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+
+/**
+ * Compares the streaming codec with the default one on the payloads of the hot commands.
+ * The default path is what HttpCommandExecutor does with a command: the parameters through BeanToJsonConverter to a
+ * String and then to bytes, the answer from bytes to a String and then through JsonToBeanConverter. Run
+ * {@link #main(String[])} to get gc.alloc.rate.norm next to the times.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StreamingJsonCodecBenchmark {
+
+    /**
+     * findElement: a locator out and one element back; findElements: the same with the 30 buttons of the
+     * calculator back; getText: an element id out and the display text back
+     */
+    @Param({"findElement", "findElements", "getText"})
+    public String command;
+
+    private final BeanToJsonConverter toJson = new BeanToJsonConverter();
+
+    private final JsonToBeanConverter fromJson = new JsonToBeanConverter();
+
+    private final StreamingJsonCodec codec = new StreamingJsonCodec();
+
+    private final SessionId session = new SessionId("8f7bd3a2-1b4c-4a43-9c1d-2f3a5b6c7d8e");
+
+    private Map<String, Object> parameters;
+
+    private byte[] answer;
+
+    @Setup
+    public void setup() {
+        parameters = new LinkedHashMap<>();
+        StringBuilder value = new StringBuilder();
+        switch (command) {
+            case "findElement":
+                parameters.put("using", "accessibility id");
+                parameters.put("value", "CalculatorResults");
+                value.append("{\"ELEMENT\":\"42.3345.2.1\"}");
+                break;
+            case "findElements":
+                parameters.put("using", "xpath");
+                parameters.put("value", "//Button[starts-with(@AutomationId,\"num\")]");
+                value.append('[');
+                for (int i = 0; i < 30; i++) {
+                    value.append(i == 0 ? "" : ",").append("{\"ELEMENT\":\"42.3345.2.").append(100 + i).append("\"}");
+                }
+                value.append(']');
+                break;
+            case "getText":
+                parameters.put("id", "42.3345.2.1");
+                value.append("\"Display is 1\\u00a0234\\u00a0567\"");
+                break;
+            default:
+                throw new IllegalArgumentException(command);
+        }
+        answer = ("{\"sessionId\":\"" + session + "\",\"status\":0,\"value\":" + value + "}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeDefault() {
+        return toJson.convert(parameters).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int encodeStreaming() {
+        return codec.encode(parameters).length();
+    }
+
+    @Benchmark
+    public Response decodeDefault() {
+        return fromJson.convert(Response.class, new String(answer, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public Response decodeStreaming() {
+        return codec.decode(answer, session);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StreamingJsonCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
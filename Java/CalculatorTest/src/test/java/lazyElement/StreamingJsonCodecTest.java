@@ -0,0 +1,168 @@
+package lazyElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openqa.selenium.remote.BeanToJsonConverter;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.JsonToBeanConverter;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+
+public class StreamingJsonCodecTest {
+
+    private final StreamingJsonCodec codec = new StreamingJsonCodec();
+
+    private final JsonToBeanConverter fromJson = new JsonToBeanConverter();
+
+    private final SessionId session = new SessionId("1");
+
+    /**
+     * Hands out one byte per read, so every value crosses a buffer refill
+     */
+    private static InputStream trickle(String json) {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        return new InputStream() {
+            @Override
+            public int read() {
+                return bytes.read();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                return bytes.read(buffer, offset, Math.min(1, length));
+            }
+        };
+    }
+
+    private static Command command(String name, Object... parameters) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            map.put((String) parameters[i], parameters[i + 1]);
+        }
+        return new Command(new SessionId("1"), name, map);
+    }
+
+    @Test
+    public void EncodedParametersReadBackUnchanged() {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("using", "xpath");
+        parameters.put("value", "//Button[@Name=\"Seven\\Eight\"]\n\t\u0001 \u00e9 \u20ac \ud83d\ude00");
+        parameters.put("count", 42);
+        parameters.put("negative", -1234567890123L);
+        parameters.put("ratio", 0.25);
+        parameters.put("flag", true);
+        parameters.put("none", null);
+        parameters.put("list", Arrays.asList("a", 1, false));
+        parameters.put("nested", Collections.singletonMap("id", "42.1"));
+
+        StreamingJsonCodec.Payload payload = codec.encode(parameters);
+
+        Map<?, ?> decoded = fromJson.convert(Map.class, payload.toString());
+        Assert.assertEquals(parameters.get("value"), decoded.get("value"));
+        Assert.assertEquals(42L, decoded.get("count"));
+        Assert.assertEquals(-1234567890123L, decoded.get("negative"));
+        Assert.assertEquals(0.25, decoded.get("ratio"));
+        Assert.assertEquals(true, decoded.get("flag"));
+        Assert.assertTrue(decoded.containsKey("none"));
+        Assert.assertEquals(Arrays.asList("a", 1L, false), decoded.get("list"));
+        Assert.assertEquals(Collections.singletonMap("id", "42.1"), decoded.get("nested"));
+        // Same bytes as the default codec for the common case
+        Map<String, Object> find = new LinkedHashMap<>();
+        find.put("using", "name");
+        find.put("value", "Equals");
+        Assert.assertEquals(new BeanToJsonConverter().convert(find), codec.encode(find).toString());
+    }
+
+    @Test
+    public void DecodesLikeTheDefaultCodec() throws IOException {
+        String value = "{\"ELEMENT\":\"42.1\",\"list\":[1,-2,3.5,1e3,true,null,\"\\u00e9\\\"\\\\\\/\"],"
+                + "\"text\":\"\u20ac \ud83d\ude00 \u00fc\",\"empty\":{},\"none\":[],\"big\":1234567890123}";
+        String json = " {\"sessionId\":\"1\", \"status\" : 0,\n\"value\":" + value + ",\"extra\":[{}]}";
+
+        Response response = codec.decode(trickle(json), 200, session);
+
+        Assert.assertEquals(0, (int) response.getStatus());
+        Assert.assertEquals("1", response.getSessionId());
+        Assert.assertEquals("success", response.getState());
+        Assert.assertEquals(fromJson.convert(Map.class, value), response.getValue());
+        Assert.assertEquals(response.getValue(),
+                codec.decode(json.getBytes(StandardCharsets.UTF_8), session).getValue());
+    }
+
+    @Test
+    public void ErrorsKeepTheirStatus() throws IOException {
+        Response missing = codec.decode(trickle("{\"status\":7,\"value\":{\"message\":\"No such element\"}}"), 404,
+                session);
+        Assert.assertEquals(7, (int) missing.getStatus());
+        Assert.assertEquals("no such element", missing.getState());
+        Assert.assertEquals("1", missing.getSessionId());
+        Assert.assertEquals(Collections.singletonMap("message", "No such element"), missing.getValue());
+
+        Response page = codec.decode(trickle("<html>Bad gateway</html>"), 502, session);
+        Assert.assertEquals(13, (int) page.getStatus());
+        Assert.assertEquals("<html>Bad gateway</html>", page.getValue());
+    }
+
+    @Test
+    public void HotCommandsAreRouted() {
+        Assert.assertEquals("/session/1/element",
+                codec.path(command(DriverCommand.FIND_ELEMENT, "using", "name", "value", "Seven")));
+        Assert.assertEquals("/session/1/element/42.1/elements",
+                codec.path(command(DriverCommand.FIND_CHILD_ELEMENTS, "id", "42.1", "using", "name", "value", "x")));
+        Assert.assertEquals("/session/1/element/42.1/attribute/Automation%20Id",
+                codec.path(command(DriverCommand.GET_ELEMENT_ATTRIBUTE, "id", "42.1", "name", "Automation Id")));
+        Assert.assertEquals("GET", codec.method(command(DriverCommand.IS_ELEMENT_DISPLAYED, "id", "42.1")));
+        Assert.assertEquals("POST", codec.method(command(DriverCommand.CLICK_ELEMENT, "id", "42.1")));
+        Assert.assertFalse(codec.handles(command(DriverCommand.SEND_KEYS_TO_ELEMENT, "id", "42.1")));
+        Assert.assertFalse(codec.handles(command(DriverCommand.GET_ELEMENT_ATTRIBUTE, "id", "42.1")));
+        Assert.assertFalse(codec.handles(new Command(null, DriverCommand.FIND_ELEMENT, new HashMap<>())));
+    }
+
+    @Test
+    public void ExecutorStreamsHotCommandsOnly() throws Exception {
+        try (StandInServer server = new StandInServer()) {
+            List<String> defaultPath = new CopyOnWriteArrayList<>();
+            CommandExecutor fallback = command -> {
+                defaultPath.add(command.getName());
+                return new Response(command.getSessionId());
+            };
+            StreamingCommandExecutor executor = new StreamingCommandExecutor(fallback, new URL(server.getUrl() + "/"));
+
+            server.setAnswer("{\"sessionId\":\"1\",\"status\":0,\"value\":{\"ELEMENT\":\"42.1\"}}");
+            Response found = executor.execute(command(DriverCommand.FIND_ELEMENT, "using", "name", "value", "Seven"));
+            Assert.assertEquals(Collections.singletonMap("ELEMENT", "42.1"), found.getValue());
+            Assert.assertEquals("POST /session/1/element {\"using\":\"name\",\"value\":\"Seven\"}",
+                    server.getLastCommand());
+
+            server.setAnswer("{\"sessionId\":\"1\",\"status\":0,\"value\":\"Display is 7\"}");
+            Response text = executor.execute(command(DriverCommand.GET_ELEMENT_TEXT, "id", "42.1"));
+            Assert.assertEquals("Display is 7", text.getValue());
+            Assert.assertEquals("GET /session/1/element/42.1/text", server.getLastCommand());
+
+            executor.execute(command(DriverCommand.SEND_KEYS_TO_ELEMENT, "id", "42.1", "value", Arrays.asList("7")));
+            // A parameter the codec cannot write takes the default path too
+            executor.execute(command(DriverCommand.FIND_ELEMENT, "using", "name", "value", new Object()));
+
+            Assert.assertEquals(Arrays.asList(DriverCommand.SEND_KEYS_TO_ELEMENT, DriverCommand.FIND_ELEMENT),
+                    defaultPath);
+            Assert.assertEquals(2, executor.getStreamed());
+            Assert.assertEquals(2, executor.getFallbacks());
+            Assert.assertEquals(2, server.getCommands());
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package lazyElement;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Remembers how long each test took, as a moving average persisted to a local file, so later runs can schedule the
+ * longest tests first. A test that never ran is predicted to take as long as the median known test.
+ */
+public final class TestDurations {
+
+    private static final Logger log = Logger.getLogger(TestDurations.class);
+
+    /**
+     * Weight of a new duration in the moving average
+     */
+    private static final double Smoothing = 0.5;
+
+    /**
+     * Durations of every test, persisted to the file named by the lazyElement.durations system property
+     */
+    private static volatile TestDurations shared;
+
+    private final ConcurrentMap<String, Double> durations = new ConcurrentHashMap<>();
+
+    private final Path file;
+
+    private volatile long defaultDuration = 1000;
+
+    /**
+     * Initializes a new instance of the {@link TestDurations} class, loading the history in the file if there is one
+     *
+     * @param file The file the history is persisted to, or null to keep it in memory only
+     */
+    public TestDurations(Path file) {
+        this.file = file;
+        if (file != null && Files.exists(file)) {
+            try {
+                load(file);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable test durations in " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the durations used to schedule the tests.
+     * They are loaded from the file named by the lazyElement.durations system property, target/test-durations.txt by
+     * default, and saved back when the JVM exits.
+     */
+    public static TestDurations getShared() {
+        TestDurations durations = shared;
+        if (durations == null) {
+            synchronized (TestDurations.class) {
+                durations = shared;
+                if (durations == null) {
+                    TestDurations created = new TestDurations(
+                            Paths.get(System.getProperty("lazyElement.durations", "target/test-durations.txt")));
+                    Runtime.getRuntime().addShutdownHook(new Thread(created::trySave, "test-durations"));
+                    shared = created;
+                    durations = created;
+                }
+            }
+        }
+        return durations;
+    }
+
+    /**
+     * Sets the durations used to schedule the tests.
+     *
+     * @param durations The new durations, null to go back to the persisted ones
+     * @return The previous durations, null if the persisted ones were never loaded
+     */
+    public static TestDurations setShared(TestDurations durations) {
+        synchronized (TestDurations.class) {
+            TestDurations previous = shared;
+            shared = durations;
+            return previous;
+        }
+    }
+
+    /**
+     * Records how long a test took.
+     *
+     * @param test   The test's display name
+     * @param millis Duration in milliseconds
+     */
+    public void record(String test, long millis) {
+        double duration = Math.max(0, millis);
+        durations.merge(test, duration, (old, latest) -> old + Smoothing * (latest - old));
+    }
+
+    /**
+     * Gets the recorded duration of a test.
+     *
+     * @param test The test's display name
+     * @return Duration in milliseconds, or -1 if the test never ran
+     */
+    public long getDuration(String test) {
+        Double duration = durations.get(test);
+        return duration == null ? -1 : Math.round(duration);
+    }
+
+    /**
+     * Predicts how long a test will take.
+     *
+     * @param test The test's display name
+     * @return Its recorded duration, or the median of the known tests if it never ran
+     */
+    public long predict(String test) {
+        long duration = getDuration(test);
+        return duration >= 0 ? duration : getMedian();
+    }
+
+    /**
+     * Gets the median duration of the known tests, or the default duration if none is known
+     */
+    public long getMedian() {
+        double[] known = durations.values().stream().mapToDouble(Double::doubleValue).toArray();
+        if (known.length == 0) {
+            return defaultDuration;
+        }
+        Arrays.sort(known);
+        return Math.round(known[known.length / 2]);
+    }
+
+    /**
+     * Sets the duration predicted for unknown tests while no test is known.
+     *
+     * @param millis Duration in milliseconds
+     */
+    public void setDefaultDuration(long millis) {
+        this.defaultDuration = millis;
+    }
+
+    public int size() {
+        return durations.size();
+    }
+
+    /**
+     * Writes the history to the file, replacing it atomically where the file system allows.
+     */
+    public void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "test-durations", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Double> entry : new TreeMap<>(durations).entrySet()) {
+                    writer.write(escape(entry.getKey()));
+                    writer.write('\t');
+                    writer.write(Long.toString(Math.round(entry.getValue())));
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    void trySave() {
+        try {
+            save();
+        } catch (IOException e) {
+            log.warn("Failed to save test durations to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void load(Path path) throws IOException {
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            int tab = line.lastIndexOf('\t');
+            if (tab <= 0 || tab == line.length() - 1) {
+                continue;
+            }
+            durations.put(unescape(line.substring(0, tab)), (double) Long.parseLong(line.substring(tab + 1).trim()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("Test durations (median ").append(getMedian()).append(" ms)");
+        for (Map.Entry<String, Double> entry : new TreeMap<>(durations).entrySet()) {
+            report.append("\r\n  ").append(entry.getKey()).append(": ").append(Math.round(entry.getValue())).append(" ms");
+        }
+        return report.toString();
+    }
+
+    private static String escape(String test) {
+        return test.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String test) {
+        StringBuilder unescaped = new StringBuilder(test.length());
+        for (int i = 0; i < test.length(); i++) {
+            char c = test.charAt(i);
+            if (c == '\\' && i + 1 < test.length()) {
+                char next = test.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
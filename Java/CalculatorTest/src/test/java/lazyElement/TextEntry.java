@@ -0,0 +1,408 @@
+package lazyElement;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import io.appium.java_client.MobileElement;
+import org.apache.log4j.Logger;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Enters text into an element chunk by chunk, checking after each chunk that the element's Value shows it. Text no
+ * longer than a chunk is one chunk. Sent as one keystroke stream, a retry after a transient failure types again
+ * whatever the failed attempt got through. Here a failure is followed by reading the Value, and typing resumes from
+ * the last character it shows. When the element is empty and can set its value directly, through Appium's setValue,
+ * the whole text is set at once and typing is only the fallback. Setting replaces the whole value while keys go in at
+ * the caret, so an element that already holds text is always typed.
+ * <p>
+ * An element whose Value does not echo the keys typed, e.g. a formatted field, is typed without checks, and cleared
+ * and typed again from the start after a failure. One whose Value cannot be read at all, e.g. a password box, is
+ * typed without checks too, but clearing it would lose what it held before, so a failure once keys were sent fails
+ * the entry. The text itself is never logged, so secrets go through here too.
+ */
+public final class TextEntry {
+
+    private static final Logger log = Logger.getLogger(TextEntry.class);
+
+    /**
+     * Text entry used by every lazy element. Text is typed in chunks of lazyElement.textChunk characters, 64 by
+     * default; lazyElement.setValue=false turns the value-set fast path off
+     */
+    private static volatile TextEntry shared = new TextEntry(Integer.getInteger("lazyElement.textChunk", 64),
+            Boolean.parseBoolean(System.getProperty("lazyElement.setValue", "true")) ? TextEntry::setValue : null);
+
+    /**
+     * Sets the value of an element, throwing UnsupportedCommandException if it cannot
+     */
+    private final BiConsumer<WebElement, String> valueSetter;
+
+    private final int chunkSize;
+
+    /**
+     * Locators whose element could not set its value, typed from then on
+     */
+    private final Set<String> cannotSet = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder entries = new LongAdder();
+
+    private final LongAdder chunks = new LongAdder();
+
+    private final LongAdder valuesSet = new LongAdder();
+
+    private final LongAdder resumes = new LongAdder();
+
+    private final LongAdder notRetyped = new LongAdder();
+
+    private final LongAdder restarts = new LongAdder();
+
+    /**
+     * Initializes a new instance of the {@link TextEntry} class
+     *
+     * @param chunkSize   Characters typed between checks of the Value
+     * @param valueSetter Sets the value of an element, throwing UnsupportedCommandException if it cannot; null to
+     *                    always type
+     */
+    public TextEntry(int chunkSize, BiConsumer<WebElement, String> valueSetter) {
+        if (chunkSize < 2) {
+            throw new IllegalArgumentException("Chunks of less than 2 characters would split surrogate pairs: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.valueSetter = valueSetter;
+    }
+
+    public static TextEntry getShared() {
+        return shared;
+    }
+
+    /**
+     * Replaces the text entry used by every lazy element.
+     *
+     * @param entry The new text entry
+     * @return The previous text entry
+     */
+    public static TextEntry setShared(TextEntry entry) {
+        TextEntry previous = shared;
+        shared = entry;
+        return previous;
+    }
+
+    /**
+     * Sets the value through Appium's setValue, which the UI Automation value pattern backs on Windows
+     */
+    private static void setValue(WebElement element, String value) {
+        if (!(element instanceof MobileElement)) {
+            throw new UnsupportedCommandException("setValue needs an Appium element");
+        }
+        ((MobileElement) element).setValue(value);
+    }
+
+    /**
+     * Gets the text to enter, if the keys are plain text.
+     *
+     * @param keys The keys sendKeys was given
+     * @return The text, or null if it is empty or has special keys such as Keys.ENTER, which the Value cannot show
+     */
+    String plainText(CharSequence... keys) {
+        StringBuilder text = new StringBuilder();
+        for (CharSequence sequence : keys) {
+            if (sequence == null) {
+                return null;
+            }
+            for (int i = 0; i < sequence.length(); i++) {
+                char key = sequence.charAt(i);
+                // Keys are sent as characters of the private use area
+                if (key >= '\uE000' && key <= '\uE0FF') {
+                    return null;
+                }
+                text.append(key);
+            }
+        }
+        return text.length() > 0 ? text.toString() : null;
+    }
+
+    /**
+     * Enters text after the element's current value, retrying until the timeout.
+     *
+     * @param element   The element to enter the text into
+     * @param text      The text
+     * @param secret    Whether the text is secret, in which case not even the cause of a failure is kept
+     * @param retryTime Time between attempts in milliseconds
+     * @param timeout   Max timeout in milliseconds
+     */
+    void enter(AbstractLazyWebElement element, String text, boolean secret, long retryTime, long timeout)
+            throws NoSuchElementException {
+        entries.increment();
+        TimeSource clock = GenericWait.getTimeSource();
+        long deadline = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        Typing typing = new Typing(element, text);
+        while (true) {
+            WebDriverException failure;
+            try {
+                typing.run();
+                return;
+            } catch (StaleElementReferenceException e) {
+                failure = e;
+                typing.stale = true;
+            } catch (WebDriverException e) {
+                failure = e;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Entering text into %s failed after %d of %d characters: %s",
+                        element.getUserFriendlyName(), typing.offset, typing.text.length(),
+                        failure.getClass().getSimpleName()));
+            }
+            if (clock.nanoTime() - deadline >= 0) {
+                String message = String.format("Failed to enter %d characters into %s, %d confirmed",
+                        typing.text.length(), element.getUserFriendlyName(), typing.offset);
+                throw secret ? new NoSuchElementException(message + ": " + failure.getClass().getSimpleName())
+                        : new NoSuchElementException(message, failure);
+            }
+            if (!typing.known && typing.sent) {
+                // Neither what got through nor what the element held before can be told
+                String message = String.format("Failed to enter %d characters into %s, whose value cannot be read "
+                        + "to resume or restart", typing.text.length(), element.getUserFriendlyName());
+                throw secret ? new NoSuchElementException(message + ": " + failure.getClass().getSimpleName())
+                        : new NoSuchElementException(message, failure);
+            }
+            typing.resync = true;
+            try {
+                clock.sleep(retryTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NoSuchElementException("Interrupted while entering text into " + element.getUserFriendlyName());
+            }
+        }
+    }
+
+    /**
+     * Gets the number of texts entered
+     */
+    public long getEntries() {
+        return entries.sum();
+    }
+
+    /**
+     * Gets the number of chunks typed
+     */
+    public long getChunks() {
+        return chunks.sum();
+    }
+
+    /**
+     * Gets the number of texts set through the value-set fast path
+     */
+    public long getValuesSet() {
+        return valuesSet.sum();
+    }
+
+    /**
+     * Gets the number of times typing resumed from the Value after a failure
+     */
+    public long getResumes() {
+        return resumes.sum();
+    }
+
+    /**
+     * Gets the number of characters a failure did not make type again, since the Value showed them
+     */
+    public long getNotRetyped() {
+        return notRetyped.sum();
+    }
+
+    /**
+     * Gets the number of times an element was cleared and typed again from the start
+     */
+    public long getRestarts() {
+        return restarts.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Text entry: %d texts, %d chunks typed, %d values set, %d resumes saved %d characters, "
+                        + "%d restarts", getEntries(), getChunks(), getValuesSet(), getResumes(), getNotRetyped(),
+                getRestarts());
+    }
+
+    /**
+     * Reads the Value of an element.
+     *
+     * @return The Value, or null if the element has none
+     */
+    private static String valueOf(WebElement element) {
+        return element.getAttribute("Value");
+    }
+
+    /**
+     * One text being entered, kept across attempts
+     */
+    private final class Typing {
+        private final AbstractLazyWebElement element;
+
+        /**
+         * The text still to be entered after the value the element had, longer if a restart cleared that value
+         */
+        private String text;
+
+        /**
+         * The value the element had before, empty if it cannot be read
+         */
+        private String before = "";
+
+        /**
+         * Whether the value the element had before could be read, so a restart can put it back
+         */
+        private boolean known;
+
+        /**
+         * Whether the Value shows what was typed, so progress can be read back from it
+         */
+        private boolean checked;
+
+        /**
+         * Whether keys or a value were sent to the element yet
+         */
+        private boolean sent;
+
+        private boolean started;
+
+        /**
+         * The characters of the text the element confirmed, or typed if it cannot be checked
+         */
+        private int offset;
+
+        /**
+         * An attempt failed, so what got through must be read back before typing on
+         */
+        private boolean resync;
+
+        /**
+         * The handle went stale and the element must be found again
+         */
+        private boolean stale;
+
+        private Typing(AbstractLazyWebElement element, String text) {
+            this.element = element;
+            this.text = text;
+        }
+
+        private void run() {
+            WebElement target = stale ? element.getNewElement() : element.getElement();
+            stale = false;
+            if (!started) {
+                String value = valueOf(target);
+                known = value != null;
+                checked = known;
+                before = known ? value : "";
+                started = true;
+                if (trySet(target)) {
+                    return;
+                }
+            } else if (resync) {
+                resync(target);
+            }
+            resync = false;
+
+            while (offset < text.length()) {
+                int end = Math.min(offset + chunkSize, text.length());
+                if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                    end--;
+                }
+                sent = true;
+                target.sendKeys(text.substring(offset, end));
+                chunks.increment();
+                if (!checked) {
+                    offset = end;
+                    continue;
+                }
+                int confirmed = confirmed(valueOf(target));
+                if (confirmed > offset) {
+                    // Keystrokes the element dropped are typed again with the next chunk
+                    offset = confirmed;
+                } else {
+                    if (log.isDebugEnabled()) {
+                        log.debug(element.getUserFriendlyName() + " does not show the keys typed, typing on unchecked");
+                    }
+                    checked = false;
+                    offset = end;
+                }
+            }
+        }
+
+        /**
+         * Sets the whole value at once, if the element can and is known to be empty. Setting replaces the value, so
+         * text already in the element would be lost, or the new text put at its end rather than at the caret
+         *
+         * @return True if the value is set
+         */
+        private boolean trySet(WebElement target) {
+            String key = element.getLocatorKey();
+            if (valueSetter == null || !known || !before.isEmpty() || cannotSet.contains(key)) {
+                return false;
+            }
+            String value = text;
+            try {
+                sent = true;
+                valueSetter.accept(target, value);
+            } catch (UnsupportedCommandException | UnsupportedOperationException e) {
+                cannotSet.add(key);
+                if (log.isDebugEnabled()) {
+                    log.debug(element.getUserFriendlyName() + " cannot set its value, typing instead");
+                }
+                return false;
+            }
+            if (value.equals(valueOf(target))) {
+                valuesSet.increment();
+                return true;
+            }
+            // The element took the command but not the value, start over typing
+            cannotSet.add(key);
+            restart(target);
+            return false;
+        }
+
+        /**
+         * Reads back how much of the text got through, or starts over if that cannot be told
+         */
+        private void resync(WebElement target) {
+            if (checked) {
+                int confirmed = confirmed(valueOf(target));
+                if (confirmed >= 0) {
+                    resumes.increment();
+                    notRetyped.add(confirmed);
+                    offset = confirmed;
+                    return;
+                }
+            }
+            restart(target);
+        }
+
+        private void restart(WebElement target) {
+            restarts.increment();
+            target.clear();
+            text = before + text;
+            before = "";
+            offset = 0;
+        }
+
+        /**
+         * Gets how much of the text the Value shows after the value the element had before
+         *
+         * @return The number of characters, or -1 if the Value is not the value before followed by the start of the
+         * text
+         */
+        private int confirmed(String value) {
+            if (value == null || !value.startsWith(before)) {
+                return -1;
+            }
+            int typed = value.length() - before.length();
+            return typed <= text.length() && text.regionMatches(0, value, before.length(), typed) ? typed : -1;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package lazyElement;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Keys;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriverException;
+
+public class TextEntryTest {
+
+    private final Logger logger = Logger.getLogger(TextEntryTest.class);
+
+    /**
+     * 50 characters, typed in chunks of 8
+     */
+    private static final String Text = "The quick brown fox jumps over the lazy dog, twice";
+
+    private TextEntry entry = new TextEntry(8, null);
+
+    private TextEntry previousEntry;
+
+    private TimeSource previousClock;
+
+    private StandInElement field;
+
+    private LazyElement lazyField;
+
+    @Before
+    public void setup() {
+        previousEntry = TextEntry.setShared(entry);
+        previousClock = GenericWait.setTimeSource(new VirtualTimeSource());
+        StandInDriver driver = new StandInDriver();
+        field = driver.window("Notes").add("Note").attribute("Value", "");
+        lazyField = new LazyElement(logger, driver, By.name("Note"), "Note");
+    }
+
+    @After
+    public void tearDown() {
+        TextEntry.setShared(previousEntry);
+        GenericWait.setTimeSource(previousClock);
+    }
+
+    private void use(TextEntry entry) {
+        this.entry = entry;
+        TextEntry.setShared(entry);
+    }
+
+    @Test
+    public void LongTextIsTypedInChunks() {
+        field.attribute("Value", "Note: ");
+
+        lazyField.sendKeys(Text);
+
+        Assert.assertEquals("Note: " + Text, field.getAttribute("Value"));
+        Assert.assertEquals(7, entry.getChunks());
+        Assert.assertEquals(Text.length(), field.getTypedCount());
+    }
+
+    @Test
+    public void FailureResumesFromWhatTheValueShows() {
+        field.failTyping(5);
+
+        lazyField.sendKeys(Text.substring(0, 20), Text.substring(20));
+
+        Assert.assertEquals(Text, field.getAttribute("Value"));
+        // Nothing typed twice
+        Assert.assertEquals(Text.length(), field.getTypedCount());
+        Assert.assertEquals(1, entry.getResumes());
+        Assert.assertEquals(5, entry.getNotRetyped());
+    }
+
+    @Test
+    public void UnreadableFieldFailsRatherThanLoseItsContent() {
+        // A field without a Value can show neither how much got through nor what it held before
+        field.attribute("Value", null).failTyping(5);
+
+        try {
+            lazyField.sendKeys(Text);
+            Assert.fail("Clearing the field would have lost what it held");
+        } catch (NoSuchElementException e) {
+            Assert.assertEquals(0, entry.getRestarts());
+            Assert.assertEquals(0, entry.getResumes());
+        }
+    }
+
+    @Test
+    public void ValueIsSetWhenTheElementCan() {
+        use(new TextEntry(8, (element, value) -> ((StandInElement) element).attribute("Value", value)));
+
+        lazyField.sendKeys(Text);
+
+        Assert.assertEquals(Text, field.getAttribute("Value"));
+        Assert.assertEquals(1, entry.getValuesSet());
+        Assert.assertEquals(0, field.getTypedCount());
+    }
+
+    @Test
+    public void FieldWithTextIsTypedAtTheCaret() {
+        use(new TextEntry(8, (element, value) -> ((StandInElement) element).attribute("Value", value)));
+        field.attribute("Value", "Note: ");
+
+        lazyField.sendKeys(Text);
+
+        Assert.assertEquals("Note: " + Text, field.getAttribute("Value"));
+        Assert.assertEquals(0, entry.getValuesSet());
+        Assert.assertEquals(Text.length(), field.getTypedCount());
+    }
+
+    @Test
+    public void ElementThatCannotSetItsValueIsTyped() {
+        AtomicInteger sets = new AtomicInteger();
+        use(new TextEntry(8, (element, value) -> {
+            sets.incrementAndGet();
+            throw new UnsupportedCommandException("setValue");
+        }));
+
+        lazyField.sendKeys(Text);
+        lazyField.sendKeys(Text);
+
+        Assert.assertEquals(Text + Text, field.getAttribute("Value"));
+        // Not asked again once it said it cannot
+        Assert.assertEquals(1, sets.get());
+        Assert.assertEquals(0, entry.getValuesSet());
+    }
+
+    @Test
+    public void ShortTextIsEnteredAsOneChunk() {
+        field.failTyping(1);
+
+        lazyField.sendKeys("12");
+
+        Assert.assertEquals("12", field.getAttribute("Value"));
+        // The failed attempt typed the 1, which is not typed again
+        Assert.assertEquals(2, field.getTypedCount());
+        Assert.assertEquals(1, entry.getEntries());
+        Assert.assertEquals(1, entry.getResumes());
+    }
+
+    @Test
+    public void SpecialKeysAreSentAsBefore() {
+        lazyField.sendKeys(Text, Keys.ENTER);
+
+        Assert.assertEquals(0, entry.getEntries());
+        Assert.assertEquals(Text + Keys.ENTER, field.getAttribute("Value"));
+    }
+
+    @Test
+    public void SecretKeysAreEnteredOnce() {
+        field.failTyping(3);
+
+        lazyField.sendSecretKeys("hunter2");
+
+        Assert.assertEquals("hunter2", field.getAttribute("Value"));
+        Assert.assertEquals(7, field.getTypedCount());
+        Assert.assertEquals(1, entry.getEntries());
+    }
+
+    @Test
+    public void FailedSecretKeysKeepNoTrace() {
+        use(new TextEntry(8, (element, value) -> {
+            throw new WebDriverException("Rejected value " + value);
+        }));
+        field.failTyping(0, Integer.MAX_VALUE);
+
+        try {
+            lazyField.sendSecretKeys("hunter2");
+            Assert.fail("The value was never set");
+        } catch (NoSuchElementException e) {
+            Assert.assertFalse(e.getMessage(), e.getMessage().contains("hunter2"));
+            Assert.assertNull(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package lazyElement;
+
+/**
+ * Clock and sleeper used by the waits.
+ * Production code uses {@link #SYSTEM}. Tests can swap in a virtual clock through
+ * {@link GenericWait#setTimeSource(TimeSource)} so timeouts pass without any wall clock time.
+ */
+public interface TimeSource {
+
+    /**
+     * The system clock and {@link Thread#sleep(long)}
+     */
+    TimeSource SYSTEM = new TimeSource() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            Thread.sleep(millis);
+        }
+    };
+
+    /**
+     * Gets the current time, only meaningful as a difference between two calls.
+     *
+     * @return The current time in nanoseconds
+     */
+    long nanoTime();
+
+    /**
+     * Waits for the given time to pass.
+     *
+     * @param millis Time to wait in milliseconds
+     */
+    void sleep(long millis) throws InterruptedException;
+}
@@ -0,0 +1,54 @@
+package lazyElement;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time source whose clock only moves when something sleeps or the test advances it.
+ * Sleeping returns immediately, so a 30 second timeout passes in no wall clock time and always takes the same
+ * number of polls.
+ */
+public class VirtualTimeSource implements TimeSource {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private final AtomicInteger sleeps = new AtomicInteger();
+
+    @Override
+    public long nanoTime() {
+        return nanos.get();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        sleeps.incrementAndGet();
+        advance(millis);
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param millis Time to add in milliseconds
+     */
+    public void advance(long millis) {
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Gets the virtual time passed since the source was created
+     */
+    public long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+    }
+
+    /**
+     * Gets the number of sleeps, which is the number of failed polls for the waits
+     */
+    public int getSleeps() {
+        return sleeps.get();
+    }
+}
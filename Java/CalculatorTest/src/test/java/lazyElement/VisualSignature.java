@@ -0,0 +1,221 @@
+package lazyElement;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.stream.IntStream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Downsampled fingerprint of a screenshot, used to tell whether an element is still moving.
+ * The image is split into a {@link #Grid} by {@link #Grid} grid and each block is reduced to its mean luminance, so
+ * two frames are compared with {@code Grid * Grid} byte differences instead of a diff of every pixel, and antialiasing
+ * or compression noise below the tolerance does not count as movement. Large images are reduced one band of blocks
+ * per core.
+ */
+public final class VisualSignature {
+
+    /**
+     * Blocks per side
+     */
+    public static final int Grid = 16;
+
+    /**
+     * Images with at least this many pixels are reduced in parallel, smaller ones are not worth the hand off
+     */
+    private static final int ParallelPixels = 256 * 1024;
+
+    private final int width;
+
+    private final int height;
+
+    private final byte[] blocks;
+
+    private VisualSignature(int width, int height, byte[] blocks) {
+        this.width = width;
+        this.height = height;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Gets the signature of a screenshot.
+     *
+     * @param png The screenshot as PNG, as returned for {@link org.openqa.selenium.OutputType#BYTES}
+     * @return The signature
+     */
+    public static VisualSignature of(byte[] png) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(png));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode the screenshot", e);
+        }
+        if (image == null) {
+            throw new IllegalArgumentException("Not a screenshot, " + png.length + " bytes in an unknown format");
+        }
+        return of(image);
+    }
+
+    /**
+     * Gets the signature of an image.
+     *
+     * @param image The image
+     * @return The signature
+     */
+    public static VisualSignature of(BufferedImage image) {
+        return of(image, (long) image.getWidth() * image.getHeight() >= ParallelPixels);
+    }
+
+    /**
+     * Gets the signature of an image.
+     *
+     * @param image    The image
+     * @param parallel Whether to reduce the bands of blocks in parallel
+     * @return The signature
+     */
+    static VisualSignature of(BufferedImage image, boolean parallel) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        // Block i covers the columns from edges[i] up to edges[i + 1]
+        int[] edges = new int[Grid + 1];
+        for (int block = 0; block <= Grid; block++) {
+            edges[block] = (int) (((long) block * width + Grid - 1) / Grid);
+        }
+        byte[] blocks = new byte[Grid * Grid];
+        IntStream bands = IntStream.range(0, Grid);
+        (parallel ? bands.parallel() : bands).forEach(band -> reduce(image, band, edges, blocks));
+        return new VisualSignature(width, height, blocks);
+    }
+
+    /**
+     * Reduces one band of blocks to their mean luminance. Each band writes its own blocks only.
+     * The pixel layouts screenshots decode to are read straight from the raster's array, anything else through
+     * {@link BufferedImage#getRGB}, which converts every pixel through the color model and is several times slower.
+     */
+    private static void reduce(BufferedImage image, int band, int[] edges, byte[] blocks) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int top = (int) ((long) band * height / Grid);
+        int bottom = (int) ((long) (band + 1) * height / Grid);
+        if (bottom <= top) {
+            // Fewer rows than blocks, share the nearest row
+            top = Math.min(height - 1, top);
+            bottom = top + 1;
+        }
+        long[] sums = new long[Grid];
+        WritableRaster raster = image.getRaster();
+        DataBuffer data = raster.getDataBuffer();
+        SampleModel model = raster.getSampleModel();
+        boolean direct = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && data.getNumBanks() == 1;
+        int type = image.getType();
+
+        if (direct && data instanceof DataBufferInt && model instanceof SinglePixelPackedSampleModel
+                && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)) {
+            int[] pixels = ((DataBufferInt) data).getData();
+            int stride = ((SinglePixelPackedSampleModel) model).getScanlineStride();
+            for (int y = top; y < bottom; y++) {
+                int start = data.getOffset() + y * stride;
+                for (int block = 0; block < Grid; block++) {
+                    int sum = 0;
+                    for (int x = edges[block]; x < edges[block + 1]; x++) {
+                        int rgb = pixels[start + x];
+                        sum += luma((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+                    }
+                    sums[block] += sum;
+                }
+            }
+        } else if (direct && data instanceof DataBufferByte && model instanceof PixelInterleavedSampleModel
+                && model.getNumBands() >= 3 && model.getSampleSize(0) == 8) {
+            // 3BYTE_BGR and 4BYTE_ABGR, what ImageIO decodes an RGB or RGBA PNG to
+            byte[] pixels = ((DataBufferByte) data).getData();
+            PixelInterleavedSampleModel interleaved = (PixelInterleavedSampleModel) model;
+            int pixelStride = interleaved.getPixelStride();
+            int[] offsets = interleaved.getBandOffsets();
+            int red = offsets[0];
+            int green = offsets[1];
+            int blue = offsets[2];
+            for (int y = top; y < bottom; y++) {
+                int i = data.getOffset() + y * interleaved.getScanlineStride();
+                for (int block = 0; block < Grid; block++) {
+                    int sum = 0;
+                    for (int x = edges[block]; x < edges[block + 1]; x++, i += pixelStride) {
+                        sum += luma(pixels[i + red] & 0xff, pixels[i + green] & 0xff, pixels[i + blue] & 0xff);
+                    }
+                    sums[block] += sum;
+                }
+            }
+        } else {
+            int[] row = new int[width];
+            for (int y = top; y < bottom; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int block = 0; block < Grid; block++) {
+                    for (int x = edges[block]; x < edges[block + 1]; x++) {
+                        int rgb = row[x];
+                        sums[block] += luma((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+                    }
+                }
+            }
+        }
+
+        for (int block = 0; block < Grid; block++) {
+            int source = block;
+            if (edges[block] == edges[block + 1]) {
+                // Fewer columns than blocks, share the block of the nearest column
+                int x = Math.min(width - 1, (int) ((long) block * width / Grid));
+                source = (int) ((long) x * Grid / width);
+            }
+            long count = (long) (edges[source + 1] - edges[source]) * (bottom - top);
+            blocks[band * Grid + block] = (byte) (sums[source] / Math.max(1, count));
+        }
+    }
+
+    /**
+     * Integer Rec. 601 luma, weights out of 1024
+     */
+    private static int luma(int red, int green, int blue) {
+        return (306 * red + 601 * green + 117 * blue) >> 10;
+    }
+
+    /**
+     * Gets the largest luminance difference of any block.
+     *
+     * @param other The signature to compare with
+     * @return Between 0 and 255, or {@link Integer#MAX_VALUE} if the images differ in size
+     */
+    public int distance(VisualSignature other) {
+        if (width != other.width || height != other.height) {
+            return Integer.MAX_VALUE;
+        }
+        int distance = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            distance = Math.max(distance, Math.abs((blocks[i] & 0xff) - (other.blocks[i] & 0xff)));
+        }
+        return distance;
+    }
+
+    /**
+     * Checks if two frames look the same.
+     *
+     * @param other     The signature to compare with
+     * @param tolerance Largest luminance difference of a block still counted as the same, out of 255
+     * @return True if no block differs by more than the tolerance
+     */
+    public boolean matches(VisualSignature other, int tolerance) {
+        return distance(other) <= tolerance;
+    }
+
+    @Override
+    public String toString() {
+        return "VisualSignature[" + width + "x" + height + "]";
+    }
+}
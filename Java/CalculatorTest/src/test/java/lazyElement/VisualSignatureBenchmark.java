@@ -0,0 +1,106 @@
+package lazyElement;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the CPU cost of one frame of a visual stability wait.
+ * {@link #signature()} reduces a decoded image to its block grid, serially or one band per core, {@link #compare()}
+ * compares two grids and {@link #frame()} adds decoding the PNG, which is what each poll pays after the screenshot
+ * arrives. A button sized frame should stay well under a millisecond so polling every 50 ms costs little.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class VisualSignatureBenchmark {
+
+    /**
+     * Element or full screen
+     */
+    @Param({"200x60", "1920x1080"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private BufferedImage image;
+
+    private byte[] png;
+
+    private VisualSignature still;
+
+    private VisualSignature moved;
+
+    @Setup(Level.Trial)
+    public void render() throws IOException {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        image = render(width, height, 0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        png = bytes.toByteArray();
+        still = VisualSignature.of(image, parallel);
+        moved = VisualSignature.of(render(width, height, 3), parallel);
+    }
+
+    private static BufferedImage render(int width, int height, int offset) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.DARK_GRAY);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(offset + width / 4, height / 4, width / 2, height / 2);
+        graphics.drawString("Display is 8", offset + width / 4, height / 2);
+        graphics.dispose();
+        return image;
+    }
+
+    @Benchmark
+    public VisualSignature signature() {
+        return VisualSignature.of(image, parallel);
+    }
+
+    @Benchmark
+    public int compare() {
+        return still.distance(moved);
+    }
+
+    @Benchmark
+    public VisualSignature frame() throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+        return VisualSignature.of(decoded, parallel);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VisualSignatureBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,137 @@
+package lazyElement;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+
+public class VisualSignatureTest {
+
+    private final Logger logger = Logger.getLogger(VisualSignatureTest.class);
+
+    private VirtualTimeSource clock;
+
+    private TimeSource previousClock;
+
+    private LocatorTimings previousTimings;
+
+    @Before
+    public void setup() {
+        clock = new VirtualTimeSource();
+        previousClock = GenericWait.setTimeSource(clock);
+        previousTimings = LocatorTimings.setShared(new LocatorTimings(null));
+    }
+
+    @After
+    public void tearDown() {
+        GenericWait.setTimeSource(previousClock);
+        LocatorTimings.setShared(previousTimings);
+    }
+
+    /**
+     * A button with its label, drawn at a horizontal offset
+     */
+    private static BufferedImage button(int width, int height, int offset) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.DARK_GRAY);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(offset + width / 4, height / 4, width / 2, height / 2);
+        graphics.dispose();
+        return image;
+    }
+
+    @Test
+    public void SameFramesMatch() {
+        VisualSignature first = VisualSignature.of(button(200, 60, 0));
+        VisualSignature second = VisualSignature.of(button(200, 60, 0));
+
+        Assert.assertEquals(0, first.distance(second));
+        Assert.assertTrue(first.matches(second, 0));
+    }
+
+    @Test
+    public void NoiseBelowTheToleranceMatches() {
+        BufferedImage noisy = button(200, 60, 0);
+        for (int x = 0; x < 200; x += 7) {
+            noisy.setRGB(x, 30, noisy.getRGB(x, 30) ^ 0x010101);
+        }
+
+        Assert.assertTrue(VisualSignature.of(button(200, 60, 0)).matches(VisualSignature.of(noisy), 2));
+    }
+
+    @Test
+    public void MovedElementDoesNotMatch() {
+        VisualSignature still = VisualSignature.of(button(200, 60, 0));
+
+        Assert.assertFalse(still.matches(VisualSignature.of(button(200, 60, 4)), 2));
+        Assert.assertEquals(Integer.MAX_VALUE, still.distance(VisualSignature.of(button(201, 60, 0))));
+    }
+
+    @Test
+    public void ParallelSignatureIsTheSerialOne() {
+        BufferedImage screen = button(1920, 1080, 37);
+
+        Assert.assertEquals(0, VisualSignature.of(screen, true).distance(VisualSignature.of(screen, false)));
+        // Smaller than the grid
+        Assert.assertEquals(0, VisualSignature.of(button(9, 5, 1), true).distance(VisualSignature.of(button(9, 5, 1), false)));
+    }
+
+    @Test
+    public void WaitReturnsOnceEnoughFramesMatch() throws Exception {
+        AtomicInteger samples = new AtomicInteger();
+
+        // Moves for 4 samples, then holds still
+        boolean stable = GenericWait.waitUntilStable(() -> Math.min(4, samples.getAndIncrement()),
+                Integer::equals, 3, 50, 10000);
+
+        Assert.assertTrue(stable);
+        Assert.assertEquals(7, samples.get());
+        Assert.assertEquals(6, clock.getSleeps());
+    }
+
+    @Test
+    public void WaitTimesOutWhileMoving() throws Exception {
+        AtomicInteger samples = new AtomicInteger();
+
+        boolean stable = GenericWait.waitUntilStable(samples::getAndIncrement, Integer::equals, 2, 50, 1000);
+
+        Assert.assertFalse(stable);
+    }
+
+    @Test
+    public void LazyElementWaitsForTheAnimationToEnd() {
+        StandInDriver driver = new StandInDriver();
+        StandInElement panel = driver.window("Calculator").add("Memory panel").animate(5);
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        LazyElement memory = new LazyElement(logger, window, By.name("Memory panel"), "Memory panel");
+
+        Assert.assertTrue(memory.waitUntilVisuallyStable(3, 50, 5000));
+        // Five moving frames, the first still one and two more matching it
+        Assert.assertEquals(7, clock.getSleeps());
+
+        panel.animate(1000);
+        Assert.assertFalse(memory.waitUntilVisuallyStable(3, 50, 1000));
+    }
+
+    @Test
+    public void LazyElementWaitsForASlideToEnd() {
+        StandInDriver driver = new StandInDriver();
+        StandInElement panel = driver.window("Calculator").add("History panel").slide(5);
+        LazyElement window = new LazyElement(logger, driver, By.name("Calculator"), "Calculator window");
+        LazyElement history = new LazyElement(logger, window, By.name("History panel"), "History panel");
+
+        // Its screenshots never change, only where it is does
+        Assert.assertTrue(history.waitUntilVisuallyStable(3, 50, 5000));
+        Assert.assertEquals(7, clock.getSleeps());
+        Assert.assertEquals(0, panel.getLocation().getX());
+    }
+}
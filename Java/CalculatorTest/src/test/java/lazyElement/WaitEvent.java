@@ -0,0 +1,89 @@
+package lazyElement;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a {@link GenericWait} wait. The slept time is in the wait's time source, so it stays
+ * meaningful under a virtual clock. The shipped configuration records the stack trace, which is how
+ * {@link FlightRecordingAnalyzer} tells who waited.
+ */
+@Name(WaitEvent.NAME)
+@Label("Wait")
+@Category("Lazy Element")
+@Description("A GenericWait wait")
+public final class WaitEvent extends Event {
+
+    public static final String NAME = "lazyElement.Wait";
+
+    /**
+     * The condition was met
+     */
+    static final String MET = "met";
+
+    /**
+     * The wait ran out of time
+     */
+    static final String TIMED_OUT = "timed out";
+
+    /**
+     * The wait ran out of time and the last poll threw
+     */
+    static final String FAILED = "failed";
+
+    @Label("Kind")
+    @Description("The GenericWait method")
+    String kind;
+
+    @Label("Polls")
+    int polls;
+
+    @Label("Slept")
+    @Timespan(Timespan.MILLISECONDS)
+    long slept;
+
+    @Label("Retry Time")
+    @Timespan(Timespan.MILLISECONDS)
+    long retryTime;
+
+    @Label("Timeout")
+    @Timespan(Timespan.MILLISECONDS)
+    long timeout;
+
+    @Label("Outcome")
+    String outcome;
+
+    /**
+     * Starts timing a wait.
+     *
+     * @param kind      The GenericWait method
+     * @param retryTime Time between polls in milliseconds
+     * @param timeout   Max timeout in milliseconds
+     * @return The event, counting polls and sleeps until it is finished
+     */
+    static WaitEvent start(String kind, long retryTime, long timeout) {
+        WaitEvent event = new WaitEvent();
+        event.kind = kind;
+        event.retryTime = retryTime;
+        event.timeout = timeout;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the wait and commits the event, if it is recorded.
+     *
+     * @param outcome {@link #MET}, {@link #TIMED_OUT} or {@link #FAILED}
+     */
+    void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
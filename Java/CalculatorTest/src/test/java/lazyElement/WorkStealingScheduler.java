@@ -0,0 +1,288 @@
+package lazyElement;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs units of work with predicted durations on a fixed number of workers.
+ * The units are first assigned longest-processing-time-first: from the longest down, each goes to the worker with
+ * the least predicted work so far, and every worker runs its own units longest first. A worker that runs out steals
+ * the shortest remaining unit of the worker with the most predicted work left, which evens out wrong predictions.
+ */
+public final class WorkStealingScheduler {
+
+    private final int workers;
+
+    /**
+     * Initializes a new instance of the {@link WorkStealingScheduler} class
+     *
+     * @param workers The number of units run at the same time
+     */
+    public WorkStealingScheduler(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Workers must be at least 1: " + workers);
+        }
+        this.workers = workers;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * A unit with its prediction
+     */
+    private static final class Unit<T> {
+        private final T value;
+        private final String name;
+        private final long predicted;
+
+        private Unit(T value, String name, long predicted) {
+            this.value = value;
+            this.name = name;
+            this.predicted = predicted;
+        }
+    }
+
+    /**
+     * The units of one worker, longest first, with their predicted total
+     */
+    private static final class Queue<T> {
+        private final Deque<Unit<T>> units = new ArrayDeque<>();
+        private long remaining;
+    }
+
+    /**
+     * Assigns the units longest-processing-time-first.
+     *
+     * @param units     The units
+     * @param predicted Predicted duration of a unit in milliseconds
+     * @param name      Name of a unit for the report
+     * @return The units of every worker, longest first
+     */
+    private <T> List<Queue<T>> assign(List<T> units, ToLongFunction<T> predicted, Function<T, String> name) {
+        List<Unit<T>> sorted = new ArrayList<>(units.size());
+        for (T unit : units) {
+            sorted.add(new Unit<>(unit, name.apply(unit), Math.max(0, predicted.applyAsLong(unit))));
+        }
+        sorted.sort(Comparator.comparingLong((Unit<T> unit) -> unit.predicted).reversed());
+
+        List<Queue<T>> queues = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            queues.add(new Queue<>());
+        }
+        for (Unit<T> unit : sorted) {
+            Queue<T> least = Collections.min(queues, Comparator.comparingLong((Queue<T> queue) -> queue.remaining));
+            least.units.addLast(unit);
+            least.remaining += unit.predicted;
+        }
+        return queues;
+    }
+
+    /**
+     * Runs every unit and waits for all of them.
+     *
+     * @param units     The units
+     * @param predicted Predicted duration of a unit in milliseconds
+     * @param name      Name of a unit for the report
+     * @param task      Runs a unit
+     * @return How the run went
+     * @throws InterruptedException If interrupted while waiting for the workers, which are interrupted in turn
+     */
+    public <T> Report run(List<T> units, ToLongFunction<T> predicted, Function<T, String> name, Consumer<T> task)
+            throws InterruptedException {
+        List<Queue<T>> queues = assign(units, predicted, name);
+        long predictedMakespan = 0;
+        for (Queue<T> queue : queues) {
+            predictedMakespan = Math.max(predictedMakespan, queue.remaining);
+        }
+
+        Report report = new Report(workers, predictedMakespan);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>(workers);
+        long start = System.nanoTime();
+        for (int i = 0; i < workers; i++) {
+            int worker = i;
+            Thread thread = new Thread(() -> {
+                Unit<T> unit;
+                while ((unit = next(queues, worker, report)) != null) {
+                    long unitStart = System.nanoTime();
+                    try {
+                        task.accept(unit.value);
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                    long finished = System.nanoTime();
+                    report.ran(worker, unit.name, unit.predicted, finished - unitStart, finished - start);
+                }
+            }, "balanced-worker-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            throw e;
+        }
+
+        if (!failures.isEmpty()) {
+            Throwable first = failures.get(0);
+            throw first instanceof RuntimeException ? (RuntimeException) first : new IllegalStateException(first);
+        }
+        return report;
+    }
+
+    /**
+     * Takes the next unit of a worker, stealing one if it has none left.
+     */
+    private static <T> Unit<T> next(List<Queue<T>> queues, int worker, Report report) {
+        synchronized (queues) {
+            Queue<T> own = queues.get(worker);
+            Unit<T> unit = own.units.pollFirst();
+            if (unit != null) {
+                own.remaining -= unit.predicted;
+                return unit;
+            }
+            Queue<T> victim = null;
+            for (Queue<T> queue : queues) {
+                if (!queue.units.isEmpty() && (victim == null || queue.remaining > victim.remaining)) {
+                    victim = queue;
+                }
+            }
+            if (victim == null) {
+                return null;
+            }
+            unit = victim.units.pollLast();
+            victim.remaining -= unit.predicted;
+            report.stole(worker);
+            return unit;
+        }
+    }
+
+    /**
+     * How a run went, compared with the ideal makespan: the longest unit or the total work evenly spread over the
+     * workers, whichever is longer
+     */
+    public static final class Report {
+
+        private final long[] busy;
+
+        private final int[] ran;
+
+        private final int[] steals;
+
+        private final long predictedMakespan;
+
+        private long makespan;
+
+        private long total;
+
+        private long longest;
+
+        private final List<String> order = new ArrayList<>();
+
+        private Report(int workers, long predictedMakespan) {
+            this.busy = new long[workers];
+            this.ran = new int[workers];
+            this.steals = new int[workers];
+            this.predictedMakespan = predictedMakespan;
+        }
+
+        /**
+         * Records a unit that ran, with its duration and the time it finished from the start of the run in
+         * nanoseconds
+         */
+        private synchronized void ran(int worker, String name, long predicted, long nanos, long finished) {
+            busy[worker] += nanos;
+            ran[worker]++;
+            total += nanos;
+            longest = Math.max(longest, nanos);
+            makespan = Math.max(makespan, finished);
+            order.add(String.format("worker %d: %s, %d ms (predicted %d ms)", worker, name, millis(nanos), predicted));
+        }
+
+        private synchronized void stole(int worker) {
+            steals[worker]++;
+        }
+
+        /**
+         * Gets the time from the start of the run until the last unit finished, in milliseconds
+         */
+        public synchronized long getMakespanMillis() {
+            return millis(makespan);
+        }
+
+        /**
+         * Gets the shortest makespan possible with the measured durations, in milliseconds
+         */
+        public synchronized long getIdealMillis() {
+            return millis(ideal());
+        }
+
+        private long ideal() {
+            return Math.max(longest, total / busy.length);
+        }
+
+        /**
+         * Gets the makespan the assignment predicted, in milliseconds
+         */
+        public long getPredictedMakespanMillis() {
+            return predictedMakespan;
+        }
+
+        /**
+         * Gets the ideal makespan divided by the achieved one, 1 being perfect
+         */
+        public synchronized double getEfficiency() {
+            return makespan == 0 ? 1 : Math.min(1, (double) ideal() / makespan);
+        }
+
+        public synchronized int getSteals() {
+            int stolen = 0;
+            for (int count : steals) {
+                stolen += count;
+            }
+            return stolen;
+        }
+
+        /**
+         * Gets the number of units each worker ran
+         */
+        public synchronized int[] getRan() {
+            return ran.clone();
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder report = new StringBuilder(String.format(
+                    "Balanced run on %d workers: makespan %d ms, ideal %d ms (%.0f%%), predicted %d ms, %d steals",
+                    busy.length, millis(makespan), getIdealMillis(), getEfficiency() * 100, predictedMakespan, getSteals()));
+            for (int i = 0; i < busy.length; i++) {
+                report.append(String.format("\r\n  worker %d: %d units, %d ms busy, %d stolen",
+                        i, ran[i], millis(busy[i]), steals[i]));
+            }
+            for (String unit : order) {
+                report.append("\r\n  ").append(unit);
+            }
+            return report.toString();
+        }
+
+        private static long millis(long nanos) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+}
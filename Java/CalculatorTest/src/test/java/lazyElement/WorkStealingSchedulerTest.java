@@ -0,0 +1,110 @@
+package lazyElement;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WorkStealingSchedulerTest {
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void LongestUnitsStartFirst() throws InterruptedException {
+        List<Long> started = Collections.synchronizedList(new ArrayList<>());
+
+        WorkStealingScheduler.Report report = new WorkStealingScheduler(2).run(Arrays.asList(50L, 500L, 150L, 250L),
+                millis -> millis, String::valueOf, millis -> {
+                    started.add(millis);
+                    sleep(millis);
+                });
+
+        List<Long> first = new ArrayList<>(started.subList(0, 2));
+        Collections.sort(first);
+        Assert.assertEquals(Arrays.asList(250L, 500L), first);
+        // 500 on one worker, 250 + 150 + 50 on the other. The last unit starts 100 ms before the first worker is
+        // idle, so there is nothing left to steal. The ideal is the longest unit as measured, at least its 500 ms
+        Assert.assertEquals(500, report.getPredictedMakespanMillis());
+        Assert.assertTrue(report.toString(), report.getIdealMillis() >= 500 && report.getIdealMillis() < 600);
+        Assert.assertTrue(report.toString(), report.getMakespanMillis() < 600);
+        Assert.assertEquals(0, report.getSteals());
+    }
+
+    @Test
+    public void IdleWorkersStealWhenPredictionsAreWrong() throws InterruptedException {
+        // Predicted evenly, but the first unit is far longer than the others
+        List<String> units = Arrays.asList("slow", "a", "b", "c", "d", "e");
+        Map<String, String> ranOn = new ConcurrentHashMap<>();
+
+        WorkStealingScheduler.Report report = new WorkStealingScheduler(2).run(units, unit -> 100, unit -> unit, unit -> {
+            ranOn.put(unit, Thread.currentThread().getName());
+            sleep(unit.equals("slow") ? 400 : 50);
+        });
+
+        Assert.assertEquals(6, ranOn.size());
+        Assert.assertTrue(report.toString(), report.getSteals() > 0);
+        Assert.assertEquals(6, report.getRan()[0] + report.getRan()[1]);
+        // Without stealing the slow worker would also run two more units, 500 ms
+        Assert.assertTrue(report.toString(), report.getMakespanMillis() < 480);
+        Assert.assertTrue(report.toString(), report.getEfficiency() > 0.8);
+    }
+
+    @Test
+    public void SingleWorkerRunsLongestFirst() throws InterruptedException {
+        List<Integer> order = new ArrayList<>();
+
+        WorkStealingScheduler.Report report = new WorkStealingScheduler(1).run(Arrays.asList(1, 3, 2), unit -> unit,
+                String::valueOf, order::add);
+
+        Assert.assertEquals(Arrays.asList(3, 2, 1), order);
+        Assert.assertEquals(3, report.getRan()[0]);
+        Assert.assertEquals(0, report.getSteals());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void FailuresAreRethrownAfterEveryUnitRan() throws InterruptedException {
+        new WorkStealingScheduler(2).run(Arrays.asList(1, 2, 3), unit -> unit, String::valueOf, unit -> {
+            if (unit == 2) {
+                throw new IllegalStateException("Unit " + unit + " failed");
+            }
+        });
+    }
+
+    @Test
+    public void DurationsAreAveragedAndPersisted() throws IOException {
+        Path file = Files.createTempFile("test-durations", ".txt");
+        try {
+            TestDurations durations = new TestDurations(file);
+            Assert.assertEquals(1000, durations.predict("Addition(CalculatorTest)"));
+            durations.record("Addition(CalculatorTest)", 1000);
+            durations.record("Addition(CalculatorTest)", 2000);
+            durations.record("Division(CalculatorTest)", 400);
+            durations.record("Tab\tName(CalculatorTest)", 600);
+            durations.save();
+
+            TestDurations loaded = new TestDurations(file);
+
+            Assert.assertEquals(1500, loaded.getDuration("Addition(CalculatorTest)"));
+            Assert.assertEquals(600, loaded.getDuration("Tab\tName(CalculatorTest)"));
+            // Unknown tests are predicted from the median
+            Assert.assertEquals(600, loaded.predict("Clear(CalculatorTest)"));
+            Assert.assertEquals(-1, loaded.getDuration("Clear(CalculatorTest)"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}